@@ -13,6 +13,9 @@ import org.eclipse.cdt.core.parser.IncludeFileContentProvider;
 import org.eclipse.cdt.core.parser.ScannerInfo;
 import org.eclipse.core.runtime.CoreException;
 
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
+
 import com.google.common.collect.Maps;
 
 /**
@@ -24,6 +27,9 @@ import com.google.common.collect.Maps;
  */
 public abstract class AbstractCdtAstExtractor {
 
+	private static final StageMetrics PARSE_METRICS = PipelineMetrics
+			.getStage("parse", "cpp", "chars");
+
 	/**
 	 * Return an AST for the following CDT-compatible code;
 	 * 
@@ -33,6 +39,7 @@ public abstract class AbstractCdtAstExtractor {
 	 */
 	public final IASTTranslationUnit getAST(final char[] code,
 			final String baseIncludePath) throws CoreException {
+		final long start = PipelineMetrics.startTimer();
 		final FileContent fc = FileContent.create(baseIncludePath, code);
 		final Map<String, String> macroDefinitions = Maps.newHashMap();
 		final String[] includeSearchPaths = new String[0];
@@ -43,7 +50,14 @@ public abstract class AbstractCdtAstExtractor {
 		final IIndex idx = null;
 		final int options = ILanguage.OPTION_IS_SOURCE_UNIT;
 		final IParserLogService log = new DefaultLogService();
-		return getAstForLanguage(fc, si, ifcp, idx, options, log);
+		try {
+			return getAstForLanguage(fc, si, ifcp, idx, options, log);
+		} catch (final CoreException e) {
+			PARSE_METRICS.recordFailure();
+			throw e;
+		} finally {
+			PARSE_METRICS.record(start, code.length);
+		}
 	}
 
 	/**
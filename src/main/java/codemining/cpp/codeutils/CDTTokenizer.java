@@ -5,6 +5,7 @@ package codemining.cpp.codeutils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
@@ -16,7 +17,11 @@ import org.apache.commons.lang.NotImplementedException;
 import org.eclipse.cdt.internal.formatter.scanner.Scanner;
 import org.eclipse.cdt.internal.formatter.scanner.Token;
 
+import codemining.languagetools.CachedTokenClassifier;
+import codemining.languagetools.CachedTokenClassifier.ITokenScanner;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -31,12 +36,39 @@ public class CDTTokenizer implements ITokenizer {
 
 	private static final long serialVersionUID = 3954406410244227404L;
 
+	private static final StageMetrics TOKENIZE_METRICS = PipelineMetrics.getStage(
+			"tokenize", "cpp", "tokens");
+
 	/**
 	 * A filter for the files being tokenized.
 	 */
 	public static final RegexFileFilter C_CODE_TOKENIZER = new RegexFileFilter(
 			".*\\.(c|cc|cpp|h)$");
 
+	/**
+	 * The keywords and operators that are precomputed for getTokenFromString.
+	 */
+	private static final String[] FIXED_TOKENS = { "auto", "bool", "break",
+			"case", "catch", "char", "class", "const", "const_cast",
+			"continue", "default", "delete", "do", "double", "dynamic_cast",
+			"else", "enum", "explicit", "extern", "false", "float", "for",
+			"friend", "goto", "if", "inline", "int", "long", "mutable",
+			"namespace", "new", "operator", "private", "protected", "public",
+			"register", "reinterpret_cast", "return", "short", "signed",
+			"sizeof", "static", "static_cast", "struct", "switch", "template",
+			"this", "throw", "true", "try", "typedef", "typeid", "typename",
+			"union", "unsigned", "using", "virtual", "void", "volatile",
+			"while", "{", "}", "(", ")", "[", "]", ";", ",", ".", "...", "=",
+			">", "<", "!", "~", "?", ":", "::", "->", "->*", ".*", "==", "<=",
+			">=", "!=", "&&", "||", "++", "--", "+", "-", "*", "/", "&", "|",
+			"^", "%", "<<", ">>", "+=", "-=", "*=", "/=", "&=", "|=", "^=",
+			"%=", "<<=", ">>=", "#" };
+
+	/**
+	 * Lazily created, since tokenizers are serializable.
+	 */
+	private transient volatile CachedTokenClassifier tokenClassifier;
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -109,7 +141,30 @@ public class CDTTokenizer implements ITokenizer {
 			return new FullToken(ITokenizer.SENTENCE_END,
 					ITokenizer.SENTENCE_END);
 		}
-		return getTokenListFromCode(token.toCharArray()).get(1);
+		return getTokenClassifier().getTokenFromString(token);
+	}
+
+	/**
+	 * Return the classifier used for getTokenFromString.
+	 *
+	 * @return
+	 */
+	private CachedTokenClassifier getTokenClassifier() {
+		if (tokenClassifier == null) {
+			tokenClassifier = new CachedTokenClassifier(new ITokenScanner() {
+
+				@Override
+				public FullToken identifierToken(final String token) {
+					return new FullToken(token, getIdentifierType());
+				}
+
+				@Override
+				public FullToken scanToken(final String token) {
+					return getTokenListFromCode(token.toCharArray()).get(1);
+				}
+			}, getIdentifierType(), Arrays.asList(FIXED_TOKENS), "_");
+		}
+		return tokenClassifier;
 	}
 
 	/*
@@ -152,6 +207,7 @@ public class CDTTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final List<String> tokens = Lists.newArrayList();
 		tokens.add(SENTENCE_START);
 
@@ -168,6 +224,7 @@ public class CDTTokenizer implements ITokenizer {
 		} while (!scanner.atEnd());
 
 		tokens.add(SENTENCE_END);
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
@@ -185,6 +242,7 @@ public class CDTTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
 		tokens.put(-1, SENTENCE_START);
 		tokens.put(Integer.MAX_VALUE, SENTENCE_END);
@@ -199,6 +257,7 @@ public class CDTTokenizer implements ITokenizer {
 			final String nxtToken = new String(scanner.getCurrentTokenSource());
 			tokens.put(scanner.getCurrentPosition(), nxtToken);
 		} while (!scanner.atEnd());
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
@@ -2,6 +2,9 @@ package codemining.java.codedata.metrics;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -18,6 +21,8 @@ import org.eclipse.jdt.core.dom.WhileStatement;
 
 import codemining.java.codeutils.JavaASTExtractor;
 
+import com.google.common.collect.Maps;
+
 /**
  * Compute McCabe's Cyclomatic Complexity.
  * 
@@ -33,39 +38,43 @@ public class CyclomaticCalculator implements IFileMetricRetriever {
 	private static class JunctionVisitor extends ASTVisitor {
 		int complexity = 0;
 
+		void addJunction() {
+			complexity++;
+		}
+
 		@Override
 		public boolean visit(final CatchClause arg0) {
-			complexity++;
+			addJunction();
 			return super.visit(arg0);
 		}
 
 		@Override
 		public boolean visit(final ConditionalExpression arg0) {
-			complexity++;
+			addJunction();
 			return super.visit(arg0);
 		}
 
 		@Override
 		public boolean visit(final DoStatement arg0) {
-			complexity++;
+			addJunction();
 			return super.visit(arg0);
 		}
 
 		@Override
 		public boolean visit(final EnhancedForStatement arg0) {
-			complexity++;
+			addJunction();
 			return super.visit(arg0);
 		}
 
 		@Override
 		public boolean visit(final ForStatement arg0) {
-			complexity++;
+			addJunction();
 			return super.visit(arg0);
 		}
 
 		@Override
 		public boolean visit(final IfStatement arg0) {
-			complexity++;
+			addJunction();
 			return super.visit(arg0);
 		}
 
@@ -75,19 +84,52 @@ public class CyclomaticCalculator implements IFileMetricRetriever {
 			 * if (isConcrete(arg0)) { complexity.startMethod(); return
 			 * super.visit(arg0); } return false;
 			 */
-			complexity++; // TODO: Not exactly true, but we'll use that
+			addJunction(); // TODO: Not exactly true, but we'll use that
 			return super.visit(arg0);
 		}
 
 		@Override
 		public boolean visit(final SwitchCase arg0) {
-			complexity++;
+			addJunction();
 			return super.visit(arg0);
 		}
 
 		@Override
 		public boolean visit(final WhileStatement arg0) {
-			complexity++;
+			addJunction();
+			return super.visit(arg0);
+		}
+	}
+
+	/**
+	 * Compute the complexity of every method in a single pass. The
+	 * complexity of a method includes that of the methods nested in it.
+	 */
+	private static final class MethodComplexityVisitor extends JunctionVisitor {
+		final Map<MethodDeclaration, Integer> complexities = Maps
+				.newIdentityHashMap();
+
+		private final Deque<int[]> enclosingMethods = new ArrayDeque<int[]>();
+
+		@Override
+		void addJunction() {
+			if (!enclosingMethods.isEmpty()) {
+				enclosingMethods.peek()[0]++;
+			}
+		}
+
+		@Override
+		public void endVisit(final MethodDeclaration node) {
+			final int methodComplexity = enclosingMethods.pop()[0];
+			complexities.put(node, methodComplexity);
+			if (!enclosingMethods.isEmpty()) {
+				enclosingMethods.peek()[0] += methodComplexity;
+			}
+		}
+
+		@Override
+		public boolean visit(final MethodDeclaration arg0) {
+			enclosingMethods.push(new int[1]);
 			return super.visit(arg0);
 		}
 	}
@@ -102,6 +144,20 @@ public class CyclomaticCalculator implements IFileMetricRetriever {
 		return visitor.complexity;
 	}
 
+	/**
+	 * Return the complexity of every method declared in the given node, as
+	 * getMetricForASTNode would return for each method.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public Map<MethodDeclaration, Integer> getMethodComplexities(
+			final ASTNode node) {
+		final MethodComplexityVisitor visitor = new MethodComplexityVisitor();
+		node.accept(visitor);
+		return visitor.complexities;
+	}
+
 	@Override
 	public double getMetricForASTNode(final ASTNode node) {
 		final JunctionVisitor visitor = new JunctionVisitor();
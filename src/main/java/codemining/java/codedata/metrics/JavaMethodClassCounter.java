@@ -2,14 +2,16 @@ package codemining.java.codedata.metrics;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
-import org.eclipse.jdt.core.dom.CompilationUnit;
 
 import codemining.java.codeutils.JavaASTExtractor;
+import codemining.languagetools.corpus.CorpusShard;
+import codemining.languagetools.dedup.ContentHashCache;
 
 public final class JavaMethodClassCounter {
 
@@ -44,17 +46,34 @@ public final class JavaMethodClassCounter {
 			throws IOException {
 
 		System.out.println("\n===== Project " + projectDir);
-		final MethodClassCountVisitor mccv = new MethodClassCountVisitor();
 		final JavaASTExtractor astExtractor = new JavaASTExtractor(false);
+		// Files with identical contents are counted once and reused
+		final ContentHashCache<MethodClassCountVisitor> countCache = new ContentHashCache<MethodClassCountVisitor>();
 
-		final List<File> files = (List<File>) FileUtils.listFiles(projectDir,
-				new String[] { "java" }, true);
+		final List<File> files = CorpusShard.select(
+				FileUtils.listFiles(projectDir, new String[] { "java" }, true),
+				projectDir);
 
+		int noMethods = 0;
+		int noClasses = 0;
 		int count = 0;
 		for (final File file : files) {
-
-			final CompilationUnit cu = astExtractor.getAST(file);
-			cu.accept(mccv);
+			final MethodClassCountVisitor mccv;
+			try {
+				mccv = countCache.get(file, f -> {
+					final MethodClassCountVisitor visitor = new MethodClassCountVisitor();
+					try {
+						astExtractor.getAST(f).accept(visitor);
+					} catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					return visitor;
+				});
+			} catch (final UncheckedIOException e) {
+				throw e.getCause();
+			}
+			noMethods += mccv.noMethods;
+			noClasses += mccv.noClasses;
 
 			if (count % 1000 == 0)
 				System.out.println("At file " + count + " of " + files.size());
@@ -63,8 +82,8 @@ public final class JavaMethodClassCounter {
 
 		System.out.println("Project " + projectDir);
 		System.out.println("No. *.java files " + files.size());
-		System.out.println("No. Methods: " + mccv.noMethods);
-		System.out.println("No. Classes: " + mccv.noClasses);
+		System.out.println("No. Methods: " + noMethods);
+		System.out.println("No. Classes: " + noClasses);
 	}
 
 	private JavaMethodClassCounter() {
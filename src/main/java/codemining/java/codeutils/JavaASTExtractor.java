@@ -23,6 +23,8 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.languagetools.ITokenizer;
 import codemining.languagetools.ParseType;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 /**
  * A utility class to retrieve an Eclipse AST.
@@ -42,6 +44,9 @@ public class JavaASTExtractor {
 		}
 	}
 
+	private static final StageMetrics PARSE_METRICS = PipelineMetrics
+			.getStage("parse", "java", "chars");
+
 	/**
 	 * Remembers if the given Extractor will calculate the bindings.
 	 */
@@ -93,6 +98,7 @@ public class JavaASTExtractor {
 	 */
 	public final CompilationUnit getAST(final File file,
 			final Set<String> srcPaths) throws IOException {
+		final long start = PipelineMetrics.startTimer();
 		final String sourceFile = FileUtils.readFileToString(file);
 		final ASTParser parser = ASTParser.newParser(AST.JLS8);
 		parser.setKind(ASTParser.K_COMPILATION_UNIT);
@@ -132,6 +138,7 @@ public class JavaASTExtractor {
 
 		final CompilationUnit compilationUnit = (CompilationUnit) parser
 				.createAST(null);
+		PARSE_METRICS.record(start, sourceFile.length());
 		return compilationUnit;
 	}
 
@@ -155,6 +162,7 @@ public class JavaASTExtractor {
 	 */
 	public final ASTNode getASTNode(final char[] content,
 			final ParseType parseType) {
+		final long start = PipelineMetrics.startTimer();
 		final ASTParser parser = ASTParser.newParser(AST.JLS8);
 		final int astKind;
 		switch (parseType) {
@@ -190,10 +198,11 @@ public class JavaASTExtractor {
 
 		parser.setStatementsRecovery(true);
 
+		final ASTNode cu = parser.createAST(null);
+		PARSE_METRICS.record(start, content.length);
 		if (parseType != ParseType.METHOD) {
-			return parser.createAST(null);
+			return cu;
 		} else {
-			final ASTNode cu = parser.createAST(null);
 			return getFirstMethodDeclaration(cu);
 		}
 	}
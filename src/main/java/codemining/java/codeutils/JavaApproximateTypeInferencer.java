@@ -5,6 +5,9 @@ package codemining.java.codeutils;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -24,7 +27,95 @@ import com.google.common.collect.Maps;
  */
 public class JavaApproximateTypeInferencer {
 
+	/**
+	 * The types of the variables at each token position, as sorted positions
+	 * with the id of their type.
+	 */
+	public static final class TypesAtPositions {
+
+		private final int[] positions;
+
+		private final int[] typeIds;
+
+		private final String[] types;
+
+		TypesAtPositions(final int[] positions, final int[] typeIds,
+				final String[] types) {
+			this.positions = positions;
+			this.typeIds = typeIds;
+			this.types = types;
+		}
+
+		/**
+		 * Return the index of the given position, or a negative number if
+		 * there is no variable there.
+		 *
+		 * @param position
+		 * @return
+		 */
+		public int indexOf(final int position) {
+			return Arrays.binarySearch(positions, position);
+		}
+
+		/**
+		 * Return the sorted positions. Not to be modified.
+		 *
+		 * @return
+		 */
+		public int[] getPositions() {
+			return positions;
+		}
+
+		/**
+		 * Return the type of the given id.
+		 *
+		 * @param typeId
+		 * @return
+		 */
+		public String getType(final int typeId) {
+			return types[typeId];
+		}
+
+		/**
+		 * Return the type ids of the positions. Not to be modified.
+		 *
+		 * @return
+		 */
+		public int[] getTypeIds() {
+			return typeIds;
+		}
+
+		/**
+		 * Return the number of distinct types.
+		 *
+		 * @return
+		 */
+		public int getNumTypes() {
+			return types.length;
+		}
+	}
+
 	private static class TypeInferencer extends ASTVisitor {
+
+		/**
+		 * A binding that was shadowed when a name was bound in a scope, to be
+		 * restored when the scope is left.
+		 */
+		private static final class ShadowedBinding {
+			final ASTNode scope;
+
+			final String name;
+
+			final Integer previousId;
+
+			ShadowedBinding(final ASTNode scope, final String name,
+					final Integer previousId) {
+				this.scope = scope;
+				this.name = name;
+				this.previousId = previousId;
+			}
+		}
+
 		private int nextDeclarId = 0;
 
 		private String currentPackage = "";
@@ -35,11 +126,16 @@ public class JavaApproximateTypeInferencer {
 		private final Map<String, String> importedNames = Maps.newTreeMap();
 
 		/**
-		 * Map the names that are defined in each AST node, with their
-		 * respective ids.
+		 * The ids of the names that are visible at the currently visited node.
+		 * A name declared by a node is visible in the node and in the later
+		 * siblings of the node, until its parent scope is left.
 		 */
-		private final Map<ASTNode, Map<String, Integer>> variableNames = Maps
-				.newIdentityHashMap();
+		private final Map<String, Integer> visibleNames = Maps.newHashMap();
+
+		/**
+		 * The undo log of the visible names, with the innermost scope on top.
+		 */
+		private final Deque<ShadowedBinding> shadowedBindings = new ArrayDeque<ShadowedBinding>();
 
 		/**
 		 * Map of variables (represented with their ids) to all token positions
@@ -62,8 +158,10 @@ public class JavaApproximateTypeInferencer {
 				final Type type) {
 			final int bindingId = nextDeclarId;
 			nextDeclarId++;
-			variableNames.get(node).put(name, bindingId);
-			variableNames.get(node.getParent()).put(name, bindingId);
+			final ASTNode scope = node.getParent() == null ? node : node
+					.getParent();
+			shadowedBindings.push(new ShadowedBinding(scope, name,
+					visibleNames.put(name, bindingId)));
 			variableBinding.put(bindingId, Lists.<ASTNode> newArrayList());
 			final String nameOfType = getNameOfType(type);
 			variableTypes.put(bindingId, nameOfType);
@@ -73,10 +171,9 @@ public class JavaApproximateTypeInferencer {
 		 * Add the binding data for the given name at the given scope and
 		 * position.
 		 */
-		private void addBindingData(final String name, final ASTNode nameNode,
-				final Map<String, Integer> scopeBindings) {
+		private void addBindingData(final String name, final ASTNode nameNode) {
 			// Get varId or abort
-			final Integer variableId = scopeBindings.get(name);
+			final Integer variableId = visibleNames.get(name);
 			if (variableId == null || !variableBinding.containsKey(variableId)) {
 				return;
 			}
@@ -148,22 +245,18 @@ public class JavaApproximateTypeInferencer {
 		}
 
 		@Override
-		public void preVisit(final ASTNode node) {
-			final ASTNode parent = node.getParent();
-			if (parent != null && variableNames.containsKey(parent)) {
-				// inherit all variables in parent scope
-				final Map<String, Integer> bindingsCopy = Maps.newTreeMap();
-				for (final Entry<String, Integer> binding : variableNames.get(
-						parent).entrySet()) {
-					bindingsCopy.put(binding.getKey(), binding.getValue());
+		public void postVisit(final ASTNode node) {
+			// Leave the scope, restoring the names it shadowed
+			while (!shadowedBindings.isEmpty()
+					&& shadowedBindings.peek().scope == node) {
+				final ShadowedBinding shadowed = shadowedBindings.pop();
+				if (shadowed.previousId == null) {
+					visibleNames.remove(shadowed.name);
+				} else {
+					visibleNames.put(shadowed.name, shadowed.previousId);
 				}
-
-				variableNames.put(node, bindingsCopy);
-			} else {
-				// Start from scratch
-				variableNames.put(node, Maps.<String, Integer> newTreeMap());
 			}
-			super.preVisit(node);
+			super.postVisit(node);
 		}
 
 		/**
@@ -196,7 +289,7 @@ public class JavaApproximateTypeInferencer {
 
 		/**
 		 * Visits {@link SimpleName} AST nodes. Resolves the binding of the
-		 * simple name and looks for it in the {@link #variableScope} map. If
+		 * simple name and looks for it in the {@link #visibleNames} map. If
 		 * the binding is found, this is a reference to a variable.
 		 *
 		 * @param node
@@ -211,7 +304,7 @@ public class JavaApproximateTypeInferencer {
 					return true;
 				}
 			}
-			addBindingData(node.getIdentifier(), node, variableNames.get(node));
+			addBindingData(node.getIdentifier(), node);
 			return true;
 		}
 
@@ -295,6 +388,58 @@ public class JavaApproximateTypeInferencer {
 		return variableTypes;
 	}
 
+	/**
+	 * Return the types of the variables at each position, as primitive arrays.
+	 *
+	 * @return
+	 */
+	public TypesAtPositions getVariableTypeIdsAtPosition() {
+		final Map<String, Integer> typeIds = Maps.newHashMap();
+		final List<String> types = Lists.newArrayList();
+		int nPositions = 0;
+		for (final List<ASTNode> nodes : inferencer.variableBinding.values()) {
+			nPositions += nodes.size();
+		}
+
+		// (position, order) pairs, so that a later binding of a position wins
+		final long[] positionOrder = new long[nPositions];
+		final int[] unsortedTypeIds = new int[nPositions];
+		int i = 0;
+		for (final Entry<Integer, List<ASTNode>> variableBinding : inferencer.variableBinding
+				.entrySet()) {
+			final String varType = checkNotNull(inferencer.variableTypes
+					.get(variableBinding.getKey()));
+			Integer typeId = typeIds.get(varType);
+			if (typeId == null) {
+				typeId = types.size();
+				typeIds.put(varType, typeId);
+				types.add(varType);
+			}
+			for (final ASTNode node : variableBinding.getValue()) {
+				positionOrder[i] = ((long) node.getStartPosition() << 32) | i;
+				unsortedTypeIds[i] = typeId;
+				i++;
+			}
+		}
+		Arrays.sort(positionOrder);
+
+		final int[] positions = new int[nPositions];
+		final int[] sortedTypeIds = new int[nPositions];
+		int nUnique = 0;
+		for (final long entry : positionOrder) {
+			final int position = (int) (entry >> 32);
+			if (nUnique > 0 && positions[nUnique - 1] == position) {
+				nUnique--;
+			}
+			positions[nUnique] = position;
+			sortedTypeIds[nUnique] = unsortedTypeIds[(int) entry];
+			nUnique++;
+		}
+		return new TypesAtPositions(Arrays.copyOf(positions, nUnique),
+				Arrays.copyOf(sortedTypeIds, nUnique),
+				types.toArray(new String[types.size()]));
+	}
+
 	public void infer() {
 		rootNode.accept(inferencer);
 	}
@@ -0,0 +1,253 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.java.codeutils.binding.AbstractJavaNameBindingsExtractor;
+import codemining.java.codeutils.binding.tui.JavaBindingsToJson;
+import codemining.java.codeutils.binding.tui.JavaBindingsToJson.SerializableResolvedSourceCode;
+import codemining.java.codeutils.scopes.ScopesTUI;
+import codemining.java.tokenizers.JavaASTAnnotatedTokenizer;
+import codemining.java.tokenizers.JavaIdentifierAnnotatedTokenizer;
+import codemining.java.tokenizers.JavaTokenTypeTokenizer;
+import codemining.java.tokenizers.JavaTokenizer;
+import codemining.java.tokenizers.JavaTokenizerSomeTokens;
+import codemining.java.tokenizers.JavaTypeTokenizer;
+import codemining.java.tokenizers.JavaWhitespaceTokenizer;
+import codemining.java.tokenizers.JavaWidthAnnotatedWhitespaceTokenizer;
+import codemining.languagetools.IScopeExtractor;
+import codemining.languagetools.ITokenizer;
+import codemining.languagetools.ParseType;
+import codemining.languagetools.Scope;
+import codemining.languagetools.daemon.ExtractionDaemon;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+/**
+ * Serve Java tokenization, parsing, binding and scope extraction requests
+ * from an {@link ExtractionDaemon}. Each worker thread keeps its own
+ * instances of the tokenizers and extractors it has used, since they are not
+ * thread-safe. Only known options are instantiated, so clients cannot load
+ * arbitrary classes or grow the per-thread instances without bound.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class JavaExtractionDaemon {
+
+	/**
+	 * Create the instance of a given option.
+	 */
+	private interface IFactory<T> {
+		T create(String option) throws Exception;
+	}
+
+	/**
+	 * Per-thread instances, keyed by their option. Each thread keeps at most
+	 * {@link #MAX_INSTANCES_PER_THREAD} of them, evicting the least recently
+	 * used.
+	 */
+	private static final class PerThreadCache<T> {
+
+		private final ThreadLocal<Map<String, T>> instances = ThreadLocal
+				.withInitial(() -> new LinkedHashMap<String, T>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(
+							final Map.Entry<String, T> eldest) {
+						return size() > MAX_INSTANCES_PER_THREAD;
+					}
+				});
+
+		private final IFactory<T> factory;
+
+		private final String defaultOption;
+
+		PerThreadCache(final IFactory<T> factory, final String defaultOption) {
+			this.factory = factory;
+			this.defaultOption = defaultOption;
+		}
+
+		T get(final String option) throws Exception {
+			final String key = option == null ? defaultOption : option;
+			final Map<String, T> threadInstances = instances.get();
+			T instance = threadInstances.get(key);
+			if (instance == null) {
+				instance = factory.create(key);
+				threadInstances.put(key, instance);
+			}
+			return instance;
+		}
+	}
+
+	private static final Logger LOGGER = Logger
+			.getLogger(JavaExtractionDaemon.class.getName());
+
+	private static final String WARMUP_CODE = "class A { int f; void m(int a) { int b = a + f; } }";
+
+	private static final int MAX_INSTANCES_PER_THREAD = 16;
+
+	/**
+	 * The tokenizers that clients may ask for, by class name.
+	 */
+	private static final Map<String, Class<? extends ITokenizer>> TOKENIZERS = Maps
+			.newHashMap();
+
+	static {
+		for (final Class<? extends ITokenizer> tokenizer : ImmutableList
+				.<Class<? extends ITokenizer>> of(JavaTokenizer.class,
+						JavaASTAnnotatedTokenizer.class,
+						JavaIdentifierAnnotatedTokenizer.class,
+						JavaTokenizerSomeTokens.class,
+						JavaTokenTypeTokenizer.class, JavaTypeTokenizer.class,
+						JavaWhitespaceTokenizer.class,
+						JavaWidthAnnotatedWhitespaceTokenizer.class)) {
+			TOKENIZERS.put(tokenizer.getName(), tokenizer);
+		}
+	}
+
+	/**
+	 * Return the binding extractor of the given name. Extractors that need
+	 * the corpus folder are not available, since requests are snippets.
+	 */
+	private static AbstractJavaNameBindingsExtractor getBindingExtractor(
+			final String name) {
+		checkArgument(!name.equals("methoddeclarations_nooverride"),
+				"%s needs a corpus folder and is not supported", name);
+		return JavaBindingsToJson.getExtractorForName(name, null);
+	}
+
+	/**
+	 * Return a new instance of one of the known tokenizers.
+	 */
+	private static ITokenizer getTokenizer(final String className)
+			throws InstantiationException, IllegalAccessException {
+		final Class<? extends ITokenizer> tokenizer = TOKENIZERS
+				.get(className);
+		checkArgument(tokenizer != null, "Unsupported tokenizer %s",
+				className);
+		return tokenizer.newInstance();
+	}
+
+	/**
+	 * Register the Java handlers to the daemon. The options of the ops are:
+	 * <ul>
+	 * <li>tokenize: the class of a Java tokenizer (default JavaTokenizer)</li>
+	 * <li>parse: none, returns the best effort AST</li>
+	 * <li>bindings: the extractor name of {@link JavaBindingsToJson}, except
+	 * methoddeclarations_nooverride</li>
+	 * <li>scopes: all|variable|method|type</li>
+	 * </ul>
+	 *
+	 * @param daemon
+	 */
+	public static void registerHandlers(final ExtractionDaemon daemon) {
+		final PerThreadCache<ITokenizer> tokenizers = new PerThreadCache<ITokenizer>(
+				JavaExtractionDaemon::getTokenizer,
+				JavaTokenizer.class.getName());
+		daemon.register("tokenize",
+				(option, code) -> tokenizers.get(option).tokenListFromCode(
+						code.toCharArray()));
+
+		final PerThreadCache<JavaASTExtractor> parsers = new PerThreadCache<JavaASTExtractor>(
+				option -> new JavaASTExtractor(false), "");
+		// The option is ignored, so all requests share the default parser
+		daemon.register("parse", (option, code) -> parsers.get(null)
+				.getBestEffortAstNode(code).toString());
+
+		final PerThreadCache<AbstractJavaNameBindingsExtractor> bindingExtractors = new PerThreadCache<AbstractJavaNameBindingsExtractor>(
+				JavaExtractionDaemon::getBindingExtractor, "variables");
+		daemon.register("bindings", (option, code) -> {
+			final AbstractJavaNameBindingsExtractor extractor = bindingExtractors
+					.get(option);
+			return SerializableResolvedSourceCode
+					.fromResolvedSourceCode(extractor
+							.getResolvedSourceCode(code));
+		});
+
+		final PerThreadCache<IScopeExtractor> scopeExtractors = new PerThreadCache<IScopeExtractor>(
+				ScopesTUI::getScopeExtractorByName, "all");
+		daemon.register("scopes", (option, code) -> toSerializable(scopeExtractors
+				.get(option).getFromString(code, ParseType.COMPILATION_UNIT)));
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		if (args.length > 1) {
+			System.err.println("Usage [port]");
+			System.exit(-1);
+		}
+		final int port = args.length == 1 ? Integer.parseInt(args[0])
+				: ExtractionDaemon.PORT;
+		try (final ExtractionDaemon daemon = new ExtractionDaemon(port,
+				ExtractionDaemon.N_THREADS,
+				ExtractionDaemon.MAX_PENDING_REQUESTS)) {
+			registerHandlers(daemon);
+			warmUp(daemon);
+			daemon.serve();
+		} catch (final IOException | InterruptedException e) {
+			LOGGER.severe(ExceptionUtils.getFullStackTrace(e));
+			System.exit(-1);
+		}
+	}
+
+	private static List<Map<String, Object>> toSerializable(
+			final Multimap<Scope, String> scopes) {
+		final List<Map<String, Object>> serializableScopes = Lists
+				.newArrayList();
+		for (final Map.Entry<Scope, Collection<String>> entry : scopes.asMap()
+				.entrySet()) {
+			final Map<String, Object> scope = Maps.newLinkedHashMap();
+			scope.put("scopeType", entry.getKey().scopeType.name());
+			scope.put("type", entry.getKey().type);
+			scope.put("code", entry.getKey().getCode());
+			scope.put("names", Lists.newArrayList(entry.getValue()));
+			serializableScopes.add(scope);
+		}
+		return serializableScopes;
+	}
+
+	/**
+	 * Run every op once on each worker thread, so that the classes are loaded
+	 * and the default per-thread instances created before the first request.
+	 */
+	private static void warmUp(final ExtractionDaemon daemon)
+			throws InterruptedException {
+		for (final String op : new String[] { "tokenize", "parse", "bindings",
+				"scopes" }) {
+			final ExtractionDaemon.Request request = new ExtractionDaemon.Request();
+			request.op = op;
+			request.snippets = Lists.newArrayList(WARMUP_CODE);
+			for (final ExtractionDaemon.Response response : daemon
+					.processOnEachWorker(request)) {
+				if (response.errors.get(0) != null) {
+					LOGGER.warning("Warm-up of " + op + " failed: "
+							+ response.errors.get(0));
+					break;
+				}
+			}
+		}
+	}
+
+	private JavaExtractionDaemon() {
+		// No instantiations
+	}
+
+}
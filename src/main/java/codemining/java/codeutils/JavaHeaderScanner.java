@@ -0,0 +1,891 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.core.util.PublicScanner;
+
+import codemining.java.tokenizers.JavaTokenizer;
+import codemining.languagetools.corpus.CorpusScheduler;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Scan the package, the imports and the type declarations of a Java file
+ * without building its AST. Only the tokens of the headers are looked at; the
+ * bodies of types (or of methods) are skipped by brace matching.
+ *
+ * The names of the types and the signatures of the methods follow
+ * {@link MethodsInClass} and {@link MethodUtils#getMethodType}, so that they
+ * can be used interchangeably.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class JavaHeaderScanner {
+
+	/**
+	 * How much of the file to scan.
+	 */
+	public enum Depth {
+		/**
+		 * The package and the imports. Scanning stops at the first type
+		 * declaration.
+		 */
+		IMPORTS,
+
+		/**
+		 * The package, the imports and the headers of the top-level types.
+		 */
+		TYPES,
+
+		/**
+		 * As TYPES, plus the fields, the method signatures and the member
+		 * types of all types.
+		 */
+		MEMBERS
+	}
+
+	/**
+	 * The header of a Java file.
+	 */
+	public static final class JavaHeader {
+
+		private String packageName;
+
+		private final List<String> imports = Lists.newArrayList();
+
+		private final List<String> staticImports = Lists.newArrayList();
+
+		private final List<TypeHeader> types = Lists.newArrayList();
+
+		/**
+		 * Return the fully qualified names of all the imports (including the
+		 * static ones), in the order they are declared. On-demand imports
+		 * are given without the trailing ".*".
+		 *
+		 * @return
+		 */
+		public List<String> getImports() {
+			return Collections.unmodifiableList(imports);
+		}
+
+		/**
+		 * Return the package name or null for the default package.
+		 *
+		 * @return
+		 */
+		public String getPackageName() {
+			return packageName;
+		}
+
+		/**
+		 * Return the static imports.
+		 *
+		 * @return
+		 */
+		public List<String> getStaticImports() {
+			return Collections.unmodifiableList(staticImports);
+		}
+
+		/**
+		 * Return the declared types, outer types before their member types.
+		 *
+		 * @return
+		 */
+		public List<TypeHeader> getTypes() {
+			return Collections.unmodifiableList(types);
+		}
+
+		@Override
+		public String toString() {
+			return "package " + packageName + " imports " + imports + " "
+					+ types;
+		}
+	}
+
+	/**
+	 * The kinds of type declarations.
+	 */
+	public enum TypeKind {
+		CLASS, INTERFACE, ENUM, ANNOTATION
+	}
+
+	/**
+	 * The header of a type declaration.
+	 */
+	public static final class TypeHeader {
+
+		private final String name;
+
+		private final TypeKind kind;
+
+		private String superclass;
+
+		private final List<String> superInterfaces = Lists.newArrayList();
+
+		private final List<String> fields = Lists.newArrayList();
+
+		private final List<String> methods = Lists.newArrayList();
+
+		TypeHeader(final String name, final TypeKind kind) {
+			this.name = name;
+			this.kind = kind;
+		}
+
+		/**
+		 * Return the fields as name:type. Only scanned at MEMBERS depth.
+		 *
+		 * @return
+		 */
+		public List<String> getFields() {
+			return Collections.unmodifiableList(fields);
+		}
+
+		public TypeKind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Return the methods (and constructors) as
+		 * name:returnType(paramType,...), as in {@link MethodsInClass}. Only
+		 * scanned at MEMBERS depth.
+		 *
+		 * @return
+		 */
+		public List<String> getMethods() {
+			return Collections.unmodifiableList(methods);
+		}
+
+		/**
+		 * Return the name of the type, qualified by the package and the
+		 * enclosing types.
+		 *
+		 * @return
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Return the superclass as written in the code, or null if there is
+		 * none.
+		 *
+		 * @return
+		 */
+		public String getSuperclass() {
+			return superclass;
+		}
+
+		/**
+		 * Return the implemented interfaces (or the extended interfaces of an
+		 * interface) as written in the code.
+		 *
+		 * @return
+		 */
+		public List<String> getSuperInterfaces() {
+			return Collections.unmodifiableList(superInterfaces);
+		}
+
+		@Override
+		public String toString() {
+			return kind + " " + name + " extends " + superclass
+					+ " implements " + superInterfaces + " " + fields + " "
+					+ methods;
+		}
+	}
+
+	private static final Logger LOGGER = Logger
+			.getLogger(JavaHeaderScanner.class.getName());
+
+	private static boolean isModifier(final int token) {
+		switch (token) {
+		case ITerminalSymbols.TokenNamepublic:
+		case ITerminalSymbols.TokenNameprotected:
+		case ITerminalSymbols.TokenNameprivate:
+		case ITerminalSymbols.TokenNamestatic:
+		case ITerminalSymbols.TokenNameabstract:
+		case ITerminalSymbols.TokenNamefinal:
+		case ITerminalSymbols.TokenNamenative:
+		case ITerminalSymbols.TokenNamesynchronized:
+		case ITerminalSymbols.TokenNametransient:
+		case ITerminalSymbols.TokenNamevolatile:
+		case ITerminalSymbols.TokenNamestrictfp:
+		case ITerminalSymbols.TokenNamedefault:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isPrimitiveType(final int token) {
+		switch (token) {
+		case ITerminalSymbols.TokenNameboolean:
+		case ITerminalSymbols.TokenNamebyte:
+		case ITerminalSymbols.TokenNamechar:
+		case ITerminalSymbols.TokenNameshort:
+		case ITerminalSymbols.TokenNameint:
+		case ITerminalSymbols.TokenNamelong:
+		case ITerminalSymbols.TokenNamefloat:
+		case ITerminalSymbols.TokenNamedouble:
+		case ITerminalSymbols.TokenNamevoid:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Return the number of closing angle brackets of the token.
+	 */
+	private static int closingAngles(final int token) {
+		switch (token) {
+		case ITerminalSymbols.TokenNameGREATER:
+			return 1;
+		case ITerminalSymbols.TokenNameRIGHT_SHIFT:
+			return 2;
+		case ITerminalSymbols.TokenNameUNSIGNED_RIGHT_SHIFT:
+			return 3;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage <directory> IMPORTS|TYPES|MEMBERS");
+			System.exit(-1);
+		}
+		final List<File> files = Lists.newArrayList(FileUtils.listFiles(
+				new File(args[0]), JavaTokenizer.javaCodeFileFilter,
+				DirectoryFileFilter.DIRECTORY));
+		final Depth depth = Depth.valueOf(args[1]);
+		final List<JavaHeader> headers = CorpusScheduler.getDefault().map(
+				files, f -> {
+					try {
+						return scan(f, depth);
+					} catch (final IOException e) {
+						LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+						return null;
+					}
+				});
+		for (int i = 0; i < files.size(); i++) {
+			System.out.println(files.get(i) + "\t" + headers.get(i));
+		}
+	}
+
+	/**
+	 * Scan the header of the given code.
+	 *
+	 * @param code
+	 * @param depth
+	 * @return
+	 */
+	public static JavaHeader scan(final char[] code, final Depth depth) {
+		final JavaHeaderScanner headerScanner = new JavaHeaderScanner(code,
+				depth);
+		headerScanner.scanCompilationUnit();
+		return headerScanner.header;
+	}
+
+	/**
+	 * Scan the header of the given file.
+	 *
+	 * @param file
+	 * @param depth
+	 * @return
+	 * @throws IOException
+	 */
+	public static JavaHeader scan(final File file, final Depth depth)
+			throws IOException {
+		return scan(FileUtils.readFileToString(file).toCharArray(), depth);
+	}
+
+	private final char[] source;
+
+	private final Depth depth;
+
+	private final PublicScanner scanner = new PublicScanner(false, false,
+			false, ClassFileConstants.JDK1_8, null, null, true);
+
+	private final JavaHeader header = new JavaHeader();
+
+	/**
+	 * The current token, not yet consumed.
+	 */
+	private int token;
+
+	private JavaHeaderScanner(final char[] source, final Depth depth) {
+		this.source = source;
+		this.depth = depth;
+		scanner.setSource(source);
+		advance();
+	}
+
+	/**
+	 * Move to the next token.
+	 */
+	private void advance() {
+		while (true) {
+			try {
+				token = scanner.getNextToken();
+				return;
+			} catch (final InvalidInputException e) {
+				// Skip the invalid token, as JavaTokenizer does
+				if (scanner.atEnd()) {
+					token = ITerminalSymbols.TokenNameEOF;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the text of the current token.
+	 */
+	private String currentText() {
+		final int start = scanner.getCurrentTokenStartPosition();
+		return new String(source, start,
+				scanner.getCurrentTokenEndPosition() - start + 1);
+	}
+
+	/**
+	 * Read a dotted name, starting at an identifier. On-demand imports stop
+	 * before the ".*".
+	 */
+	private String readQualifiedName() {
+		final StringBuilder name = new StringBuilder();
+		while (token == ITerminalSymbols.TokenNameIdentifier) {
+			name.append(currentText());
+			advance();
+			if (token != ITerminalSymbols.TokenNameDOT) {
+				break;
+			}
+			advance();
+			if (token == ITerminalSymbols.TokenNameIdentifier) {
+				name.append('.');
+			}
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Read a type, rendered as ASTNode.toString() does, stopping at the
+	 * first token that is not part of it.
+	 */
+	private String readType() {
+		final StringBuilder type = new StringBuilder();
+		int openAngles = 0;
+		boolean expectName = true;
+		while (true) {
+			if (expectName) {
+				skipAnnotations();
+				if (token == ITerminalSymbols.TokenNameIdentifier
+						|| isPrimitiveType(token)) {
+					type.append(currentText());
+					advance();
+				} else if (token == ITerminalSymbols.TokenNameQUESTION) {
+					type.append('?');
+					advance();
+					if (token == ITerminalSymbols.TokenNameextends) {
+						type.append(" extends ");
+						advance();
+						continue;
+					} else if (token == ITerminalSymbols.TokenNamesuper) {
+						type.append(" super ");
+						advance();
+						continue;
+					}
+				} else {
+					return type.toString();
+				}
+				expectName = false;
+				continue;
+			}
+
+			final int closing = closingAngles(token);
+			if (closing > 0 && openAngles > 0) {
+				for (int i = 0; i < closing && openAngles > 0; i++) {
+					type.append('>');
+					openAngles--;
+				}
+				advance();
+			} else if (token == ITerminalSymbols.TokenNameDOT
+					|| token == ITerminalSymbols.TokenNameLESS) {
+				if (token == ITerminalSymbols.TokenNameLESS) {
+					openAngles++;
+				}
+				type.append(currentText());
+				advance();
+				expectName = true;
+			} else if (token == ITerminalSymbols.TokenNameCOMMA
+					&& openAngles > 0) {
+				type.append(',');
+				advance();
+				expectName = true;
+			} else if (token == ITerminalSymbols.TokenNameLBRACKET) {
+				advance();
+				if (token != ITerminalSymbols.TokenNameRBRACKET) {
+					return type.toString();
+				}
+				type.append("[]");
+				advance();
+			} else {
+				return type.toString();
+			}
+		}
+	}
+
+	/**
+	 * Read a comma-separated list of types.
+	 */
+	private void readTypeList(final List<String> types) {
+		types.add(readType());
+		while (token == ITerminalSymbols.TokenNameCOMMA) {
+			advance();
+			types.add(readType());
+		}
+	}
+
+	/**
+	 * Read the parameters of a method, starting at the opening parenthesis,
+	 * as (type,type,).
+	 */
+	private String readParameters() {
+		final StringBuilder parameters = new StringBuilder("(");
+		advance();
+		while (token != ITerminalSymbols.TokenNameRPAREN
+				&& token != ITerminalSymbols.TokenNameEOF) {
+			while (token == ITerminalSymbols.TokenNamefinal
+					|| token == ITerminalSymbols.TokenNameAT) {
+				if (token == ITerminalSymbols.TokenNamefinal) {
+					advance();
+				} else {
+					skipAnnotations();
+				}
+			}
+			final String type = readType();
+			if (type.isEmpty()) {
+				// Not a parameter, skip to the end of the list
+				skipToClosingParenthesis();
+				break;
+			}
+			if (token == ITerminalSymbols.TokenNameELLIPSIS) {
+				advance();
+			}
+			if (token == ITerminalSymbols.TokenNamethis) {
+				// Receiver parameter, not a parameter of the method
+				advance();
+			} else {
+				if (token == ITerminalSymbols.TokenNameIdentifier) {
+					advance();
+				}
+				parameters.append(type).append(',');
+			}
+			skipDimensions();
+			if (token == ITerminalSymbols.TokenNameCOMMA) {
+				advance();
+			} else if (token != ITerminalSymbols.TokenNameRPAREN) {
+				skipToClosingParenthesis();
+				break;
+			}
+		}
+		if (token == ITerminalSymbols.TokenNameRPAREN) {
+			advance();
+		}
+		return parameters.append(')').toString();
+	}
+
+	/**
+	 * Scan the body of the type, after its opening brace, up to and
+	 * including its closing brace.
+	 */
+	private void scanBody(final TypeHeader type) {
+		if (type.kind == TypeKind.ENUM) {
+			skipEnumConstants();
+		}
+		while (token != ITerminalSymbols.TokenNameRBRACE
+				&& token != ITerminalSymbols.TokenNameEOF) {
+			if (token == ITerminalSymbols.TokenNameSEMICOLON
+					|| isModifier(token)) {
+				advance();
+			} else if (token == ITerminalSymbols.TokenNameLBRACE) {
+				// Initializer
+				skipBlock();
+			} else if (token == ITerminalSymbols.TokenNameLESS) {
+				// Type parameters of a method
+				skipTypeArguments();
+			} else if (token == ITerminalSymbols.TokenNameAT) {
+				advance();
+				if (token == ITerminalSymbols.TokenNameinterface) {
+					scanType(TypeKind.ANNOTATION, type.name);
+				} else {
+					skipAnnotationName();
+				}
+			} else if (token == ITerminalSymbols.TokenNameclass) {
+				scanType(TypeKind.CLASS, type.name);
+			} else if (token == ITerminalSymbols.TokenNameinterface) {
+				scanType(TypeKind.INTERFACE, type.name);
+			} else if (token == ITerminalSymbols.TokenNameenum) {
+				scanType(TypeKind.ENUM, type.name);
+			} else {
+				scanMember(type);
+			}
+		}
+		advance();
+	}
+
+	private void scanCompilationUnit() {
+		while (token != ITerminalSymbols.TokenNameEOF) {
+			if (token == ITerminalSymbols.TokenNamepackage) {
+				advance();
+				header.packageName = readQualifiedName();
+			} else if (token == ITerminalSymbols.TokenNameimport) {
+				advance();
+				final boolean isStatic = token == ITerminalSymbols.TokenNamestatic;
+				if (isStatic) {
+					advance();
+				}
+				final String name = readQualifiedName();
+				header.imports.add(name);
+				if (isStatic) {
+					header.staticImports.add(name);
+				}
+			} else if (token == ITerminalSymbols.TokenNameAT) {
+				advance();
+				if (token == ITerminalSymbols.TokenNameinterface) {
+					if (depth == Depth.IMPORTS) {
+						return;
+					}
+					scanType(TypeKind.ANNOTATION, null);
+				} else {
+					skipAnnotationName();
+				}
+			} else if (token == ITerminalSymbols.TokenNameclass
+					|| token == ITerminalSymbols.TokenNameinterface
+					|| token == ITerminalSymbols.TokenNameenum) {
+				if (depth == Depth.IMPORTS) {
+					return;
+				}
+				scanType(
+						token == ITerminalSymbols.TokenNameclass ? TypeKind.CLASS
+								: token == ITerminalSymbols.TokenNameinterface ? TypeKind.INTERFACE
+										: TypeKind.ENUM, null);
+			} else {
+				advance();
+			}
+		}
+	}
+
+	/**
+	 * Scan a field, method or constructor declaration, after its modifiers.
+	 */
+	private void scanMember(final TypeHeader type) {
+		if (token != ITerminalSymbols.TokenNameIdentifier
+				&& !isPrimitiveType(token)) {
+			advance();
+			return;
+		}
+		final String memberType = readType();
+		if (token == ITerminalSymbols.TokenNameLPAREN) {
+			// A constructor, memberType is its name
+			type.methods.add(memberType + ":constructor" + readParameters());
+			skipMethodBody();
+			return;
+		} else if (token != ITerminalSymbols.TokenNameIdentifier) {
+			return;
+		}
+
+		String name = currentText();
+		advance();
+		if (token == ITerminalSymbols.TokenNameLPAREN) {
+			type.methods.add(name + ":" + memberType + readParameters());
+			skipMethodBody();
+			return;
+		}
+		while (true) {
+			type.fields.add(name + ":" + memberType);
+			skipDimensions();
+			if (token == ITerminalSymbols.TokenNameEQUAL) {
+				skipInitializer();
+			}
+			if (token != ITerminalSymbols.TokenNameCOMMA) {
+				break;
+			}
+			advance();
+			if (token != ITerminalSymbols.TokenNameIdentifier) {
+				break;
+			}
+			name = currentText();
+			advance();
+		}
+	}
+
+	/**
+	 * Scan a type declaration, starting at its class, interface or enum
+	 * keyword.
+	 */
+	private void scanType(final TypeKind kind, final String outerName) {
+		advance();
+		if (token != ITerminalSymbols.TokenNameIdentifier) {
+			return;
+		}
+		final String simpleName = currentText();
+		final String name;
+		if (outerName != null) {
+			name = outerName + "." + simpleName;
+		} else if (header.packageName != null) {
+			name = header.packageName + "." + simpleName;
+		} else {
+			name = simpleName;
+		}
+		final TypeHeader type = new TypeHeader(name, kind);
+		header.types.add(type);
+		advance();
+
+		if (token == ITerminalSymbols.TokenNameLESS) {
+			skipTypeArguments();
+		}
+		while (token != ITerminalSymbols.TokenNameLBRACE
+				&& token != ITerminalSymbols.TokenNameEOF) {
+			if (token == ITerminalSymbols.TokenNameextends) {
+				advance();
+				if (kind == TypeKind.CLASS) {
+					type.superclass = readType();
+				} else {
+					readTypeList(type.superInterfaces);
+				}
+			} else if (token == ITerminalSymbols.TokenNameimplements) {
+				advance();
+				readTypeList(type.superInterfaces);
+			} else {
+				advance();
+			}
+		}
+
+		if (token == ITerminalSymbols.TokenNameEOF) {
+			return;
+		} else if (depth == Depth.MEMBERS) {
+			advance();
+			scanBody(type);
+		} else {
+			skipBlock();
+		}
+	}
+
+	/**
+	 * Skip the name and the arguments of an annotation, after the @.
+	 */
+	private void skipAnnotationName() {
+		readQualifiedName();
+		if (token == ITerminalSymbols.TokenNameLPAREN) {
+			skipToClosingParenthesis();
+			advance();
+		}
+	}
+
+	/**
+	 * Skip any annotations (but not annotation type declarations).
+	 */
+	private void skipAnnotations() {
+		while (token == ITerminalSymbols.TokenNameAT) {
+			advance();
+			if (token == ITerminalSymbols.TokenNameinterface) {
+				return;
+			}
+			skipAnnotationName();
+		}
+	}
+
+	/**
+	 * Skip a block, from its opening brace up to and including its closing
+	 * brace.
+	 */
+	private void skipBlock() {
+		int openBraces = 0;
+		do {
+			if (token == ITerminalSymbols.TokenNameLBRACE) {
+				openBraces++;
+			} else if (token == ITerminalSymbols.TokenNameRBRACE) {
+				openBraces--;
+			}
+			advance();
+		} while (openBraces > 0 && token != ITerminalSymbols.TokenNameEOF);
+	}
+
+	/**
+	 * Skip any [] pairs.
+	 */
+	private void skipDimensions() {
+		while (token == ITerminalSymbols.TokenNameLBRACKET) {
+			advance();
+			if (token == ITerminalSymbols.TokenNameRBRACKET) {
+				advance();
+			}
+		}
+	}
+
+	/**
+	 * Skip the enum constants, up to and including the semicolon that ends
+	 * them or up to the closing brace of the enum.
+	 */
+	private void skipEnumConstants() {
+		while (true) {
+			skipAnnotations();
+			if (token == ITerminalSymbols.TokenNameIdentifier) {
+				advance();
+				if (token == ITerminalSymbols.TokenNameLPAREN) {
+					skipToClosingParenthesis();
+					advance();
+				}
+				if (token == ITerminalSymbols.TokenNameLBRACE) {
+					skipBlock();
+				}
+			}
+			if (token == ITerminalSymbols.TokenNameCOMMA) {
+				advance();
+			} else {
+				if (token == ITerminalSymbols.TokenNameSEMICOLON) {
+					advance();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Skip a field initializer, up to the comma or semicolon that ends it.
+	 */
+	private void skipInitializer() {
+		int nesting = 0;
+		boolean createdType = false;
+		while (token != ITerminalSymbols.TokenNameEOF) {
+			switch (token) {
+			case ITerminalSymbols.TokenNamenew:
+				createdType = true;
+				break;
+			case ITerminalSymbols.TokenNameLESS:
+				if (createdType) {
+					// Type arguments of the created type, whose commas do not
+					// end the initializer
+					skipTypeArguments();
+					continue;
+				}
+				break;
+			case ITerminalSymbols.TokenNameLPAREN:
+			case ITerminalSymbols.TokenNameLBRACKET:
+			case ITerminalSymbols.TokenNameLBRACE:
+				createdType = false;
+				nesting++;
+				break;
+			case ITerminalSymbols.TokenNameRPAREN:
+			case ITerminalSymbols.TokenNameRBRACKET:
+			case ITerminalSymbols.TokenNameRBRACE:
+				if (nesting == 0) {
+					return;
+				}
+				nesting--;
+				break;
+			case ITerminalSymbols.TokenNameCOMMA:
+			case ITerminalSymbols.TokenNameSEMICOLON:
+				if (nesting == 0) {
+					return;
+				}
+				break;
+			case ITerminalSymbols.TokenNameDOT:
+				advance();
+				if (token == ITerminalSymbols.TokenNameLESS) {
+					// Explicit type arguments of a method
+					skipTypeArguments();
+				}
+				continue;
+			default:
+				break;
+			}
+			advance();
+		}
+	}
+
+	/**
+	 * Skip what follows the parameters of a method: the throws clause, the
+	 * default value and the body.
+	 */
+	private void skipMethodBody() {
+		int openParentheses = 0;
+		while (token != ITerminalSymbols.TokenNameEOF) {
+			if (token == ITerminalSymbols.TokenNameLPAREN) {
+				openParentheses++;
+			} else if (token == ITerminalSymbols.TokenNameRPAREN) {
+				openParentheses--;
+			} else if (openParentheses == 0) {
+				if (token == ITerminalSymbols.TokenNameLBRACE) {
+					skipBlock();
+					return;
+				} else if (token == ITerminalSymbols.TokenNameSEMICOLON) {
+					advance();
+					return;
+				} else if (token == ITerminalSymbols.TokenNameRBRACE) {
+					return;
+				}
+			}
+			advance();
+		}
+	}
+
+	/**
+	 * Skip to the parenthesis that closes the current one, without consuming
+	 * it.
+	 */
+	private void skipToClosingParenthesis() {
+		int openParentheses = token == ITerminalSymbols.TokenNameLPAREN ? 0
+				: 1;
+		while (token != ITerminalSymbols.TokenNameEOF) {
+			if (token == ITerminalSymbols.TokenNameLPAREN) {
+				openParentheses++;
+			} else if (token == ITerminalSymbols.TokenNameRPAREN) {
+				openParentheses--;
+				if (openParentheses == 0) {
+					return;
+				}
+			}
+			advance();
+		}
+	}
+
+	/**
+	 * Skip type arguments or parameters, from the opening angle bracket up to
+	 * and including the closing one.
+	 */
+	private void skipTypeArguments() {
+		int openAngles = 0;
+		while (token != ITerminalSymbols.TokenNameEOF
+				&& token != ITerminalSymbols.TokenNameLBRACE
+				&& token != ITerminalSymbols.TokenNameSEMICOLON) {
+			if (token == ITerminalSymbols.TokenNameLESS) {
+				openAngles++;
+			} else {
+				openAngles -= closingAngles(token);
+			}
+			advance();
+			if (openAngles <= 0) {
+				return;
+			}
+		}
+	}
+
+}
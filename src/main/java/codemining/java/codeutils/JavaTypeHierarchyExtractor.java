@@ -4,12 +4,14 @@
 package codemining.java.codeutils;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
@@ -26,6 +28,10 @@ import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.languagetools.ClassHierarchy;
+import codemining.languagetools.corpus.CorpusScheduler;
+import codemining.languagetools.corpus.CorpusShard;
+import codemining.languagetools.corpus.ParseWatchdog;
+import codemining.languagetools.dedup.ContentHashCache;
 import codemining.util.data.Pair;
 
 import com.google.common.collect.Maps;
@@ -232,11 +238,28 @@ public class JavaTypeHierarchyExtractor {
 		}
 		final File directory = new File(args[0]);
 
-		final Collection<File> allFiles = FileUtils
-				.listFiles(directory, JavaTokenizer.javaCodeFileFilter,
-						DirectoryFileFilter.DIRECTORY);
+		final List<File> allFiles = CorpusShard.select(FileUtils.listFiles(
+				directory, JavaTokenizer.javaCodeFileFilter,
+				DirectoryFileFilter.DIRECTORY), directory);
+		// Add in path order, so that sharded runs give the same hierarchy
+		allFiles.sort(Comparator.comparing(f -> CorpusShard.getRelativePath(
+				f, directory)));
 
 		final JavaTypeHierarchyExtractor jthe = new JavaTypeHierarchyExtractor();
+		if (CorpusShard.isSharded()) {
+			// Print the relationships, to be merged across shards
+			final List<Collection<Pair<String, String>>> relationships = CorpusScheduler
+					.getDefault().map(allFiles,
+							jthe::getParentTypeRelationshipsFrom);
+			for (int i = 0; i < allFiles.size(); i++) {
+				final String path = CorpusShard.getRelativePath(
+						allFiles.get(i), directory);
+				relationships.get(i).forEach(
+						rel -> System.out.println(path + "\t" + rel.second
+								+ "\t" + rel.first));
+			}
+			return;
+		}
 		jthe.addFilesToCorpus(allFiles);
 
 		System.out.println(jthe);
@@ -248,12 +271,18 @@ public class JavaTypeHierarchyExtractor {
 	private final ClassHierarchy hierarchy = new ClassHierarchy();
 
 	public void addFilesToCorpus(final Collection<File> files) {
-		files.parallelStream()
-				.map(f -> getParentTypeRelationshipsFrom(f))
-				.flatMap(rel -> rel.stream())
-				.sequential()
+		// Identical contents give identical relationships, parse them once
+		final ContentHashCache<Void> seenContents = new ContentHashCache<Void>();
+		final List<Collection<Pair<String, String>>> relationships = CorpusScheduler
+				.getDefault().map(
+						files,
+						f -> seenContents.isDuplicate(f) ? Collections
+								.<Pair<String, String>> emptySet()
+								: getParentTypeRelationshipsFrom(f));
+		relationships.stream().flatMap(rel -> rel.stream())
 				.forEach(
 						rel -> hierarchy.addParentToType(rel.second, rel.first));
+		ParseWatchdog.getDefault().logSummary();
 
 	}
 
@@ -265,11 +294,18 @@ public class JavaTypeHierarchyExtractor {
 			final File file) {
 		final JavaASTExtractor ex = new JavaASTExtractor(true);
 		try {
-			final CompilationUnit ast = ex.getAST(file);
+			final CompilationUnit ast = ParseWatchdog.getDefault().run(file,
+					"parse", () -> ex.getAST(file));
+			if (ast == null) {
+				return Collections.emptySet();
+			}
 			final HierarchyExtractor hEx = new HierarchyExtractor();
 			ast.accept(hEx);
 			return hEx.parentChildRelationships;
-		} catch (final IOException e) {
+		} catch (final RejectedExecutionException e) {
+			// An incomplete hierarchy must not pass for a complete one
+			throw e;
+		} catch (final Exception e) {
 			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
 		}
 		return Collections.emptySet();
@@ -5,133 +5,31 @@ package codemining.java.codeutils;
 
 import java.io.File;
 import java.util.Collection;
-import java.util.Stack;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.eclipse.jdt.core.dom.ASTVisitor;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.EnumDeclaration;
-import org.eclipse.jdt.core.dom.ImportDeclaration;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
 
+import codemining.java.codeutils.JavaHeaderScanner.Depth;
+import codemining.java.codeutils.JavaHeaderScanner.JavaHeader;
+import codemining.java.codeutils.JavaHeaderScanner.TypeHeader;
+import codemining.java.codeutils.JavaHeaderScanner.TypeKind;
 import codemining.java.tokenizers.JavaTokenizer;
+import codemining.languagetools.dedup.ContentHashCache;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
 /**
- * Retrieve all the methods contained in a given class.
+ * Retrieve all the methods contained in a given class. The method signatures
+ * are read with the {@link JavaHeaderScanner}, without parsing the files.
+ * Methods of anonymous classes are not attributed to their enclosing class.
  *
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  *
  */
 public class MethodsInClass {
 
-	private class MethodExtractor extends ASTVisitor {
-
-		Stack<String> className = new Stack<String>();
-
-		private String currentPackageName;
-
-		@Override
-		public void endVisit(final EnumDeclaration node) {
-			className.pop();
-			super.endVisit(node);
-		}
-
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#endVisit(org.eclipse.jdt.core
-		 * .dom.TypeDeclaration)
-		 */
-		@Override
-		public void endVisit(final TypeDeclaration node) {
-			className.pop();
-			super.endVisit(node);
-		}
-
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .CompilationUnit)
-		 */
-		@Override
-		public boolean visit(final CompilationUnit node) {
-			if (node.getPackage() != null) {
-				currentPackageName = node.getPackage().getName()
-						.getFullyQualifiedName();
-			}
-			return super.visit(node);
-		}
-
-		@Override
-		public boolean visit(final EnumDeclaration node) {
-			if (className.isEmpty()) {
-				className.push(currentPackageName + "."
-						+ node.getName().getIdentifier());
-			} else {
-				className.push(className.peek() + "."
-						+ node.getName().getIdentifier());
-			}
-			return super.visit(node);
-		}
-
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .ImportDeclaration)
-		 */
-		@Override
-		public boolean visit(final ImportDeclaration node) {
-			// Don't visit. It's boring
-			return false;
-		}
-
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .MethodDeclaration)
-		 */
-		@Override
-		public boolean visit(final MethodDeclaration node) {
-			final String methodType = MethodUtils.getMethodType(node);
-			methodsForClasses.put(className.peek(), node.getName()
-					.getIdentifier() + ":" + methodType);
-			return false;
-		}
-
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .TypeDeclaration)
-		 */
-		@Override
-		public boolean visit(final TypeDeclaration node) {
-			if (className.isEmpty()) {
-				className.push(currentPackageName + "."
-						+ node.getName().getIdentifier());
-			} else {
-				className.push(className.peek() + "."
-						+ node.getName().getIdentifier());
-			}
-			return super.visit(node);
-		}
-
-	}
-
 	public static void main(final String[] args) {
 		if (args.length != 1) {
 			System.err.println("Usage <projectDir>");
@@ -166,12 +64,25 @@ public class MethodsInClass {
 	}
 
 	public void scan(final Collection<File> files) {
-		final MethodExtractor me = new MethodExtractor();
-		final JavaASTExtractor jEx = new JavaASTExtractor(false);
+		// Identical contents give identical methods, scan them once
+		final ContentHashCache<Void> seenContents = new ContentHashCache<Void>();
 		for (final File f : files) {
+			if (seenContents.isDuplicate(f)) {
+				continue;
+			}
 			try {
-				final CompilationUnit cu = jEx.getAST(f);
-				cu.accept(me);
+				final JavaHeader header = JavaHeaderScanner.scan(f,
+						Depth.MEMBERS);
+				// Types in the default package have always been named null.X
+				final String prefix = header.getPackageName() == null ? "null."
+						: "";
+				for (final TypeHeader type : header.getTypes()) {
+					if (type.getKind() == TypeKind.ANNOTATION) {
+						continue;
+					}
+					methodsForClasses.putAll(prefix + type.getName(),
+							type.getMethods());
+				}
 			} catch (final Throwable e) {
 				LOGGER.warning("Failed to get methods from " + f);
 			}
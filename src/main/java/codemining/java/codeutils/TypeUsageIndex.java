@@ -0,0 +1,448 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import codemining.java.codeutils.UsagePointExtractor.UsageCollector;
+import codemining.java.tokenizers.JavaTokenizer;
+import codemining.languagetools.corpus.CorpusScheduler;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * An on-disk index of the usage points of all types in a corpus, i.e. the
+ * nodes that {@link UsagePointExtractor} would return for any class or
+ * package. The corpus is parsed once when the index is built and queries
+ * only read the index.
+ * <p>
+ * The index maps every declared type name and every import that resolves a
+ * declared type name to the (file, node type, offset, length) of the usage
+ * points. The keys are sorted, so that a query for a package or a class is a
+ * range scan over the imports that start with it. The postings are memory
+ * mapped. Thread-safe once opened.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TypeUsageIndex implements Closeable {
+
+	/**
+	 * The postings of a file while building the index, kept without the AST
+	 * they were collected from.
+	 */
+	private static final class FilePostings {
+		final List<String> keys = Lists.newArrayList();
+
+		final List<Boolean> imported = Lists.newArrayList();
+
+		/**
+		 * The records of the keys. Their file id is set when the postings
+		 * are added to the index.
+		 */
+		final List<int[]> records = Lists.newArrayList();
+
+		void add(final String key, final boolean isImported,
+				final int[] record) {
+			keys.add(key);
+			imported.add(isImported);
+			records.add(record);
+		}
+	}
+
+	/**
+	 * The postings of a key while building the index.
+	 */
+	private static final class Postings {
+		/**
+		 * Records of declarations whose type is written as the key.
+		 */
+		final List<int[]> declaredType = Lists.newArrayList();
+
+		/**
+		 * Records of declarations whose type is resolved by importing the key.
+		 */
+		final List<int[]> importedType = Lists.newArrayList();
+	}
+
+	/**
+	 * A usage point of a type.
+	 */
+	public static final class Usage {
+		public final String file;
+
+		/**
+		 * The ASTNode type of the usage point.
+		 */
+		public final int nodeType;
+
+		public final int offset;
+
+		public final int length;
+
+		public Usage(final String file, final int nodeType, final int offset,
+				final int length) {
+			this.file = file;
+			this.nodeType = nodeType;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public String toString() {
+			return file + ":" + offset + "+" + length + " "
+					+ ASTNode.nodeClassForType(nodeType).getSimpleName();
+		}
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(TypeUsageIndex.class
+			.getName());
+
+	private static final int MAGIC = 0x54555349;
+
+	private static final int VERSION = 1;
+
+	private static final byte DECLARED_TYPE = 0;
+
+	private static final byte IMPORTED_TYPE = 1;
+
+	/**
+	 * The ints of a posting: file id, declaration index in the file, node
+	 * type, offset, length.
+	 */
+	private static final int POSTING_INTS = 5;
+
+	private static void addPosting(final Map<String, Postings> postings,
+			final String key, final boolean imported, final int[] record) {
+		Postings keyPostings = postings.get(key);
+		if (keyPostings == null) {
+			keyPostings = new Postings();
+			postings.put(key, keyPostings);
+		}
+		if (imported) {
+			keyPostings.importedType.add(record);
+		} else {
+			keyPostings.declaredType.add(record);
+		}
+	}
+
+	/**
+	 * Parse all the files and write their index.
+	 *
+	 * @param files
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public static void build(final Collection<File> files, final File indexFile)
+			throws IOException {
+		final List<File> inputFiles = Lists.newArrayList(files);
+		// The ASTs are dropped as soon as each file's postings are collected
+		final List<FilePostings> filePostings = CorpusScheduler.getDefault()
+				.map(inputFiles, f -> {
+					try {
+						return getPostings(f);
+					} catch (final Throwable e) {
+						LOGGER.warning("Error processing " + f + " "
+								+ ExceptionUtils.getFullStackTrace(e));
+						return null;
+					}
+				});
+
+		final Map<String, Postings> postings = Maps.newTreeMap();
+		for (int fileId = 0; fileId < filePostings.size(); fileId++) {
+			final FilePostings file = filePostings.get(fileId);
+			if (file == null) {
+				continue;
+			}
+			for (int i = 0; i < file.keys.size(); i++) {
+				final int[] record = file.records.get(i);
+				record[0] = fileId;
+				addPosting(postings, file.keys.get(i), file.imported.get(i),
+						record);
+			}
+		}
+		write(inputFiles, postings, indexFile);
+	}
+
+	/**
+	 * Parse the file and return the postings of its usage points.
+	 */
+	private static FilePostings getPostings(final File f) throws IOException {
+		final UsageCollector collector = UsagePointExtractor.collectUsages(f);
+		final FilePostings filePostings = new FilePostings();
+		for (int i = 0; i < collector.declarations.size(); i++) {
+			final String type = collector.declarationTypes.get(i);
+			final ASTNode usagePoint = collector.declarations.get(i)
+					.getParent();
+			final int[] record = new int[] { -1, i, usagePoint.getNodeType(),
+					usagePoint.getStartPosition(), usagePoint.getLength() };
+			filePostings.add(type, false, record);
+			for (final String qualifiedName : collector.imports) {
+				if (qualifiedName.equals(type)
+						|| UsageCollector.getImportedClass(qualifiedName)
+								.equals(type)) {
+					filePostings.add(qualifiedName, true, record);
+				}
+			}
+		}
+		return filePostings;
+	}
+
+	/**
+	 * Return the index of the first key that is not smaller than the given
+	 * one.
+	 */
+	private static int lowerBound(final String[] keys, final String key) {
+		final int idx = Arrays.binarySearch(keys, key);
+		if (idx < 0) {
+			return -idx - 1;
+		}
+		// Keys are repeated once per kind
+		int first = idx;
+		while (first > 0 && keys[first - 1].equals(key)) {
+			first--;
+		}
+		return first;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		if (args.length < 3
+				|| !(args[0].equals("build") && args.length == 3 || args[0]
+						.equals("query"))) {
+			System.err
+					.println("Usage build <directory> <indexFile>|query <indexFile> <fullyQualifiedClass>...");
+			System.exit(-1);
+		}
+
+		try {
+			if (args[0].equals("build")) {
+				build(FileUtils.listFiles(new File(args[1]),
+						JavaTokenizer.javaCodeFileFilter,
+						DirectoryFileFilter.DIRECTORY), new File(args[2]));
+			} else {
+				try (final TypeUsageIndex index = new TypeUsageIndex(new File(
+						args[1]))) {
+					for (int i = 2; i < args.length; i++) {
+						System.out.println(args[i]);
+						for (final Usage usage : index.getUsages(args[i])) {
+							System.out.println("\t" + usage);
+						}
+					}
+				}
+			}
+		} catch (final IOException e) {
+			LOGGER.severe(ExceptionUtils.getFullStackTrace(e));
+			System.exit(-1);
+		}
+	}
+
+	private static void write(final List<File> files,
+			final Map<String, Postings> postings, final File indexFile)
+			throws IOException {
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(indexFile),
+						1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(files.size());
+			for (final File file : files) {
+				writeString(out, file.getAbsolutePath());
+			}
+
+			int nKeys = 0;
+			for (final Postings keyPostings : postings.values()) {
+				nKeys += keyPostings.declaredType.isEmpty() ? 0 : 1;
+				nKeys += keyPostings.importedType.isEmpty() ? 0 : 1;
+			}
+			out.writeInt(nKeys);
+			long nRecords = 0;
+			for (final Map.Entry<String, Postings> entry : postings.entrySet()) {
+				for (final byte kind : new byte[] { DECLARED_TYPE,
+						IMPORTED_TYPE }) {
+					final List<int[]> records = kind == DECLARED_TYPE ? entry
+							.getValue().declaredType
+							: entry.getValue().importedType;
+					if (!records.isEmpty()) {
+						writeString(out, entry.getKey());
+						out.writeByte(kind);
+						out.writeLong(nRecords);
+						out.writeInt(records.size());
+						nRecords += records.size();
+					}
+				}
+			}
+
+			out.writeLong(nRecords);
+			for (final Postings keyPostings : postings.values()) {
+				for (final List<int[]> records : Arrays.asList(
+						keyPostings.declaredType, keyPostings.importedType)) {
+					for (final int[] record : records) {
+						for (final int value : record) {
+							out.writeInt(value);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static String readString(final DataInputStream in)
+			throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(final DataOutputStream out,
+			final String string) throws IOException {
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private final RandomAccessFile indexFile;
+
+	private final String[] files;
+
+	/**
+	 * The sorted keys. A key appears once per kind of postings it has.
+	 */
+	private final String[] keys;
+
+	private final byte[] kinds;
+
+	/**
+	 * The index of the first record and the number of records of each key.
+	 */
+	private final long[] firstRecords;
+
+	private final int[] nRecords;
+
+	private final ByteBuffer records;
+
+	/**
+	 * Open an index that has been built with
+	 * {@link #build(Collection, File)}.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public TypeUsageIndex(final File file) throws IOException {
+		indexFile = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = indexFile.getChannel();
+			// Count the bytes consumed, not the bytes buffered, of the header
+			final CountingInputStream header = new CountingInputStream(
+					new BufferedInputStream(Channels.newInputStream(channel),
+							1 << 16));
+			final DataInputStream in = new DataInputStream(header);
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a type usage index");
+			}
+			files = new String[in.readInt()];
+			for (int i = 0; i < files.length; i++) {
+				files[i] = readString(in);
+			}
+
+			final int nKeys = in.readInt();
+			keys = new String[nKeys];
+			kinds = new byte[nKeys];
+			firstRecords = new long[nKeys];
+			nRecords = new int[nKeys];
+			for (int i = 0; i < nKeys; i++) {
+				keys[i] = readString(in);
+				kinds[i] = in.readByte();
+				firstRecords[i] = in.readLong();
+				nRecords[i] = in.readInt();
+			}
+			final long totalRecords = in.readLong();
+
+			final long recordBytes = totalRecords * POSTING_INTS * 4;
+			checkArgument(recordBytes <= Integer.MAX_VALUE,
+					"Index postings too large to map");
+			records = channel.map(FileChannel.MapMode.READ_ONLY,
+					header.getCount(), recordBytes);
+		} catch (final IOException | RuntimeException e) {
+			indexFile.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		indexFile.close();
+	}
+
+	/**
+	 * Return the number of indexed files.
+	 *
+	 * @return
+	 */
+	public int getNumFiles() {
+		return files.length;
+	}
+
+	/**
+	 * Return the usage points of the given class (or package), in the order
+	 * that {@link UsagePointExtractor#usagePoints(String, File)} would return
+	 * them for each file.
+	 *
+	 * @param qualifiedName
+	 *            the fully qualified name of the class or the package
+	 * @return
+	 */
+	public List<Usage> getUsages(final String qualifiedName) {
+		// Usage points by (file id, declaration index)
+		final Map<Long, Usage> usages = Maps.newTreeMap();
+		for (int i = lowerBound(keys, qualifiedName); i < keys.length
+				&& keys[i].startsWith(qualifiedName); i++) {
+			if (kinds[i] == DECLARED_TYPE && !keys[i].equals(qualifiedName)) {
+				continue;
+			}
+			for (long r = firstRecords[i]; r < firstRecords[i] + nRecords[i]; r++) {
+				final int position = (int) (r * POSTING_INTS * 4);
+				final int fileId = records.getInt(position);
+				final int declaration = records.getInt(position + 4);
+				final long usageId = ((long) fileId << 32) | declaration;
+				if (!usages.containsKey(usageId)) {
+					usages.put(usageId, new Usage(files[fileId],
+							records.getInt(position + 8),
+							records.getInt(position + 12),
+							records.getInt(position + 16)));
+				}
+			}
+		}
+		return Lists.newArrayList(usages.values());
+	}
+
+}
@@ -15,6 +15,7 @@ import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.ImportDeclaration;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Type;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
@@ -25,123 +26,111 @@ import com.google.common.collect.Sets;
 
 /**
  * Given a Java file and a fully qualified name of a class, find those blocks
- * that use the class in question.
+ * that use the class in question. To query many classes against the same
+ * corpus, use a {@link TypeUsageIndex}.
  * 
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  * 
  */
 public class UsagePointExtractor {
 
-	private static final class UsageExtractor extends ASTVisitor {
+	/**
+	 * Collect the imports and the declarations that may use a class. The
+	 * subtrees of the declarations are not visited.
+	 */
+	static final class UsageCollector extends ASTVisitor {
 		/**
 		 * Return the imported class.
 		 * 
 		 * @param qName
 		 * @return
 		 */
-		private static String getImportedClass(final String qName) {
+		static String getImportedClass(final String qName) {
 			return qName.substring(qName.lastIndexOf('.') + 1);
 		}
 
-		final List<ASTNode> interestingNodes = Lists.newArrayList();
+		final List<String> imports = Lists.newArrayList();
+
+		/**
+		 * The field, parameter and variable declarations, in visiting order.
+		 */
+		final List<ASTNode> declarations = Lists.newArrayList();
+
+		/**
+		 * The names of their types.
+		 */
+		final List<String> declarationTypes = Lists.newArrayList();
 
-		final String fullyQualifiedName;
-		final Set<String> className = Sets.newTreeSet();
+		private boolean addDeclaration(final ASTNode node, final Type type) {
+			declarations.add(node);
+			declarationTypes.add(type.toString());
+			return false;
+		}
 
-		/*
-		 * (non-Javadoc)
+		/**
+		 * Return the names under which the given class (or package) may be
+		 * referred to in the declarations.
 		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .ImportDeclaration)
+		 * @param fullyQualifiedName
+		 * @return
 		 */
-		UsageExtractor(final String fullyQualifiedName) {
-			this.fullyQualifiedName = fullyQualifiedName;
+		Set<String> getClassNames(final String fullyQualifiedName) {
+			final Set<String> className = Sets.newTreeSet();
 			// Add the fully qualified name in the rare case where
 			// no import is needed (i.e. in java.lang.)
 			className.add(fullyQualifiedName);
+			for (final String qualifiedName : imports) {
+				if (qualifiedName.startsWith(fullyQualifiedName)) {
+					className.add(getImportedClass(qualifiedName));
+					className.add(qualifiedName);
+				}
+			}
+			return className;
 		}
 
-		/*
-		 * (non-Javadoc)
+		/**
+		 * Return the nodes that use the given class (or package), i.e. the
+		 * parents of the declarations of that type. A node is returned once
+		 * per declaration.
 		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#preVisit2(org.eclipse.jdt.core
-		 * .dom.ASTNode)
+		 * @param fullyQualifiedName
+		 * @return
 		 */
-		@Override
-		public boolean preVisit2(final ASTNode node) {
-			return !interestingNodes.contains(node);
+		List<ASTNode> getUsagePoints(final String fullyQualifiedName) {
+			final Set<String> className = getClassNames(fullyQualifiedName);
+			final List<ASTNode> interestingNodes = Lists.newArrayList();
+			for (int i = 0; i < declarations.size(); i++) {
+				if (className.contains(declarationTypes.get(i))) {
+					interestingNodes.add(declarations.get(i).getParent());
+				}
+			}
+			return interestingNodes;
 		}
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .FieldDeclaration)
-		 */
 		@Override
 		public boolean visit(final FieldDeclaration node) {
-			if (className.contains(node.getType().toString())) {
-				interestingNodes.add(node.getParent());
-			}
-			return false;
+			return addDeclaration(node, node.getType());
 		}
 
 		@Override
 		public boolean visit(final ImportDeclaration node) {
-			final String qualifiedName = node.getName().getFullyQualifiedName();
-			if (qualifiedName.startsWith(fullyQualifiedName)) {
-				className.add(getImportedClass(qualifiedName));
-				className.add(qualifiedName);
-			}
+			imports.add(node.getName().getFullyQualifiedName());
 			return false;
 		}
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .SingleVariableDeclaration)
-		 */
 		@Override
 		public boolean visit(final SingleVariableDeclaration node) {
-			if (className.contains(node.getType().toString())) {
-				interestingNodes.add(node.getParent());
-			}
-			return false;
+			return addDeclaration(node, node.getType());
 		}
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .VariableDeclarationExpression)
-		 */
 		@Override
 		public boolean visit(final VariableDeclarationExpression node) {
-			if (className.contains(node.getType().toString())) {
-				interestingNodes.add(node.getParent());
-			}
-			return false;
+			return addDeclaration(node, node.getType());
 		}
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see
-		 * org.eclipse.jdt.core.dom.ASTVisitor#visit(org.eclipse.jdt.core.dom
-		 * .VariableDeclarationStatement)
-		 */
 		@Override
 		public boolean visit(final VariableDeclarationStatement node) {
-			if (className.contains(node.getType().toString())) {
-				interestingNodes.add(node.getParent());
-			}
-			return false;
+			return addDeclaration(node, node.getType());
 		}
 
 	}
@@ -179,6 +168,20 @@ public class UsagePointExtractor {
 
 	}
 
+	/**
+	 * Collect the imports and the declarations of a file.
+	 * 
+	 * @param f
+	 * @return
+	 * @throws IOException
+	 */
+	static UsageCollector collectUsages(final File f) throws IOException {
+		final JavaASTExtractor ex = new JavaASTExtractor(false);
+		final UsageCollector collector = new UsageCollector();
+		ex.getAST(f).accept(collector);
+		return collector;
+	}
+
 	/**
 	 * 
 	 * @param qualifiedName
@@ -189,10 +192,7 @@ public class UsagePointExtractor {
 	 */
 	public static List<ASTNode> usagePoints(final String qualifiedName,
 			final File f) throws IOException {
-		final JavaASTExtractor ex = new JavaASTExtractor(false);
-		final UsageExtractor usageExtractor = new UsageExtractor(qualifiedName);
-		ex.getAST(f).accept(usageExtractor);
-		return usageExtractor.interestingNodes;
+		return collectUsages(f).getUsagePoints(qualifiedName);
 	}
 
 }
@@ -5,7 +5,9 @@ package codemining.java.codeutils.binding;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.function.Predicate;
@@ -17,8 +19,11 @@ import codemining.java.codeutils.JavaASTExtractor;
 import codemining.languagetools.ITokenizer;
 import codemining.languagetools.ITokenizer.FullToken;
 import codemining.languagetools.bindings.AbstractNameBindingsExtractor;
+import codemining.languagetools.bindings.FeatureSet;
 import codemining.languagetools.bindings.ResolvedSourceCode;
 import codemining.languagetools.bindings.TokenNameBinding;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
@@ -51,18 +56,64 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 		return positionToIndex;
 	}
 
+	private static final StageMetrics BIND_METRICS = PipelineMetrics
+			.getStage("bind", "java", "bindings");
+
+	private static final StageMetrics FEATURE_METRICS = PipelineMetrics
+			.getStage("features", "java", "features");
+
 	final ITokenizer tokenizer;
 
 	public AbstractJavaNameBindingsExtractor(final ITokenizer tokenizer) {
 		this.tokenizer = tokenizer;
 	}
 
+	/**
+	 * The AST extractors of each thread, reused across files and snippets.
+	 */
+	private final ThreadLocal<JavaASTExtractor> astExtractors = ThreadLocal
+			.withInitial(this::createExtractor);
+
 	protected JavaASTExtractor createExtractor() {
 		return new JavaASTExtractor(false);
 	}
 
 	protected abstract Set<String> getFeatures(final Set<ASTNode> boundNodes);
 
+	/**
+	 * Return the features of the given types, regardless of the active
+	 * features.
+	 *
+	 * @param boundNodes
+	 * @param featureTypes
+	 *            a subset of the available features
+	 * @return
+	 */
+	protected abstract Set<String> getFeatures(final Set<ASTNode> boundNodes,
+			final Set<?> featureTypes);
+
+	private Set<String> getTimedFeatures(final Set<ASTNode> boundNodes) {
+		final long start = PipelineMetrics.startTimer();
+		final Set<String> features = getFeatures(boundNodes);
+		FEATURE_METRICS.record(start, features.size());
+		return features;
+	}
+
+	private Set<String> getTimedFeatures(final Set<ASTNode> boundNodes,
+			final Set<?> featureTypes) {
+		final long start = PipelineMetrics.startTimer();
+		final Set<String> features = getFeatures(boundNodes, featureTypes);
+		FEATURE_METRICS.record(start, features.size());
+		return features;
+	}
+
+	private Set<Set<ASTNode>> getTimedNameBindings(final ASTNode node) {
+		final long start = PipelineMetrics.startTimer();
+		final Set<Set<ASTNode>> bindings = getNameBindings(node);
+		BIND_METRICS.record(start, bindings.size());
+		return bindings;
+	}
+
 	/**
 	 * Return a set of sets of SimpleName ASTNode objects that are bound
 	 * together
@@ -102,13 +153,13 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 	@Override
 	public List<TokenNameBinding> getNameBindings(final File f)
 			throws IOException {
-		final JavaASTExtractor ex = createExtractor();
+		final JavaASTExtractor ex = astExtractors.get();
 		return getNameBindings(ex.getAST(f), f);
 	}
 
 	@Override
 	public List<TokenNameBinding> getNameBindings(final String code) {
-		final JavaASTExtractor ex = createExtractor();
+		final JavaASTExtractor ex = astExtractors.get();
 		try {
 			return getNameBindings(ex.getBestEffortAstNode(code), code);
 		} catch (final Exception e) {
@@ -119,21 +170,22 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 	@Override
 	public ResolvedSourceCode getResolvedSourceCode(final File f)
 			throws IOException {
-		final JavaASTExtractor ex = createExtractor();
+		final JavaASTExtractor ex = astExtractors.get();
 		return getResolvedSourceCode(FileUtils.readFileToString(f),
-				getNameBindings(ex.getAST(f)), f.getAbsolutePath());
+				getTimedNameBindings(ex.getAST(f)), f.getAbsolutePath());
 	}
 
 	public ResolvedSourceCode getResolvedSourceCode(final File f,
 			final Predicate<ASTNode> includeNode) throws IOException {
-		final JavaASTExtractor ex = createExtractor();
+		final JavaASTExtractor ex = astExtractors.get();
 		return getResolvedSourceCode(FileUtils.readFileToString(f),
-				getNameBindings(ex.getAST(f)), f.getAbsolutePath(), includeNode);
+				getTimedNameBindings(ex.getAST(f)), f.getAbsolutePath(),
+				includeNode);
 	}
 
 	@Override
 	public ResolvedSourceCode getResolvedSourceCode(final String code) {
-		final JavaASTExtractor ex = createExtractor();
+		final JavaASTExtractor ex = astExtractors.get();
 		try {
 			return getResolvedSourceCode(code,
 					getNameBindings(ex.getBestEffortAstNode(code)),
@@ -143,6 +195,85 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 		}
 	}
 
+	/**
+	 * Return the resolved code of the file once for each of the feature
+	 * subsets, with the features of that subset only. The file is parsed and
+	 * bound once, and the features of each type are computed once per
+	 * binding, regardless of the number of subsets they appear in.
+	 *
+	 * @param f
+	 * @param featureSubsets
+	 *            subsets of the available features, possibly empty
+	 * @return the resolved code for each subset, in the order of the subsets
+	 * @throws IOException
+	 */
+	public List<ResolvedSourceCode> getResolvedSourceCodePerFeatureSubset(
+			final File f, final List<? extends Set<?>> featureSubsets)
+			throws IOException {
+		final String sourceCode = FileUtils.readFileToString(f);
+		final Set<Set<ASTNode>> nodeBindings = getTimedNameBindings(astExtractors
+				.get().getAST(f));
+		final SortedMap<Integer, String> tokenPositions = tokenizer
+				.tokenListWithPos(sourceCode.toCharArray());
+		final SortedMap<Integer, Integer> positionToIndex = getTokenIndexForPostion(tokenPositions);
+		final List<String> tokens = Lists.newArrayList(tokenPositions.values());
+
+		final Set<Object> featureTypes = Sets.newHashSet();
+		featureSubsets.forEach(featureTypes::addAll);
+		final List<ArrayListMultimap<String, TokenNameBinding>> bindings = Lists
+				.newArrayList();
+		for (int i = 0; i < featureSubsets.size(); i++) {
+			bindings.add(ArrayListMultimap.create());
+		}
+
+		for (final Set<ASTNode> boundName : nodeBindings) {
+			if (boundName.isEmpty()) {
+				continue;
+			}
+			final List<Integer> boundPositions = Lists.newArrayList();
+			for (final ASTNode name : boundName) {
+				boundPositions.add(positionToIndex.get(name.getStartPosition()));
+			}
+			final Set<Integer> nameIndexes = Sets.newTreeSet(boundPositions);
+			final String boundToken = tokens.get(boundPositions.get(0));
+
+			final Map<Object, Set<String>> featuresPerType = Maps.newHashMap();
+			for (final Object featureType : featureTypes) {
+				featuresPerType.put(
+						featureType,
+						getTimedFeatures(boundName,
+								Collections.singleton(featureType)));
+			}
+			for (int i = 0; i < featureSubsets.size(); i++) {
+				bindings.get(i).put(
+						boundToken,
+						new TokenNameBinding(nameIndexes, tokens, getUnion(
+								featureSubsets.get(i), featuresPerType)));
+			}
+		}
+
+		final List<ResolvedSourceCode> resolved = Lists.newArrayList();
+		for (final ArrayListMultimap<String, TokenNameBinding> subsetBindings : bindings) {
+			resolved.add(new ResolvedSourceCode(f.getAbsolutePath(), tokens,
+					subsetBindings));
+		}
+		return resolved;
+	}
+
+	private static Set<String> getUnion(final Set<?> featureTypes,
+			final Map<Object, Set<String>> featuresPerType) {
+		if (featureTypes.size() == 1) {
+			return featuresPerType.get(featureTypes.iterator().next());
+		}
+		final FeatureSet.Builder union = new FeatureSet.Builder();
+		for (final Object featureType : featureTypes) {
+			for (final String feature : featuresPerType.get(featureType)) {
+				union.add(feature);
+			}
+		}
+		return union.build();
+	}
+
 	public ResolvedSourceCode getResolvedSourceCode(final String sourceCode,
 			final Set<Set<ASTNode>> nodeBindings, final String filename) {
 		return getResolvedSourceCode(sourceCode, nodeBindings, filename,
@@ -174,7 +305,7 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 			}
 			bindings.put(tokens.get(boundPositions.get(0)),
 					new TokenNameBinding(Sets.newTreeSet(boundPositions),
-							tokens, getFeatures(boundName)));
+							tokens, getTimedFeatures(boundName)));
 		}
 
 		return new ResolvedSourceCode(filename, tokens, bindings);
@@ -205,7 +336,7 @@ public abstract class AbstractJavaNameBindingsExtractor extends
 				boundPositions.add(tokenIdx);
 			}
 			bindings.add(new TokenNameBinding(Sets.newTreeSet(boundPositions),
-					tokens, getFeatures(boundName)));
+					tokens, getTimedFeatures(boundName)));
 		}
 
 		return bindings;
@@ -168,6 +168,12 @@ public class JavaExactVariableBindingsExtractor extends
 		return featureExtractor.variableFeatures(boundNodes);
 	}
 
+	@Override
+	protected Set<String> getFeatures(final Set<ASTNode> boundNodes,
+			final Set<?> featureTypes) {
+		return featureExtractor.variableFeatures(boundNodes, featureTypes);
+	}
+
 	@Override
 	public Set<Set<ASTNode>> getNameBindings(final ASTNode node) {
 		final VariableBindingFinder bindingFinder = new VariableBindingFinder();
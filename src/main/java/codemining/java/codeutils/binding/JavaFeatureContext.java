@@ -0,0 +1,207 @@
+/**
+ *
+ */
+package codemining.java.codeutils.binding;
+
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+import codemining.java.codedata.metrics.CyclomaticCalculator;
+import codemining.languagetools.bindings.FeatureSet;
+
+import com.google.common.collect.Maps;
+
+/**
+ * The features shared by the bindings of a single AST, e.g. the vocabulary of
+ * the fields or of the enclosing types, computed once per AST instead of once
+ * per binding. The context is stored as a property of the AST root. Not
+ * thread-safe, like the AST itself.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+final class JavaFeatureContext {
+
+	private static final String PROPERTY = JavaFeatureContext.class.getName();
+
+	private static final FeatureSet NO_FEATURES = new FeatureSet.Builder()
+			.build();
+
+	/**
+	 * Return the context of the AST of the given node.
+	 *
+	 * @param node
+	 * @return
+	 */
+	static JavaFeatureContext of(final ASTNode node) {
+		final ASTNode root = node.getRoot();
+		JavaFeatureContext context = (JavaFeatureContext) root
+				.getProperty(PROPERTY);
+		if (context == null) {
+			context = new JavaFeatureContext(root);
+			root.setProperty(PROPERTY, context);
+		}
+		return context;
+	}
+
+	private final ASTNode root;
+
+	private FeatureSet fieldFeatures;
+
+	/**
+	 * The implementor vocabulary of each method and type declaration,
+	 * including its own name.
+	 */
+	private final Map<ASTNode, FeatureSet> implementorVocabulary = Maps
+			.newIdentityHashMap();
+
+	/**
+	 * The sibling features of each type declaration per method name.
+	 */
+	private final Map<TypeDeclaration, Map<String, FeatureSet>> siblingFeatures = Maps
+			.newIdentityHashMap();
+
+	private Map<MethodDeclaration, Integer> methodComplexities;
+
+	private JavaFeatureContext(final ASTNode root) {
+		this.root = root;
+	}
+
+	/**
+	 * Return the cyclomatic complexity of the given method.
+	 *
+	 * @param declaration
+	 * @return
+	 */
+	int getCyclomaticComplexity(final MethodDeclaration declaration) {
+		if (methodComplexities == null) {
+			methodComplexities = new CyclomaticCalculator()
+					.getMethodComplexities(root);
+		}
+		return methodComplexities.get(declaration);
+	}
+
+	/**
+	 * Return the vocabulary of the fields of the top-level types of the
+	 * compilation unit.
+	 *
+	 * @return
+	 */
+	FeatureSet getFieldFeatures() {
+		if (fieldFeatures == null) {
+			final FeatureSet.Builder features = new FeatureSet.Builder();
+			for (final Object type : ((CompilationUnit) root).types()) {
+				if (!(type instanceof TypeDeclaration)) {
+					continue;
+				}
+				for (final FieldDeclaration fd : ((TypeDeclaration) type)
+						.getFields()) {
+					for (final Object decl : fd.fragments()) {
+						final VariableDeclarationFragment vdf = (VariableDeclarationFragment) decl;
+						features.addAll("inScope:", JavaFeatureExtractor
+								.getNameParts(vdf.getName().getIdentifier()));
+					}
+				}
+			}
+			fieldFeatures = features.build();
+		}
+		return fieldFeatures;
+	}
+
+	/**
+	 * Return the vocabulary of the methods and types enclosing the given
+	 * node.
+	 *
+	 * @param node
+	 * @return
+	 */
+	FeatureSet getImplementorVocabulary(final ASTNode node) {
+		ASTNode enclosing = node.getParent();
+		while (enclosing != null && !(enclosing instanceof MethodDeclaration)
+				&& !(enclosing instanceof TypeDeclaration)) {
+			enclosing = enclosing.getParent();
+		}
+		if (enclosing == null) {
+			return NO_FEATURES;
+		}
+
+		FeatureSet vocabulary = implementorVocabulary.get(enclosing);
+		if (vocabulary == null) {
+			final FeatureSet.Builder features = new FeatureSet.Builder();
+			features.addAll(getImplementorVocabulary(enclosing));
+			if (enclosing instanceof MethodDeclaration) {
+				final MethodDeclaration md = (MethodDeclaration) enclosing;
+				features.addAll("inName:",
+						JavaFeatureExtractor.getNameParts(md.getName()
+								.toString()));
+			} else {
+				final TypeDeclaration td = (TypeDeclaration) enclosing;
+				features.addAll("inName:",
+						JavaFeatureExtractor.getNameParts(td.getName()
+								.toString()));
+				if (td.getSuperclassType() != null) {
+					features.addAll("inName:", JavaFeatureExtractor
+							.getNameParts(td.getSuperclassType().toString()));
+				}
+				for (final Object ifaceType : td.superInterfaceTypes()) {
+					features.addAll("inName:", JavaFeatureExtractor
+							.getNameParts(((Type) ifaceType).toString()));
+				}
+			}
+			vocabulary = features.build();
+			implementorVocabulary.put(enclosing, vocabulary);
+		}
+		return vocabulary;
+	}
+
+	/**
+	 * Return the vocabulary of the methods of the declaring type, except for
+	 * those with the same name as the given method.
+	 *
+	 * @param declaration
+	 * @return
+	 */
+	FeatureSet getSiblingMethodFeatures(final MethodDeclaration declaration) {
+		final TypeDeclaration td = (TypeDeclaration) declaration.getParent();
+		Map<String, FeatureSet> featuresPerName = siblingFeatures.get(td);
+		if (featuresPerName == null) {
+			featuresPerName = getSiblingFeaturesPerName(td);
+			siblingFeatures.put(td, featuresPerName);
+		}
+		return featuresPerName.get(declaration.getName().getIdentifier());
+	}
+
+	private Map<String, FeatureSet> getSiblingFeaturesPerName(
+			final TypeDeclaration td) {
+		final Map<String, FeatureSet> partsPerName = Maps.newLinkedHashMap();
+		for (final MethodDeclaration md : td.getMethods()) {
+			final String name = md.getName().getIdentifier();
+			if (!partsPerName.containsKey(name)) {
+				final FeatureSet.Builder parts = new FeatureSet.Builder();
+				parts.addAll("sibling:", JavaFeatureExtractor.getNameParts(name));
+				partsPerName.put(name, parts.build());
+			}
+		}
+
+		final Map<String, FeatureSet> featuresPerName = Maps.newHashMap();
+		for (final String name : partsPerName.keySet()) {
+			final FeatureSet.Builder features = new FeatureSet.Builder();
+			for (final Map.Entry<String, FeatureSet> other : partsPerName
+					.entrySet()) {
+				if (!other.getKey().equals(name)) {
+					features.addAll(other.getValue());
+				}
+			}
+			featuresPerName.put(name, features.build());
+		}
+		return featuresPerName;
+	}
+
+}
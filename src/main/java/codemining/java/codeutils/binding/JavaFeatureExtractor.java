@@ -6,12 +6,11 @@ package codemining.java.codeutils.binding;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.List;
-import java.util.Set;
 
 import org.eclipse.jdt.core.dom.*;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import codemining.languagetools.IdentifierSplitter;
+import codemining.languagetools.bindings.FeatureSet;
 
 /**
  * Utility class to get various features, related to bindings.
@@ -26,10 +25,14 @@ public class JavaFeatureExtractor {
 	 *
 	 */
 	private static class MethodTopicNames extends ASTVisitor {
-		final Set<String> nameParts = Sets.newHashSet();
+		private final FeatureSet.Builder features;
 
 		private String methodName = "";
 
+		MethodTopicNames(final FeatureSet.Builder features) {
+			this.features = features;
+		}
+
 		void populateNames(final MethodDeclaration declaration) {
 			methodName = declaration.getName().getIdentifier();
 			for (final Object param : declaration.parameters()) {
@@ -43,7 +46,7 @@ public class JavaFeatureExtractor {
 		@Override
 		public boolean visit(final SimpleName node) {
 			if (!node.getIdentifier().equals(methodName)) {
-				nameParts.addAll(JavaFeatureExtractor.getNameParts(node
+				features.addAll("", JavaFeatureExtractor.getNameParts(node
 						.getIdentifier()));
 			}
 			return super.visit(node);
@@ -56,33 +59,22 @@ public class JavaFeatureExtractor {
 	 * @param features
 	 * @param node
 	 */
-	public static void addAstAncestryFeatures(final Set<String> features,
-			final ASTNode node) {
-		features.add("DeclParentAstType:"
-				+ ASTNode.nodeClassForType(node.getParent().getNodeType())
+	public static void addAstAncestryFeatures(
+			final FeatureSet.Builder features, final ASTNode node) {
+		features.add("DeclParentAstType:",
+				ASTNode.nodeClassForType(node.getParent().getNodeType())
 						.getSimpleName());
-		features.add("DeclGrandparentAstType:"
-				+ ASTNode.nodeClassForType(
+		features.add(
+				"DeclGrandparentAstType:",
+				ASTNode.nodeClassForType(
 						node.getParent().getParent().getNodeType())
 						.getSimpleName());
 	}
 
-	public static void addFields(final ASTNode node, final Set<String> features) {
+	public static void addFields(final ASTNode node,
+			final FeatureSet.Builder features) {
 		checkArgument(node.getRoot() instanceof CompilationUnit);
-		final CompilationUnit cu = (CompilationUnit) node.getRoot();
-		for (final Object type : cu.types()) {
-			if (type instanceof TypeDeclaration) {
-				final TypeDeclaration td = (TypeDeclaration) type;
-				for (final FieldDeclaration fd : td.getFields()) {
-					for (final Object decl : fd.fragments()) {
-						final VariableDeclarationFragment vdf = (VariableDeclarationFragment) decl;
-						final List<String> nameParts = getNameParts(vdf
-								.getName().getIdentifier());
-						nameParts.forEach(np -> features.add("inScope:" + np));
-					}
-				}
-			}
-		}
+		features.addAll(JavaFeatureContext.of(node).getFieldFeatures());
 	}
 
 	/**
@@ -93,35 +85,9 @@ public class JavaFeatureExtractor {
 	 * @param features
 	 */
 	public static void addImplementorVocab(final ASTNode node,
-			final Set<String> features) {
-		ASTNode currentNode = node;
-		final List<String> tokenParts = Lists.newArrayList();
-		while (currentNode.getParent() != null) {
-			currentNode = currentNode.getParent();
-			if (currentNode instanceof MethodDeclaration) {
-				final MethodDeclaration md = (MethodDeclaration) currentNode;
-				tokenParts.addAll(JavaFeatureExtractor.getNameParts(md
-						.getName().toString()));
-			} else if (currentNode instanceof TypeDeclaration) {
-				final TypeDeclaration td = (TypeDeclaration) currentNode;
-				tokenParts.addAll(JavaFeatureExtractor.getNameParts(td
-						.getName().toString()));
-				if (td.getSuperclassType() != null) {
-					tokenParts.addAll(JavaFeatureExtractor.getNameParts(td
-							.getSuperclassType().toString()));
-				}
-				for (final Object ifaceType : td.superInterfaceTypes()) {
-					tokenParts.addAll(JavaFeatureExtractor
-							.getNameParts((((Type) ifaceType).toString())));
-				}
-			}
-		}
-
-		if (tokenParts != null) {
-			for (final String tokenPart : tokenParts) {
-				features.add("inName:" + tokenPart);
-			}
-		}
+			final FeatureSet.Builder features) {
+		features.addAll(JavaFeatureContext.of(node).getImplementorVocabulary(
+				node));
 	}
 
 	/**
@@ -132,10 +98,9 @@ public class JavaFeatureExtractor {
 	 *            where the features will be added.
 	 */
 	public static void addMethodTopicFeatures(
-			final MethodDeclaration declaration, final Set<String> features) {
-		final MethodTopicNames namesExtractor = new MethodTopicNames();
-		namesExtractor.populateNames(declaration);
-		features.addAll(namesExtractor.nameParts);
+			final MethodDeclaration declaration,
+			final FeatureSet.Builder features) {
+		new MethodTopicNames(features).populateNames(declaration);
 	}
 
 	/**
@@ -144,7 +109,7 @@ public class JavaFeatureExtractor {
 	 * @param features
 	 * @param modifiers
 	 */
-	public static void addModifierFeatures(final Set<String> features,
+	public static void addModifierFeatures(final FeatureSet.Builder features,
 			final List<?> modifiers) {
 		for (final Object modifier : modifiers) {
 			final IExtendedModifier extendedModifier = (IExtendedModifier) modifier;
@@ -153,20 +118,13 @@ public class JavaFeatureExtractor {
 	}
 
 	public static void addSiblingMethodNames(
-			final MethodDeclaration declaration, final Set<String> features) {
+			final MethodDeclaration declaration,
+			final FeatureSet.Builder features) {
 		if (!(declaration.getParent() instanceof TypeDeclaration)) {
 			return;
 		}
-		final TypeDeclaration td = (TypeDeclaration) declaration.getParent();
-		for (final MethodDeclaration md : td.getMethods()) {
-			if (md.getName().getIdentifier()
-					.equals(declaration.getName().getIdentifier())) {
-				continue;
-			}
-			final List<String> nameparts = getNameParts(md.getName()
-					.getIdentifier());
-			nameparts.forEach(p -> features.add("sibling:" + p));
-		}
+		features.addAll(JavaFeatureContext.of(declaration)
+				.getSiblingMethodFeatures(declaration));
 	}
 
 	/**
@@ -174,7 +132,7 @@ public class JavaFeatureExtractor {
 	 * @param features
 	 */
 	public static void addTypeFeatures(final Type type,
-			final Set<String> features) {
+			final FeatureSet.Builder features) {
 		features.add(type.toString());
 		if (type.isParameterizedType()) {
 			features.add("isParameterizedType");
@@ -183,20 +141,20 @@ public class JavaFeatureExtractor {
 		} else if (type.isArrayType()) {
 			features.add("isArrayType");
 			final ArrayType arrayType = (ArrayType) type;
-			features.add("arrayDims:" + arrayType.dimensions().size());
-			features.add("arrayType:" + arrayType.getElementType().toString());
+			features.add("arrayDims:", arrayType.dimensions().size());
+			features.add("arrayType:", arrayType.getElementType().toString());
 		}
 	}
 
+	/**
+	 * Return the lowercased subtokens of a name. The returned list is
+	 * immutable.
+	 *
+	 * @param name
+	 * @return
+	 */
 	public static List<String> getNameParts(final String name) {
-		final List<String> nameParts = Lists.newArrayList();
-		for (final String snakecasePart : name.split("_")) {
-			for (final String w : snakecasePart
-					.split("(?<!(^|[A-Z]))(?=[A-Z0-9])|(?<!^)(?=[A-Z][a-z])")) {
-				nameParts.add(w.toLowerCase());
-			}
-		}
-		return nameParts;
+		return IdentifierSplitter.getSubtokens(name);
 	}
 
 	private JavaFeatureExtractor() {
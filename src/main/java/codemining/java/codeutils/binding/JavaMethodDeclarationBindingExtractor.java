@@ -20,11 +20,11 @@ import org.eclipse.jdt.core.dom.SimpleType;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 
-import codemining.java.codedata.metrics.CyclomaticCalculator;
 import codemining.java.codeutils.MethodUtils;
 import codemining.java.codeutils.ProjectTypeInformation;
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.bindings.FeatureSet;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
@@ -114,6 +114,17 @@ public class JavaMethodDeclarationBindingExtractor extends
 		}
 	}
 
+	/**
+	 * The kinds of the parameter type features, so that they are not built
+	 * for every binding.
+	 */
+	private static final String[] PARAM_TYPE_KINDS = new String[16];
+	static {
+		for (int i = 0; i < PARAM_TYPE_KINDS.length; i++) {
+			PARAM_TYPE_KINDS[i] = "param" + i + "Type:";
+		}
+	}
+
 	private final boolean includeOverrides;
 
 	private final Set<AvailableFeatures> activeFeatures = Sets
@@ -162,17 +173,15 @@ public class JavaMethodDeclarationBindingExtractor extends
 	 * @param features
 	 */
 	private void addArgumentFeatures(final MethodDeclaration md,
-			final Set<String> features) {
-		checkArgument(activeFeatures.contains(AvailableFeatures.ARGUMENTS));
-		features.add("nParams:" + md.parameters().size());
+			final FeatureSet.Builder features) {
+		features.add("nParams:", md.parameters().size());
 		for (int i = 0; i < md.parameters().size(); i++) {
 			final SingleVariableDeclaration varDecl = (SingleVariableDeclaration) md
 					.parameters().get(i);
-			features.add("param" + i + "Type:" + varDecl.getType().toString());
-			for (final String namepart : JavaFeatureExtractor
-					.getNameParts(varDecl.getName().toString())) {
-				features.add("paramName:" + namepart);
-			}
+			features.add(i < PARAM_TYPE_KINDS.length ? PARAM_TYPE_KINDS[i]
+					: "param" + i + "Type:", varDecl.getType().toString());
+			features.addAll("paramName:", JavaFeatureExtractor
+					.getNameParts(varDecl.getName().toString()));
 		}
 
 		if (md.isVarargs()) {
@@ -187,11 +196,10 @@ public class JavaMethodDeclarationBindingExtractor extends
 	 * @param features
 	 */
 	private void addExceptionFeatures(final MethodDeclaration md,
-			final Set<String> features) {
-		checkArgument(activeFeatures.contains(AvailableFeatures.EXCEPTIONS));
+			final FeatureSet.Builder features) {
 		for (final Object exception : md.thrownExceptionTypes()) {
 			final SimpleType ex = (SimpleType) exception;
-			features.add("thrownException:" + ex.toString());
+			features.add("thrownException:", ex.toString());
 		}
 	}
 
@@ -202,8 +210,7 @@ public class JavaMethodDeclarationBindingExtractor extends
 	 * @param features
 	 */
 	private void addModifierFeatures(final MethodDeclaration md,
-			final Set<String> features) {
-		checkArgument(activeFeatures.contains(AvailableFeatures.MODIFIERS));
+			final FeatureSet.Builder features) {
 		JavaFeatureExtractor.addModifierFeatures(features, md.modifiers());
 
 		if (md.getBody() == null) {
@@ -226,47 +233,52 @@ public class JavaMethodDeclarationBindingExtractor extends
 
 	@Override
 	protected Set<String> getFeatures(final Set<ASTNode> boundNodes) {
+		return getFeatures(boundNodes, activeFeatures);
+	}
+
+	@Override
+	protected Set<String> getFeatures(final Set<ASTNode> boundNodes,
+			final Set<?> featureTypes) {
 		checkArgument(boundNodes.size() == 1);
 		final ASTNode method = boundNodes.iterator().next().getParent();
-		final Set<String> features = Sets.newHashSet();
+		final FeatureSet.Builder features = new FeatureSet.Builder();
 
 		checkArgument(method instanceof MethodDeclaration);
 		final MethodDeclaration md = (MethodDeclaration) method;
-		if (activeFeatures.contains(AvailableFeatures.ARGUMENTS)) {
+		if (featureTypes.contains(AvailableFeatures.ARGUMENTS)) {
 			addArgumentFeatures(md, features);
 		}
-		if (activeFeatures.contains(AvailableFeatures.EXCEPTIONS)) {
+		if (featureTypes.contains(AvailableFeatures.EXCEPTIONS)) {
 			addExceptionFeatures(md, features);
 		}
 
-		if (activeFeatures.contains(AvailableFeatures.RETURN_TYPE)) {
-			features.add("returnType:" + md.getReturnType2());
+		if (featureTypes.contains(AvailableFeatures.RETURN_TYPE)) {
+			features.add("returnType:", String.valueOf(md.getReturnType2()));
 		}
-		if (activeFeatures.contains(AvailableFeatures.MODIFIERS)) {
+		if (featureTypes.contains(AvailableFeatures.MODIFIERS)) {
 			addModifierFeatures(md, features);
 		}
 
-		if (activeFeatures.contains(AvailableFeatures.ANCESTRY)) {
+		if (featureTypes.contains(AvailableFeatures.ANCESTRY)) {
 			JavaFeatureExtractor.addAstAncestryFeatures(features, method);
 		}
-		if (activeFeatures.contains(AvailableFeatures.METHOD_TOPICS)) {
+		if (featureTypes.contains(AvailableFeatures.METHOD_TOPICS)) {
 			JavaFeatureExtractor.addMethodTopicFeatures(md, features);
 		}
-		if (activeFeatures.contains(AvailableFeatures.IMPLEMENTOR_VOCABULARY)) {
+		if (featureTypes.contains(AvailableFeatures.IMPLEMENTOR_VOCABULARY)) {
 			JavaFeatureExtractor.addImplementorVocab(method, features);
 		}
-		if (activeFeatures.contains(AvailableFeatures.FIELDS)) {
+		if (featureTypes.contains(AvailableFeatures.FIELDS)) {
 			JavaFeatureExtractor.addFields(method, features);
 		}
-		if (activeFeatures.contains(AvailableFeatures.SIBLING_METHODS)) {
+		if (featureTypes.contains(AvailableFeatures.SIBLING_METHODS)) {
 			JavaFeatureExtractor.addSiblingMethodNames(md, features);
 		}
-		if (activeFeatures.contains(AvailableFeatures.CYCLOMATIC)) {
-			features.add("cyclomatic:"
-					+ (int) (new CyclomaticCalculator()
-							.getMetricForASTNode(method)));
+		if (featureTypes.contains(AvailableFeatures.CYCLOMATIC)) {
+			features.add("cyclomatic:", JavaFeatureContext.of(md)
+					.getCyclomaticComplexity(md));
 		}
-		return features;
+		return features.build();
 	}
 
 	@Override
@@ -15,6 +15,7 @@ import org.eclipse.jdt.core.dom.MethodInvocation;
 
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.bindings.FeatureSet;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
@@ -67,21 +68,27 @@ public class JavaMethodInvocationBindingExtractor extends
 
 	@Override
 	protected Set<String> getFeatures(final Set<ASTNode> boundNodes) {
+		return getFeatures(boundNodes, activeFeatures);
+	}
+
+	@Override
+	protected Set<String> getFeatures(final Set<ASTNode> boundNodes,
+			final Set<?> featureTypes) {
 		checkArgument(boundNodes.size() == 1);
 		final ASTNode method = boundNodes.iterator().next().getParent();
-		final Set<String> features = Sets.newHashSet();
+		final FeatureSet.Builder features = new FeatureSet.Builder();
 		checkArgument(method instanceof MethodInvocation);
 		final MethodInvocation mi = (MethodInvocation) method;
-		if (activeFeatures.contains(AvailableFeatures.NUMBER_ARGUMENTS)) {
-			features.add("nArgs:" + mi.arguments().size());
+		if (featureTypes.contains(AvailableFeatures.NUMBER_ARGUMENTS)) {
+			features.add("nArgs:", mi.arguments().size());
 		}
-		if (activeFeatures.contains(AvailableFeatures.IMPLEMENTOR_VOCABULARY)) {
+		if (featureTypes.contains(AvailableFeatures.IMPLEMENTOR_VOCABULARY)) {
 			JavaFeatureExtractor.addImplementorVocab(mi, features);
 		}
-		if (activeFeatures.contains(AvailableFeatures.ANCESTRY)) {
+		if (featureTypes.contains(AvailableFeatures.ANCESTRY)) {
 			JavaFeatureExtractor.addAstAncestryFeatures(features, method);
 		}
-		return features;
+		return features.build();
 	}
 
 	@Override
@@ -19,6 +19,7 @@ import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.bindings.FeatureSet;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
@@ -67,20 +68,20 @@ public class JavaTypeDeclarationBindingExtractor extends
 	 * @param features
 	 */
 	private void addFieldVocabulary(final TypeDeclaration td,
-			final String currentTypeName, final Set<String> features) {
+			final String currentTypeName, final FeatureSet.Builder features) {
 		for (final FieldDeclaration fd : td.getFields()) {
 			for (final Object vdf : fd.fragments()) {
 				final VariableDeclarationFragment frag = (VariableDeclarationFragment) vdf;
 				for (final String namePart : JavaFeatureExtractor
 						.getNameParts(frag.getName().toString())) {
-					features.add("fieldVoc:" + namePart);
+					features.add("fieldVoc:", namePart);
 				}
 			}
 			if (!currentTypeName.equals(fd.getType().toString())) {
-				features.add("fieldType:" + fd.getType().toString());
+				features.add("fieldType:", fd.getType().toString());
 				for (final String namePart : JavaFeatureExtractor
 						.getNameParts(fd.getType().toString())) {
-					features.add("fieldVoc:" + namePart);
+					features.add("fieldVoc:", namePart);
 				}
 			}
 		}
@@ -91,7 +92,7 @@ public class JavaTypeDeclarationBindingExtractor extends
 	 * @param features
 	 */
 	private void addImplementorVocabulary(final TypeDeclaration td,
-			final Set<String> features) {
+			final FeatureSet.Builder features) {
 		if (td.isInterface()) {
 			features.add("isInterface");
 		}
@@ -100,14 +101,14 @@ public class JavaTypeDeclarationBindingExtractor extends
 			final Type supertype = (Type) suptype;
 			for (final String namePart : JavaFeatureExtractor
 					.getNameParts(supertype.toString())) {
-				features.add("implementVoc:" + namePart);
+				features.add("implementVoc:", namePart);
 			}
 		}
 
 		if (td.getSuperclassType() != null) {
 			for (final String namePart : JavaFeatureExtractor.getNameParts(td
 					.getSuperclassType().toString())) {
-				features.add("implementVoc:" + namePart);
+				features.add("implementVoc:", namePart);
 			}
 		}
 	}
@@ -118,25 +119,25 @@ public class JavaTypeDeclarationBindingExtractor extends
 	 * @param features
 	 */
 	private void addMethodFeatures(final TypeDeclaration td,
-			final String currentTypeName, final Set<String> features) {
+			final String currentTypeName, final FeatureSet.Builder features) {
 		for (final MethodDeclaration md : td.getMethods()) {
 			if (md.isConstructor()) {
 				continue;
 			}
 			for (final String namePart : JavaFeatureExtractor.getNameParts(md
 					.getName().getIdentifier())) {
-				features.add("methodVoc:" + namePart);
+				features.add("methodVoc:", namePart);
 			}
 			for (final Object arg : md.parameters()) {
 				final SingleVariableDeclaration svd = (SingleVariableDeclaration) arg;
 				for (final String namePart : JavaFeatureExtractor
 						.getNameParts(svd.getName().toString())) {
-					features.add("methodVoc:" + namePart);
+					features.add("methodVoc:", namePart);
 				}
 				if (!svd.getType().toString().equals(currentTypeName)) {
 					for (final String namePart : JavaFeatureExtractor
 							.getNameParts(svd.getType().toString())) {
-						features.add("methodVoc:" + namePart);
+						features.add("methodVoc:", namePart);
 					}
 				}
 			}
@@ -150,26 +151,32 @@ public class JavaTypeDeclarationBindingExtractor extends
 
 	@Override
 	protected Set<String> getFeatures(final Set<ASTNode> boundNodes) {
+		return getFeatures(boundNodes, activeFeatures);
+	}
+
+	@Override
+	protected Set<String> getFeatures(final Set<ASTNode> boundNodes,
+			final Set<?> featureTypes) {
 		checkArgument(boundNodes.size() == 1);
 		final ASTNode decl = boundNodes.iterator().next().getParent();
 
 		checkArgument(decl instanceof TypeDeclaration);
 		final TypeDeclaration td = (TypeDeclaration) decl;
 		final String currentTypeName = td.getName().getIdentifier();
-		final Set<String> features = Sets.newHashSet();
-		if (activeFeatures.contains(AvailableFeatures.IMPLEMENTOR_VOCABULARY)) {
+		final FeatureSet.Builder features = new FeatureSet.Builder();
+		if (featureTypes.contains(AvailableFeatures.IMPLEMENTOR_VOCABULARY)) {
 			addImplementorVocabulary(td, features);
 		}
 
-		if (activeFeatures.contains(AvailableFeatures.FIELD_VOCABULARY)) {
+		if (featureTypes.contains(AvailableFeatures.FIELD_VOCABULARY)) {
 			addFieldVocabulary(td, currentTypeName, features);
 		}
 
-		if (activeFeatures.contains(AvailableFeatures.METHOD_VOCABULARY)) {
+		if (featureTypes.contains(AvailableFeatures.METHOD_VOCABULARY)) {
 			addMethodFeatures(td, currentTypeName, features);
 		}
 
-		return features;
+		return features.build();
 	}
 
 	@Override
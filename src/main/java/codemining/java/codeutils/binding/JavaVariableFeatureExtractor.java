@@ -16,6 +16,8 @@ import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
+import codemining.languagetools.bindings.FeatureSet;
+
 import com.google.common.collect.Sets;
 
 /**
@@ -40,8 +42,8 @@ public class JavaVariableFeatureExtractor {
 	 * @param features
 	 * @param declarationPoint
 	 */
-	private void getDeclarationFeatures(final Set<String> features,
-			final ASTNode declarationPoint) {
+	private void getDeclarationFeatures(final FeatureSet.Builder features,
+			final ASTNode declarationPoint, final Set<?> featureTypes) {
 		final Type variableType;
 		final List modifiers;
 		final ASTNode ancestryFrom;
@@ -83,13 +85,13 @@ public class JavaVariableFeatureExtractor {
 			throw new IllegalStateException("Should not reach this");
 		}
 
-		if (activeFeatures.contains(AvailableFeatures.TYPE)) {
+		if (featureTypes.contains(AvailableFeatures.TYPE)) {
 			JavaFeatureExtractor.addTypeFeatures(variableType, features);
 		}
-		if (activeFeatures.contains(AvailableFeatures.MODIFIERS)) {
+		if (featureTypes.contains(AvailableFeatures.MODIFIERS)) {
 			JavaFeatureExtractor.addModifierFeatures(features, modifiers);
 		}
-		if (activeFeatures.contains(AvailableFeatures.ANCESTRY)) {
+		if (featureTypes.contains(AvailableFeatures.ANCESTRY)) {
 			JavaFeatureExtractor.addAstAncestryFeatures(features, ancestryFrom);
 		}
 	}
@@ -99,20 +101,33 @@ public class JavaVariableFeatureExtractor {
 	}
 
 	public Set<String> variableFeatures(final Set<ASTNode> boundNodesOfVariable) {
+		return variableFeatures(boundNodesOfVariable, activeFeatures);
+	}
+
+	/**
+	 * Return the features of the given types, regardless of the active
+	 * features.
+	 *
+	 * @param boundNodesOfVariable
+	 * @param featureTypes
+	 * @return
+	 */
+	public Set<String> variableFeatures(
+			final Set<ASTNode> boundNodesOfVariable, final Set<?> featureTypes) {
 		// Find the declaration and extract features
-		final Set<String> features = Sets.newHashSet();
+		final FeatureSet.Builder features = new FeatureSet.Builder();
 		for (final ASTNode node : boundNodesOfVariable) {
 			if (!(node.getParent() instanceof VariableDeclaration)) {
 				continue;
 			}
-			getDeclarationFeatures(features, node);
-			if (activeFeatures
+			getDeclarationFeatures(features, node, featureTypes);
+			if (featureTypes
 					.contains(AvailableFeatures.IMPLEMENTOR_VOCABULARY)) {
 				JavaFeatureExtractor.addImplementorVocab(node, features);
 			}
 			break;
 		}
-		return features;
+		return features.build();
 	}
 
 }
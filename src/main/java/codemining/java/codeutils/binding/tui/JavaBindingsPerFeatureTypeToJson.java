@@ -6,14 +6,20 @@ package codemining.java.codeutils.binding.tui;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import codemining.java.codeutils.binding.AbstractJavaNameBindingsExtractor;
+import codemining.languagetools.corpus.ExtractionCheckpoint;
 
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 import com.google.gson.JsonIOException;
 
 /**
  * Extract bindings for a given type, including one type of feature per time.
+ * All the outputs are extracted in a single pass over the corpus. With
+ * --resume, the outputs that a previous run completed are kept and the rest
+ * resume from their checkpoints.
  *
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  *
@@ -24,42 +30,53 @@ public class JavaBindingsPerFeatureTypeToJson {
 	 * @param args
 	 */
 	public static void main(final String[] args) {
-		if (args.length != 3) {
+		if (args.length != 3
+				&& !(args.length == 4 && args[3]
+						.equals(JavaBindingsToJson.RESUME_OPTION))) {
 			System.err
 					.println("Usage <inputFolder> variables|methodinvocations|"
 							+ "methodinvocations_typegram|methoddeclarations|methoddeclarations_nooverride"
-							+ "methoddeclarations_typegram|types <outputFolderAndPrefix>");
+							+ "methoddeclarations_typegram|types <outputFolderAndPrefix> ["
+							+ JavaBindingsToJson.RESUME_OPTION + "]");
 			System.exit(-1);
 		}
+		// Without --resume, all the outputs are generated again
+		final boolean resume = args.length == 4;
 
 		final File inputFolder = new File(args[0]);
 		final String outputFolderAndPrefix = args[2];
 		final AbstractJavaNameBindingsExtractor bindingExtractor = JavaBindingsToJson
 				.getExtractorForName(args[1], inputFolder);
 
+		// One output per feature type, plus one without any features
+		final List<Set<?>> featureSubsets = Lists.newArrayList();
+		final List<File> outputFiles = Lists.newArrayList();
 		for (final Object featureType : bindingExtractor.getAvailableFeatures()) {
-			try {
-				System.out.println("Using only " + featureType + " feature");
-				bindingExtractor
-						.setActiveFeatures(Sets.newHashSet(featureType));
-				final File outputFile = new File(outputFolderAndPrefix
-						+ featureType.toString() + ".json");
-				System.out.println("Generating at " + outputFile);
-				JavaBindingsToJson.extractBindings(inputFolder, outputFile,
-						bindingExtractor);
-			} catch (JsonIOException | IOException e) {
-				e.printStackTrace();
-			}
+			featureSubsets.add(Collections.singleton(featureType));
+			outputFiles.add(new File(outputFolderAndPrefix
+					+ featureType.toString() + ".json"));
 		}
+		featureSubsets.add(Collections.emptySet());
+		outputFiles.add(new File(outputFolderAndPrefix + "NO_FEAT.json"));
 
 		try {
-			System.out.println("Using no features");
-			bindingExtractor.setActiveFeatures(Collections.EMPTY_SET);
-			final File outputFile = new File(outputFolderAndPrefix
-					+ "NO_FEAT.json");
-			System.out.println("Generating at " + outputFile);
-			JavaBindingsToJson.extractBindings(inputFolder, outputFile,
-					bindingExtractor);
+			for (int i = outputFiles.size() - 1; i >= 0; i--) {
+				if (!resume) {
+					JavaBindingsToJson.discardPreviousRun(outputFiles.get(i));
+				} else if (ExtractionCheckpoint.isMerged(outputFiles.get(i))) {
+					System.out.println(outputFiles.get(i)
+							+ " already generated");
+					outputFiles.remove(i);
+					featureSubsets.remove(i);
+				}
+			}
+			if (outputFiles.isEmpty()) {
+				return;
+			}
+
+			System.out.println("Generating at " + outputFiles);
+			JavaBindingsToJson.extractBindingsPerFeatureSubset(inputFolder,
+					outputFiles, bindingExtractor, featureSubsets);
 		} catch (JsonIOException | IOException e) {
 			e.printStackTrace();
 		}
@@ -3,12 +3,17 @@
  */
 package codemining.java.codeutils.binding.tui;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -23,22 +28,47 @@ import codemining.java.codeutils.binding.JavaMethodInvocationBindingExtractor;
 import codemining.java.codeutils.binding.JavaTypeDeclarationBindingExtractor;
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.java.tokenizers.JavaTypeTokenizer;
+import codemining.languagetools.bindings.FeatureDictionary;
 import codemining.languagetools.bindings.ResolvedSourceCode;
 import codemining.languagetools.bindings.TokenNameBinding;
+import codemining.languagetools.corpus.CorpusScheduler;
+import codemining.languagetools.corpus.CorpusShard;
+import codemining.languagetools.corpus.ExtractionCheckpoint;
+import codemining.languagetools.corpus.ParseWatchdog;
+import codemining.languagetools.corpus.ShardedRunner;
+import codemining.languagetools.dedup.ContentHashCache;
+import codemining.languagetools.dedup.NearDuplicateDetector;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
+import codemining.util.SettingsLoader;
 
 import com.google.common.collect.Lists;
-import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
 
 /**
  * Convert a set of files to a set of bindings and serialize in a msgpack
- * format.
+ * format. With --resume, an interrupted run continues from its checkpoint.
  *
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  *
  */
 public class JavaBindingsToJson {
 
+	/**
+	 * Thrown instead of a result for a file that the watchdog quarantined, so
+	 * that the file is not checkpointed as completed and a resumed run
+	 * retries it (unless quarantined files are skipped).
+	 */
+	private static final class QuarantinedFileException extends
+			RuntimeException {
+
+		private static final long serialVersionUID = -2871305493358962124L;
+
+		QuarantinedFileException(final File file) {
+			super("Quarantined " + file, null, false, false);
+		}
+	}
+
 	public static class SerializableResolvedSourceCode {
 
 		public static SerializableResolvedSourceCode fromResolvedSourceCode(
@@ -65,11 +95,36 @@ public class JavaBindingsToJson {
 			}
 			provenance = rsc.name;
 		}
+
+		protected SerializableResolvedSourceCode(final String provenance,
+				final SerializableResolvedSourceCode other) {
+			this.provenance = provenance;
+			codeTokens = other.codeTokens;
+			boundVariables = other.boundVariables;
+			boundVariableFeatures = other.boundVariableFeatures;
+		}
+
+		/**
+		 * Return the same code with the given provenance.
+		 */
+		public SerializableResolvedSourceCode withProvenance(
+				final String otherProvenance) {
+			if (otherProvenance.equals(provenance)) {
+				return this;
+			}
+			return new SerializableResolvedSourceCode(otherProvenance, this);
+		}
 	}
 
 	/**
 	 * Extract the bindings from the input folder to the output file, using the
-	 * bindingExtractor.
+	 * bindingExtractor. Progress is checkpointed next to the output file, so
+	 * that an interrupted extraction resumes from the files already done. The
+	 * checkpoint is not checked against the extractor or the input folder;
+	 * call {@link #discardPreviousRun(File)} first to start from scratch.
+	 * Files quarantined by the {@link ParseWatchdog} are not checkpointed. If
+	 * the watchdog stops accepting work, the extraction is aborted with a
+	 * RejectedExecutionException and can be resumed.
 	 *
 	 * @param inputFolder
 	 * @param outputFile
@@ -81,27 +136,147 @@ public class JavaBindingsToJson {
 			final File outputFile,
 			final AbstractJavaNameBindingsExtractor bindingExtractor)
 			throws IOException, JsonIOException {
-		final Collection<File> allFiles = FileUtils
-				.listFiles(inputFolder, JavaTokenizer.javaCodeFileFilter,
-						DirectoryFileFilter.DIRECTORY);
-		final List<SerializableResolvedSourceCode> resolvedCode = allFiles
-				.parallelStream()
-				.map(f -> getResolvedCode(f, bindingExtractor))
-				.filter(r -> r != null)
-				.map(r -> SerializableResolvedSourceCode
-						.fromResolvedSourceCode(r))
-				.filter(s -> !s.boundVariables.isEmpty())
+		// The features interned by a previous run are not needed any more
+		FeatureDictionary.reset();
+		final Collection<File> allFiles = getInputFiles(inputFolder);
+		final ExtractionCheckpoint<SerializableResolvedSourceCode> checkpoint = new ExtractionCheckpoint<SerializableResolvedSourceCode>(
+				getCheckpointDir(outputFile), CHECKPOINT_SHARD_SIZE);
+		final List<File> remainingFiles = allFiles.stream()
+				.filter(f -> !checkpoint.isCompleted(f))
 				.collect(Collectors.toList());
+		if (remainingFiles.size() < allFiles.size()) {
+			LOGGER.info("Resuming with " + remainingFiles.size() + " of "
+					+ allFiles.size() + " files remaining");
+		}
 
-		final FileWriter writer = new FileWriter(outputFile);
+		// Files with identical contents are resolved once
+		final ContentHashCache<SerializableResolvedSourceCode> cache = new ContentHashCache<SerializableResolvedSourceCode>();
+		CorpusScheduler.getDefault().map(remainingFiles, f -> {
+			try {
+				final SerializableResolvedSourceCode code = cache.get(f,
+						cf -> getSerializableResolvedCode(cf, bindingExtractor));
+				addToCheckpoint(checkpoint, f, code);
+			} catch (final QuarantinedFileException e) {
+				LOGGER.fine(e.getMessage());
+			}
+			return null;
+		});
+		LOGGER.info("Resolved " + cache.getNumberOfDistinctContents()
+				+ " distinct contents for " + remainingFiles.size() + " files");
+		ParseWatchdog.getDefault().logSummary();
+
+		checkpoint.mergeTo(outputFile);
+		checkpoint.delete();
+	}
+
+	/**
+	 * Extract the bindings from the input folder once for each of the feature
+	 * subsets, each to its own output file, parsing and binding every file
+	 * only once. Each output is checkpointed as in
+	 * {@link #extractBindings(File, File, AbstractJavaNameBindingsExtractor)}.
+	 *
+	 * @param inputFolder
+	 * @param outputFiles
+	 *            the output file of each subset
+	 * @param bindingExtractor
+	 * @param featureSubsets
+	 *            subsets of the available features of the extractor
+	 * @throws IOException
+	 * @throws JsonIOException
+	 */
+	public static void extractBindingsPerFeatureSubset(final File inputFolder,
+			final List<File> outputFiles,
+			final AbstractJavaNameBindingsExtractor bindingExtractor,
+			final List<? extends Set<?>> featureSubsets) throws IOException,
+			JsonIOException {
+		checkArgument(outputFiles.size() == featureSubsets.size());
+		// The features interned by a previous run are not needed any more
+		FeatureDictionary.reset();
+		final Collection<File> allFiles = getInputFiles(inputFolder);
+		final List<ExtractionCheckpoint<SerializableResolvedSourceCode>> checkpoints = Lists
+				.newArrayList();
+		for (final File outputFile : outputFiles) {
+			checkpoints.add(new ExtractionCheckpoint<SerializableResolvedSourceCode>(
+					getCheckpointDir(outputFile), CHECKPOINT_SHARD_SIZE));
+		}
+		final List<File> remainingFiles = allFiles
+				.stream()
+				.filter(f -> checkpoints.stream().anyMatch(
+						c -> !c.isCompleted(f))).collect(Collectors.toList());
+		if (remainingFiles.size() < allFiles.size()) {
+			LOGGER.info("Resuming with " + remainingFiles.size() + " of "
+					+ allFiles.size() + " files remaining");
+		}
+
+		final ContentHashCache<List<SerializableResolvedSourceCode>> cache = new ContentHashCache<List<SerializableResolvedSourceCode>>();
+		CorpusScheduler.getDefault().map(remainingFiles, f -> {
+			final List<SerializableResolvedSourceCode> codes;
+			try {
+				codes = cache.get(f,
+						cf -> getSerializableResolvedCodePerFeatureSubset(cf,
+								bindingExtractor, featureSubsets));
+			} catch (final QuarantinedFileException e) {
+				LOGGER.fine(e.getMessage());
+				return null;
+			}
+			for (int i = 0; i < checkpoints.size(); i++) {
+				// A previous run may have completed the file for some outputs
+				if (!checkpoints.get(i).isCompleted(f)) {
+					addToCheckpoint(checkpoints.get(i), f,
+							codes == null ? null : codes.get(i));
+				}
+			}
+			return null;
+		});
+		LOGGER.info("Resolved " + cache.getNumberOfDistinctContents()
+				+ " distinct contents for " + remainingFiles.size() + " files");
+		ParseWatchdog.getDefault().logSummary();
+
+		for (int i = 0; i < checkpoints.size(); i++) {
+			checkpoints.get(i).mergeTo(outputFiles.get(i));
+			checkpoints.get(i).delete();
+		}
+	}
+
+	private static void addToCheckpoint(
+			final ExtractionCheckpoint<SerializableResolvedSourceCode> checkpoint,
+			final File f, final SerializableResolvedSourceCode code) {
+		final boolean hasBindings = code != null
+				&& !code.boundVariables.isEmpty();
 		try {
-			final Gson gson = new Gson();
-			gson.toJson(resolvedCode, writer);
-		} finally {
-			writer.close();
+			checkpoint.add(f,
+					hasBindings ? code.withProvenance(f.getAbsolutePath())
+							: null);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 
+	/**
+	 * Start the given output from scratch, discarding the checkpoint and the
+	 * merged marker of any previous run.
+	 *
+	 * @param outputFile
+	 * @throws IOException
+	 */
+	public static void discardPreviousRun(final File outputFile)
+			throws IOException {
+		FileUtils.deleteDirectory(getCheckpointDir(outputFile));
+		Files.deleteIfExists(ExtractionCheckpoint.getDoneMarker(outputFile)
+				.toPath());
+	}
+
+	/**
+	 * Return the directory where the progress of extracting to the given
+	 * output file is checkpointed.
+	 *
+	 * @param outputFile
+	 * @return
+	 */
+	public static File getCheckpointDir(final File outputFile) {
+		return new File(outputFile.getAbsolutePath() + ".checkpoint");
+	}
+
 	/**
 	 * @param bindingExtractor
 	 * @param extractorType
@@ -137,11 +312,84 @@ public class JavaBindingsToJson {
 		return bindingExtractor;
 	}
 
+	/**
+	 * Return the Java files of the input folder to extract bindings from.
+	 */
+	private static Collection<File> getInputFiles(final File inputFolder) {
+		Collection<File> allFiles = FileUtils
+				.listFiles(inputFolder, JavaTokenizer.javaCodeFileFilter,
+						DirectoryFileFilter.DIRECTORY);
+		// Near-duplicate removal is corpus-wide, so shards get its results
+		// from the ShardedRunner rather than each repeating it
+		if (SKIP_NEAR_DUPLICATES && !CorpusShard.hasFileList()) {
+			if (CorpusShard.isSharded()) {
+				LOGGER.warning("Every shard removes the near-duplicates of the "
+						+ "whole corpus, run the shards with "
+						+ ShardedRunner.SKIP_NEAR_DUPLICATES_OPTION
+						+ " to do it once");
+			}
+			allFiles = new NearDuplicateDetector(JavaTokenizer::new)
+					.getRepresentatives(allFiles);
+		}
+		return CorpusShard.select(allFiles, inputFolder);
+	}
+
+	/**
+	 * Return the resolved code of the file, or null if it could not be
+	 * resolved or the watchdog skipped it.
+	 *
+	 * @throws RejectedExecutionException
+	 *             if the watchdog does not accept more work
+	 */
 	public static ResolvedSourceCode getResolvedCode(final File f,
 			final AbstractJavaNameBindingsExtractor extractor) {
 		try {
-			return extractor.getResolvedSourceCode(f);
+			return ParseWatchdog.getDefault().run(f, "bind",
+					() -> extractor.getResolvedSourceCode(f));
+		} catch (final RejectedExecutionException e) {
+			throw e;
+		} catch (final Throwable t) {
+			BIND_METRICS.recordFailure();
+			LOGGER.warning("Error for file " + f + ": "
+					+ ExceptionUtils.getFullStackTrace(t));
+		}
+		return null;
+	}
+
+	private static SerializableResolvedSourceCode getSerializableResolvedCode(
+			final File f, final AbstractJavaNameBindingsExtractor extractor) {
+		final ResolvedSourceCode rsc = getResolvedCode(f, extractor);
+		if (rsc == null) {
+			if (ParseWatchdog.getDefault().isQuarantined(f)) {
+				throw new QuarantinedFileException(f);
+			}
+			return null;
+		}
+		return SerializableResolvedSourceCode.fromResolvedSourceCode(rsc);
+	}
+
+	private static List<SerializableResolvedSourceCode> getSerializableResolvedCodePerFeatureSubset(
+			final File f, final AbstractJavaNameBindingsExtractor extractor,
+			final List<? extends Set<?>> featureSubsets) {
+		try {
+			final List<ResolvedSourceCode> resolved = ParseWatchdog
+					.getDefault().run(f, "bind", () -> extractor
+							.getResolvedSourceCodePerFeatureSubset(f,
+									featureSubsets));
+			if (resolved == null) {
+				if (ParseWatchdog.getDefault().isQuarantined(f)) {
+					throw new QuarantinedFileException(f);
+				}
+				return null;
+			}
+			return resolved.stream()
+					.map(SerializableResolvedSourceCode::fromResolvedSourceCode)
+					.collect(Collectors.toList());
+		} catch (final RejectedExecutionException
+				| QuarantinedFileException e) {
+			throw e;
 		} catch (final Throwable t) {
+			BIND_METRICS.recordFailure();
 			LOGGER.warning("Error for file " + f + ": "
 					+ ExceptionUtils.getFullStackTrace(t));
 		}
@@ -155,11 +403,13 @@ public class JavaBindingsToJson {
 	 */
 	public static void main(final String[] args) throws JsonIOException,
 			IOException {
-		if (args.length != 3) {
+		if (args.length != 3
+				&& !(args.length == 4 && args[3].equals(RESUME_OPTION))) {
 			System.err
 					.println("Usage <inputFolder> variables|methodinvocations|"
 							+ "methodinvocations_typegram|methoddeclarations|methoddeclarations_nooverride"
-							+ "methoddeclarations_typegram|types <outputFile>");
+							+ "methoddeclarations_typegram|types <outputFile> ["
+							+ RESUME_OPTION + "]");
 			System.exit(-1);
 		}
 
@@ -168,12 +418,42 @@ public class JavaBindingsToJson {
 		final AbstractJavaNameBindingsExtractor bindingExtractor = getExtractorForName(
 				args[1], inputFolder);
 
+		// Without --resume, a checkpoint left by another run (possibly of
+		// another extractor or input) must not be merged into the output
+		if (args.length == 3) {
+			discardPreviousRun(outputFile);
+		} else if (ExtractionCheckpoint.isMerged(outputFile)) {
+			System.out.println(outputFile + " already generated");
+			return;
+		}
 		extractBindings(inputFolder, outputFile, bindingExtractor);
 	}
 
 	private static final Logger LOGGER = Logger
 			.getLogger(JavaBindingsToJson.class.getName());
 
+	private static final StageMetrics BIND_METRICS = PipelineMetrics
+			.getStage("bind", "java", "bindings");
+
+	/**
+	 * Resume from the checkpoints of a previous run, instead of discarding
+	 * them.
+	 */
+	public static final String RESUME_OPTION = "--resume";
+
+	/**
+	 * Extract bindings from only one file per cluster of near-duplicates.
+	 */
+	public static final boolean SKIP_NEAR_DUPLICATES = SettingsLoader
+			.getBooleanSetting("skipNearDuplicateFiles", false);
+
+	/**
+	 * The number of input files whose bindings are written per checkpoint
+	 * shard.
+	 */
+	public static final int CHECKPOINT_SHARD_SIZE = (int) SettingsLoader
+			.getNumericSetting("checkpointShardSize", 1000);
+
 	private JavaBindingsToJson() {
 		// No instantations
 	}
@@ -8,19 +8,35 @@ import static com.google.common.base.Preconditions.checkArgument;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.TypeLiteral;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
 import codemining.languagetools.IScopeExtractor;
 import codemining.languagetools.ParseType;
 import codemining.languagetools.Scope;
+import codemining.languagetools.SourceBuffer;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.TreeMultimap;
 
 /**
- * Aggregate all extractors.
+ * Aggregate all extractors. The code is parsed once and the finders of all
+ * the extractors are run in a single AST traversal.
  * 
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  * 
@@ -31,70 +47,233 @@ public class AllScopeExtractor {
 			IScopeExtractor {
 
 		public AllScopeSnippetExtractor() {
-			allExtractors = Lists.newArrayList();
-			allExtractors
-					.add(new VariableScopeExtractor.VariableScopeSnippetExtractor());
-			allExtractors
-					.add(new MethodScopeExtractor.MethodScopeSnippetExtractor(
-							true));
-			allExtractors
-					.add(new TypenameScopeExtractor.TypenameSnippetExtractor(
-							true));
+			this(true, true, true);
 		}
 
 		public AllScopeSnippetExtractor(final boolean variables,
 				final boolean methods, final boolean types) {
-			allExtractors = Lists.newArrayList();
 			checkArgument(variables | methods | types,
 					"At least one option must be set");
-			if (variables) {
-				allExtractors
-						.add(new VariableScopeExtractor.VariableScopeSnippetExtractor());
-			}
-			if (methods) {
-				allExtractors
-						.add(new MethodScopeExtractor.MethodScopeSnippetExtractor(
-								true));
-			}
-			if (types) {
-				allExtractors
-						.add(new TypenameScopeExtractor.TypenameSnippetExtractor(
-								true));
-			}
+			this.variables = variables;
+			this.methods = methods;
+			this.types = types;
 		}
 
-		private final List<IScopeExtractor> allExtractors;
+		private final boolean variables;
+
+		private final boolean methods;
+
+		private final boolean types;
 
 		@Override
 		public Multimap<Scope, String> getFromFile(final File file)
 				throws IOException {
-			final Multimap<Scope, String> scopes = TreeMultimap.create();
-			for (final IScopeExtractor extractor : allExtractors) {
-				scopes.putAll(extractor.getFromFile(file));
-			}
-			return scopes;
+			final SourceBuffer source = ScopeNodes.read(file);
+			return getScopes(
+					ScopeNodes.parse(source, ParseType.COMPILATION_UNIT),
+					source);
 		}
 
 		@Override
 		public Multimap<Scope, String> getFromNode(ASTNode node) {
-			final Multimap<Scope, String> scopes = TreeMultimap.create();
-			for (final IScopeExtractor extractor : allExtractors) {
-				scopes.putAll(extractor.getFromNode(node));
-			}
-			return scopes;
+			return getScopes(node, null);
 		}
 
 		@Override
 		public Multimap<Scope, String> getFromString(final String file,
 				final ParseType parseType) {
-			final Multimap<Scope, String> scopes = TreeMultimap.create();
-			for (final IScopeExtractor extractor : allExtractors) {
-				scopes.putAll(extractor.getFromString(file, parseType));
+			final SourceBuffer source = new SourceBuffer(file);
+			return getScopes(ScopeNodes.parse(source, parseType), source);
+		}
+
+		private Multimap<Scope, String> getScopes(final ASTNode node,
+				final SourceBuffer source) {
+			final VariableScopeExtractor.VariableScopeFinder variableFinder = new VariableScopeExtractor.VariableScopeFinder();
+			final MethodScopeExtractor.ScopeFinder methodFinder = new MethodScopeExtractor.ScopeFinder(
+					true);
+			final TypenameScopeExtractor.ClassnameFinder typeFinder = new TypenameScopeExtractor.ClassnameFinder(
+					true);
+			final List<ASTVisitor> finders = Lists.newArrayList();
+			if (variables) {
+				finders.add(variableFinder);
+			}
+			if (methods) {
+				finders.add(methodFinder);
 			}
+			if (types) {
+				finders.add(typeFinder);
+			}
+			node.accept(new FusedScopeFinder(finders));
+
+			final Multimap<Scope, String> scopes = TreeMultimap.create();
+			VariableScopeExtractor.addScopes(variableFinder.variableScopes,
+					source, scopes);
+			MethodScopeExtractor.addScopes(methodFinder.methods, source,
+					scopes);
+			TypenameScopeExtractor.addScopes(typeFinder.types, source, scopes);
 			return scopes;
 		}
 	}
 
+	/**
+	 * Forward the visits of a single traversal to multiple finders, as if each
+	 * finder traversed the AST on its own: a finder that returns false when
+	 * visiting a node is not forwarded any visits of the node's subtree. Only
+	 * the node types that the scope finders handle are forwarded.
+	 */
+	private static final class FusedScopeFinder extends ASTVisitor {
+
+		private final ASTVisitor[] finders;
+
+		/**
+		 * The node whose subtree each finder skips, or null.
+		 */
+		private final ASTNode[] skippedSubtrees;
+
+		FusedScopeFinder(final List<ASTVisitor> finders) {
+			this.finders = finders.toArray(new ASTVisitor[finders.size()]);
+			skippedSubtrees = new ASTNode[finders.size()];
+		}
+
+		@Override
+		public void endVisit(final CastExpression node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final ClassInstanceCreation node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final EnumDeclaration node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final FieldDeclaration node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final MethodDeclaration node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final MethodInvocation node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final SingleVariableDeclaration node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final TypeDeclaration node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final TypeLiteral node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final VariableDeclarationExpression node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		@Override
+		public void endVisit(final VariableDeclarationStatement node) {
+			forwardEndVisit(node, f -> f.endVisit(node));
+		}
+
+		private void forwardEndVisit(final ASTNode node,
+				final Consumer<ASTVisitor> endVisit) {
+			for (int i = 0; i < finders.length; i++) {
+				if (skippedSubtrees[i] == null) {
+					endVisit.accept(finders[i]);
+				} else if (skippedSubtrees[i] == node) {
+					// The skipped node itself is still end-visited
+					endVisit.accept(finders[i]);
+					skippedSubtrees[i] = null;
+				}
+			}
+		}
+
+		private boolean forwardVisit(final ASTNode node,
+				final Predicate<ASTVisitor> visit) {
+			boolean visitChildren = false;
+			for (int i = 0; i < finders.length; i++) {
+				if (skippedSubtrees[i] == null) {
+					if (visit.test(finders[i])) {
+						visitChildren = true;
+					} else {
+						skippedSubtrees[i] = node;
+					}
+				}
+			}
+			return visitChildren;
+		}
+
+		@Override
+		public boolean visit(final CastExpression node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final ClassInstanceCreation node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final EnumDeclaration node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final FieldDeclaration node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final MethodDeclaration node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final MethodInvocation node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final SingleVariableDeclaration node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final TypeDeclaration node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final TypeLiteral node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final VariableDeclarationExpression node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+
+		@Override
+		public boolean visit(final VariableDeclarationStatement node) {
+			return forwardVisit(node, f -> f.visit(node));
+		}
+	}
+
 	/**
 	 * 
 	 */
@@ -14,11 +14,11 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 
-import codemining.java.codeutils.JavaASTExtractor;
 import codemining.languagetools.IScopeExtractor;
 import codemining.languagetools.ParseType;
 import codemining.languagetools.Scope;
 import codemining.languagetools.Scope.ScopeType;
+import codemining.languagetools.SourceBuffer;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.HashMultimap;
@@ -91,7 +91,7 @@ public class MethodScopeExtractor {
 		}
 	}
 
-	private static class ScopeFinder extends ASTVisitor {
+	static class ScopeFinder extends ASTVisitor {
 
 		final Multimap<ASTNode, Method> methods = HashMultimap.create();
 
@@ -157,30 +157,58 @@ public class MethodScopeExtractor {
 
 	public static Multimap<Scope, String> getScopeSnippets(final ASTNode node,
 			final boolean methodAsRoots) {
+		return getScopeSnippets(node, null, methodAsRoots);
+	}
+
+	/**
+	 * Return the method scopes of the node, as ranges of the given source.
+	 * 
+	 * @param node
+	 * @param source
+	 *            the source the node was parsed from, or null
+	 * @param methodAsRoots
+	 * @return
+	 */
+	public static Multimap<Scope, String> getScopeSnippets(final ASTNode node,
+			final SourceBuffer source, final boolean methodAsRoots) {
 		final ScopeFinder scopeFinder = new ScopeFinder(methodAsRoots);
 		node.accept(scopeFinder);
 
 		final Multimap<Scope, String> scopes = TreeMultimap.create();
-		for (final Entry<ASTNode, Method> method : scopeFinder.methods
-				.entries()) {
-			scopes.put(new Scope(method.getKey().toString(),
+		addScopes(scopeFinder.methods, source, scopes);
+		return scopes;
+
+	}
+
+	/**
+	 * Add the scopes of the methods found by a {@link ScopeFinder}.
+	 * 
+	 * @param methods
+	 * @param source
+	 *            the source the nodes were parsed from, or null
+	 * @param scopes
+	 */
+	static void addScopes(final Multimap<ASTNode, Method> methods,
+			final SourceBuffer source, final Multimap<Scope, String> scopes) {
+		for (final Entry<ASTNode, Method> method : methods.entries()) {
+			scopes.put(ScopeNodes.createScope(method.getKey(), source,
 					method.getValue().type, METHOD_CALL, 0, 0), method
 					.getValue().name);
 		}
-
-		return scopes;
-
 	}
 
 	public static Multimap<Scope, String> getScopeSnippets(final File file,
 			final boolean methodAsRoots) throws IOException {
-		final JavaASTExtractor ex = new JavaASTExtractor(false);
-		return getScopeSnippets(ex.getAST(file), methodAsRoots);
+		final SourceBuffer source = ScopeNodes.read(file);
+		return getScopeSnippets(
+				ScopeNodes.parse(source, ParseType.COMPILATION_UNIT), source,
+				methodAsRoots);
 	}
 
 	public static Multimap<Scope, String> getScopeSnippets(final String code,
 			final boolean methodAsRoots, final ParseType parseType) {
-		final JavaASTExtractor ex = new JavaASTExtractor(false);
-		return getScopeSnippets(ex.getAST(code, parseType), methodAsRoots);
+		final SourceBuffer source = new SourceBuffer(code);
+		return getScopeSnippets(ScopeNodes.parse(source, parseType), source,
+				methodAsRoots);
 	}
 }
@@ -0,0 +1,104 @@
+/**
+ *
+ */
+package codemining.java.codeutils.scopes;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.NodeFinder;
+
+import codemining.java.codeutils.JavaASTExtractor;
+import codemining.languagetools.ParseType;
+import codemining.languagetools.Scope;
+import codemining.languagetools.Scope.ScopeType;
+import codemining.languagetools.SourceBuffer;
+
+/**
+ * Create the scopes of AST nodes, as ranges of their source code when it is
+ * known.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+final class ScopeNodes {
+
+	/**
+	 * Return the scope of the given node. If the source is null or the node
+	 * has no position in it, the code of the scope is the string
+	 * representation of the node.
+	 *
+	 * @param node
+	 * @param source
+	 *            the source the node was parsed from, or null
+	 * @return
+	 */
+	static Scope createScope(final ASTNode node, final SourceBuffer source,
+			final ScopeType scopeType, final String type,
+			final int astNodeType, final int astParentNodeType) {
+		final int start = node.getStartPosition();
+		if (source != null && start >= 0
+				&& start + node.getLength() <= source.length()) {
+			return new Scope(source, start, node.getLength(), scopeType, type,
+					astNodeType, astParentNodeType);
+		}
+		return new Scope(node.toString(), scopeType, type, astNodeType,
+				astParentNodeType);
+	}
+
+	/**
+	 * Parse the given source.
+	 *
+	 * @param source
+	 * @param parseType
+	 * @return
+	 */
+	static ASTNode parse(final SourceBuffer source, final ParseType parseType) {
+		final JavaASTExtractor ex = new JavaASTExtractor(false);
+		return ex.getAST(source.getText(), parseType);
+	}
+
+	/**
+	 * Return the code of the scope as the string representation of its node,
+	 * i.e. the code that {@link #createScope} gives when the source is not
+	 * known. The code of a range scope is the text of the source, which the
+	 * string representation normalizes (e.g. comments and redundant
+	 * separators).
+	 *
+	 * @param scope
+	 * @param parseType
+	 *            the parse type of the source of the scope
+	 * @return
+	 */
+	static String getNodeCode(final Scope scope, final ParseType parseType) {
+		final SourceBuffer source = scope.getSource();
+		if (source == null) {
+			return scope.getCode();
+		}
+		final ASTNode node = NodeFinder.perform(parse(source, parseType),
+				scope.getStart(), scope.getLength());
+		if (node == null || node.getStartPosition() != scope.getStart()
+				|| node.getLength() != scope.getLength()) {
+			return scope.getCode();
+		}
+		return node.toString();
+	}
+
+	/**
+	 * Read the source of a compilation unit.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static SourceBuffer read(final File file) throws IOException {
+		return new SourceBuffer(FileUtils.readFileToString(file));
+	}
+
+	private ScopeNodes() {
+		// No instantiations
+	}
+
+}
@@ -3,19 +3,29 @@
  */
 package codemining.java.codeutils.scopes;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
 
 import codemining.java.codeutils.JavaASTExtractor;
 import codemining.java.tokenizers.JavaTokenizer;
 import codemining.languagetools.IScopeExtractor;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.ITokenizer.FullToken;
 import codemining.languagetools.ParseType;
 import codemining.languagetools.Scope;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 
 /**
  * Rename an identifer given a scope.
@@ -25,6 +35,238 @@ import com.google.common.collect.Multimap;
  */
 public class ScopedIdentifierRenaming {
 
+	/**
+	 * A scope of a file that has been parsed and tokenized once, so that many
+	 * variable mappings can be applied to it cheaply. Not thread-safe.
+	 */
+	public final class PreparedScope {
+
+		private final RenamingTemplate template;
+
+		/**
+		 * The names of the identifier tokens of the scope.
+		 */
+		private final Set<String> identifiers;
+
+		private RenamingTemplate formattedTemplate = null;
+
+		private PreparedScope(final RenamingTemplate template,
+				final Set<String> identifiers) {
+			this.template = template;
+			this.identifiers = identifiers;
+		}
+
+		/**
+		 * Build the template of the formatted code, by renaming every
+		 * identifier of the scope to a unique placeholder and formatting the
+		 * result once.
+		 */
+		private RenamingTemplate createFormattedTemplate() {
+			final String unformatted = template.render(Collections
+					.<String, String> emptyMap());
+			String prefix = "renamingPlaceholder";
+			while (unformatted.contains(prefix)) {
+				prefix += "_";
+			}
+			final Map<String, String> placeholders = Maps.newHashMap();
+			final List<String> identifierList = Lists.newArrayList(identifiers);
+			for (int i = 0; i < identifierList.size(); i++) {
+				placeholders.put(identifierList.get(i), prefix + i);
+			}
+			final String formatted = format(template.render(placeholders));
+
+			final TemplateBuilder builder = new TemplateBuilder();
+			int last = 0;
+			int next;
+			while ((next = formatted.indexOf(prefix, last)) >= 0) {
+				int end = next + prefix.length();
+				while (end < formatted.length()
+						&& Character.isDigit(formatted.charAt(end))) {
+					end++;
+				}
+				builder.appendLiteral(formatted, last, next);
+				builder.appendSlot(identifierList.get(Integer
+						.parseInt(formatted.substring(next + prefix.length(),
+								end))));
+				last = end;
+			}
+			builder.appendLiteral(formatted, last, formatted.length());
+			return builder.build();
+		}
+
+		/**
+		 * Return the renamed code, formatted as
+		 * {@link ScopedIdentifierRenaming#getFormattedRenamedCode} would
+		 * format it. When only identifiers are renamed to identifiers, the code
+		 * is not parsed again.
+		 * 
+		 * @param varMapping
+		 * @return
+		 */
+		public String getFormattedRenamedCode(
+				final Map<String, String> varMapping) {
+			for (final Entry<String, String> rename : varMapping.entrySet()) {
+				if (!template.hasSlot(rename.getKey())) {
+					continue;
+				} else if (!identifiers.contains(rename.getKey())
+						|| !isIdentifier(rename.getValue())) {
+					// The renaming may change the AST, format the code again
+					return format(getRenamedCode(varMapping));
+				}
+			}
+			if (formattedTemplate == null) {
+				formattedTemplate = createFormattedTemplate();
+			}
+			return formattedTemplate.render(varMapping);
+		}
+
+		/**
+		 * Return the names of the identifiers of the scope.
+		 * 
+		 * @return
+		 */
+		public Set<String> getIdentifiers() {
+			return identifiers;
+		}
+
+		/**
+		 * Return the code of the whole file, with the tokens of the scope
+		 * renamed.
+		 * 
+		 * @param varMapping
+		 * @return
+		 */
+		public String getRenamedCode(final Map<String, String> varMapping) {
+			return template.render(varMapping);
+		}
+
+		/**
+		 * Return the scopes of the renamed code.
+		 * 
+		 * @param varMapping
+		 * @return
+		 */
+		public Multimap<Scope, String> getRenamedScopes(
+				final Map<String, String> varMapping) {
+			return scopeExtractor.getFromString(getRenamedCode(varMapping),
+					parseKindToUseOnOriginal);
+		}
+
+		private boolean isIdentifier(final String name) {
+			final FullToken token = tokenizer.getTokenFromString(name);
+			return token.token.equals(name)
+					&& token.tokenType.equals(tokenizer.getIdentifierType());
+		}
+	}
+
+	/**
+	 * A text made of literal pieces and of token slots that can be renamed.
+	 */
+	private static final class RenamingTemplate {
+
+		private final String[] pieces;
+
+		/**
+		 * The indexes of the slot pieces of each token.
+		 */
+		private final Map<String, int[]> slots;
+
+		/**
+		 * The renamed pieces of the current rendering, reused.
+		 */
+		private final String[] renamed;
+
+		private final StringBuilder buffer;
+
+		private final int length;
+
+		RenamingTemplate(final String[] pieces, final Map<String, int[]> slots) {
+			this.pieces = pieces;
+			this.slots = slots;
+			renamed = new String[pieces.length];
+			int totalLength = 0;
+			for (final String piece : pieces) {
+				totalLength += piece.length();
+			}
+			length = totalLength;
+			buffer = new StringBuilder(length);
+		}
+
+		boolean hasSlot(final String token) {
+			return slots.containsKey(token);
+		}
+
+		String render(final Map<String, String> varMapping) {
+			final List<int[]> renamedSlots = Lists.newArrayList();
+			for (final Entry<String, String> rename : varMapping.entrySet()) {
+				final int[] tokenSlots = slots.get(rename.getKey());
+				if (tokenSlots != null) {
+					for (final int slot : tokenSlots) {
+						renamed[slot] = rename.getValue();
+					}
+					renamedSlots.add(tokenSlots);
+				}
+			}
+
+			buffer.setLength(0);
+			buffer.ensureCapacity(length);
+			for (int i = 0; i < pieces.length; i++) {
+				buffer.append(renamed[i] != null ? renamed[i] : pieces[i]);
+			}
+
+			for (final int[] tokenSlots : renamedSlots) {
+				for (final int slot : tokenSlots) {
+					renamed[slot] = null;
+				}
+			}
+			return buffer.toString();
+		}
+	}
+
+	/**
+	 * Builds a template, merging consecutive literals.
+	 */
+	private static final class TemplateBuilder {
+
+		private final List<String> pieces = Lists.newArrayList();
+
+		private final Map<String, List<Integer>> slots = Maps.newHashMap();
+
+		private final StringBuilder literal = new StringBuilder();
+
+		void appendLiteral(final String text, final int start, final int end) {
+			literal.append(text, start, end);
+		}
+
+		void appendSlot(final String token) {
+			if (literal.length() > 0) {
+				pieces.add(literal.toString());
+				literal.setLength(0);
+			}
+			List<Integer> tokenSlots = slots.get(token);
+			if (tokenSlots == null) {
+				tokenSlots = Lists.newArrayList();
+				slots.put(token, tokenSlots);
+			}
+			tokenSlots.add(pieces.size());
+			pieces.add(token);
+		}
+
+		RenamingTemplate build() {
+			if (literal.length() > 0) {
+				pieces.add(literal.toString());
+			}
+			final Map<String, int[]> slotArrays = Maps.newHashMap();
+			for (final Entry<String, List<Integer>> tokenSlots : slots
+					.entrySet()) {
+				slotArrays.put(tokenSlots.getKey(),
+						Ints.toArray(tokenSlots.getValue()));
+			}
+			return new RenamingTemplate(pieces.toArray(new String[pieces
+					.size()]), slotArrays);
+		}
+	}
+
 	final IScopeExtractor scopeExtractor;
 
 	final ITokenizer tokenizer = new JavaTokenizer();
@@ -37,14 +279,16 @@ public class ScopedIdentifierRenaming {
 		parseKindToUseOnOriginal = parseType;
 	}
 
-	public String getFormattedRenamedCode(final String originalScopeCode,
-			final String from, final String to, final String wholeFile) {
-		final String code = getRenamedCode(originalScopeCode, from, to,
-				wholeFile);
+	private String format(final String code) {
 		final JavaASTExtractor ex = new JavaASTExtractor(false);
 		return ex.getASTNode(code, parseKindToUseOnOriginal).toString();
 	}
 
+	public String getFormattedRenamedCode(final String originalScopeCode,
+			final String from, final String to, final String wholeFile) {
+		return format(getRenamedCode(originalScopeCode, from, to, wholeFile));
+	}
+
 	/**
 	 * @param originalScopeCode
 	 * @param from
@@ -67,22 +311,27 @@ public class ScopedIdentifierRenaming {
 	 */
 	public String getRenamedCode(final String originalScopeCode,
 			final String wholeFile, final Map<String, String> varMapping) {
-		final JavaASTExtractor ex = new JavaASTExtractor(false);
-		final String originalCode = renameVariableInSnippet(
-				ex.getASTNode(wholeFile, parseKindToUseOnOriginal).toString(),
-				Collections.EMPTY_MAP);
-		final String snippetToBeReplaced = renameVariableInSnippet(
-				originalScopeCode, varMapping);
-
-		final String code = originalCode.replace(
-				renameVariableInSnippet(originalScopeCode,
-						Collections.EMPTY_MAP), snippetToBeReplaced);
-		return code;
+		return prepare(originalScopeCode, wholeFile).getRenamedCode(varMapping);
+	}
+
+	/**
+	 * Rename the identifiers in the code of a scope that refers to a source
+	 * buffer, keeping the formatting of the source.
+	 * 
+	 * @param scope
+	 * @param varMapping
+	 * @return the whole source with the scope code renamed
+	 */
+	public String getRenamedCode(final Scope scope,
+			final Map<String, String> varMapping) {
+		return prepare(scope).getRenamedCode(varMapping);
 	}
 
 	public Multimap<Scope, String> getRenamedScopes(final Scope originalScope,
 			final String from, final String to, final String wholeFile) {
-		return getRenamedScopes(originalScope.code, from, to, wholeFile);
+		final Map<String, String> varMapping = Maps.newTreeMap();
+		varMapping.put(from, to);
+		return prepare(originalScope, wholeFile).getRenamedScopes(varMapping);
 	}
 
 	public Multimap<Scope, String> getRenamedScopes(
@@ -93,6 +342,113 @@ public class ScopedIdentifierRenaming {
 		return scopeExtractor.getFromString(code, parseKindToUseOnOriginal);
 	}
 
+	/**
+	 * Prepare a scope that refers to a source buffer for renaming. Its tokens
+	 * are renamed directly in the source, keeping the formatting of the
+	 * source.
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	public PreparedScope prepare(final Scope scope) {
+		checkArgument(scope.getSource() != null,
+				"The scope does not refer to a source buffer");
+		final String source = scope.getSource().getText();
+		final int start = scope.getStart();
+		final SortedMap<Integer, FullToken> tokens = tokenizer
+				.fullTokenListWithPos(scope.getCode().toCharArray());
+
+		final TemplateBuilder builder = new TemplateBuilder();
+		final Set<String> identifiers = Sets.newHashSet();
+		int last = 0;
+		for (final Entry<Integer, FullToken> token : tokens.entrySet()) {
+			final String tokenName = token.getValue().token;
+			final int position = start + token.getKey();
+			if (token.getKey() >= 0
+					&& source.regionMatches(position, tokenName, 0,
+							tokenName.length())) {
+				builder.appendLiteral(source, last, position);
+				builder.appendSlot(tokenName);
+				last = position + tokenName.length();
+				if (token.getValue().tokenType.equals(tokenizer
+						.getIdentifierType())) {
+					identifiers.add(tokenName);
+				}
+			}
+		}
+		builder.appendLiteral(source, last, source.length());
+		return new PreparedScope(builder.build(),
+				ImmutableSet.copyOf(identifiers));
+	}
+
+	/**
+	 * Prepare a scope of the given file for renaming. If the scope refers to
+	 * the source of the file, it is renamed directly in the source, otherwise
+	 * the code of the file is normalized and all the occurrences of the
+	 * normalized scope code are renamed. The code of a range scope is
+	 * normalized the same way as the file before it is searched for.
+	 * 
+	 * @param scope
+	 * @param wholeFile
+	 * @return
+	 */
+	public PreparedScope prepare(final Scope scope, final String wholeFile) {
+		if (scope.getSource() != null
+				&& scope.getSource().getText().equals(wholeFile)) {
+			return prepare(scope);
+		}
+		return prepare(
+				ScopeNodes.getNodeCode(scope, parseKindToUseOnOriginal),
+				wholeFile);
+	}
+
+	/**
+	 * Prepare a scope for renaming. The code of the file is normalized and all
+	 * the occurrences of the normalized scope code are renamed.
+	 * 
+	 * @param originalScopeCode
+	 * @param wholeFile
+	 * @return
+	 */
+	public PreparedScope prepare(final String originalScopeCode,
+			final String wholeFile) {
+		final String originalCode = renameVariableInSnippet(format(wholeFile),
+				Collections.<String, String> emptyMap());
+		final List<FullToken> snippetTokens = Lists.newArrayList();
+		for (final FullToken token : tokenizer
+				.getTokenListFromCode(originalScopeCode.toCharArray())) {
+			if (!token.token.equals(ITokenizer.SENTENCE_START)
+					&& !token.token.equals(ITokenizer.SENTENCE_END)) {
+				snippetTokens.add(token);
+			}
+		}
+		final StringBuilder snippet = new StringBuilder();
+		for (final FullToken token : snippetTokens) {
+			snippet.append(token.token);
+			snippet.append(" ");
+		}
+
+		final TemplateBuilder builder = new TemplateBuilder();
+		final Set<String> identifiers = Sets.newHashSet();
+		int last = 0;
+		int next;
+		while (snippet.length() > 0
+				&& (next = originalCode.indexOf(snippet.toString(), last)) >= 0) {
+			builder.appendLiteral(originalCode, last, next);
+			for (final FullToken token : snippetTokens) {
+				builder.appendSlot(token.token);
+				builder.appendLiteral(" ", 0, 1);
+				if (token.tokenType.equals(tokenizer.getIdentifierType())) {
+					identifiers.add(token.token);
+				}
+			}
+			last = next + snippet.length();
+		}
+		builder.appendLiteral(originalCode, last, originalCode.length());
+		return new PreparedScope(builder.build(),
+				ImmutableSet.copyOf(identifiers));
+	}
+
 	/**
 	 * Crudely rename the name of an identifier by searching for similarly named
 	 * tokens.
@@ -20,11 +20,11 @@ import org.eclipse.jdt.core.dom.TypeLiteral;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
-import codemining.java.codeutils.JavaASTExtractor;
 import codemining.languagetools.IScopeExtractor;
 import codemining.languagetools.ParseType;
 import codemining.languagetools.Scope;
 import codemining.languagetools.Scope.ScopeType;
+import codemining.languagetools.SourceBuffer;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
@@ -168,47 +168,63 @@ public class TypenameScopeExtractor {
 			methodsAsRoots = useMethodsAsRoots;
 		}
 
-		private Multimap<Scope, String> getClassnames(final ASTNode node) {
+		private Multimap<Scope, String> getClassnames(final ASTNode node,
+				final SourceBuffer source) {
 			final ClassnameFinder cf = new ClassnameFinder(methodsAsRoots);
 			node.accept(cf);
 
 			final Multimap<Scope, String> classnames = TreeMultimap.create();
-
-			for (final Entry<ASTNode, String> classname : cf.types.entries()) {
-				final ASTNode parentNode = classname.getKey();
-				final Scope sc = new Scope(
-						classname.getKey().toString(),
-						parentNode.getNodeType() == ASTNode.METHOD_DECLARATION ? ScopeType.SCOPE_METHOD
-								: ScopeType.SCOPE_CLASS, TYPENAME,
-						parentNode.getNodeType(), -1);
-				classnames.put(sc, classname.getValue());
-			}
+			addScopes(cf.types, source, classnames);
 			return classnames;
 		}
 
 		@Override
 		public Multimap<Scope, String> getFromFile(final File file)
 				throws IOException {
-			final JavaASTExtractor ex = new JavaASTExtractor(false);
-			return getClassnames(ex.getAST(file));
+			final SourceBuffer source = ScopeNodes.read(file);
+			return getClassnames(
+					ScopeNodes.parse(source, ParseType.COMPILATION_UNIT),
+					source);
 		}
 
 		@Override
 		public Multimap<Scope, String> getFromNode(final ASTNode node) {
-			return getClassnames(node);
+			return getClassnames(node, null);
 		}
 
 		@Override
 		public Multimap<Scope, String> getFromString(final String file,
 				final ParseType parseType) {
-			final JavaASTExtractor ex = new JavaASTExtractor(false);
-			return getClassnames(ex.getAST(file, parseType));
+			final SourceBuffer source = new SourceBuffer(file);
+			return getClassnames(ScopeNodes.parse(source, parseType), source);
 		}
 
 	}
 
 	public static final String TYPENAME = "%typename%";
 
+	/**
+	 * Add the scopes of the types found by a {@link ClassnameFinder}.
+	 * 
+	 * @param types
+	 * @param source
+	 *            the source the nodes were parsed from, or null
+	 * @param scopes
+	 */
+	static void addScopes(final Multimap<ASTNode, String> types,
+			final SourceBuffer source, final Multimap<Scope, String> scopes) {
+		for (final Entry<ASTNode, String> classname : types.entries()) {
+			final ASTNode parentNode = classname.getKey();
+			final Scope sc = ScopeNodes.createScope(
+					parentNode,
+					source,
+					parentNode.getNodeType() == ASTNode.METHOD_DECLARATION ? ScopeType.SCOPE_METHOD
+							: ScopeType.SCOPE_CLASS, TYPENAME,
+					parentNode.getNodeType(), -1);
+			scopes.put(sc, classname.getValue());
+		}
+	}
+
 	private TypenameScopeExtractor() {
 	}
 
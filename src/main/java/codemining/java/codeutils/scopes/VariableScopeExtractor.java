@@ -21,6 +21,7 @@ import codemining.languagetools.IScopeExtractor;
 import codemining.languagetools.ParseType;
 import codemining.languagetools.Scope;
 import codemining.languagetools.Scope.ScopeType;
+import codemining.languagetools.SourceBuffer;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.ComparisonChain;
@@ -86,7 +87,7 @@ public class VariableScopeExtractor {
 	 * 
 	 */
 	public static class VariableScopeFinder extends ASTVisitor {
-		private final Multimap<ASTNode, Variable> variableScopes = HashMultimap
+		final Multimap<ASTNode, Variable> variableScopes = HashMultimap
 				.create();
 
 		/**
@@ -227,11 +228,39 @@ public class VariableScopeExtractor {
 	 * @return Multimap<Snippet, VariableName>
 	 */
 	public static Multimap<Scope, String> getScopeSnippets(final ASTNode cu) {
+		return getScopeSnippets(cu, null);
+	}
+
+	/**
+	 * Return a multimap containing all the (local) variables of the given
+	 * scope, whose scopes are ranges of the given source.
+	 * 
+	 * @param cu
+	 * @param source
+	 *            the source the node was parsed from, or null
+	 * @return Multimap<Snippet, VariableName>
+	 */
+	public static Multimap<Scope, String> getScopeSnippets(final ASTNode cu,
+			final SourceBuffer source) {
 		final VariableScopeFinder scopeFinder = new VariableScopeFinder();
 		cu.accept(scopeFinder);
 
 		final Multimap<Scope, String> scopes = TreeMultimap.create();
-		for (final Entry<ASTNode, Variable> variable : scopeFinder.variableScopes
+		addScopes(scopeFinder.variableScopes, source, scopes);
+		return scopes;
+	}
+
+	/**
+	 * Add the scopes of the variables found by a {@link VariableScopeFinder}.
+	 * 
+	 * @param variableScopes
+	 * @param source
+	 *            the source the nodes were parsed from, or null
+	 * @param scopes
+	 */
+	static void addScopes(final Multimap<ASTNode, Variable> variableScopes,
+			final SourceBuffer source, final Multimap<Scope, String> scopes) {
+		for (final Entry<ASTNode, Variable> variable : variableScopes
 				.entries()) {
 			final int astNodeType = variable.getKey().getNodeType();
 			final int astNodeParentType;
@@ -241,14 +270,11 @@ public class VariableScopeExtractor {
 				astNodeParentType = variable.getKey().getParent().getNodeType();
 			}
 			scopes.put(
-					new Scope(variable.getKey().toString(),
+					ScopeNodes.createScope(variable.getKey(), source,
 							variable.getValue().scope,
 							variable.getValue().type, astNodeType,
 							astNodeParentType), variable.getValue().name);
 		}
-
-		return scopes;
-
 	}
 
 	/**
@@ -262,8 +288,9 @@ public class VariableScopeExtractor {
 	 */
 	public static Multimap<Scope, String> getScopeSnippets(final File file)
 			throws IOException {
-		final JavaASTExtractor ex = new JavaASTExtractor(false);
-		return getScopeSnippets(ex.getAST(file));
+		final SourceBuffer source = ScopeNodes.read(file);
+		return getScopeSnippets(
+				ScopeNodes.parse(source, ParseType.COMPILATION_UNIT), source);
 	}
 
 	/**
@@ -275,8 +302,8 @@ public class VariableScopeExtractor {
 	 */
 	public static Multimap<Scope, String> getScopeSnippets(final String code,
 			final ParseType parseType) {
-		final JavaASTExtractor ex = new JavaASTExtractor(false);
-		return getScopeSnippets(ex.getAST(code, parseType));
+		final SourceBuffer source = new SourceBuffer(code);
+		return getScopeSnippets(ScopeNodes.parse(source, parseType), source);
 	}
 
 	/**
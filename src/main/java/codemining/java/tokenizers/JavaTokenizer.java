@@ -16,7 +16,11 @@ import org.eclipse.jdt.core.compiler.ITerminalSymbols;
 import org.eclipse.jdt.core.compiler.InvalidInputException;
 import org.eclipse.jdt.internal.core.util.PublicScanner;
 
+import codemining.languagetools.CachedTokenClassifier;
+import codemining.languagetools.CachedTokenClassifier.ITokenScanner;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -30,6 +34,9 @@ import com.google.common.collect.Maps;
 public class JavaTokenizer implements ITokenizer {
 
 	private static final long serialVersionUID = 505587999946057082L;
+
+	private static final StageMetrics TOKENIZE_METRICS = PipelineMetrics.getStage(
+			"tokenize", "java", "tokens");
 	private static final Logger LOGGER = Logger.getLogger(JavaTokenizer.class
 			.getName());
 
@@ -126,6 +133,28 @@ public class JavaTokenizer implements ITokenizer {
 		Integer.toString(ITerminalSymbols.TokenNameLBRACKET),
 		Integer.toString(ITerminalSymbols.TokenNameRBRACKET) };
 
+	/**
+	 * The keywords and operators that are precomputed for getTokenFromString.
+	 */
+	private static final String[] FIXED_TOKENS = { "abstract", "assert",
+		"boolean", "break", "byte", "case", "catch", "char", "class", "const",
+		"continue", "default", "do", "double", "else", "enum", "extends",
+		"final", "finally", "float", "for", "goto", "if", "implements",
+		"import", "instanceof", "int", "interface", "long", "native", "new",
+		"package", "private", "protected", "public", "return", "short",
+		"static", "strictfp", "super", "switch", "synchronized", "this",
+		"throw", "throws", "transient", "try", "void", "volatile", "while",
+		"true", "false", "null", "{", "}", "(", ")", "[", "]", ";", ",", ".",
+		"...", "@", "=", ">", "<", "!", "~", "?", ":", "::", "->", "==", "<=",
+		">=", "!=", "&&", "||", "++", "--", "+", "-", "*", "/", "&", "|",
+		"^", "%", "<<", ">>", ">>>", "+=", "-=", "*=", "/=", "&=", "|=",
+		"^=", "%=", "<<=", ">>=", ">>>=" };
+
+	/**
+	 * Lazily created, since tokenizers are serializable.
+	 */
+	private transient volatile CachedTokenClassifier tokenClassifier;
+
 	public JavaTokenizer() {
 		tokenizeComments = false;
 	}
@@ -197,7 +226,7 @@ public class JavaTokenizer implements ITokenizer {
 			return new FullToken(ITokenizer.SENTENCE_END,
 					ITokenizer.SENTENCE_END);
 		}
-		return getTokenListFromCode(token.toCharArray()).get(1);
+		return getTokenClassifier().getTokenFromString(token);
 	}
 
 	@Override
@@ -234,6 +263,31 @@ public class JavaTokenizer implements ITokenizer {
 				.toCharArray());
 	}
 
+	/**
+	 * Return the classifier used for getTokenFromString.
+	 *
+	 * @return
+	 */
+	private CachedTokenClassifier getTokenClassifier() {
+		if (tokenClassifier == null) {
+			tokenClassifier = new CachedTokenClassifier(new ITokenScanner() {
+
+				@Override
+				public FullToken identifierToken(final String token) {
+					return new FullToken(stripTokenIfNeeded(transformToken(
+							ITerminalSymbols.TokenNameIdentifier, token)),
+							IDENTIFIER_ID);
+				}
+
+				@Override
+				public FullToken scanToken(final String token) {
+					return getTokenListFromCode(token.toCharArray()).get(1);
+				}
+			}, IDENTIFIER_ID, Arrays.asList(FIXED_TOKENS), "_$");
+		}
+		return tokenClassifier;
+	}
+
 	/**
 	 * Create the scanner.
 	 *
@@ -262,6 +316,7 @@ public class JavaTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final PublicScanner scanner = prepareScanner();
 		final List<String> tokens = Lists.newArrayList();
 		tokens.add(SENTENCE_START);
@@ -283,6 +338,7 @@ public class JavaTokenizer implements ITokenizer {
 			}
 		} while (!scanner.atEnd());
 		tokens.add(SENTENCE_END);
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
@@ -300,6 +356,7 @@ public class JavaTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final PublicScanner scanner = prepareScanner();
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
 		tokens.put(-1, SENTENCE_START);
@@ -322,6 +379,7 @@ public class JavaTokenizer implements ITokenizer {
 			} while (!scanner.atEnd());
 
 		}
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
@@ -7,7 +7,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 
@@ -17,6 +16,7 @@ import org.eclipse.jdt.core.dom.ASTNode;
 
 import codemining.java.codeutils.JavaASTExtractor;
 import codemining.java.codeutils.JavaApproximateTypeInferencer;
+import codemining.java.codeutils.JavaApproximateTypeInferencer.TypesAtPositions;
 import codemining.languagetools.ITokenizer;
 
 import com.google.common.collect.Lists;
@@ -46,14 +46,16 @@ public class JavaTypeTokenizer implements ITokenizer {
 		final JavaApproximateTypeInferencer tInf = new JavaApproximateTypeInferencer(
 				cu);
 		tInf.infer();
-		final Map<Integer, String> types = tInf.getVariableTypesAtPosition();
+		final TypesAtPositions types = tInf.getVariableTypeIdsAtPosition();
+		final String[] varTokens = getVarTokens(types);
+		final int[] typeIds = types.getTypeIds();
 
 		final SortedMap<Integer, FullToken> typeTokenList = Maps.newTreeMap();
 		for (final Entry<Integer, FullToken> token : tokens.entrySet()) {
-			final String type = types.get(token.getKey());
-			if (type != null) {
-				typeTokenList.put(token.getKey(), new FullToken("var%" + type
-						+ "%", token.getValue().tokenType));
+			final int typeIdx = types.indexOf(token.getKey());
+			if (typeIdx >= 0) {
+				typeTokenList.put(token.getKey(), new FullToken(
+						varTokens[typeIds[typeIdx]], token.getValue().tokenType));
 			} else {
 				typeTokenList.put(token.getKey(),
 						new FullToken(token.getValue().token,
@@ -78,6 +80,20 @@ public class JavaTypeTokenizer implements ITokenizer {
 		}
 	}
 
+	/**
+	 * Return the variable token of each type id.
+	 *
+	 * @param types
+	 * @return
+	 */
+	private static String[] getVarTokens(final TypesAtPositions types) {
+		final String[] varTokens = new String[types.getNumTypes()];
+		for (int i = 0; i < varTokens.length; i++) {
+			varTokens[i] = "var%" + types.getType(i) + "%";
+		}
+		return varTokens;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -161,14 +177,16 @@ public class JavaTypeTokenizer implements ITokenizer {
 		final JavaApproximateTypeInferencer tInf = new JavaApproximateTypeInferencer(
 				cu);
 		tInf.infer();
-		final Map<Integer, String> types = tInf.getVariableTypesAtPosition();
+		final TypesAtPositions types = tInf.getVariableTypeIdsAtPosition();
+		final String[] varTokens = getVarTokens(types);
+		final int[] typeIds = types.getTypeIds();
 
 		final List<FullToken> typeTokenList = Lists.newArrayList();
 		for (final Entry<Integer, FullToken> token : tokens.entrySet()) {
-			final String type = types.get(token.getKey());
-			if (type != null) {
-				typeTokenList.add(new FullToken("var%" + type + "%", token
-						.getValue().tokenType));
+			final int typeIdx = types.indexOf(token.getKey());
+			if (typeIdx >= 0) {
+				typeTokenList.add(new FullToken(varTokens[typeIds[typeIdx]],
+						token.getValue().tokenType));
 			} else {
 				typeTokenList.add(new FullToken(token.getValue().token, token
 						.getValue().tokenType));
@@ -204,13 +222,15 @@ public class JavaTypeTokenizer implements ITokenizer {
 		final JavaApproximateTypeInferencer tInf = new JavaApproximateTypeInferencer(
 				cu);
 		tInf.infer();
-		final Map<Integer, String> types = tInf.getVariableTypesAtPosition();
+		final TypesAtPositions types = tInf.getVariableTypeIdsAtPosition();
+		final String[] varTokens = getVarTokens(types);
+		final int[] typeIds = types.getTypeIds();
 
 		final List<String> typeTokenList = Lists.newArrayList();
 		for (final Entry<Integer, FullToken> token : tokens.entrySet()) {
-			final String type = types.get(token.getKey());
-			if (type != null) {
-				typeTokenList.add("var%" + type + "%");
+			final int typeIdx = types.indexOf(token.getKey());
+			if (typeIdx >= 0) {
+				typeTokenList.add(varTokens[typeIds[typeIdx]]);
 			} else {
 				typeTokenList.add(token.getValue().token);
 			}
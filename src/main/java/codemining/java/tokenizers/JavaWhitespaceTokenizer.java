@@ -22,6 +22,7 @@ import org.eclipse.jdt.internal.core.util.PublicScanner;
 
 import codemining.languagetools.IFormattingTokenizer;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.LineIndex;
 import codemining.languagetools.tokenizers.whitespace.WhitespaceToTokenConverter;
 
 import com.google.common.collect.Lists;
@@ -191,6 +192,7 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 			tokens.add(new WhitespaceAnnotatedToken(SENTENCE_START,
 					SENTENCE_START, 0, 0));
 			final PublicScanner scanner = prepareScanner(code);
+			final LineIndex lineIndex = new LineIndex(code);
 			do {
 				try {
 					final int token = scanner.getNextToken();
@@ -200,9 +202,8 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 					for (final String cToken : getConvertedToken(scanner, token)) {
 						final int currentPosition = scanner
 								.getCurrentTokenStartPosition();
-						final int currentLine = scanner
-								.getLineNumber(currentPosition);
-						final int lineStart = scanner.getLineStart(currentLine);
+						final int lineStart = lineIndex.getLineStart(lineIndex
+								.getLineOfPosition(currentPosition));
 						tokens.add(new WhitespaceAnnotatedToken(cToken, "",
 								currentPosition - lineStart, scanner
 								.getCurrentTokenString().length()));
@@ -318,21 +319,21 @@ public class JavaWhitespaceTokenizer implements IFormattingTokenizer {
 			tokens.put(Integer.MAX_VALUE, new WhitespaceAnnotatedToken(
 					SENTENCE_END, SENTENCE_END, 0, 0));
 			final PublicScanner scanner = prepareScanner(code);
+			final LineIndex lineIndex = new LineIndex(code);
 
 			while (!scanner.atEnd()) {
 				do {
 					try {
 						final int token = scanner.getNextToken();
+						if (token == ITerminalSymbols.TokenNameEOF) {
+							break;
+						}
 						final int currentPosition = scanner
 								.getCurrentTokenStartPosition();
-						final int currentLine = scanner
-								.getLineNumber(currentPosition);
-						final int lineStart = scanner.getLineStart(currentLine);
+						final int lineStart = lineIndex.getLineStart(lineIndex
+								.getLineOfPosition(currentPosition));
 						final int position = scanner
 								.getCurrentTokenStartPosition();
-						if (token == ITerminalSymbols.TokenNameEOF) {
-							break;
-						}
 						int i = 0;
 						final List<String> cTokens = getConvertedToken(scanner,
 								token);
@@ -10,6 +10,7 @@ import org.eclipse.wst.jsdt.core.dom.ASTVisitor;
 import org.eclipse.wst.jsdt.core.dom.JavaScriptUnit;
 
 import codemining.js.codeutils.JavascriptASTExtractor;
+import codemining.languagetools.corpus.CorpusShard;
 
 public final class JavascriptFunctionCounter {
 
@@ -42,8 +43,9 @@ public final class JavascriptFunctionCounter {
 		final JavascriptASTExtractor astExtractor = new JavascriptASTExtractor(
 				false);
 
-		final List<File> files = (List<File>) FileUtils.listFiles(projectDir,
-				new String[] { "js" }, true);
+		final List<File> files = CorpusShard.select(
+				FileUtils.listFiles(projectDir, new String[] { "js" }, true),
+				projectDir);
 
 		int count = 0;
 		for (final File file : files) {
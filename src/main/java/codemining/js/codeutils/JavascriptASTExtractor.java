@@ -18,6 +18,8 @@ import org.eclipse.wst.jsdt.core.dom.FunctionDeclaration;
 import org.eclipse.wst.jsdt.core.dom.JavaScriptUnit;
 
 import codemining.languagetools.ParseType;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 /**
  * A utility class to retrieve an Eclipse AST.
@@ -27,6 +29,9 @@ import codemining.languagetools.ParseType;
  */
 public class JavascriptASTExtractor {
 
+	private static final StageMetrics PARSE_METRICS = PipelineMetrics
+			.getStage("parse", "javascript", "chars");
+
 	private static final class TopFunctionRetriever extends ASTVisitor {
 		public FunctionDeclaration topDcl;
 
@@ -70,6 +75,7 @@ public class JavascriptASTExtractor {
 	 * @throws IOException
 	 */
 	public final JavaScriptUnit getAST(final File file) throws IOException {
+		final long start = PipelineMetrics.startTimer();
 		final String sourceFile = FileUtils.readFileToString(file);
 		final ASTParser parser = ASTParser.newParser(AST.JLS3);
 		parser.setKind(ASTParser.K_COMPILATION_UNIT);
@@ -100,6 +106,7 @@ public class JavascriptASTExtractor {
 
 		final JavaScriptUnit compilationUnit = (JavaScriptUnit) parser
 				.createAST(null);
+		PARSE_METRICS.record(start, sourceFile.length());
 
 		return compilationUnit;
 	}
@@ -124,6 +131,7 @@ public class JavascriptASTExtractor {
 	 */
 	public final ASTNode getASTNode(final char[] content,
 			final ParseType parseType) {
+		final long start = PipelineMetrics.startTimer();
 		final ASTParser parser = ASTParser.newParser(AST.JLS3);
 		final int astKind;
 		switch (parseType) {
@@ -160,10 +168,11 @@ public class JavascriptASTExtractor {
 
 		parser.setStatementsRecovery(true);
 
+		final ASTNode cu = parser.createAST(null);
+		PARSE_METRICS.record(start, content.length);
 		if (parseType != ParseType.METHOD) {
-			return parser.createAST(null);
+			return cu;
 		} else {
-			final ASTNode cu = parser.createAST(null);
 			return getFirstFunctionDeclaration(cu);
 		}
 	}
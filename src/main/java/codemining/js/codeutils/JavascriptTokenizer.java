@@ -22,7 +22,11 @@ import org.eclipse.wst.jsdt.core.compiler.ITerminalSymbols;
 import org.eclipse.wst.jsdt.core.compiler.InvalidInputException;
 import org.eclipse.wst.jsdt.internal.core.util.PublicScanner;
 
+import codemining.languagetools.CachedTokenClassifier;
+import codemining.languagetools.CachedTokenClassifier.ITokenScanner;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -45,6 +49,9 @@ public class JavascriptTokenizer implements ITokenizer {
 	 */
 	private static final long serialVersionUID = -4017631753468670347L;
 
+	private static final StageMetrics TOKENIZE_METRICS = PipelineMetrics.getStage(
+			"tokenize", "javascript", "tokens");
+
 	private static final Logger LOGGER = Logger
 			.getLogger(JavascriptTokenizer.class.getName());
 
@@ -111,6 +118,25 @@ public class JavascriptTokenizer implements ITokenizer {
 			Integer.toString(ITerminalSymbols.TokenNameXOR),
 			Integer.toString(ITerminalSymbols.TokenNameXOR_EQUAL) };
 
+	/**
+	 * The keywords and operators that are precomputed for getTokenFromString.
+	 */
+	private static final String[] FIXED_TOKENS = { "break", "case", "catch",
+			"class", "const", "continue", "debugger", "default", "delete",
+			"do", "else", "enum", "export", "extends", "false", "finally",
+			"for", "function", "if", "import", "in", "instanceof", "new",
+			"null", "return", "super", "switch", "this", "throw", "true",
+			"try", "typeof", "var", "void", "while", "with", "{", "}", "(",
+			")", "[", "]", ";", ",", ".", "=", ">", "<", "!", "~", "?", ":",
+			"==", "===", "<=", ">=", "!=", "!==", "&&", "||", "++", "--", "+",
+			"-", "*", "/", "&", "|", "^", "%", "<<", ">>", ">>>", "+=", "-=",
+			"*=", "/=", "&=", "|=", "^=", "%=", "<<=", ">>=", ">>>=" };
+
+	/**
+	 * Lazily created, since tokenizers are serializable.
+	 */
+	private transient volatile CachedTokenClassifier tokenClassifier;
+
 	/**
 	 *
 	 */
@@ -188,7 +214,7 @@ public class JavascriptTokenizer implements ITokenizer {
 			return new FullToken(ITokenizer.SENTENCE_END,
 					ITokenizer.SENTENCE_END);
 		}
-		return getTokenListFromCode(token.toCharArray()).get(1);
+		return getTokenClassifier().getTokenFromString(token);
 	}
 
 	@Override
@@ -225,6 +251,31 @@ public class JavascriptTokenizer implements ITokenizer {
 				.toCharArray());
 	}
 
+	/**
+	 * Return the classifier used for getTokenFromString.
+	 *
+	 * @return
+	 */
+	private CachedTokenClassifier getTokenClassifier() {
+		if (tokenClassifier == null) {
+			tokenClassifier = new CachedTokenClassifier(new ITokenScanner() {
+
+				@Override
+				public FullToken identifierToken(final String token) {
+					return new FullToken(stripTokenIfNeeded(transformToken(
+							ITerminalSymbols.TokenNameIdentifier, token)),
+							IDENTIFIER_ID);
+				}
+
+				@Override
+				public FullToken scanToken(final String token) {
+					return getTokenListFromCode(token.toCharArray()).get(1);
+				}
+			}, IDENTIFIER_ID, Arrays.asList(FIXED_TOKENS), "_$");
+		}
+		return tokenClassifier;
+	}
+
 	/**
 	 * Create the scanner.
 	 *
@@ -253,6 +304,7 @@ public class JavascriptTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final PublicScanner scanner = prepareScanner();
 		final List<String> tokens = Lists.newArrayList();
 		tokens.add(SENTENCE_START);
@@ -274,6 +326,7 @@ public class JavascriptTokenizer implements ITokenizer {
 			}
 		} while (!scanner.atEnd());
 		tokens.add(SENTENCE_END);
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
@@ -291,6 +344,7 @@ public class JavascriptTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final PublicScanner scanner = prepareScanner();
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
 		tokens.put(-1, SENTENCE_START);
@@ -313,6 +367,7 @@ public class JavascriptTokenizer implements ITokenizer {
 			} while (!scanner.atEnd());
 
 		}
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
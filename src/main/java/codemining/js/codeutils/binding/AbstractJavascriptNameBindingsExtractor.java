@@ -118,6 +118,12 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 		return positionToIndex;
 	}
 
+	/**
+	 * The AST extractors of each thread, reused across files and snippets.
+	 */
+	private final ThreadLocal<JavascriptASTExtractor> astExtractors = ThreadLocal
+			.withInitial(this::createExtractor);
+
 	protected JavascriptASTExtractor createExtractor() {
 		return new JavascriptASTExtractor(false);
 	}
@@ -150,13 +156,13 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 	@Override
 	public List<TokenNameBinding> getNameBindings(final File f)
 			throws IOException {
-		final JavascriptASTExtractor ex = createExtractor();
+		final JavascriptASTExtractor ex = astExtractors.get();
 		return getNameBindings(ex.getAST(f), FileUtils.readFileToString(f));
 	}
 
 	@Override
 	public List<TokenNameBinding> getNameBindings(final String code) {
-		final JavascriptASTExtractor ex = createExtractor();
+		final JavascriptASTExtractor ex = astExtractors.get();
 		try {
 			return getNameBindings(ex.getCompilationUnitAstNode(code), code);
 		} catch (final Exception e) {
@@ -167,14 +173,14 @@ public abstract class AbstractJavascriptNameBindingsExtractor extends
 	@Override
 	public ResolvedSourceCode getResolvedSourceCode(final File f)
 			throws IOException {
-		final JavascriptASTExtractor ex = createExtractor();
+		final JavascriptASTExtractor ex = astExtractors.get();
 		return getResolvedSourceCode(FileUtils.readFileToString(f),
 				getNameBindings(ex.getAST(f)));
 	}
 
 	@Override
 	public ResolvedSourceCode getResolvedSourceCode(final String code) {
-		final JavascriptASTExtractor ex = createExtractor();
+		final JavascriptASTExtractor ex = astExtractors.get();
 		try {
 			return getResolvedSourceCode(code,
 					getNameBindings(ex.getCompilationUnitAstNode(code)));
@@ -13,6 +13,8 @@ import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -35,6 +37,9 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 
 	private static final long serialVersionUID = 8826779180772076954L;
 
+	private static final StageMetrics TOKENIZE_METRICS = PipelineMetrics.getStage(
+			"tokenize", "jygments", "tokens");
+
 	public AbstractJygmentsTokenizer(final String fileSuffix)
 			throws ResolutionException {
 		lexer = Lexer.getForFileName("sample." + fileSuffix);
@@ -85,6 +90,7 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 	 */
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final Iterable<Token> tokens = lexer.getTokens(new String(code));
 		final List<String> toks = Lists.newArrayList();
 		toks.add(SENTENCE_START);
@@ -95,6 +101,7 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 			toks.add(getTokenString(tok));
 		}
 		toks.add(SENTENCE_END);
+		TOKENIZE_METRICS.record(start, toks.size());
 		return toks;
 	}
 
@@ -112,6 +119,7 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 	 */
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final Iterable<Token> tokens = lexer.getTokens(new String(code));
 		final SortedMap<Integer, String> tokensWithPos = Maps.newTreeMap();
 		tokensWithPos.put(-1, SENTENCE_START);
@@ -122,6 +130,7 @@ public abstract class AbstractJygmentsTokenizer implements ITokenizer {
 			}
 			tokensWithPos.put(tok.getPos(), getTokenString(tok));
 		}
+		TOKENIZE_METRICS.record(start, tokensWithPos.size());
 		return tokensWithPos;
 	}
 
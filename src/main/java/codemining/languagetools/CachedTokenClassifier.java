@@ -0,0 +1,176 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Map;
+
+import codemining.languagetools.ITokenizer.FullToken;
+import codemining.util.SettingsLoader;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+
+/**
+ * A constant-time replacement for tokenizing a single token string. Keywords
+ * and operators are looked up in a table that is precomputed once, plain
+ * identifiers and decimal integers are recognized by a character class check
+ * and everything else is scanned once and then memoized in a bounded
+ * concurrent cache. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CachedTokenClassifier {
+
+	/**
+	 * The slow path of a tokenizer, used to classify tokens that cannot be
+	 * classified by a character check.
+	 *
+	 */
+	public interface ITokenScanner {
+
+		/**
+		 * Return the token of a string that is known to be a plain identifier.
+		 *
+		 * @param token
+		 * @return
+		 */
+		FullToken identifierToken(final String token);
+
+		/**
+		 * Return the first token of the given string, as the tokenizer would
+		 * have tokenized it.
+		 *
+		 * @param token
+		 * @return
+		 */
+		FullToken scanToken(final String token);
+	}
+
+	/**
+	 * The maximum number of memoized tokens.
+	 */
+	public static final int CACHE_SIZE = (int) SettingsLoader
+			.getNumericSetting("tokenClassifierCacheSize", 100000);
+
+	private final ITokenScanner scanner;
+
+	private final String identifierType;
+
+	private final String integerLiteralType;
+
+	/**
+	 * The precomputed keyword and operator tokens.
+	 */
+	private final Map<String, FullToken> fixedTokens = Maps.newHashMap();
+
+	private final boolean[] identifierStartChars = new boolean[128];
+
+	private final Cache<String, FullToken> memoizedTokens;
+
+	/**
+	 * @param scanner
+	 *            the slow path of the tokenizer
+	 * @param identifierType
+	 *            the type of identifier tokens
+	 * @param fixedTokenCandidates
+	 *            the keywords and operators of the language
+	 * @param extraIdentifierChars
+	 *            any non-alphanumeric chars that can be part of an identifier
+	 */
+	public CachedTokenClassifier(final ITokenScanner scanner,
+			final String identifierType,
+			final Collection<String> fixedTokenCandidates,
+			final String extraIdentifierChars) {
+		this.scanner = checkNotNull(scanner);
+		this.identifierType = checkNotNull(identifierType);
+		memoizedTokens = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+				.build();
+
+		for (char c = 'a'; c <= 'z'; c++) {
+			identifierStartChars[c] = true;
+			identifierStartChars[Character.toUpperCase(c)] = true;
+		}
+		for (final char c : extraIdentifierChars.toCharArray()) {
+			identifierStartChars[c] = true;
+		}
+
+		for (final String candidate : fixedTokenCandidates) {
+			final FullToken token = scanner.scanToken(candidate);
+			// Identifiers need to go through the identifier path
+			if (!token.tokenType.equals(identifierType)) {
+				fixedTokens.put(candidate, token);
+			}
+		}
+		integerLiteralType = scanner.scanToken("1").tokenType;
+	}
+
+	/**
+	 * Return the full token for the given string.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public FullToken getTokenFromString(final String token) {
+		final FullToken fixedToken = fixedTokens.get(token);
+		if (fixedToken != null) {
+			return fixedToken;
+		} else if (isPlainIdentifier(token)) {
+			return scanner.identifierToken(token);
+		} else if (isDecimalInteger(token)) {
+			return new FullToken(token, integerLiteralType);
+		}
+
+		FullToken memoizedToken = memoizedTokens.getIfPresent(token);
+		if (memoizedToken == null) {
+			memoizedToken = scanner.scanToken(token);
+			// Identifiers may be transformed by the tokenizer, don't cache
+			if (!memoizedToken.tokenType.equals(identifierType)) {
+				memoizedTokens.put(token, memoizedToken);
+			}
+		}
+		return memoizedToken;
+	}
+
+	private boolean isDecimalInteger(final String token) {
+		if (token.isEmpty() || token.charAt(0) == '0' && token.length() > 1) {
+			return false;
+		}
+		for (int i = 0; i < token.length(); i++) {
+			if (!isDigit(token.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private boolean isIdentifierStart(final char c) {
+		return c < identifierStartChars.length && identifierStartChars[c];
+	}
+
+	/**
+	 * Return true if the token is an ASCII identifier.
+	 */
+	private boolean isPlainIdentifier(final String token) {
+		if (token.isEmpty() || !isIdentifierStart(token.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < token.length(); i++) {
+			final char c = token.charAt(i);
+			if (!isIdentifierStart(c) && !isDigit(c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
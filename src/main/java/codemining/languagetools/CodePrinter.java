@@ -4,15 +4,18 @@ import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.StringEscapeUtils;
 
 import codemining.languagetools.ITokenizer.FullToken;
 import codemining.util.SettingsLoader;
 
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
 /**
  * Output Java code to HTML with optional coloring. Not thread-safe.
  * 
@@ -21,6 +24,37 @@ import codemining.util.SettingsLoader;
  */
 public class CodePrinter {
 
+	/**
+	 * The key of a cached span style.
+	 */
+	private static final class StyleKey {
+		final Color fontColor;
+		final Color bgColor;
+		final String extraStyle;
+
+		StyleKey(final ColoredToken token) {
+			fontColor = token.fontColor;
+			bgColor = token.bgColor;
+			extraStyle = token.extraStyle;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof StyleKey)) {
+				return false;
+			}
+			final StyleKey other = (StyleKey) obj;
+			return Objects.equal(fontColor, other.fontColor)
+					&& Objects.equal(bgColor, other.bgColor)
+					&& Objects.equal(extraStyle, other.extraStyle);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(fontColor, bgColor, extraStyle);
+		}
+	}
+
 	/**
 	 * The tokenizer used to tokenize code.
 	 */
@@ -42,33 +76,108 @@ public class CodePrinter {
 			+ "font: 14px/1.3 \"Source Code Pro\", \"Fira Mono OT\", monospace;white-space:pre; background-color:rgb(240,240,240);}\n"
 			+ "</style>";
 
+	/**
+	 * The maximum number of cached span styles, before the cache is cleared.
+	 */
+	private static final int MAX_CACHED_STYLES = 4096;
+
+	/**
+	 * A cache of the opening span tags of the token styles.
+	 */
+	private final Map<StyleKey, String> spanStyleCache = Maps.newHashMap();
+
 	public CodePrinter(final ITokenizer tokenizer,
 			final Color documentBackgroundColor) {
 		this.tokenizer = tokenizer;
 		this.documentBackgroundColor = documentBackgroundColor;
 	}
 
-	private void addSlack(final String substring, final StringBuffer buf) {
-		for (final char c : StringEscapeUtils.escapeHtml(substring)
-				.toCharArray()) {
-			if (c == '\n') {
+	private void addSlack(final CharSequence code, final int from,
+			final int to, final Appendable buf) throws IOException {
+		int i = from;
+		while (i < to) {
+			if (code.charAt(i) == '\n') {
 				appendLineDiv(buf, true);
+				i++;
 			} else {
+				i += appendEscaped(code, i, buf);
+			}
+		}
+	}
+
+	/**
+	 * Append the character at the given position HTML-escaped and return the
+	 * number of chars consumed. Characters outside ASCII are written as
+	 * numeric references of their code point.
+	 */
+	private int appendEscaped(final CharSequence text, final int position,
+			final Appendable buf) throws IOException {
+		final char c = text.charAt(position);
+		switch (c) {
+		case '&':
+			buf.append("&amp;");
+			break;
+		case '<':
+			buf.append("&lt;");
+			break;
+		case '>':
+			buf.append("&gt;");
+			break;
+		case '"':
+			buf.append("&quot;");
+			break;
+		default:
+			if (c < 0x80) {
 				buf.append(c);
+			} else {
+				final int codePoint = Character.codePointAt(text, position);
+				buf.append("&#").append(Integer.toString(codePoint))
+						.append(';');
+				return Character.charCount(codePoint);
 			}
 		}
+		return 1;
+	}
 
+	private void appendEscaped(final String token, final Appendable buf)
+			throws IOException {
+		int i = 0;
+		while (i < token.length()) {
+			i += appendEscaped(token, i, buf);
+		}
 	}
 
-	private void appendLineDiv(final StringBuffer buf,
-			final boolean closePrevious) {
+	private void appendLineDiv(final Appendable buf,
+			final boolean closePrevious) throws IOException {
 		if (closePrevious) {
 			buf.append("<br/></div>\n");
 		}
-		buf.append("<div class='line' id='C" + lineNumber + "'>");
+		buf.append("<div class='line' id='C")
+				.append(Integer.toString(lineNumber)).append("'>");
 		lineNumber++;
 	}
 
+	/**
+	 * Return the opening span tag for the style of the given token.
+	 */
+	private String getSpanStyle(final ColoredToken tok) {
+		final StyleKey key = new StyleKey(tok);
+		String style = spanStyleCache.get(key);
+		if (style == null) {
+			style = "<span style='background-color:rgba("
+					+ tok.bgColor.getRed() + "," + tok.bgColor.getGreen() + ","
+					+ tok.bgColor.getBlue() + "," + (ignoreTokBG ? "0" : "1")
+					+ "); color:rgb(" + tok.fontColor.getRed() + ","
+					+ tok.fontColor.getGreen() + "," + tok.fontColor.getBlue()
+					+ "); " + tok.extraStyle + "'>";
+			if (spanStyleCache.size() >= MAX_CACHED_STYLES) {
+				spanStyleCache.clear();
+			}
+			spanStyleCache.put(key, style);
+		}
+		return style;
+	}
+
 	/**
 	 * Return a StringBuffer with colored tokens as specified from the
 	 * coloredTokens. There should be one-to-one correspondence with the actual
@@ -77,44 +186,59 @@ public class CodePrinter {
 	public StringBuffer getHTMLwithColors(
 			final List<ColoredToken> coloredTokens, final File codeFile)
 			throws IOException, InstantiationException, IllegalAccessException {
-		final String code = FileUtils.readFileToString(codeFile);
-		lineNumber = 1;
-
 		final StringBuffer buf = new StringBuffer();
+		writeHTMLwithColors(coloredTokens, codeFile, buf);
+		return buf;
+	}
 
-		final SortedMap<Integer, FullToken> toks = tokenizer
-				.fullTokenListWithPos(code.toCharArray());
+	/**
+	 * Write the HTML of the colored tokens of the given file to the output.
+	 * There should be one-to-one correspondence with the actual tokens.
+	 */
+	public void writeHTMLwithColors(final List<ColoredToken> coloredTokens,
+			final File codeFile, final Appendable out) throws IOException {
+		final String code = FileUtils.readFileToString(codeFile);
+		writeHTMLwithColors(coloredTokens, code,
+				tokenizer.fullTokenListWithPos(code.toCharArray()), out);
+	}
+
+	/**
+	 * Write the HTML of the colored tokens to the output, given the already
+	 * tokenized code. The tokens are as returned by
+	 * ITokenizer.fullTokenListWithPos() and there should be one-to-one
+	 * correspondence with the colored tokens.
+	 */
+	public void writeHTMLwithColors(final List<ColoredToken> coloredTokens,
+			final CharSequence code, final SortedMap<Integer, FullToken> toks,
+			final Appendable out) throws IOException {
+		lineNumber = 1;
 
 		int i = 0;
 		int prevPos = 0;
-		buf.append("<html>\n<head>\n<link href='http://fonts.googleapis.com/css?family=Source+Code+Pro:300,400,500,600,700,800,900' rel='stylesheet' type='text/css'>\n");
-		buf.append(CSS_STYLE);
-		buf.append("</head>\n<body style='background-color:rgb("
-				+ documentBackgroundColor.getRed() + ","
-				+ documentBackgroundColor.getGreen() + ","
-				+ documentBackgroundColor.getBlue() + ")'>");
-		appendLineDiv(buf, false);
+		out.append("<html>\n<head>\n<link href='http://fonts.googleapis.com/css?family=Source+Code+Pro:300,400,500,600,700,800,900' rel='stylesheet' type='text/css'>\n");
+		out.append(CSS_STYLE);
+		out.append("</head>\n<body style='background-color:rgb(")
+				.append(Integer.toString(documentBackgroundColor.getRed()))
+				.append(',')
+				.append(Integer.toString(documentBackgroundColor.getGreen()))
+				.append(',')
+				.append(Integer.toString(documentBackgroundColor.getBlue()))
+				.append(")'>");
+		appendLineDiv(out, false);
 		for (final Entry<Integer, FullToken> entry : toks.entrySet()) {
 			if (i == 0 || entry.getKey() == Integer.MAX_VALUE) {
 				i++;
 				continue;
 			}
-			addSlack(code.substring(prevPos, entry.getKey()), buf);
+			addSlack(code, prevPos, entry.getKey(), out);
 			final ColoredToken tok = coloredTokens.get(i);
 
-			buf.append("<span style='background-color:rgba("
-					+ tok.bgColor.getRed() + "," + tok.bgColor.getGreen() + ","
-					+ tok.bgColor.getBlue() + "," + (ignoreTokBG ? "0" : "1")
-					+ "); color:rgb(" + tok.fontColor.getRed() + ","
-					+ tok.fontColor.getGreen() + "," + tok.fontColor.getBlue()
-					+ "); " + tok.extraStyle + "'>"
-					+ StringEscapeUtils.escapeHtml(entry.getValue().token)
-					+ "</span>");
+			out.append(getSpanStyle(tok));
+			appendEscaped(entry.getValue().token, out);
+			out.append("</span>");
 			i++;
 			prevPos = entry.getKey() + entry.getValue().token.length();
 		}
-		buf.append("</div></body></html>");
-		return buf;
-
+		out.append("</div></body></html>");
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import java.util.List;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Split identifiers into lowercased subtokens on snake_case, camelCase and
+ * digit boundaries, e.g. "getHTTPResponse2_code" to [get, http, response, 2,
+ * code]. Each identifier is scanned once without regular expressions and its
+ * interned subtokens are memoized in a bounded concurrent cache. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class IdentifierSplitter {
+
+	/**
+	 * The maximum number of memoized identifiers.
+	 */
+	public static final int CACHE_SIZE = (int) SettingsLoader
+			.getNumericSetting("subtokenCacheSize", 100000);
+
+	private static final Cache<String, ImmutableList<String>> memoizedSubtokens = CacheBuilder
+			.newBuilder().maximumSize(CACHE_SIZE).build();
+
+	private static final Interner<String> subtokens = Interners
+			.newWeakInterner();
+
+	private static void addCamelCaseParts(final String name, final int start,
+			final int end, final ImmutableList.Builder<String> parts) {
+		int partStart = start;
+		for (int i = start + 1; i < end; i++) {
+			final char c = name.charAt(i);
+			final boolean isUpper = isUpper(c);
+			if ((isUpper || isDigit(c)) && !isUpper(name.charAt(i - 1))
+					|| isUpper && i + 1 < end && isLower(name.charAt(i + 1))) {
+				addPart(name, partStart, i, parts);
+				partStart = i;
+			}
+		}
+		addPart(name, partStart, end, parts);
+	}
+
+	private static void addPart(final String name, final int start,
+			final int end, final ImmutableList.Builder<String> parts) {
+		parts.add(subtokens.intern(name.substring(start, end).toLowerCase()));
+	}
+
+	/**
+	 * Return the lowercased subtokens of the given identifier. Empty parts
+	 * between leading or repeated underscores are kept as empty subtokens,
+	 * trailing underscores are ignored.
+	 *
+	 * @param identifier
+	 * @return
+	 */
+	public static List<String> getSubtokens(final String identifier) {
+		ImmutableList<String> parts = memoizedSubtokens
+				.getIfPresent(identifier);
+		if (parts == null) {
+			parts = split(identifier);
+			memoizedSubtokens.put(identifier, parts);
+		}
+		return parts;
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLower(final char c) {
+		return c >= 'a' && c <= 'z';
+	}
+
+	private static boolean isUpper(final char c) {
+		return c >= 'A' && c <= 'Z';
+	}
+
+	/**
+	 * Split the identifier without memoization.
+	 *
+	 * @param identifier
+	 * @return
+	 */
+	static ImmutableList<String> split(final String identifier) {
+		final ImmutableList.Builder<String> parts = ImmutableList.builder();
+		int end = identifier.length();
+		while (end > 0 && identifier.charAt(end - 1) == '_') {
+			end--;
+		}
+		if (end == 0 && !identifier.isEmpty()) {
+			return parts.build();
+		}
+		int snakeCaseStart = 0;
+		for (int i = 0; i < end; i++) {
+			if (identifier.charAt(i) == '_') {
+				addCamelCaseParts(identifier, snakeCaseStart, i, parts);
+				snakeCaseStart = i + 1;
+			}
+		}
+		addCamelCaseParts(identifier, snakeCaseStart, end, parts);
+		return parts.build();
+	}
+
+	private IdentifierSplitter() {
+		// No instantiations
+	}
+
+}
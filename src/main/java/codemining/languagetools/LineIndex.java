@@ -0,0 +1,177 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.util.Arrays;
+
+/**
+ * An index of the line starts and tab positions of a piece of code, built in
+ * a single pass. Converts between character positions and (line, column) in
+ * O(log n), where n is the number of lines. Lines are 1-based (as in the
+ * Eclipse scanners) and may end in \n, \r or \r\n. Immutable and thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class LineIndex {
+
+	/**
+	 * Return the index of the first element in array[0, length) that is not
+	 * smaller than the key.
+	 */
+	private static int lowerBound(final int[] array, final int length,
+			final int key) {
+		final int idx = Arrays.binarySearch(array, 0, length, key);
+		return idx >= 0 ? idx : -idx - 1;
+	}
+
+	/**
+	 * The position of the first character of each line.
+	 */
+	private final int[] lineStarts;
+
+	private final int nLines;
+
+	/**
+	 * The sorted positions of all the tab characters.
+	 */
+	private final int[] tabPositions;
+
+	private final int nTabs;
+
+	/**
+	 * The sorted positions of all the \n characters.
+	 */
+	private final int[] newlinePositions;
+
+	private final int nNewlines;
+
+	private final int codeLength;
+
+	public LineIndex(final char[] code) {
+		codeLength = code.length;
+		int[] starts = new int[16];
+		int[] tabs = new int[16];
+		int[] newlines = new int[16];
+		int lineCount = 1;
+		int tabCount = 0;
+		int newlineCount = 0;
+		for (int i = 0; i < code.length; i++) {
+			final char c = code[i];
+			if (c == '\t') {
+				if (tabCount == tabs.length) {
+					tabs = Arrays.copyOf(tabs, tabs.length * 2);
+				}
+				tabs[tabCount++] = i;
+			} else if (c == '\n' || c == '\r') {
+				if (c == '\r' && i + 1 < code.length && code[i + 1] == '\n') {
+					continue; // The line ends at the \n
+				}
+				if (c == '\n') {
+					if (newlineCount == newlines.length) {
+						newlines = Arrays.copyOf(newlines, newlines.length * 2);
+					}
+					newlines[newlineCount++] = i;
+				}
+				if (lineCount == starts.length) {
+					starts = Arrays.copyOf(starts, starts.length * 2);
+				}
+				starts[lineCount++] = i + 1;
+			}
+		}
+		lineStarts = starts;
+		nLines = lineCount;
+		tabPositions = tabs;
+		nTabs = tabCount;
+		newlinePositions = newlines;
+		nNewlines = newlineCount;
+	}
+
+	public LineIndex(final String code) {
+		this(code.toCharArray());
+	}
+
+	/**
+	 * Return the column of the given position, where tabs count as
+	 * TokenizerUtils.TAB_INDENT_SIZE characters. The result is identical to
+	 * TokenizerUtils.getColumnOfPosition().
+	 *
+	 * @param position
+	 * @return
+	 */
+	public int getColumnOfPosition(final int position) {
+		checkPositionIndex(position, codeLength);
+		// Find the last \n before the position, or the start of the file
+		final int nlIdx = lowerBound(newlinePositions, nNewlines, position) - 1;
+		final int newLinePosition = nlIdx >= 0 ? newlinePositions[nlIdx] : 0;
+		final int tabCount = lowerBound(tabPositions, nTabs, position)
+				- lowerBound(tabPositions, nTabs, newLinePosition);
+		return position - newLinePosition
+				+ (TokenizerUtils.TAB_INDENT_SIZE - 1) * tabCount;
+	}
+
+	/**
+	 * Return the (1-based) line of the given position.
+	 *
+	 * @param position
+	 * @return
+	 */
+	public int getLineOfPosition(final int position) {
+		checkPositionIndex(position, codeLength);
+		final int idx = Arrays.binarySearch(lineStarts, 0, nLines, position);
+		return idx >= 0 ? idx + 1 : -idx - 1;
+	}
+
+	/**
+	 * Return the position of the first character of the given (1-based) line.
+	 *
+	 * @param line
+	 * @return
+	 */
+	public int getLineStart(final int line) {
+		checkArgument(line >= 1 && line <= nLines, "Line %s does not exist",
+				line);
+		return lineStarts[line - 1];
+	}
+
+	/**
+	 * Return the number of lines.
+	 *
+	 * @return
+	 */
+	public int getNumberOfLines() {
+		return nLines;
+	}
+
+	/**
+	 * Return the position of the given line and (0-based) character offset in
+	 * that line.
+	 *
+	 * @param line
+	 * @param charInLine
+	 * @return
+	 */
+	public int getPosition(final int line, final int charInLine) {
+		final int position = getLineStart(line) + charInLine;
+		checkPositionIndex(position, codeLength);
+		return position;
+	}
+
+	/**
+	 * Return the number of tab characters in the given line before the given
+	 * position.
+	 *
+	 * @param position
+	 * @return
+	 */
+	public int getTabsBeforeInLine(final int position) {
+		final int lineStart = getLineStart(getLineOfPosition(position));
+		return lowerBound(tabPositions, nTabs, position)
+				- lowerBound(tabPositions, nTabs, lineStart);
+	}
+
+}
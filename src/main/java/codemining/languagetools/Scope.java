@@ -1,11 +1,17 @@
 package codemining.languagetools;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.base.Objects;
 import com.google.common.collect.ComparisonChain;
 
 /**
- * A utility class to represent scopes.
- * 
+ * A utility class to represent scopes. The code of a scope is either given as
+ * a string or as a range of a shared {@link SourceBuffer}, in which case it is
+ * only rendered when asked for. Scopes are compared by their code, regardless
+ * of how it is stored; the code hash is precomputed, so that scopes with
+ * different code are usually told apart without comparing their text.
+ *
  */
 public class Scope implements Comparable<Scope> {
 
@@ -13,7 +19,22 @@ public class Scope implements Comparable<Scope> {
 		SCOPE_CLASS, SCOPE_LOCAL, SCOPE_METHOD
 	}
 
-	public final String code;
+	/**
+	 * The source buffer of the code, or null if the code was given as a
+	 * string.
+	 */
+	private final SourceBuffer source;
+
+	/**
+	 * The text that contains the code in [start, start + length).
+	 */
+	private final String text;
+
+	private final int start;
+
+	private final int length;
+
+	private final int codeHash;
 
 	public final ScopeType scopeType;
 
@@ -22,19 +43,57 @@ public class Scope implements Comparable<Scope> {
 	public final int astNodeType;
 	public final int astParentNodeType;
 
+	public Scope(final SourceBuffer source, final int start, final int length,
+			final ScopeType scopeType, final String type,
+			final int astNodeType, final int astParentNodeType) {
+		this.source = source;
+		text = source.getText();
+		this.start = start;
+		this.length = length;
+		codeHash = source.hashRange(start, length);
+		this.scopeType = scopeType;
+		this.type = type;
+		this.astNodeType = astNodeType;
+		this.astParentNodeType = astParentNodeType;
+	}
+
 	public Scope(final String code, final ScopeType scopeType,
 			final String type, final int astNodeType,
 			final int astParentNodeType) {
-		this.code = code;
+		source = null;
+		text = checkNotNull(code);
+		start = 0;
+		length = code.length();
+		codeHash = code.hashCode();
 		this.scopeType = scopeType;
 		this.type = type;
 		this.astNodeType = astNodeType;
 		this.astParentNodeType = astParentNodeType;
 	}
 
+	/**
+	 * Compare the code of the two scopes, as String.compareTo would.
+	 */
+	private int compareCode(final Scope other) {
+		if (text == other.text && start == other.start
+				&& length == other.length) {
+			return 0;
+		}
+		final int minLength = Math.min(length, other.length);
+		for (int i = 0; i < minLength; i++) {
+			final char c = text.charAt(start + i);
+			final char otherC = other.text.charAt(other.start + i);
+			if (c != otherC) {
+				return c - otherC;
+			}
+		}
+		return length - other.length;
+	}
+
 	@Override
 	public int compareTo(final Scope other) {
-		return ComparisonChain.start().compare(code, other.code)
+		return ComparisonChain.start().compare(codeHash, other.codeHash)
+				.compare(this, other, (a, b) -> a.compareCode(b))
 				.compare(scopeType, other.scopeType).compare(type, other.type)
 				.compare(astNodeType, other.astNodeType)
 				.compare(astParentNodeType, other.astParentNodeType).result();
@@ -46,20 +105,57 @@ public class Scope implements Comparable<Scope> {
 			return false;
 		}
 		final Scope other = (Scope) obj;
-		return other.code.equals(code) && other.scopeType == scopeType
+		return other.codeHash == codeHash && other.scopeType == scopeType
 				&& other.astNodeType == astNodeType
 				&& other.astParentNodeType == astParentNodeType
-				&& other.type.equals(type);
+				&& other.type.equals(type) && compareCode(other) == 0;
+	}
+
+	/**
+	 * Return the code of the scope.
+	 *
+	 * @return
+	 */
+	public String getCode() {
+		return source == null ? text : text.substring(start, start + length);
+	}
+
+	/**
+	 * Return the length of the code.
+	 *
+	 * @return
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Return the source buffer of the code, or null if the code was given as
+	 * a string.
+	 *
+	 * @return
+	 */
+	public SourceBuffer getSource() {
+		return source;
+	}
+
+	/**
+	 * Return the start of the code in the source buffer.
+	 *
+	 * @return
+	 */
+	public int getStart() {
+		return start;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(code, scopeType, type, astNodeType,
+		return Objects.hashCode(codeHash, scopeType, type, astNodeType,
 				astParentNodeType);
 	}
 
 	@Override
 	public String toString() {
-		return scopeType + " " + code;
+		return scopeType + " " + getCode();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The source code of a file or snippet, shared by all the {@link Scope}s that
+ * refer to ranges of it, so that scopes do not need to hold copies of their
+ * code. Immutable and thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class SourceBuffer {
+
+	private static final AtomicInteger nextId = new AtomicInteger();
+
+	private final int id;
+
+	private final String text;
+
+	public SourceBuffer(final String text) {
+		this.text = checkNotNull(text);
+		id = nextId.getAndIncrement();
+	}
+
+	/**
+	 * Return the hash of the given range, equal to the String.hashCode() of
+	 * its text.
+	 *
+	 * @param start
+	 * @param length
+	 * @return
+	 */
+	public int hashRange(final int start, final int length) {
+		checkPositionIndexes(start, start + length, text.length());
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Return a unique id of the buffer.
+	 *
+	 * @return
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Return the text of the given range.
+	 *
+	 * @param start
+	 * @param length
+	 * @return
+	 */
+	public String getText(final int start, final int length) {
+		return text.substring(start, start + length);
+	}
+
+	/**
+	 * Return the whole source code.
+	 *
+	 * @return
+	 */
+	public String getText() {
+		return text;
+	}
+
+	public int length() {
+		return text.length();
+	}
+
+}
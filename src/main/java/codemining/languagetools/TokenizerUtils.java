@@ -8,8 +8,7 @@ import static com.google.common.base.Preconditions.checkPositionIndex;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
-
-import org.apache.commons.lang.StringUtils;
+import java.util.function.Supplier;
 
 import codemining.languagetools.ITokenizer.FullToken;
 import codemining.util.SettingsLoader;
@@ -26,7 +25,9 @@ public class TokenizerUtils {
 			.getNumericSetting("tabSize", 4);
 
 	/**
-	 * Return the column of the given position.
+	 * Return the column of the given position. This scans back to the start
+	 * of the line, so when computing the columns of many positions of the
+	 * same code use a {@link LineIndex} instead.
 	 * 
 	 * @param code
 	 * @param position
@@ -34,12 +35,16 @@ public class TokenizerUtils {
 	 */
 	public static int getColumnOfPosition(final String code, final int position) {
 		checkPositionIndex(position, code.length());
-		int newLinePosition = code.substring(0, position).lastIndexOf("\n");
+		int newLinePosition = code.lastIndexOf('\n', position - 1);
 		if (newLinePosition == -1) {
 			newLinePosition = 0; // Start of file.
 		}
-		final int tabCount = StringUtils.countMatches(
-				code.substring(newLinePosition, position), "\t");
+		int tabCount = 0;
+		for (int i = newLinePosition; i < position; i++) {
+			if (code.charAt(i) == '\t') {
+				tabCount++;
+			}
+		}
 		return position - newLinePosition + (TAB_INDENT_SIZE - 1) * tabCount;
 	}
 
@@ -172,4 +177,32 @@ public class TokenizerUtils {
 		return (ITokenizer) Class.forName(tokenizerClass).newInstance();
 	}
 
+	/**
+	 * Return a supplier of new tokenizers of the given class, for code that
+	 * needs one tokenizer per thread. Tokenizers may keep per-call state in
+	 * their fields, so they cannot be shared across threads in general.
+	 * 
+	 * @param tokenizerClass
+	 * @return
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws ClassNotFoundException
+	 */
+	public static Supplier<ITokenizer> tokenizerSupplierForClass(
+			final String tokenizerClass) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException {
+		final Class<?> tokenizerType = Class.forName(tokenizerClass);
+		checkArgument(ITokenizer.class.isAssignableFrom(tokenizerType),
+				"%s is not a tokenizer", tokenizerClass);
+		// Fail early if the class cannot be instantiated
+		tokenizerType.newInstance();
+		return () -> {
+			try {
+				return (ITokenizer) tokenizerType.newInstance();
+			} catch (final InstantiationException | IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+
 }
@@ -5,10 +5,23 @@ package codemining.languagetools.bindings;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.util.SettingsLoader;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
 /**
@@ -19,6 +32,82 @@ import com.google.common.collect.Multimap;
  */
 public abstract class AbstractNameBindingsExtractor {
 
+	private static final Logger LOGGER = Logger
+			.getLogger(AbstractNameBindingsExtractor.class.getName());
+
+	/**
+	 * The number of threads processing batches of snippets.
+	 */
+	public static final int BATCH_THREADS = (int) SettingsLoader
+			.getNumericSetting("bindingBatchThreads", Runtime.getRuntime()
+					.availableProcessors());
+
+	private static ExecutorService batchPool;
+
+	/**
+	 * Return the pool shared by all batches, so that no threads are created
+	 * per batch.
+	 */
+	private static synchronized ExecutorService getBatchPool() {
+		if (batchPool == null) {
+			final AtomicInteger threadId = new AtomicInteger();
+			batchPool = Executors.newFixedThreadPool(BATCH_THREADS, r -> {
+				final Thread thread = new Thread(r, "bindings-batch-"
+						+ threadId.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return batchPool;
+	}
+
+	/**
+	 * Apply the function to all the snippets in parallel, returning the
+	 * results in the order of the snippets, with null for the snippets where
+	 * the function failed.
+	 */
+	private static <R> List<R> mapSnippets(final List<String> snippets,
+			final Function<String, R> function) {
+		final Object[] results = new Object[snippets.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final Runnable worker = () -> {
+			int i;
+			while ((i = next.getAndIncrement()) < snippets.size()) {
+				try {
+					results[i] = function.apply(snippets.get(i));
+				} catch (final RuntimeException e) {
+					LOGGER.fine("Failed to extract bindings of snippet " + i
+							+ ": " + ExceptionUtils.getFullStackTrace(e));
+				}
+			}
+		};
+
+		final int nTasks = Math.min(BATCH_THREADS, snippets.size()) - 1;
+		final List<Future<?>> tasks = Lists.newArrayList();
+		for (int i = 0; i < nTasks; i++) {
+			tasks.add(getBatchPool().submit(worker));
+		}
+		// The calling thread works too, so small batches need no hand-off
+		worker.run();
+		try {
+			for (final Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+
+		@SuppressWarnings("unchecked")
+		final List<R> resultList = (List<R>) Arrays.asList(results);
+		return resultList;
+	}
+
 	public abstract Set<?> getAvailableFeatures();
 
 	/**
@@ -73,6 +162,19 @@ public abstract class AbstractNameBindingsExtractor {
 	 */
 	public abstract List<TokenNameBinding> getNameBindings(final String code);
 
+	/**
+	 * Get the name bindings of a batch of code snippets, processing them in
+	 * parallel.
+	 *
+	 * @param snippets
+	 * @return the bindings of each snippet in the order of the snippets, or
+	 *         null for the snippets that could not be processed.
+	 */
+	public List<List<TokenNameBinding>> getNameBindingsOfSnippets(
+			final List<String> snippets) {
+		return mapSnippets(snippets, this::getNameBindings);
+	}
+
 	/**
 	 * Return a ResolvedSourceCode instance for the given code.
 	 *
@@ -91,5 +193,18 @@ public abstract class AbstractNameBindingsExtractor {
 	 */
 	public abstract ResolvedSourceCode getResolvedSourceCode(final String code);
 
+	/**
+	 * Return a ResolvedSourceCode instance for each of a batch of code
+	 * snippets, processing them in parallel.
+	 *
+	 * @param snippets
+	 * @return the resolved code of each snippet in the order of the snippets,
+	 *         or null for the snippets that could not be processed.
+	 */
+	public List<ResolvedSourceCode> getResolvedSourceCodeOfSnippets(
+			final List<String> snippets) {
+		return mapSnippets(snippets, this::getResolvedSourceCode);
+	}
+
 	public abstract void setActiveFeatures(Set<?> activeFeatures);
 }
@@ -0,0 +1,196 @@
+/**
+ *
+ */
+package codemining.languagetools.bindings;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Interns binding features to ints. A feature is a (kind, value) pair, e.g.
+ * ("inName:", "foo"), and is rendered as the concatenation of the two, so
+ * the pairs that render to the same string get the same id. Looking up a
+ * feature that is already interned does not allocate. Thread-safe.
+ * <p>
+ * The shared dictionary is scoped to an extraction run, see {@link #reset()},
+ * and is replaced by an empty one once it holds {@link #MAX_FEATURES}, so that
+ * it does not grow forever in a long-running process. A {@link FeatureSet}
+ * keeps the dictionary it was built with, so it is not affected.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class FeatureDictionary {
+
+	/**
+	 * The number of features at which the shared dictionary is replaced.
+	 */
+	public static final int MAX_FEATURES = (int) SettingsLoader
+			.getNumericSetting("maxInternedFeatures", 1 << 20);
+
+	private static volatile FeatureDictionary current = new FeatureDictionary();
+
+	/**
+	 * Return the dictionary shared by all extractors.
+	 *
+	 * @return
+	 */
+	public static FeatureDictionary getInstance() {
+		return getInstance(MAX_FEATURES);
+	}
+
+	static FeatureDictionary getInstance(final int maxFeatures) {
+		final FeatureDictionary dictionary = current;
+		if (dictionary.size() < maxFeatures) {
+			return dictionary;
+		}
+		synchronized (FeatureDictionary.class) {
+			if (current == dictionary) {
+				current = new FeatureDictionary();
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Replace the shared dictionary by an empty one, e.g. at the start of an
+	 * extraction run. The old one is freed with the sets built with it.
+	 */
+	public static synchronized void reset() {
+		current = new FeatureDictionary();
+	}
+
+	/**
+	 * The ids per kind and value.
+	 */
+	private final ConcurrentMap<String, ConcurrentMap<String, Integer>> ids = Maps
+			.newConcurrentMap();
+
+	/**
+	 * The ids per kind and int value.
+	 */
+	private final ConcurrentMap<String, ConcurrentMap<Integer, Integer>> intIds = Maps
+			.newConcurrentMap();
+
+	/**
+	 * The ids of the rendered features.
+	 */
+	private final ConcurrentMap<String, Integer> featureIds = Maps
+			.newConcurrentMap();
+
+	/**
+	 * The rendered features by id. Replaced, never modified, when it grows.
+	 */
+	private volatile String[] features = new String[1024];
+
+	private volatile int size = 0;
+
+	FeatureDictionary() {
+	}
+
+	/**
+	 * Return the rendered feature of the given id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public String getFeature(final int id) {
+		return features[id];
+	}
+
+	/**
+	 * Return the id of the given (kind, value) feature, interning it if
+	 * necessary.
+	 *
+	 * @param kind
+	 * @param value
+	 * @return
+	 */
+	public int getId(final String kind, final int value) {
+		ConcurrentMap<Integer, Integer> kindIds = intIds.get(kind);
+		if (kindIds == null) {
+			kindIds = intIds.computeIfAbsent(kind,
+					k -> Maps.<Integer, Integer> newConcurrentMap());
+		}
+		final Integer id = kindIds.get(value);
+		if (id != null) {
+			return id;
+		}
+		final int newId = intern(kind + value);
+		kindIds.put(value, newId);
+		return newId;
+	}
+
+	/**
+	 * Return the id of the given (kind, value) feature, interning it if
+	 * necessary.
+	 *
+	 * @param kind
+	 * @param value
+	 * @return
+	 */
+	public int getId(final String kind, final String value) {
+		ConcurrentMap<String, Integer> kindIds = ids.get(kind);
+		if (kindIds == null) {
+			kindIds = ids.computeIfAbsent(kind,
+					k -> Maps.<String, Integer> newConcurrentMap());
+		}
+		final Integer id = kindIds.get(value);
+		if (id != null) {
+			return id;
+		}
+		final int newId = intern(kind.isEmpty() ? value : kind + value);
+		kindIds.put(value, newId);
+		return newId;
+	}
+
+	/**
+	 * Return the id of the given rendered feature, interning it if necessary.
+	 *
+	 * @param feature
+	 * @return
+	 */
+	public int getId(final String feature) {
+		return getId("", feature);
+	}
+
+	/**
+	 * Return the id of the given rendered feature, or -1 if it has never been
+	 * interned.
+	 *
+	 * @param feature
+	 * @return
+	 */
+	public int getIdIfPresent(final String feature) {
+		final Integer id = featureIds.get(feature);
+		return id == null ? -1 : id;
+	}
+
+	private synchronized int intern(final String feature) {
+		final Integer id = featureIds.get(feature);
+		if (id != null) {
+			return id;
+		}
+		if (size == features.length) {
+			features = Arrays.copyOf(features, 2 * size);
+		}
+		features[size] = feature;
+		// Published after the feature is stored, so readers of an id see it
+		featureIds.put(feature, size);
+		return size++;
+	}
+
+	/**
+	 * Return the number of interned features.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ *
+ */
+package codemining.languagetools.bindings;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Sets;
+
+/**
+ * An immutable set of binding features, stored as the sorted ids of a
+ * {@link FeatureDictionary}. Features are rendered to strings only when
+ * iterated, e.g. during serialization, and are iterated in string order.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class FeatureSet extends AbstractSet<String> implements
+		Serializable {
+
+	/**
+	 * Collects the features of a binding. Not thread-safe.
+	 */
+	public static final class Builder {
+
+		private final FeatureDictionary dictionary;
+
+		private int[] ids = new int[16];
+
+		private int size = 0;
+
+		public Builder() {
+			this(FeatureDictionary.getInstance());
+		}
+
+		public Builder(final FeatureDictionary dictionary) {
+			this.dictionary = dictionary;
+		}
+
+		private void add(final int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * size);
+			}
+			ids[size++] = id;
+		}
+
+		/**
+		 * Add a (kind, value) feature.
+		 */
+		public void add(final String kind, final int value) {
+			add(dictionary.getId(kind, value));
+		}
+
+		/**
+		 * Add a (kind, value) feature.
+		 */
+		public void add(final String kind, final String value) {
+			add(dictionary.getId(kind, value));
+		}
+
+		/**
+		 * Add a feature without a kind.
+		 */
+		public void add(final String feature) {
+			add(dictionary.getId(feature));
+		}
+
+		/**
+		 * Add all the features of the given set.
+		 */
+		public void addAll(final FeatureSet features) {
+			if (features.dictionary == dictionary) {
+				for (final int id : features.ids) {
+					add(id);
+				}
+			} else {
+				for (final String feature : features) {
+					add(feature);
+				}
+			}
+		}
+
+		/**
+		 * Add a (kind, value) feature for each of the values.
+		 */
+		public void addAll(final String kind, final Collection<String> values) {
+			for (final String value : values) {
+				add(kind, value);
+			}
+		}
+
+		public FeatureSet build() {
+			final int[] sorted = Arrays.copyOf(ids, size);
+			Arrays.sort(sorted);
+			int nUnique = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (i == 0 || sorted[i] != sorted[i - 1]) {
+					sorted[nUnique++] = sorted[i];
+				}
+			}
+			return new FeatureSet(dictionary,
+					nUnique == sorted.length ? sorted : Arrays.copyOf(sorted,
+							nUnique));
+		}
+	}
+
+	private static final long serialVersionUID = -3393312009541626155L;
+
+	private final transient FeatureDictionary dictionary;
+
+	private final int[] ids;
+
+	private FeatureSet(final FeatureDictionary dictionary, final int[] ids) {
+		this.dictionary = dictionary;
+		this.ids = ids;
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		if (!(o instanceof String)) {
+			return false;
+		}
+		final int id = dictionary.getIdIfPresent((String) o);
+		return id >= 0 && containsId(id);
+	}
+
+	/**
+	 * Return true if the set contains the feature with the given id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public boolean containsId(final int id) {
+		return Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (o instanceof FeatureSet
+				&& ((FeatureSet) o).dictionary == dictionary) {
+			return Arrays.equals(ids, ((FeatureSet) o).ids);
+		}
+		return super.equals(o);
+	}
+
+	/**
+	 * Return the sorted ids of the features.
+	 *
+	 * @return
+	 */
+	public int[] getIds() {
+		return ids.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		// Consistent with the other sets of strings
+		return super.hashCode();
+	}
+
+	/**
+	 * Iterate over the features in string order. Unlike the order of the ids,
+	 * it does not depend on the order in which the features were interned, so
+	 * the output is the same across runs and threads.
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		final String[] features = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			features[i] = dictionary.getFeature(ids[i]);
+		}
+		Arrays.sort(features);
+		return Iterators.forArray(features);
+	}
+
+	@Override
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Serialize as strings, since ids are specific to a dictionary.
+	 */
+	private Object writeReplace() {
+		return Sets.newHashSet(this);
+	}
+
+}
@@ -33,7 +33,7 @@ public class TokenNameBinding implements Serializable {
 	public final Set<Integer> nameIndexes;
 
 	/**
-	 * Features of the binding
+	 * Features of the binding, usually a compact {@link FeatureSet}.
 	 */
 	public final Set<String> features;
 
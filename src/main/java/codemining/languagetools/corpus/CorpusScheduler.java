@@ -0,0 +1,239 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Schedule per-file corpus jobs across worker threads, longest job first.
+ * The cost of each file is predicted from the time it took in previous runs
+ * (if a cost file is used) or otherwise from its size. Idle workers take the
+ * most expensive remaining file, so that a few huge files do not end up at
+ * the tail of the run. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CorpusScheduler {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(CorpusScheduler.class.getName());
+
+	/**
+	 * The number of worker threads. By default, the cores are divided among
+	 * the shards running on this machine.
+	 */
+	public static final int N_THREADS = (int) SettingsLoader.getNumericSetting(
+			"corpusThreads", Math.max(1, Runtime.getRuntime()
+					.availableProcessors() / CorpusShard.getNumberOfShards()));
+
+	/**
+	 * The file where the per-file times of previous runs are stored. Empty for
+	 * none.
+	 */
+	public static final String COST_FILE = SettingsLoader.getStringSetting(
+			"corpusCostFile", "");
+
+	private static CorpusScheduler defaultScheduler;
+
+	/**
+	 * Return the scheduler configured from the settings.
+	 *
+	 * @return
+	 */
+	public static synchronized CorpusScheduler getDefault() {
+		if (defaultScheduler == null) {
+			defaultScheduler = new CorpusScheduler(N_THREADS,
+					COST_FILE.isEmpty() ? null : new File(COST_FILE));
+		}
+		return defaultScheduler;
+	}
+
+	private final int nThreads;
+
+	private final File costFile;
+
+	/**
+	 * The time in ms each file took, from the cost file and this run.
+	 */
+	private final ConcurrentMap<String, Long> measuredCosts = Maps
+			.newConcurrentMap();
+
+	/**
+	 * @param nThreads
+	 *            the number of worker threads
+	 * @param costFile
+	 *            the file where per-file times are read from and stored, or
+	 *            null
+	 */
+	public CorpusScheduler(final int nThreads, final File costFile) {
+		checkArgument(nThreads > 0);
+		this.nThreads = nThreads;
+		this.costFile = costFile;
+		if (costFile != null && costFile.exists()) {
+			try {
+				for (final String line : FileUtils.readLines(costFile, "UTF-8")) {
+					final String[] parts = line.split("\t");
+					if (parts.length == 2) {
+						measuredCosts.put(parts[0], Long.parseLong(parts[1]));
+					}
+				}
+			} catch (final IOException | NumberFormatException e) {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			}
+		}
+	}
+
+	/**
+	 * Apply the task to all files and return the results in the order of the
+	 * input files. Unchecked exceptions of the task are rethrown.
+	 *
+	 * @param files
+	 * @param task
+	 * @return
+	 */
+	public <R> List<R> map(final Collection<File> files,
+			final Function<File, R> task) {
+		final List<File> inputFiles = Lists.newArrayList(files);
+		final AtomicReferenceArray<R> results = new AtomicReferenceArray<R>(
+				inputFiles.size());
+		final Queue<Integer> remaining = new ConcurrentLinkedQueue<Integer>(
+				schedule(inputFiles));
+
+		final ExecutorService pool = Executors.newFixedThreadPool(Math.min(
+				nThreads, Math.max(inputFiles.size(), 1)));
+		try {
+			final List<Future<?>> workers = Lists.newArrayList();
+			for (int i = 0; i < nThreads && i < inputFiles.size(); i++) {
+				workers.add(pool.submit(() -> {
+					Integer next;
+					while ((next = remaining.poll()) != null) {
+						final File file = inputFiles.get(next);
+						final long start = System.currentTimeMillis();
+						results.set(next, task.apply(file));
+						measuredCosts.put(file.getAbsolutePath(),
+								System.currentTimeMillis() - start);
+					}
+				}));
+			}
+			for (final Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		saveCosts();
+		final List<R> resultList = Lists.newArrayListWithCapacity(inputFiles
+				.size());
+		for (int i = 0; i < inputFiles.size(); i++) {
+			resultList.add(results.get(i));
+		}
+		return resultList;
+	}
+
+	/**
+	 * Return the predicted cost of each file. Files seen in previous runs
+	 * cost the time they took, while the rest are estimated from their size
+	 * and the average time per byte of the files seen.
+	 *
+	 * @param files
+	 * @return
+	 */
+	double[] predictCosts(final List<File> files) {
+		final long[] sizes = new long[files.size()];
+		long knownTime = 0;
+		long knownBytes = 0;
+		for (int i = 0; i < files.size(); i++) {
+			sizes[i] = files.get(i).length();
+			final Long time = measuredCosts.get(files.get(i).getAbsolutePath());
+			if (time != null) {
+				knownTime += time;
+				knownBytes += sizes[i];
+			}
+		}
+		final boolean useTimes = knownBytes > 0 && knownTime > 0;
+		final double timePerByte = useTimes ? ((double) knownTime)
+				/ knownBytes : 1;
+
+		final double[] costs = new double[files.size()];
+		for (int i = 0; i < files.size(); i++) {
+			final Long time = measuredCosts.get(files.get(i).getAbsolutePath());
+			costs[i] = useTimes && time != null ? time : sizes[i]
+					* timePerByte;
+		}
+		return costs;
+	}
+
+	private synchronized void saveCosts() {
+		if (costFile == null) {
+			return;
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (final Map.Entry<String, Long> entry : measuredCosts.entrySet()) {
+			sb.append(entry.getKey()).append('\t').append(entry.getValue())
+					.append('\n');
+		}
+		try {
+			FileUtils.writeStringToFile(costFile, sb.toString(), "UTF-8");
+		} catch (final IOException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+		}
+	}
+
+	/**
+	 * Return the indexes of the given files in the order they should be
+	 * processed, most expensive first.
+	 *
+	 * @param files
+	 * @return
+	 */
+	public List<Integer> schedule(final List<File> files) {
+		final double[] costs = predictCosts(files);
+		final List<Integer> order = Lists.newArrayListWithCapacity(files
+				.size());
+		for (int i = 0; i < files.size(); i++) {
+			order.add(i);
+		}
+		order.sort(Comparator.comparingDouble((final Integer i) -> -costs[i])
+				.thenComparing(i -> i));
+		return order;
+	}
+
+}
@@ -0,0 +1,152 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+
+/**
+ * Select the files of a corpus shard. A file belongs to a shard depending
+ * only on the hash of its path relative to the corpus directory, so shards
+ * are the same across runs and machines. A process runs as a shard when the
+ * {@value #SHARD_PROPERTY} system property is set to
+ * &lt;shardIndex&gt;/&lt;numberOfShards&gt;, otherwise it processes all the
+ * files. When the {@value #FILE_LIST_PROPERTY} system property names a file
+ * listing absolute paths, only the listed files are selected, e.g. the
+ * near-duplicate representatives that {@link ShardedRunner} computed once for
+ * the whole corpus.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class CorpusShard {
+
+	public static final String SHARD_PROPERTY = "codemining.shard";
+
+	public static final String FILE_LIST_PROPERTY = "codemining.shardFiles";
+
+	/**
+	 * Return the number of shards, or 1 if this process is not a shard.
+	 *
+	 * @return
+	 */
+	public static int getNumberOfShards() {
+		final String shard = System.getProperty(SHARD_PROPERTY);
+		return shard == null ? 1 : parse(shard)[1];
+	}
+
+	/**
+	 * Return the relative path of the file in the base directory, with '/'
+	 * separators.
+	 *
+	 * @param file
+	 * @param baseDir
+	 * @return
+	 */
+	public static String getRelativePath(final File file, final File baseDir) {
+		final String relativePath = baseDir.getAbsoluteFile().toPath()
+				.relativize(file.getAbsoluteFile().toPath()).toString();
+		return relativePath.replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Return true if the files to select are restricted to a precomputed
+	 * list.
+	 *
+	 * @return
+	 */
+	public static boolean hasFileList() {
+		return System.getProperty(FILE_LIST_PROPERTY) != null;
+	}
+
+	/**
+	 * Return true if this process runs as a shard.
+	 *
+	 * @return
+	 */
+	public static boolean isSharded() {
+		return System.getProperty(SHARD_PROPERTY) != null;
+	}
+
+	private static int[] parse(final String shard) {
+		final String[] parts = shard.split("/");
+		checkArgument(parts.length == 2, "Shard should be <index>/<total>: "
+				+ shard);
+		final int index = Integer.parseInt(parts[0]);
+		final int total = Integer.parseInt(parts[1]);
+		checkArgument(index >= 0 && index < total, "Invalid shard " + shard);
+		return new int[] { index, total };
+	}
+
+	/**
+	 * Return the files of the current shard, or all the files if this process
+	 * is not a shard.
+	 *
+	 * @param files
+	 * @param baseDir
+	 *            the corpus directory
+	 * @return
+	 */
+	public static List<File> select(final Collection<File> files,
+			final File baseDir) {
+		Collection<File> selected = files;
+		if (hasFileList()) {
+			final Set<String> listed;
+			try {
+				listed = Sets.newHashSet(FileUtils.readLines(new File(
+						System.getProperty(FILE_LIST_PROPERTY)), "UTF-8"));
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			selected = files.stream()
+					.filter(f -> listed.contains(f.getAbsolutePath()))
+					.collect(Collectors.toList());
+		}
+
+		final String shard = System.getProperty(SHARD_PROPERTY);
+		if (shard == null) {
+			return Lists.newArrayList(selected);
+		}
+		final int[] shardSpec = parse(shard);
+		return selected.stream()
+				.filter(f -> shardOf(f, baseDir, shardSpec[1]) == shardSpec[0])
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Return the shard of the given file.
+	 *
+	 * @param file
+	 * @param baseDir
+	 *            the corpus directory
+	 * @param nShards
+	 * @return
+	 */
+	public static int shardOf(final File file, final File baseDir,
+			final int nShards) {
+		final int hash = Hashing.murmur3_32()
+				.hashString(getRelativePath(file, baseDir),
+						StandardCharsets.UTF_8).asInt();
+		return Math.floorMod(hash, nShards);
+	}
+
+	private CorpusShard() {
+		// No instantiations
+	}
+
+}
@@ -0,0 +1,451 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Checkpoint the output of a long-running extraction. Results are written in
+ * shard files of a checkpoint directory and a progress journal records the
+ * input files of each completed shard, so that a restarted extraction can
+ * skip the files already done. When the extraction finishes, the shards are
+ * merged into a single JSON array, ordered by input path regardless of the
+ * order the files were done in, and a marker records that the output is
+ * complete. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ * @param <T>
+ *            the type of the extracted results
+ */
+public class ExtractionCheckpoint<T> {
+
+	/**
+	 * Reads the (input path, result) pairs of a shard one at a time.
+	 */
+	private static final class ShardCursor {
+		final JsonParser parser = new JsonParser();
+
+		final JsonReader reader;
+
+		String path;
+
+		JsonElement result;
+
+		ShardCursor(final File shard) throws IOException {
+			reader = new JsonReader(Files.newBufferedReader(shard.toPath(),
+					StandardCharsets.UTF_8));
+			reader.beginArray();
+		}
+
+		/**
+		 * Read the next pair, returning false at the end of the shard.
+		 */
+		boolean next() throws IOException {
+			if (!reader.hasNext()) {
+				reader.endArray();
+				return false;
+			}
+			reader.beginArray();
+			path = reader.nextString();
+			result = parser.parse(reader);
+			reader.endArray();
+			return true;
+		}
+	}
+
+	private static final Logger LOGGER = Logger
+			.getLogger(ExtractionCheckpoint.class.getName());
+
+	public static final String JOURNAL_FILENAME = "progress.journal";
+
+	/**
+	 * The suffix of the marker written next to a complete output.
+	 */
+	public static final String DONE_SUFFIX = ".done";
+
+	private static final StageMetrics SERIALIZE_METRICS = PipelineMetrics
+			.getStage("serialize", "json", "results");
+
+	private static final String SHARD_PREFIX = "shard-";
+
+	private static final String TMP_PREFIX = "tmp-";
+
+	private static final String MERGE_PREFIX = "merge-";
+
+	/**
+	 * The first field of the journal record that commits a shard.
+	 */
+	private static final String COMMIT_RECORD = "#commit";
+
+	/**
+	 * The maximum number of shards merged at once, to bound the open files.
+	 */
+	private static final int MAX_MERGE_FAN_IN = 64;
+
+	/**
+	 * Return the marker that {@link #mergeTo(File)} writes once the output
+	 * file is complete.
+	 *
+	 * @param outputFile
+	 * @return
+	 */
+	public static File getDoneMarker(final File outputFile) {
+		return new File(outputFile.getAbsolutePath() + DONE_SUFFIX);
+	}
+
+	/**
+	 * Return true if the output file has been completely written by
+	 * {@link #mergeTo(File)}.
+	 *
+	 * @param outputFile
+	 * @return
+	 */
+	public static boolean isMerged(final File outputFile) {
+		return outputFile.exists() && getDoneMarker(outputFile).exists();
+	}
+
+	private final File checkpointDir;
+
+	private final File journal;
+
+	private final int shardSize;
+
+	private final Gson gson = new Gson();
+
+	/**
+	 * The shards listed in the journal, in the order they were written.
+	 */
+	private final List<String> completedShards = Lists.newArrayList();
+
+	private final Set<String> completedFiles = Sets.newHashSet();
+
+	private final List<String> pendingFiles = Lists.newArrayList();
+
+	/**
+	 * The pending results by input path, sorted so that each shard is.
+	 */
+	private final SortedMap<String, T> pendingResults = Maps.newTreeMap();
+
+	private int nextShardId = 0;
+
+	/**
+	 * Open the checkpoint at the given directory, resuming from any progress
+	 * recorded in its journal.
+	 *
+	 * @param checkpointDir
+	 * @param shardSize
+	 *            the number of input files per shard
+	 * @throws IOException
+	 */
+	public ExtractionCheckpoint(final File checkpointDir, final int shardSize)
+			throws IOException {
+		checkArgument(shardSize > 0);
+		this.checkpointDir = checkpointDir;
+		this.shardSize = shardSize;
+		journal = new File(checkpointDir, JOURNAL_FILENAME);
+		FileUtils.forceMkdir(checkpointDir);
+		if (journal.exists()) {
+			readJournal();
+		}
+
+		// Shards not in the journal were interrupted before completion
+		final File[] shards = checkpointDir.listFiles((dir, name) -> name
+				.startsWith(SHARD_PREFIX)
+				|| name.startsWith(TMP_PREFIX)
+				|| name.startsWith(MERGE_PREFIX));
+		for (final File shard : shards) {
+			if (!completedShards.contains(shard.getName())) {
+				LOGGER.info("Removing incomplete shard " + shard);
+				FileUtils.forceDelete(shard);
+			}
+		}
+	}
+
+	/**
+	 * Record the result of the given input file. A null result marks the
+	 * file as done without any output.
+	 *
+	 * @param inputFile
+	 * @param result
+	 * @throws IOException
+	 */
+	public synchronized void add(final File inputFile, final T result)
+			throws IOException {
+		final String path = inputFile.getAbsolutePath();
+		pendingFiles.add(path);
+		if (result != null) {
+			pendingResults.put(path, result);
+		}
+		if (pendingFiles.size() >= shardSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Delete the checkpoint directory.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void delete() throws IOException {
+		FileUtils.deleteDirectory(checkpointDir);
+	}
+
+	/**
+	 * Write the pending results to a new shard and record its input files in
+	 * the journal, followed by a record that commits the shard. Both are
+	 * synced to disk before the files count as done.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		if (pendingFiles.isEmpty()) {
+			return;
+		}
+		final long start = PipelineMetrics.startTimer();
+		final String shardName = String.format(SHARD_PREFIX + "%06d.json",
+				nextShardId);
+		final File shard = new File(checkpointDir, shardName);
+		final File tmpShard = new File(checkpointDir, TMP_PREFIX + shardName);
+		try (final FileOutputStream out = new FileOutputStream(tmpShard)) {
+			final JsonWriter writer = new JsonWriter(new BufferedWriter(
+					new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+			writer.beginArray();
+			for (final Map.Entry<String, T> result : pendingResults.entrySet()) {
+				writer.beginArray();
+				writer.value(result.getKey());
+				gson.toJson(result.getValue(), result.getValue().getClass(),
+						writer);
+				writer.endArray();
+			}
+			writer.endArray();
+			writer.flush();
+			out.getFD().sync();
+		}
+		Files.move(tmpShard.toPath(), shard.toPath(),
+				StandardCopyOption.ATOMIC_MOVE);
+
+		// The shard is complete only once it is committed in the journal
+		final StringBuilder entry = new StringBuilder();
+		for (final String path : pendingFiles) {
+			entry.append(shardName).append('\t').append(path).append('\n');
+		}
+		entry.append(COMMIT_RECORD).append('\t').append(shardName)
+				.append('\t').append(pendingFiles.size()).append('\n');
+		try (final FileOutputStream out = new FileOutputStream(journal, true)) {
+			out.write(entry.toString().getBytes(StandardCharsets.UTF_8));
+			out.getFD().sync();
+		}
+
+		SERIALIZE_METRICS.record(start, pendingResults.size());
+		completedShards.add(shardName);
+		completedFiles.addAll(pendingFiles);
+		nextShardId++;
+		pendingFiles.clear();
+		pendingResults.clear();
+	}
+
+	/**
+	 * Return the paths of the input files already done.
+	 *
+	 * @return
+	 */
+	public synchronized Set<String> getCompletedFiles() {
+		return Sets.newHashSet(completedFiles);
+	}
+
+	/**
+	 * Return true if the given input file has been done.
+	 *
+	 * @param inputFile
+	 * @return
+	 */
+	public synchronized boolean isCompleted(final File inputFile) {
+		return completedFiles.contains(inputFile.getAbsolutePath());
+	}
+
+	/**
+	 * Merge the sorted shards, each an array of (input path, result) pairs,
+	 * into the writer by input path. The pairs are written if keepPaths is
+	 * true and only the results otherwise.
+	 */
+	private void mergeShards(final List<File> shards,
+			final JsonWriter writer, final boolean keepPaths)
+			throws IOException {
+		final PriorityQueue<ShardCursor> cursors = new PriorityQueue<ShardCursor>(
+				Math.max(shards.size(), 1),
+				(c1, c2) -> c1.path.compareTo(c2.path));
+		final List<ShardCursor> opened = Lists.newArrayList();
+		try {
+			for (final File shard : shards) {
+				final ShardCursor cursor = new ShardCursor(shard);
+				opened.add(cursor);
+				if (cursor.next()) {
+					cursors.add(cursor);
+				}
+			}
+			while (!cursors.isEmpty()) {
+				final ShardCursor cursor = cursors.poll();
+				if (keepPaths) {
+					writer.beginArray();
+					writer.value(cursor.path);
+				}
+				gson.toJson(cursor.result, writer);
+				if (keepPaths) {
+					writer.endArray();
+				}
+				if (cursor.next()) {
+					cursors.add(cursor);
+				}
+			}
+		} finally {
+			for (final ShardCursor cursor : opened) {
+				cursor.reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Flush any pending results and merge all the shards into a single JSON
+	 * array in the output file, ordered by input path. The output file is
+	 * replaced only after the merge succeeds, after which its done marker is
+	 * written.
+	 *
+	 * @param outputFile
+	 * @throws IOException
+	 */
+	public synchronized void mergeTo(final File outputFile) throws IOException {
+		flush();
+		final File doneMarker = getDoneMarker(outputFile);
+		Files.deleteIfExists(doneMarker.toPath());
+		final File tmpOutput = new File(outputFile.getAbsolutePath() + ".tmp");
+		final List<File> intermediateShards = Lists.newArrayList();
+		try {
+			List<File> shards = Lists.newArrayList();
+			for (final String shardName : completedShards) {
+				shards.add(new File(checkpointDir, shardName));
+			}
+			// Merge in rounds, so that only a few shards are open at a time
+			while (shards.size() > MAX_MERGE_FAN_IN) {
+				final List<File> merged = Lists.newArrayList();
+				for (final List<File> group : Lists.partition(shards,
+						MAX_MERGE_FAN_IN)) {
+					final File mergedShard = new File(checkpointDir,
+							MERGE_PREFIX + intermediateShards.size() + ".json");
+					intermediateShards.add(mergedShard);
+					try (final JsonWriter writer = new JsonWriter(
+							Files.newBufferedWriter(mergedShard.toPath(),
+									StandardCharsets.UTF_8))) {
+						writer.beginArray();
+						mergeShards(group, writer, true);
+						writer.endArray();
+					}
+					merged.add(mergedShard);
+				}
+				shards = merged;
+			}
+
+			try (final JsonWriter writer = new JsonWriter(
+					Files.newBufferedWriter(tmpOutput.toPath(),
+							StandardCharsets.UTF_8))) {
+				writer.beginArray();
+				mergeShards(shards, writer, false);
+				writer.endArray();
+			}
+		} finally {
+			for (final File mergedShard : intermediateShards) {
+				Files.deleteIfExists(mergedShard.toPath());
+			}
+		}
+		Files.move(tmpOutput.toPath(), outputFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		FileUtils.writeStringToFile(doneMarker, completedFiles.size()
+				+ " input files\n", "UTF-8");
+	}
+
+	/**
+	 * Read the journal, where each shard is a line per input file followed by
+	 * a commit record with the shard name and its number of files. Shards
+	 * without a complete commit record were interrupted while being recorded
+	 * and are ignored.
+	 */
+	private void readJournal() throws IOException {
+		final String content = FileUtils.readFileToString(journal, "UTF-8");
+		// A last line without its newline was interrupted while appended
+		final int end = content.lastIndexOf('\n') + 1;
+		boolean isClean = end == content.length();
+
+		String shardName = null;
+		final List<String> shardFiles = Lists.newArrayList();
+		final StringBuilder committed = new StringBuilder();
+		final StringBuilder uncommitted = new StringBuilder();
+		for (final String line : content.substring(0, end).split("\n")) {
+			final int tabPos = line.indexOf('\t');
+			if (line.startsWith(COMMIT_RECORD + '\t')) {
+				final String[] fields = line.split("\t");
+				if (fields.length == 3 && fields[1].equals(shardName)
+						&& fields[2].equals(Integer.toString(shardFiles.size()))
+						&& new File(checkpointDir, shardName).exists()) {
+					completedShards.add(shardName);
+					completedFiles.addAll(shardFiles);
+					committed.append(uncommitted).append(line).append('\n');
+				} else {
+					isClean = false;
+				}
+				shardName = null;
+				shardFiles.clear();
+				uncommitted.setLength(0);
+			} else if (line.startsWith(SHARD_PREFIX)
+					&& tabPos > 0
+					&& (shardName == null || shardName.equals(line.substring(
+							0, tabPos)))) {
+				shardName = line.substring(0, tabPos);
+				shardFiles.add(line.substring(tabPos + 1));
+				uncommitted.append(line).append('\n');
+			} else if (!line.isEmpty()) {
+				isClean = false;
+				shardName = null;
+				shardFiles.clear();
+				uncommitted.setLength(0);
+			}
+		}
+		if (!isClean || !shardFiles.isEmpty()) {
+			// Drop the interrupted entries, since their shard will be redone
+			FileUtils.writeStringToFile(journal, committed.toString(), "UTF-8");
+		}
+		nextShardId = completedShards.size();
+		LOGGER.info("Resuming from " + completedShards.size() + " shards with "
+				+ completedFiles.size() + " files done");
+	}
+
+}
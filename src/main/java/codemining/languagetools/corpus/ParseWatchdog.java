@@ -0,0 +1,294 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Enforce per-file time and size budgets on a processing stage (e.g. parsing,
+ * tokenizing or binding). Files over the size budget, if any, are not
+ * processed, while tasks that run over the time budget are interrupted and
+ * abandoned. In both cases the file is quarantined: it is recorded (optionally
+ * in a quarantine file) and can be skipped on later runs. Since abandoned
+ * tasks may keep running, no more work is accepted once too many of them are
+ * still running. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ParseWatchdog {
+
+	private static final Logger LOGGER = Logger.getLogger(ParseWatchdog.class
+			.getName());
+
+	public static final long TIME_BUDGET_MS = (long) SettingsLoader
+			.getNumericSetting("parseTimeBudgetMs", 60000);
+
+	/**
+	 * The maximum file size, or 0 for no limit.
+	 */
+	public static final long SIZE_BUDGET_BYTES = (long) SettingsLoader
+			.getNumericSetting("parseSizeBudgetBytes", 0);
+
+	public static final int MAX_ABANDONED_TASKS = (int) SettingsLoader
+			.getNumericSetting("parseMaxAbandonedTasks", 16);
+
+	/**
+	 * The file where quarantined files are recorded. Empty for none.
+	 */
+	public static final String QUARANTINE_FILE = SettingsLoader
+			.getStringSetting("quarantineFile", "");
+
+	public static final boolean SKIP_QUARANTINED = SettingsLoader
+			.getBooleanSetting("skipQuarantinedFiles", true);
+
+	private static ParseWatchdog defaultWatchdog;
+
+	/**
+	 * Return the watchdog configured from the settings.
+	 *
+	 * @return
+	 */
+	public static synchronized ParseWatchdog getDefault() {
+		if (defaultWatchdog == null) {
+			defaultWatchdog = new ParseWatchdog(TIME_BUDGET_MS,
+					SIZE_BUDGET_BYTES, QUARANTINE_FILE.isEmpty() ? null
+							: new File(QUARANTINE_FILE), SKIP_QUARANTINED,
+					MAX_ABANDONED_TASKS);
+		}
+		return defaultWatchdog;
+	}
+
+	private final long timeBudgetMs;
+
+	private final long sizeBudgetBytes;
+
+	private final File quarantineFile;
+
+	private final boolean skipQuarantined;
+
+	private final int maxAbandonedTasks;
+
+	private final Set<String> quarantined = Sets.newConcurrentHashSet();
+
+	/**
+	 * The number of tasks abandoned over the time budget that are still
+	 * running.
+	 */
+	private final AtomicInteger abandonedTasks = new AtomicInteger();
+
+	private final AtomicInteger nSkipped = new AtomicInteger();
+
+	private final AtomicInteger nOverSize = new AtomicInteger();
+
+	private final AtomicInteger nOverTime = new AtomicInteger();
+
+	/**
+	 * Runs the tasks in daemon threads, so that abandoned tasks do not stop
+	 * the JVM from exiting.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * @param timeBudgetMs
+	 *            the maximum time per file and stage
+	 * @param sizeBudgetBytes
+	 *            the maximum file size, or 0 for no limit
+	 * @param quarantineFile
+	 *            the file where quarantined files are recorded and read from,
+	 *            or null
+	 * @param skipQuarantined
+	 *            skip files quarantined in previous runs
+	 * @param maxAbandonedTasks
+	 *            the number of abandoned tasks still running at which no more
+	 *            work is accepted
+	 */
+	public ParseWatchdog(final long timeBudgetMs, final long sizeBudgetBytes,
+			final File quarantineFile, final boolean skipQuarantined,
+			final int maxAbandonedTasks) {
+		checkArgument(maxAbandonedTasks > 0);
+		this.timeBudgetMs = timeBudgetMs;
+		this.sizeBudgetBytes = sizeBudgetBytes;
+		this.quarantineFile = quarantineFile;
+		this.skipQuarantined = skipQuarantined;
+		this.maxAbandonedTasks = maxAbandonedTasks;
+		if (quarantineFile != null && quarantineFile.exists()) {
+			try {
+				for (final String line : FileUtils.readLines(quarantineFile,
+						"UTF-8")) {
+					if (!line.isEmpty()) {
+						quarantined.add(line.split("\t")[0]);
+					}
+				}
+			} catch (final IOException e) {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			}
+		}
+		final AtomicInteger threadId = new AtomicInteger();
+		executor = Executors.newCachedThreadPool(r -> {
+			final Thread thread = new Thread(r, "watchdog-worker-"
+					+ threadId.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Return the number of abandoned tasks that are still running.
+	 *
+	 * @return
+	 */
+	public int getNumAbandonedTasks() {
+		return abandonedTasks.get();
+	}
+
+	/**
+	 * Return the paths of all the quarantined files.
+	 *
+	 * @return
+	 */
+	public List<String> getQuarantined() {
+		return Lists.newArrayList(quarantined);
+	}
+
+	/**
+	 * Return true if the file has been quarantined.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public boolean isQuarantined(final File file) {
+		return quarantined.contains(file.getAbsolutePath());
+	}
+
+	private void quarantine(final File file, final String stage,
+			final String reason) {
+		LOGGER.warning("Quarantining " + file + " at " + stage + ": "
+				+ reason);
+		if (quarantined.add(file.getAbsolutePath())
+				&& quarantineFile != null) {
+			synchronized (this) {
+				try {
+					FileUtils.writeStringToFile(quarantineFile,
+							file.getAbsolutePath() + "\t" + stage + "\t"
+									+ reason + "\n", "UTF-8", true);
+				} catch (final IOException e) {
+					LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Log how many files were dropped, if any.
+	 */
+	public void logSummary() {
+		if (nSkipped.get() + nOverSize.get() + nOverTime.get() > 0) {
+			LOGGER.info("Dropped " + nSkipped.get()
+					+ " previously quarantined files, " + nOverSize.get()
+					+ " files over " + sizeBudgetBytes + " bytes and "
+					+ nOverTime.get() + " files over " + timeBudgetMs + "ms");
+		}
+	}
+
+	/**
+	 * Run a stage of processing the given file within the budgets. Returns
+	 * null if the file is skipped or quarantined. Exceptions of the task are
+	 * rethrown.
+	 *
+	 * @param file
+	 * @param stage
+	 *            the name of the stage, used for reporting
+	 * @param task
+	 * @return
+	 * @throws RejectedExecutionException
+	 *             if too many abandoned tasks are still running
+	 * @throws Exception
+	 */
+	public <R> R run(final File file, final String stage,
+			final Callable<R> task) throws Exception {
+		if (skipQuarantined && isQuarantined(file)) {
+			LOGGER.fine("Skipping quarantined " + file);
+			nSkipped.incrementAndGet();
+			return null;
+		} else if (sizeBudgetBytes > 0 && file.length() > sizeBudgetBytes) {
+			quarantine(file, stage, "size " + file.length() + " bytes");
+			nOverSize.incrementAndGet();
+			return null;
+		} else if (abandonedTasks.get() >= maxAbandonedTasks) {
+			throw new RejectedExecutionException(abandonedTasks.get()
+					+ " abandoned tasks are still running, not processing "
+					+ file);
+		}
+
+		// Set by whichever of the task and the timeout comes first
+		final AtomicBoolean isFinished = new AtomicBoolean();
+		final AtomicReference<Thread> worker = new AtomicReference<Thread>();
+		final Future<R> result = executor.submit(() -> {
+			worker.set(Thread.currentThread());
+			try {
+				return task.call();
+			} finally {
+				if (!isFinished.compareAndSet(false, true)) {
+					abandonedTasks.decrementAndGet();
+				}
+				synchronized (worker) {
+					worker.set(null);
+				}
+				// Do not leak an interrupt to the next task of the thread
+				Thread.interrupted();
+			}
+		});
+		try {
+			return result.get(timeBudgetMs, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			// The parsers do not check for interrupts, so the task may
+			// keep running in the background, but it is abandoned. It is
+			// not cancelled, so that it is counted until it returns.
+			if (isFinished.compareAndSet(false, true)) {
+				abandonedTasks.incrementAndGet();
+				synchronized (worker) {
+					final Thread thread = worker.get();
+					if (thread != null) {
+						thread.interrupt();
+					}
+				}
+			}
+			quarantine(file, stage, "over " + timeBudgetMs + "ms");
+			nOverTime.incrementAndGet();
+			return null;
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+}
@@ -0,0 +1,334 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.languagetools.ClassHierarchy;
+import codemining.languagetools.ITokenizer;
+import codemining.languagetools.TokenizerUtils;
+import codemining.languagetools.dedup.NearDuplicateDetector;
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Run a corpus TUI as a number of child JVMs, each processing one shard of
+ * the corpus (see {@link CorpusShard}), and merge their outputs. A child's
+ * output is its standard output, unless its arguments contain
+ * {@value #SHARD_OUTPUT}, which is replaced by the file it should write to.
+ * Corpus-wide steps, such as removing near-duplicates, are done once here and
+ * the resulting input files are passed to the shards.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ShardedRunner {
+
+	/**
+	 * How the outputs of the shards are merged.
+	 */
+	public enum MergeStrategy {
+		/**
+		 * Sum the lines of the form &lt;label&gt; &lt;number&gt;, e.g. the
+		 * output of TokenCounter and the metrics counters.
+		 */
+		SUM,
+
+		/**
+		 * Build a class hierarchy from the relationships written by the
+		 * shards of JavaTypeHierarchyExtractor.
+		 */
+		HIERARCHY,
+
+		/**
+		 * Concatenate JSON arrays, e.g. binding dumps, ordering them by their
+		 * provenance.
+		 */
+		JSON
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(ShardedRunner.class
+			.getName());
+
+	public static final String SHARD_OUTPUT = "{shardOutput}";
+
+	/**
+	 * Additional JVM arguments of the children, e.g. -Xmx4g.
+	 */
+	public static final String CHILD_JVM_ARGS = SettingsLoader
+			.getStringSetting("shardJvmArgs", "");
+
+	private static final Pattern COUNT_LINE = Pattern
+			.compile("^([^0-9]*?)\\s+(-?[0-9]+)$");
+
+	public static final String SKIP_NEAR_DUPLICATES_OPTION = "--skipNearDuplicates";
+
+	/**
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final boolean skipNearDuplicates = args.length > 3
+				&& args[3].equals(SKIP_NEAR_DUPLICATES_OPTION);
+		final int mainClassIdx = skipNearDuplicates ? 6 : 3;
+		if (args.length < mainClassIdx + 1) {
+			System.err.println("Usage <nShards> sum|hierarchy|json "
+					+ "<outputFile> [" + SKIP_NEAR_DUPLICATES_OPTION
+					+ " <corpusDir> <TokenizerClass>] <mainClass> [args...]");
+			System.exit(-1);
+		}
+		final ShardedRunner runner = new ShardedRunner(
+				Integer.parseInt(args[0]), MergeStrategy.valueOf(args[1]
+						.toUpperCase()));
+		try {
+			if (skipNearDuplicates) {
+				final Supplier<ITokenizer> tokenizers = TokenizerUtils
+						.tokenizerSupplierForClass(args[5]);
+				runner.setInputFiles(new NearDuplicateDetector(tokenizers)
+						.getRepresentatives(FileUtils.listFiles(new File(
+								args[4]), tokenizers.get().getFileFilter(),
+								DirectoryFileFilter.DIRECTORY)));
+			}
+			runner.run(new File(args[2]), args[mainClassIdx], Arrays.asList(
+					args).subList(mainClassIdx + 1, args.length));
+		} catch (final IOException | InterruptedException
+				| ReflectiveOperationException e) {
+			LOGGER.severe(ExceptionUtils.getFullStackTrace(e));
+			System.exit(-1);
+		}
+	}
+
+	private final int nShards;
+
+	private final MergeStrategy mergeStrategy;
+
+	/**
+	 * The files the shards are restricted to, or null for all.
+	 */
+	private List<File> inputFiles;
+
+	public ShardedRunner(final int nShards, final MergeStrategy mergeStrategy) {
+		checkArgument(nShards > 0);
+		this.nShards = nShards;
+		this.mergeStrategy = mergeStrategy;
+	}
+
+	private File getFileList(final File outputFile) {
+		return new File(outputFile.getAbsolutePath() + ".files");
+	}
+
+	private File getShardOutput(final File outputFile, final int shard) {
+		return new File(outputFile.getAbsolutePath() + ".shard-" + shard);
+	}
+
+	/**
+	 * Merge the outputs of the shards into the output file.
+	 *
+	 * @param shardOutputs
+	 * @param outputFile
+	 * @throws IOException
+	 */
+	public void merge(final List<File> shardOutputs, final File outputFile)
+			throws IOException {
+		switch (mergeStrategy) {
+		case SUM:
+			mergeCounts(shardOutputs, outputFile);
+			break;
+		case HIERARCHY:
+			mergeHierarchies(shardOutputs, outputFile);
+			break;
+		case JSON:
+			mergeJson(shardOutputs, outputFile);
+			break;
+		}
+	}
+
+	private void mergeCounts(final List<File> shardOutputs,
+			final File outputFile) throws IOException {
+		final Map<String, Long> counts = Maps.newLinkedHashMap();
+		for (final File shardOutput : shardOutputs) {
+			for (final String line : FileUtils.readLines(shardOutput, "UTF-8")) {
+				final Matcher matcher = COUNT_LINE.matcher(line.trim());
+				if (matcher.matches()) {
+					counts.merge(matcher.group(1),
+							Long.parseLong(matcher.group(2)), Long::sum);
+				}
+			}
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (final Map.Entry<String, Long> count : counts.entrySet()) {
+			sb.append(count.getKey()).append(' ').append(count.getValue())
+					.append(System.lineSeparator());
+		}
+		FileUtils.writeStringToFile(outputFile, sb.toString(), "UTF-8");
+	}
+
+	/**
+	 * The shards write one line per relationship, of the form
+	 * &lt;relativePath&gt;\t&lt;type&gt;\t&lt;parentType&gt;. The
+	 * relationships are added in the order of their files, as in a single
+	 * process.
+	 */
+	private void mergeHierarchies(final List<File> shardOutputs,
+			final File outputFile) throws IOException {
+		final List<String[]> relationships = Lists.newArrayList();
+		for (final File shardOutput : shardOutputs) {
+			for (final String line : FileUtils.readLines(shardOutput, "UTF-8")) {
+				final String[] parts = line.split("\t");
+				if (parts.length == 3) {
+					relationships.add(parts);
+				}
+			}
+		}
+		// Stable, so relationships of a file keep their order
+		relationships.sort(Comparator.comparing(r -> r[0]));
+		final ClassHierarchy hierarchy = new ClassHierarchy();
+		for (final String[] relationship : relationships) {
+			hierarchy.addParentToType(relationship[1], relationship[2]);
+		}
+		FileUtils.writeStringToFile(outputFile,
+				hierarchy.toString() + System.lineSeparator(), "UTF-8");
+	}
+
+	private void mergeJson(final List<File> shardOutputs, final File outputFile)
+			throws IOException {
+		final JsonParser parser = new JsonParser();
+		final List<JsonElement> elements = Lists.newArrayList();
+		for (final File shardOutput : shardOutputs) {
+			try (final Reader reader = Files.newBufferedReader(
+					shardOutput.toPath(), StandardCharsets.UTF_8)) {
+				parser.parse(reader).getAsJsonArray().forEach(elements::add);
+			}
+		}
+		elements.sort(Comparator.comparing(ShardedRunner::getProvenance));
+
+		final Gson gson = new Gson();
+		try (final Writer out = Files.newBufferedWriter(outputFile.toPath(),
+				StandardCharsets.UTF_8);
+				final JsonWriter writer = new JsonWriter(out)) {
+			writer.beginArray();
+			for (final JsonElement element : elements) {
+				gson.toJson(element, writer);
+			}
+			writer.endArray();
+		}
+	}
+
+	private static String getProvenance(final JsonElement element) {
+		if (element.isJsonObject()
+				&& element.getAsJsonObject().has("provenance")) {
+			return element.getAsJsonObject().get("provenance").getAsString();
+		}
+		return "";
+	}
+
+	/**
+	 * Run the shards of the given TUI, merge their outputs into the output
+	 * file and remove the outputs of the shards.
+	 *
+	 * @param outputFile
+	 * @param mainClass
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run(final File outputFile, final String mainClass,
+			final List<String> args) throws IOException, InterruptedException {
+		final boolean writesToFile = args.contains(SHARD_OUTPUT);
+		final File fileList = getFileList(outputFile);
+		if (inputFiles != null) {
+			FileUtils.writeLines(fileList, "UTF-8", inputFiles.stream()
+					.map(File::getAbsolutePath).collect(Collectors.toList()));
+		}
+		final List<Process> children = Lists.newArrayList();
+		final List<File> shardOutputs = Lists.newArrayList();
+		for (int i = 0; i < nShards; i++) {
+			final File shardOutput = getShardOutput(outputFile, i);
+			shardOutputs.add(shardOutput);
+
+			final List<String> command = Lists.newArrayList();
+			command.add(new File(new File(System.getProperty("java.home"),
+					"bin"), "java").getAbsolutePath());
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add("-D" + CorpusShard.SHARD_PROPERTY + "=" + i + "/"
+					+ nShards);
+			if (inputFiles != null) {
+				command.add("-D" + CorpusShard.FILE_LIST_PROPERTY + "="
+						+ fileList.getAbsolutePath());
+			}
+			if (!CHILD_JVM_ARGS.trim().isEmpty()) {
+				command.addAll(Arrays.asList(CHILD_JVM_ARGS.trim()
+						.split("\\s+")));
+			}
+			command.add(mainClass);
+			for (final String arg : args) {
+				command.add(arg.equals(SHARD_OUTPUT) ? shardOutput
+						.getAbsolutePath() : arg);
+			}
+
+			final ProcessBuilder builder = new ProcessBuilder(command)
+					.redirectError(ProcessBuilder.Redirect.INHERIT);
+			if (writesToFile) {
+				builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+			} else {
+				builder.redirectOutput(shardOutput);
+			}
+			LOGGER.info("Starting shard " + i + " of " + nShards);
+			children.add(builder.start());
+		}
+
+		for (int i = 0; i < nShards; i++) {
+			final int exitCode = children.get(i).waitFor();
+			if (exitCode != 0) {
+				children.forEach(Process::destroy);
+				throw new IOException("Shard " + i + " failed with exit code "
+						+ exitCode);
+			}
+		}
+
+		merge(shardOutputs, outputFile);
+		for (final File shardOutput : shardOutputs) {
+			FileUtils.deleteQuietly(shardOutput);
+		}
+		FileUtils.deleteQuietly(fileList);
+	}
+
+	/**
+	 * Restrict the shards to the given input files, e.g. the near-duplicate
+	 * representatives of the corpus, which can then be computed only once.
+	 *
+	 * @param inputFiles
+	 */
+	public void setInputFiles(final Collection<File> inputFiles) {
+		this.inputFiles = Lists.newArrayList(inputFiles);
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Utilities for robustly processing large code corpora.
+ */
+package codemining.languagetools.corpus;
@@ -0,0 +1,88 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A count-min sketch over 64-bit hashes, giving count estimates that never
+ * underestimate, using a fixed amount of memory. Not thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CountMinSketch {
+
+	private final int depth;
+
+	private final int widthMask;
+
+	private final long[] table;
+
+	/**
+	 * @param depth
+	 *            the number of hash functions
+	 * @param width
+	 *            the number of counters per hash function, a power of 2
+	 */
+	public CountMinSketch(final int depth, final int width) {
+		checkArgument(depth > 0);
+		checkArgument(width > 0 && Integer.bitCount(width) == 1,
+				"Width must be a power of 2");
+		this.depth = depth;
+		widthMask = width - 1;
+		table = new long[depth * width];
+	}
+
+	/**
+	 * Add the count to the element with the given hash.
+	 *
+	 * @param hash
+	 * @param count
+	 */
+	public void add(final long hash, final long count) {
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < depth; i++) {
+			table[slot(i, h1, h2)] += count;
+		}
+	}
+
+	/**
+	 * Return the estimated count of the element with the given hash.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	public long estimateCount(final long hash) {
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < depth; i++) {
+			min = Math.min(min, table[slot(i, h1, h2)]);
+		}
+		return min;
+	}
+
+	/**
+	 * Add the counts of another sketch of the same dimensions.
+	 *
+	 * @param other
+	 */
+	public void merge(final CountMinSketch other) {
+		checkArgument(other.depth == depth && other.widthMask == widthMask,
+				"Sketches have different dimensions");
+		for (int i = 0; i < table.length; i++) {
+			table[i] += other.table[i];
+		}
+	}
+
+	/**
+	 * Return the counter of the i-th hash function, derived from two hashes.
+	 */
+	private int slot(final int i, final int h1, final int h2) {
+		return i * (widthMask + 1) + ((h1 + i * h2) & widthMask);
+	}
+
+}
@@ -0,0 +1,281 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.languagetools.ITokenizer;
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Count the tokens of a corpus in parallel. Each worker thread counts into its
+ * own TokenCountTable that is periodically merged into the global counts.
+ *
+ * In exact mode the global counts are spilled to disk as sorted runs when they
+ * exceed a maximum number of distinct tokens. In approximate mode a count-min
+ * sketch and a HyperLogLog estimator are used instead, so memory is bounded.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class DistinctTokenCounter implements Closeable {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(DistinctTokenCounter.class.getName());
+
+	/**
+	 * The number of distinct tokens of a worker before it merges its counts.
+	 */
+	public static final int LOCAL_TABLE_SIZE = (int) SettingsLoader
+			.getNumericSetting("localTokenTableSize", 1 << 16);
+
+	public static final int MAX_IN_MEMORY_TOKENS = (int) SettingsLoader
+			.getNumericSetting("maxInMemoryDistinctTokens", 1 << 24);
+
+	public static final int SKETCH_DEPTH = (int) SettingsLoader
+			.getNumericSetting("countMinSketchDepth", 4);
+
+	public static final int SKETCH_WIDTH = (int) SettingsLoader
+			.getNumericSetting("countMinSketchWidth", 1 << 20);
+
+	public static final int HLL_PRECISION = (int) SettingsLoader
+			.getNumericSetting("hyperLogLogPrecision", 14);
+
+	private static final HashFunction HASH = Hashing.murmur3_128();
+
+	private static long hash(final String token) {
+		return HASH.hashString(token, StandardCharsets.UTF_8).asLong();
+	}
+
+	/**
+	 * Creates the tokenizer of each worker thread.
+	 */
+	private final Supplier<? extends ITokenizer> tokenizers;
+
+	private final boolean approximate;
+
+	private final SpillingTokenCounts exactCounts;
+
+	private final CountMinSketch sketch;
+
+	private final HyperLogLog distinctTokens;
+
+	private final LongAdder totalTokens = new LongAdder();
+
+	/**
+	 * @param tokenizers
+	 *            creates the tokenizer of each worker thread, since tokenizers
+	 *            may keep per-call state
+	 * @param approximate
+	 *            use bounded-memory approximate counts
+	 */
+	public DistinctTokenCounter(final Supplier<? extends ITokenizer> tokenizers,
+			final boolean approximate) {
+		this(tokenizers, approximate, MAX_IN_MEMORY_TOKENS);
+	}
+
+	DistinctTokenCounter(final Supplier<? extends ITokenizer> tokenizers,
+			final boolean approximate, final int maxInMemoryTokens) {
+		this.tokenizers = tokenizers;
+		this.approximate = approximate;
+		if (approximate) {
+			exactCounts = null;
+			sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+			distinctTokens = new HyperLogLog(HLL_PRECISION);
+		} else {
+			exactCounts = new SpillingTokenCounts(maxInMemoryTokens);
+			sketch = null;
+			distinctTokens = null;
+		}
+	}
+
+	/**
+	 * Tokenize and count the given files using the given number of threads.
+	 *
+	 * @param files
+	 * @param nThreads
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void addFiles(final Collection<File> files, final int nThreads)
+			throws IOException, InterruptedException {
+		checkArgument(nThreads > 0);
+		final Queue<File> remaining = new ConcurrentLinkedQueue<File>(files);
+		final ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+		try {
+			final List<Future<?>> workers = Lists.newArrayList();
+			for (int i = 0; i < nThreads; i++) {
+				workers.add(pool.submit(() -> {
+					countFiles(remaining);
+					return null;
+				}));
+			}
+			for (final Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Count the given tokens.
+	 *
+	 * @param tokens
+	 * @throws IOException
+	 */
+	public void addTokens(final Collection<String> tokens) throws IOException {
+		final TokenCountTable table = new TokenCountTable(Math.max(
+				tokens.size(), 1));
+		for (final String token : tokens) {
+			table.add(token, 1);
+		}
+		mergeCounts(table);
+	}
+
+	@Override
+	public void close() {
+		if (exactCounts != null) {
+			exactCounts.close();
+		}
+	}
+
+	/**
+	 * The worker loop: count files from the queue until it is empty.
+	 */
+	private void countFiles(final Queue<File> files) throws IOException {
+		final TokenCountTable localCounts = new TokenCountTable(
+				LOCAL_TABLE_SIZE);
+		final ITokenizer tokenizer = tokenizers.get();
+		File file;
+		while ((file = files.poll()) != null) {
+			try {
+				final char[] code = FileUtils.readFileToString(file)
+						.toCharArray();
+				for (final String token : tokenizer.tokenListFromCode(code)) {
+					localCounts.add(token, 1);
+				}
+			} catch (final IOException e) {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			}
+			if (localCounts.size() >= LOCAL_TABLE_SIZE) {
+				mergeCounts(localCounts);
+				localCounts.clear();
+			}
+		}
+		mergeCounts(localCounts);
+	}
+
+	/**
+	 * Return the estimated count of the given token. Only available in
+	 * approximate mode.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public long estimateCount(final String token) {
+		checkState(approximate,
+				"Counts can only be estimated in approximate mode");
+		synchronized (sketch) {
+			return sketch.estimateCount(hash(token));
+		}
+	}
+
+	/**
+	 * Call the consumer with every token and its count, sorted by token. Only
+	 * available in exact mode.
+	 *
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public void forEachCount(final ObjLongConsumer<String> consumer)
+			throws IOException {
+		checkState(!approximate, "Counts are not kept in approximate mode");
+		exactCounts.forEachSorted(consumer);
+	}
+
+	/**
+	 * Return the number of distinct tokens. This is an estimate in
+	 * approximate mode and requires merging all spilled runs in exact mode.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public long getDistinctTokenCount() throws IOException {
+		if (approximate) {
+			synchronized (sketch) {
+				return distinctTokens.cardinality();
+			}
+		}
+		final LongAdder distinct = new LongAdder();
+		exactCounts.forEachSorted((token, count) -> distinct.increment());
+		return distinct.sum();
+	}
+
+	/**
+	 * Return the total number of tokens counted.
+	 *
+	 * @return
+	 */
+	public long getTotalTokenCount() {
+		return totalTokens.sum();
+	}
+
+	/**
+	 * Merge a worker's counts into the global counts.
+	 */
+	private void mergeCounts(final TokenCountTable localCounts)
+			throws IOException {
+		totalTokens.add(localCounts.getTotalCount());
+		if (!approximate) {
+			exactCounts.addAll(localCounts);
+			return;
+		}
+		final long[] hashes = new long[localCounts.size()];
+		final long[] counts = new long[localCounts.size()];
+		final int[] i = { 0 };
+		localCounts.forEach((token, count) -> {
+			hashes[i[0]] = hash(token);
+			counts[i[0]] = count;
+			i[0]++;
+		});
+		synchronized (sketch) {
+			for (int j = 0; j < hashes.length; j++) {
+				sketch.add(hashes[j], counts[j]);
+				distinctTokens.add(hashes[j]);
+			}
+		}
+	}
+
+}
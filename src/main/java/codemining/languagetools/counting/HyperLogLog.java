@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A HyperLogLog estimator of the number of distinct elements, over 64-bit
+ * hashes. Uses 2^precision bytes. Not thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class HyperLogLog {
+
+	private final int precision;
+
+	private final byte[] registers;
+
+	/**
+	 * @param precision
+	 *            the number of hash bits used to pick a register (4 to 18).
+	 *            The standard error is about 1.04/sqrt(2^precision).
+	 */
+	public HyperLogLog(final int precision) {
+		checkArgument(precision >= 4 && precision <= 18,
+				"Precision must be in [4, 18]");
+		this.precision = precision;
+		registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Add the element with the given hash.
+	 *
+	 * @param hash
+	 */
+	public void add(final long hash) {
+		final int idx = (int) (hash >>> (64 - precision));
+		final long rest = hash << precision;
+		final int rank = rest == 0 ? 64 - precision + 1 : Long
+				.numberOfLeadingZeros(rest) + 1;
+		if (rank > registers[idx]) {
+			registers[idx] = (byte) rank;
+		}
+	}
+
+	/**
+	 * Return the estimated number of distinct elements.
+	 *
+	 * @return
+	 */
+	public long cardinality() {
+		final int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (final byte register : registers) {
+			sum += 1. / (1L << register);
+			if (register == 0) {
+				zeros++;
+			}
+		}
+		final double alpha;
+		if (m == 16) {
+			alpha = .673;
+		} else if (m == 32) {
+			alpha = .697;
+		} else if (m == 64) {
+			alpha = .709;
+		} else {
+			alpha = .7213 / (1 + 1.079 / m);
+		}
+		final double estimate = alpha * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0) {
+			// Small range correction (linear counting)
+			return Math.round(m * Math.log((double) m / zeros));
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Merge another estimator of the same precision into this one.
+	 *
+	 * @param other
+	 */
+	public void merge(final HyperLogLog other) {
+		checkArgument(other.precision == precision,
+				"Estimators have different precision");
+		for (int i = 0; i < registers.length; i++) {
+			if (other.registers[i] > registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing (linear probing) hash table from non-zero primitive long
+ * keys to long counts. Not thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class LongCountTable {
+
+	/**
+	 * Consumer of the entries of the table.
+	 */
+	public interface ILongCountConsumer {
+		void accept(long key, long count);
+	}
+
+	private static final double MAX_LOAD_FACTOR = .6;
+
+	/**
+	 * Spread the bits of the key (the murmur3 finalizer).
+	 */
+	private static long mix(final long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private long[] keys;
+
+	private long[] counts;
+
+	private int size = 0;
+
+	private int resizeThreshold;
+
+	public LongCountTable() {
+		this(1024);
+	}
+
+	public LongCountTable(final int expectedSize) {
+		checkArgument(expectedSize > 0);
+		final int capacity = Integer.highestOneBit((int) Math.min(
+				expectedSize / MAX_LOAD_FACTOR, 1 << 30)) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * Add the count to the given (non-zero) key.
+	 *
+	 * @param key
+	 * @param count
+	 */
+	public void add(final long key, final long count) {
+		checkArgument(key != 0, "Key cannot be zero");
+		final int idx = indexOf(key);
+		if (keys[idx] == 0) {
+			keys[idx] = key;
+			counts[idx] = count;
+			size++;
+			if (size > resizeThreshold) {
+				resize(keys.length * 2);
+			}
+		} else {
+			counts[idx] += count;
+		}
+	}
+
+	/**
+	 * Add all the counts of the other table to this table.
+	 *
+	 * @param other
+	 */
+	public void addAll(final LongCountTable other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.keys[i] != 0) {
+				add(other.keys[i], other.counts[i]);
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		keys = new long[capacity];
+		counts = new long[capacity];
+		resizeThreshold = (int) (capacity * MAX_LOAD_FACTOR);
+	}
+
+	/**
+	 * Remove all keys, keeping the allocated space.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(counts, 0);
+		size = 0;
+	}
+
+	/**
+	 * Call the consumer for every key and its count, in no specific order.
+	 *
+	 * @param consumer
+	 */
+	public void forEach(final ILongCountConsumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				consumer.accept(keys[i], counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Return the count of the given key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public long get(final long key) {
+		final int idx = indexOf(key);
+		return keys[idx] == 0 ? 0 : counts[idx];
+	}
+
+	/**
+	 * Return the slot of the key or the empty slot where it should be put.
+	 */
+	private int indexOf(final long key) {
+		final int mask = keys.length - 1;
+		int idx = (int) mix(key) & mask;
+		while (keys[idx] != 0 && keys[idx] != key) {
+			idx = (idx + 1) & mask;
+		}
+		return idx;
+	}
+
+	/**
+	 * Remove all keys with a count smaller than the given one.
+	 *
+	 * @param minCount
+	 */
+	public void prune(final long minCount) {
+		final long[] oldKeys = keys;
+		final long[] oldCounts = counts;
+		int remaining = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0 && oldCounts[i] >= minCount) {
+				remaining++;
+			}
+		}
+		final int capacity = Math.max(Integer.highestOneBit((int) Math.min(
+				remaining / MAX_LOAD_FACTOR, 1 << 30)) << 1, 16);
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0 && oldCounts[i] >= minCount) {
+				add(oldKeys[i], oldCounts[i]);
+			}
+		}
+	}
+
+	private void resize(final int capacity) {
+		final long[] oldKeys = keys;
+		final long[] oldCounts = counts;
+		allocate(capacity);
+		final int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int idx = (int) mix(oldKeys[i]) & mask;
+				while (keys[idx] != 0) {
+					idx = (idx + 1) & mask;
+				}
+				keys[idx] = oldKeys[i];
+				counts[idx] = oldCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * Return the number of keys.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the keys sorted by decreasing count (ties by increasing key).
+	 *
+	 * @return
+	 */
+	public long[] sortedByCount() {
+		final long[][] entries = new long[size][];
+		int j = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				entries[j++] = new long[] { keys[i], counts[i] };
+			}
+		}
+		Arrays.sort(entries, (e1, e2) -> {
+			final int cmp = Long.compare(e2[1], e1[1]);
+			return cmp != 0 ? cmp : Long.compare(e1[0], e2[0]);
+		});
+		final long[] sortedKeys = new long[size];
+		for (int i = 0; i < size; i++) {
+			sortedKeys[i] = entries[i][0];
+		}
+		return sortedKeys;
+	}
+
+}
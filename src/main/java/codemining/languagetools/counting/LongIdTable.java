@@ -0,0 +1,168 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * A mapping from non-zero primitive long keys to dense positive int ids and
+ * back. The table is split into segments with their own locks, so that
+ * threads adding different keys rarely wait for each other. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class LongIdTable {
+
+	private static final class Segment {
+
+		private long[] keys = new long[64];
+
+		private int[] ids = new int[64];
+
+		/**
+		 * The keys of the segment, in the order they were added.
+		 */
+		private long[] keysByIndex = new long[16];
+
+		private int size = 0;
+
+		/**
+		 * Return the slot of the key or the empty slot where it should be put.
+		 */
+		private int indexOf(final long key, final long hash) {
+			final int mask = keys.length - 1;
+			int idx = (int) hash & mask;
+			while (keys[idx] != 0 && keys[idx] != key) {
+				idx = (idx + 1) & mask;
+			}
+			return idx;
+		}
+
+		private void resize() {
+			final long[] oldKeys = keys;
+			final int[] oldIds = ids;
+			keys = new long[oldKeys.length * 2];
+			ids = new int[oldKeys.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != 0) {
+					final int idx = indexOf(oldKeys[i], mix(oldKeys[i]));
+					keys[idx] = oldKeys[i];
+					ids[idx] = oldIds[i];
+				}
+			}
+		}
+	}
+
+	private static final int SEGMENT_BITS = 6;
+
+	private static final int N_SEGMENTS = 1 << SEGMENT_BITS;
+
+	private static final double MAX_LOAD_FACTOR = .6;
+
+	/**
+	 * Spread the bits of the key (the murmur3 finalizer).
+	 */
+	private static long mix(final long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private final Segment[] segments = new Segment[N_SEGMENTS];
+
+	public LongIdTable() {
+		for (int i = 0; i < N_SEGMENTS; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Return the id of the given key, or 0 if it has not been added.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public int getExistingId(final long key) {
+		final long hash = mix(key);
+		final Segment segment = segments[(int) (hash >>> 64 - SEGMENT_BITS)];
+		synchronized (segment) {
+			final int idx = segment.indexOf(key, hash);
+			return segment.keys[idx] == 0 ? 0 : segment.ids[idx];
+		}
+	}
+
+	/**
+	 * Return the id of the given (non-zero) key, adding it if needed.
+	 *
+	 * @param key
+	 * @return
+	 * @throws IllegalStateException
+	 *             if there are no more ids
+	 */
+	public int getId(final long key) {
+		checkArgument(key != 0, "Key cannot be zero");
+		final long hash = mix(key);
+		final int segmentIdx = (int) (hash >>> 64 - SEGMENT_BITS);
+		final Segment segment = segments[segmentIdx];
+		synchronized (segment) {
+			final int idx = segment.indexOf(key, hash);
+			if (segment.keys[idx] != 0) {
+				return segment.ids[idx];
+			} else if (segment.size >= (Integer.MAX_VALUE - N_SEGMENTS)
+					/ N_SEGMENTS) {
+				throw new IllegalStateException("More than "
+						+ Integer.MAX_VALUE + " keys");
+			}
+			final int id = segment.size * N_SEGMENTS + segmentIdx + 1;
+			segment.keys[idx] = key;
+			segment.ids[idx] = id;
+			if (segment.size == segment.keysByIndex.length) {
+				segment.keysByIndex = Arrays.copyOf(segment.keysByIndex,
+						segment.size * 2);
+			}
+			segment.keysByIndex[segment.size++] = key;
+			if (segment.size > segment.keys.length * MAX_LOAD_FACTOR) {
+				segment.resize();
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Return the key of the given id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public long getKey(final int id) {
+		checkArgument(id > 0);
+		final Segment segment = segments[(id - 1) % N_SEGMENTS];
+		synchronized (segment) {
+			return segment.keysByIndex[(id - 1) / N_SEGMENTS];
+		}
+	}
+
+	/**
+	 * Return the number of keys.
+	 *
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size;
+			}
+		}
+		return size;
+	}
+
+}
@@ -0,0 +1,306 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.languagetools.ITokenizer;
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Count the token n-grams of a corpus, for all orders up to a maximum one, in
+ * parallel. Tokens are mapped to ids of a shared Vocabulary. An n-gram is
+ * keyed by the id of its prefix (the first n - 1 tokens) in the high 32 bits
+ * and the id of its last token in the low 32 bits; the prefixes of each order
+ * are given ids by a shared LongIdTable, so the vocabulary and the number of
+ * n-grams are not limited by the order. Each worker thread counts into its
+ * own tables that are periodically merged into the global ones.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NGramCounter {
+
+	private static final Logger LOGGER = Logger.getLogger(NGramCounter.class
+			.getName());
+
+	/**
+	 * The number of n-grams of a worker before it merges its counts.
+	 */
+	public static final int LOCAL_TABLE_SIZE = (int) SettingsLoader
+			.getNumericSetting("localNgramTableSize", 1 << 18);
+
+	/**
+	 * Creates the tokenizer of each worker thread.
+	 */
+	private final Supplier<? extends ITokenizer> tokenizers;
+
+	private final int order;
+
+	private final Vocabulary vocabulary;
+
+	/**
+	 * The ids of the n-grams of size n + 1, used as prefixes of the n-grams of
+	 * size n + 2. Unigrams are their token ids, so the first is null.
+	 */
+	private final LongIdTable[] prefixIds;
+
+	/**
+	 * The counts of the n-grams of each order (0 is unigrams).
+	 */
+	private final LongCountTable[] counts;
+
+	/**
+	 * @param tokenizers
+	 *            creates the tokenizer of each worker thread, since tokenizers
+	 *            may keep per-call state
+	 * @param order
+	 */
+	public NGramCounter(final Supplier<? extends ITokenizer> tokenizers,
+			final int order) {
+		checkArgument(order > 0, "Order must be positive");
+		this.tokenizers = tokenizers;
+		this.order = order;
+		vocabulary = new Vocabulary(Integer.MAX_VALUE - 8);
+		counts = new LongCountTable[order];
+		prefixIds = new LongIdTable[order];
+		for (int i = 0; i < order; i++) {
+			counts[i] = new LongCountTable();
+			if (i > 0 && i < order - 1) {
+				prefixIds[i] = new LongIdTable();
+			}
+		}
+	}
+
+	/**
+	 * Tokenize and count the given files using the given number of threads.
+	 *
+	 * @param files
+	 * @param nThreads
+	 * @throws InterruptedException
+	 */
+	public void addFiles(final Collection<File> files, final int nThreads)
+			throws InterruptedException {
+		checkArgument(nThreads > 0);
+		final Queue<File> remaining = new ConcurrentLinkedQueue<File>(files);
+		final ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+		try {
+			final List<Future<?>> workers = Lists.newArrayList();
+			for (int i = 0; i < nThreads; i++) {
+				workers.add(pool.submit(() -> countFiles(remaining)));
+			}
+			for (final Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Count the n-grams of the given token sequence.
+	 *
+	 * @param tokens
+	 */
+	public void addTokens(final List<String> tokens) {
+		final LongCountTable[] localCounts = createTables(tokens.size());
+		countNGrams(tokens, localCounts);
+		mergeCounts(localCounts);
+	}
+
+	/**
+	 * Count the n-grams of the sequence into the given tables.
+	 */
+	private void countNGrams(final List<String> tokens,
+			final LongCountTable[] tables) {
+		final long[] ids = new long[tokens.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = vocabulary.getId(tokens.get(i));
+		}
+		for (int i = 0; i < ids.length; i++) {
+			long key = ids[i];
+			tables[0].add(key, 1);
+			for (int n = 1; n < order && i + n < ids.length; n++) {
+				key = getPrefix(key, n) << 32 | ids[i + n];
+				tables[n].add(key, 1);
+			}
+		}
+	}
+
+	/**
+	 * The worker loop: count files from the queue until it is empty.
+	 */
+	private void countFiles(final Queue<File> files) {
+		final LongCountTable[] localCounts = createTables(LOCAL_TABLE_SIZE
+				/ order);
+		final ITokenizer tokenizer = tokenizers.get();
+		File file;
+		while ((file = files.poll()) != null) {
+			try {
+				final char[] code = FileUtils.readFileToString(file)
+						.toCharArray();
+				countNGrams(tokenizer.tokenListFromCode(code), localCounts);
+			} catch (final IOException e) {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			}
+			int size = 0;
+			for (final LongCountTable table : localCounts) {
+				size += table.size();
+			}
+			if (size >= LOCAL_TABLE_SIZE) {
+				mergeCounts(localCounts);
+				for (final LongCountTable table : localCounts) {
+					table.clear();
+				}
+			}
+		}
+		mergeCounts(localCounts);
+	}
+
+	private LongCountTable[] createTables(final int expectedSize) {
+		final LongCountTable[] tables = new LongCountTable[order];
+		for (int i = 0; i < order; i++) {
+			tables[i] = new LongCountTable(Math.max(expectedSize, 1));
+		}
+		return tables;
+	}
+
+	/**
+	 * Return the tokens of the n-gram of size n with the given key.
+	 *
+	 * @param key
+	 * @param n
+	 * @return
+	 */
+	public List<String> decode(final long key, final int n) {
+		final String[] ngram = new String[n];
+		long current = key;
+		for (int i = n - 1; i > 0; i--) {
+			ngram[i] = vocabulary.getToken((int) current);
+			final int prefix = (int) (current >>> 32);
+			current = i == 1 ? prefix : prefixIds[i - 1].getKey(prefix);
+		}
+		ngram[0] = vocabulary.getToken((int) current);
+		return Lists.newArrayList(ngram);
+	}
+
+	/**
+	 * Return the count of the given n-gram.
+	 *
+	 * @param ngram
+	 * @return
+	 */
+	public synchronized long getCount(final List<String> ngram) {
+		checkArgument(!ngram.isEmpty() && ngram.size() <= order);
+		long key = 0;
+		for (int n = 0; n < ngram.size(); n++) {
+			final int id = vocabulary.getExistingId(ngram.get(n));
+			final long prefix = n < 2 ? key : prefixIds[n - 1]
+					.getExistingId(key);
+			if (id == 0 || (n > 0 && prefix == 0)) {
+				return 0;
+			}
+			key = prefix << 32 | id;
+		}
+		return counts[ngram.size() - 1].get(key);
+	}
+
+	/**
+	 * Return the prefix id of the n-gram of size n with the given key.
+	 */
+	private long getPrefix(final long key, final int n) {
+		return n == 1 ? key : prefixIds[n - 1].getId(key);
+	}
+
+	/**
+	 * Return the number of distinct n-grams of size n.
+	 *
+	 * @param n
+	 * @return
+	 */
+	public synchronized int getNumberOfNGrams(final int n) {
+		return counts[n - 1].size();
+	}
+
+	public Vocabulary getVocabulary() {
+		return vocabulary;
+	}
+
+	private synchronized void mergeCounts(final LongCountTable[] localCounts) {
+		for (int i = 0; i < order; i++) {
+			counts[i].addAll(localCounts[i]);
+		}
+	}
+
+	/**
+	 * Remove all n-grams with a count smaller than the given one.
+	 *
+	 * @param minCount
+	 */
+	public synchronized void prune(final long minCount) {
+		for (final LongCountTable table : counts) {
+			table.prune(minCount);
+		}
+	}
+
+	/**
+	 * Write a file per order (e.g. 3-grams.txt) in the given directory, with
+	 * one n-gram per line (space-separated, Java-escaped tokens), a tab and
+	 * its count. Lines are sorted by decreasing count.
+	 *
+	 * @param directory
+	 * @throws IOException
+	 */
+	public synchronized void writeCounts(final File directory)
+			throws IOException {
+		FileUtils.forceMkdir(directory);
+		for (int n = 1; n <= order; n++) {
+			final File outputFile = new File(directory, n + "-grams.txt");
+			try (final Writer writer = new BufferedWriter(
+					new OutputStreamWriter(Files.newOutputStream(outputFile
+							.toPath()), StandardCharsets.UTF_8))) {
+				final LongCountTable table = counts[n - 1];
+				for (final long key : table.sortedByCount()) {
+					final List<String> ngram = decode(key, n);
+					for (int i = 0; i < ngram.size(); i++) {
+						if (i > 0) {
+							writer.write(' ');
+						}
+						writer.write(StringEscapeUtils.escapeJava(ngram.get(i)));
+					}
+					writer.write('\t');
+					writer.write(Long.toString(table.get(key)));
+					writer.write('\n');
+				}
+			}
+		}
+	}
+
+}
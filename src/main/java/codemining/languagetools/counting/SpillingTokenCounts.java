@@ -0,0 +1,265 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ObjLongConsumer;
+import java.util.logging.Logger;
+
+import codemining.languagetools.counting.TokenCountTable.SortedCounts;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Token counts that are kept in memory up to a maximum number of distinct
+ * tokens and are then spilled to disk as sorted runs. The runs are merged
+ * when the counts are read. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class SpillingTokenCounts implements Closeable {
+
+	/**
+	 * A sorted source of (token, count) pairs.
+	 */
+	private interface ISortedCountSource extends Closeable {
+
+		/**
+		 * Move to the next pair, returning false if there is none.
+		 */
+		boolean advance() throws IOException;
+
+		long currentCount();
+
+		String currentToken();
+	}
+
+	/**
+	 * A source reading from a sorted run file.
+	 */
+	private static final class RunFileSource implements ISortedCountSource {
+		private final DataInputStream in;
+		private long remaining;
+		private String token;
+		private long count;
+
+		RunFileSource(final File runFile, final long nRecords)
+				throws IOException {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(runFile), 1 << 16));
+			remaining = nRecords;
+		}
+
+		@Override
+		public boolean advance() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			final byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			token = new String(bytes, StandardCharsets.UTF_8);
+			count = in.readLong();
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		@Override
+		public long currentCount() {
+			return count;
+		}
+
+		@Override
+		public String currentToken() {
+			return token;
+		}
+	}
+
+	/**
+	 * A source reading from a sorted in-memory snapshot.
+	 */
+	private static final class SortedCountsSource implements
+			ISortedCountSource {
+		private final SortedCounts counts;
+		private int idx = -1;
+
+		SortedCountsSource(final SortedCounts counts) {
+			this.counts = counts;
+		}
+
+		@Override
+		public boolean advance() {
+			idx++;
+			return idx < counts.tokens.length;
+		}
+
+		@Override
+		public void close() {
+			// Nothing to close
+		}
+
+		@Override
+		public long currentCount() {
+			return counts.counts[idx];
+		}
+
+		@Override
+		public String currentToken() {
+			return counts.tokens[idx];
+		}
+	}
+
+	private static final Logger LOGGER = Logger
+			.getLogger(SpillingTokenCounts.class.getName());
+
+	private final TokenCountTable inMemoryCounts = new TokenCountTable();
+
+	private final int maxInMemoryTokens;
+
+	private final List<File> runFiles = Lists.newArrayList();
+
+	private final List<Long> runSizes = Lists.newArrayList();
+
+	/**
+	 * @param maxInMemoryTokens
+	 *            the number of distinct tokens that causes a spill to disk
+	 */
+	public SpillingTokenCounts(final int maxInMemoryTokens) {
+		checkArgument(maxInMemoryTokens > 0);
+		this.maxInMemoryTokens = maxInMemoryTokens;
+	}
+
+	/**
+	 * Add all the counts of the given table, spilling if needed.
+	 *
+	 * @param counts
+	 * @throws IOException
+	 */
+	public synchronized void addAll(final TokenCountTable counts)
+			throws IOException {
+		inMemoryCounts.addAll(counts);
+		if (inMemoryCounts.size() >= maxInMemoryTokens) {
+			spill();
+		}
+	}
+
+	/**
+	 * Delete any spilled runs.
+	 */
+	@Override
+	public synchronized void close() {
+		for (final File runFile : runFiles) {
+			if (!runFile.delete()) {
+				LOGGER.warning("Could not delete " + runFile);
+			}
+		}
+		runFiles.clear();
+		runSizes.clear();
+	}
+
+	/**
+	 * Call the consumer for every token and its total count, sorted by token.
+	 *
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public synchronized void forEachSorted(
+			final ObjLongConsumer<String> consumer) throws IOException {
+		final PriorityQueue<ISortedCountSource> queue = new PriorityQueue<ISortedCountSource>(
+				runFiles.size() + 1, (s1, s2) -> s1.currentToken().compareTo(
+						s2.currentToken()));
+		final List<ISortedCountSource> sources = Lists.newArrayList();
+		try {
+			sources.add(new SortedCountsSource(inMemoryCounts
+					.toSortedCounts()));
+			for (int i = 0; i < runFiles.size(); i++) {
+				sources.add(new RunFileSource(runFiles.get(i), runSizes.get(i)));
+			}
+			for (final ISortedCountSource source : sources) {
+				if (source.advance()) {
+					queue.add(source);
+				}
+			}
+
+			while (!queue.isEmpty()) {
+				ISortedCountSource source = queue.poll();
+				final String token = source.currentToken();
+				long count = 0;
+				while (true) {
+					count += source.currentCount();
+					if (source.advance()) {
+						queue.add(source);
+					}
+					if (queue.isEmpty()
+							|| !queue.peek().currentToken().equals(token)) {
+						break;
+					}
+					source = queue.poll();
+				}
+				consumer.accept(token, count);
+			}
+		} finally {
+			for (final ISortedCountSource source : sources) {
+				source.close();
+			}
+		}
+	}
+
+	/**
+	 * Return the number of runs spilled to disk.
+	 *
+	 * @return
+	 */
+	public synchronized int getNumberOfSpilledRuns() {
+		return runFiles.size();
+	}
+
+	/**
+	 * Write the in-memory counts as a sorted run and clear them.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void spill() throws IOException {
+		if (inMemoryCounts.size() == 0) {
+			return;
+		}
+		final SortedCounts sorted = inMemoryCounts.toSortedCounts();
+		final File runFile = File.createTempFile("tokenCounts", ".run");
+		try (final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(runFile),
+						1 << 16))) {
+			for (int i = 0; i < sorted.tokens.length; i++) {
+				final byte[] bytes = sorted.tokens[i]
+						.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+				out.writeLong(sorted.counts[i]);
+			}
+		}
+		runFiles.add(runFile);
+		runSizes.add((long) sorted.tokens.length);
+		LOGGER.info("Spilled " + sorted.tokens.length + " tokens to "
+				+ runFile);
+		inMemoryCounts.clear();
+	}
+
+}
@@ -0,0 +1,212 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An open-addressing (linear probing) hash table from tokens to primitive long
+ * counts. Each distinct token is stored once. Not thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TokenCountTable {
+
+	/**
+	 * A sorted snapshot of a table.
+	 */
+	static final class SortedCounts {
+		final String[] tokens;
+		final long[] counts;
+
+		SortedCounts(final String[] tokens, final long[] counts) {
+			this.tokens = tokens;
+			this.counts = counts;
+		}
+	}
+
+	private static final double MAX_LOAD_FACTOR = .6;
+
+	/**
+	 * Spread the bits of the String hash code.
+	 */
+	static int mix(final int hash) {
+		int h = hash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private String[] keys;
+
+	private long[] counts;
+
+	private int size = 0;
+
+	private long totalCount = 0;
+
+	private int resizeThreshold;
+
+	public TokenCountTable() {
+		this(1024);
+	}
+
+	public TokenCountTable(final int expectedSize) {
+		checkArgument(expectedSize > 0);
+		final int capacity = Integer.highestOneBit((int) Math.min(
+				expectedSize / MAX_LOAD_FACTOR, 1 << 30)) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * Add the count to the given token.
+	 *
+	 * @param token
+	 * @param count
+	 */
+	public void add(final String token, final long count) {
+		final int idx = indexOf(token);
+		if (keys[idx] == null) {
+			keys[idx] = token;
+			counts[idx] = count;
+			size++;
+			if (size > resizeThreshold) {
+				resize();
+			}
+		} else {
+			counts[idx] += count;
+		}
+		totalCount += count;
+	}
+
+	/**
+	 * Add all the counts of the other table to this table.
+	 *
+	 * @param other
+	 */
+	public void addAll(final TokenCountTable other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.keys[i] != null) {
+				add(other.keys[i], other.counts[i]);
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		keys = new String[capacity];
+		counts = new long[capacity];
+		resizeThreshold = (int) (capacity * MAX_LOAD_FACTOR);
+	}
+
+	/**
+	 * Remove all tokens, keeping the allocated space.
+	 */
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(counts, 0);
+		size = 0;
+		totalCount = 0;
+	}
+
+	/**
+	 * Call the consumer for every token and its count, in no specific order.
+	 *
+	 * @param consumer
+	 */
+	public void forEach(final ObjLongConsumer<String> consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				consumer.accept(keys[i], counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Return the count of the given token.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public long get(final String token) {
+		final int idx = indexOf(token);
+		return keys[idx] == null ? 0 : counts[idx];
+	}
+
+	/**
+	 * Return the sum of all counts.
+	 *
+	 * @return
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Return the slot of the token or the empty slot where it should be put.
+	 */
+	private int indexOf(final String token) {
+		final int mask = keys.length - 1;
+		int idx = mix(token.hashCode()) & mask;
+		while (keys[idx] != null && !keys[idx].equals(token)) {
+			idx = (idx + 1) & mask;
+		}
+		return idx;
+	}
+
+	private void resize() {
+		final String[] oldKeys = keys;
+		final long[] oldCounts = counts;
+		allocate(oldKeys.length * 2);
+		final int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int idx = mix(oldKeys[i].hashCode()) & mask;
+				while (keys[idx] != null) {
+					idx = (idx + 1) & mask;
+				}
+				keys[idx] = oldKeys[i];
+				counts[idx] = oldCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * Return the number of distinct tokens.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the tokens and their counts sorted by token. The arrays are
+	 * parallel.
+	 *
+	 * @return
+	 */
+	SortedCounts toSortedCounts() {
+		final String[] sortedTokens = new String[size];
+		int i = 0;
+		for (final String key : keys) {
+			if (key != null) {
+				sortedTokens[i++] = key;
+			}
+		}
+		Arrays.sort(sortedTokens);
+		final long[] sortedCounts = new long[size];
+		for (int j = 0; j < sortedTokens.length; j++) {
+			sortedCounts[j] = get(sortedTokens[j]);
+		}
+		return new SortedCounts(sortedTokens, sortedCounts);
+	}
+
+}
@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A shared, thread-safe mapping from tokens to dense integer ids. Ids start
+ * from 1, with 1 reserved for the unknown token that all tokens are mapped to
+ * once the vocabulary is full.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class Vocabulary {
+
+	private static final Logger LOGGER = Logger.getLogger(Vocabulary.class
+			.getName());
+
+	public static final String UNK_TOKEN = "<UNK>";
+
+	public static final int UNK_ID = 1;
+
+	private final ConcurrentMap<String, Integer> tokenIds = Maps
+			.newConcurrentMap();
+
+	private final List<String> idTokens = Lists.newArrayList();
+
+	private final int maxSize;
+
+	private volatile boolean isFull = false;
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of ids, including the unknown token
+	 */
+	public Vocabulary(final int maxSize) {
+		checkArgument(maxSize > 1);
+		this.maxSize = maxSize;
+		tokenIds.put(UNK_TOKEN, UNK_ID);
+		idTokens.add(UNK_TOKEN);
+	}
+
+	/**
+	 * Return the id of the given token, adding it if it is not in the
+	 * vocabulary.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public int getId(final String token) {
+		final Integer id = tokenIds.get(token);
+		if (id != null) {
+			return id;
+		} else if (isFull) {
+			return UNK_ID;
+		}
+		final Integer newId = tokenIds.computeIfAbsent(token, t -> {
+			synchronized (idTokens) {
+				if (idTokens.size() >= maxSize) {
+					if (!isFull) {
+						LOGGER.warning("Vocabulary is full with " + maxSize
+								+ " tokens, mapping new tokens to " + UNK_TOKEN);
+					}
+					isFull = true;
+					return null; // Not added
+				}
+				idTokens.add(t);
+				return idTokens.size();
+			}
+		});
+		return newId == null ? UNK_ID : newId;
+	}
+
+	/**
+	 * Return the id of the given token, or 0 if it is not in the vocabulary.
+	 *
+	 * @param token
+	 * @return
+	 */
+	public int getExistingId(final String token) {
+		final Integer id = tokenIds.get(token);
+		return id == null ? 0 : id;
+	}
+
+	/**
+	 * Return the token of the given id.
+	 *
+	 * @param id
+	 * @return
+	 */
+	public String getToken(final int id) {
+		synchronized (idTokens) {
+			return idTokens.get(id - 1);
+		}
+	}
+
+	/**
+	 * Return the number of ids in the vocabulary.
+	 *
+	 * @return
+	 */
+	public int size() {
+		synchronized (idTokens) {
+			return idTokens.size();
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Scalable exact and approximate token statistics over large corpora.
+ */
+package codemining.languagetools.counting;
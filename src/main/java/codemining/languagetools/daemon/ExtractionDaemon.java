@@ -0,0 +1,331 @@
+/**
+ *
+ */
+package codemining.languagetools.daemon;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+
+/**
+ * A daemon serving extraction requests on a loopback socket, so that the
+ * tokenizers and parsers are loaded and warmed up once.
+ * <p>
+ * The protocol is one JSON object per line. A request is
+ * <code>{"id":..., "op":"tokenize", "option":..., "snippets":[...]}</code>
+ * and is answered, possibly out of order, by
+ * <code>{"id":..., "results":[...], "errors":[...]}</code> with one result
+ * and one error (null on success) per snippet, or with a request-level
+ * "error". Snippets are batched in a single request to save round-trips.
+ * Requests are processed by a fixed number of worker threads and requests
+ * above the pending limit are rejected with a "busy" error.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ExtractionDaemon implements Closeable {
+
+	public static final class Request {
+		public JsonElement id;
+
+		public String op;
+
+		public String option;
+
+		public List<String> snippets;
+	}
+
+	public static final class Response {
+		public final JsonElement id;
+
+		public final List<Object> results;
+
+		public final List<String> errors;
+
+		public final String error;
+
+		Response(final JsonElement id, final List<Object> results,
+				final List<String> errors, final String error) {
+			this.id = id;
+			this.results = results;
+			this.errors = errors;
+			this.error = error;
+		}
+	}
+
+	private static final Logger LOGGER = Logger
+			.getLogger(ExtractionDaemon.class.getName());
+
+	public static final int PORT = (int) SettingsLoader.getNumericSetting(
+			"daemonPort", 7919);
+
+	public static final int N_THREADS = (int) SettingsLoader.getNumericSetting(
+			"daemonThreads", Runtime.getRuntime().availableProcessors());
+
+	public static final int MAX_PENDING_REQUESTS = (int) SettingsLoader
+			.getNumericSetting("daemonMaxPendingRequests", 1000);
+
+	public static final String BUSY_ERROR = "busy";
+
+	private final Map<String, IRequestHandler> handlers = Maps
+			.newConcurrentMap();
+
+	private final ServerSocket serverSocket;
+
+	private final int nThreads;
+
+	private final ExecutorService workers;
+
+	private final ExecutorService connections;
+
+	private final Semaphore pendingRequests;
+
+	private final Gson gson = new Gson();
+
+	/**
+	 * @param port
+	 *            the loopback port, or 0 for any free port
+	 * @param nThreads
+	 *            the number of worker threads
+	 * @param maxPendingRequests
+	 *            the maximum number of requests queued or being processed
+	 * @throws IOException
+	 */
+	public ExtractionDaemon(final int port, final int nThreads,
+			final int maxPendingRequests) throws IOException {
+		checkArgument(nThreads > 0);
+		checkArgument(maxPendingRequests > 0 && maxPendingRequests < 65536);
+		serverSocket = new ServerSocket(port, 50,
+				InetAddress.getLoopbackAddress());
+		pendingRequests = new Semaphore(maxPendingRequests);
+		this.nThreads = nThreads;
+		final AtomicInteger threadId = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(nThreads, r -> {
+			final Thread thread = new Thread(r, "daemon-worker-"
+					+ threadId.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		connections = Executors.newCachedThreadPool(r -> {
+			final Thread thread = new Thread(r, "daemon-connection-"
+					+ threadId.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		connections.shutdownNow();
+		workers.shutdownNow();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Read the requests of a connection until it is closed by the client, and
+	 * close it once all its responses have been written.
+	 */
+	private void handleConnection(final Socket socket) {
+		final Phaser inFlight = new Phaser(1);
+		try (final Socket s = socket;
+				final BufferedReader reader = new BufferedReader(
+						new InputStreamReader(s.getInputStream(),
+								StandardCharsets.UTF_8));
+				final Writer writer = new BufferedWriter(
+						new OutputStreamWriter(s.getOutputStream(),
+								StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				final Request request;
+				try {
+					request = gson.fromJson(line, Request.class);
+				} catch (final JsonParseException e) {
+					write(writer, new Response(null, null, null,
+							"Malformed request: " + e.getMessage()));
+					continue;
+				}
+				if (request == null) {
+					write(writer, new Response(null, null, null,
+							"Malformed request"));
+					continue;
+				}
+				if (!pendingRequests.tryAcquire()) {
+					write(writer, new Response(request.id, null, null,
+							BUSY_ERROR));
+					continue;
+				}
+				inFlight.register();
+				try {
+					workers.execute(() -> {
+						try {
+							final Response response;
+							try {
+								response = process(request);
+							} finally {
+								// Released before replying, so that the
+								// client may send its next request
+								pendingRequests.release();
+							}
+							write(writer, response);
+						} finally {
+							inFlight.arriveAndDeregister();
+						}
+					});
+				} catch (final RejectedExecutionException e) {
+					pendingRequests.release();
+					inFlight.arriveAndDeregister();
+					throw e;
+				}
+			}
+			inFlight.arriveAndAwaitAdvance();
+		} catch (final IOException | RejectedExecutionException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+		}
+	}
+
+	/**
+	 * Process all the snippets of a request.
+	 *
+	 * @param request
+	 * @return
+	 */
+	public Response process(final Request request) {
+		final IRequestHandler handler = request.op == null ? null : handlers
+				.get(request.op);
+		if (handler == null) {
+			return new Response(request.id, null, null, "Unknown op "
+					+ request.op);
+		} else if (request.snippets == null) {
+			return new Response(request.id, null, null, "No snippets");
+		}
+		final List<Object> results = Lists.newArrayList();
+		final List<String> errors = Lists.newArrayList();
+		for (final String snippet : request.snippets) {
+			try {
+				results.add(handler.handle(request.option, snippet));
+				errors.add(null);
+			} catch (final Throwable e) {
+				results.add(null);
+				errors.add(e.getClass().getSimpleName() + ": "
+						+ e.getMessage());
+			}
+		}
+		return new Response(request.id, results, errors, null);
+	}
+
+	/**
+	 * Process the request once on each of the worker threads, e.g. to warm up
+	 * the per-thread state of the handlers before serving.
+	 *
+	 * @param request
+	 * @return the response of each worker
+	 * @throws InterruptedException
+	 */
+	public List<Response> processOnEachWorker(final Request request)
+			throws InterruptedException {
+		// No task finishes before all have started, so each has its own thread
+		final CountDownLatch allStarted = new CountDownLatch(nThreads);
+		final List<Future<Response>> futures = Lists.newArrayList();
+		for (int i = 0; i < nThreads; i++) {
+			futures.add(workers.submit(() -> {
+				allStarted.countDown();
+				allStarted.await();
+				return process(request);
+			}));
+		}
+		final List<Response> responses = Lists.newArrayList();
+		for (final Future<Response> future : futures) {
+			try {
+				responses.add(future.get());
+			} catch (final ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return responses;
+	}
+
+	/**
+	 * Register the handler of the given operation.
+	 *
+	 * @param op
+	 * @param handler
+	 */
+	public void register(final String op, final IRequestHandler handler) {
+		handlers.put(op, handler);
+	}
+
+	/**
+	 * Accept connections until the daemon is closed.
+	 *
+	 * @throws IOException
+	 */
+	public void serve() throws IOException {
+		LOGGER.info("Serving " + handlers.keySet() + " on port " + getPort());
+		while (!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (final SocketException e) {
+				if (serverSocket.isClosed()) {
+					break;
+				}
+				throw e;
+			}
+			connections.execute(() -> handleConnection(socket));
+		}
+	}
+
+	private void write(final Writer writer, final Response response) {
+		final String json = gson.toJson(response);
+		synchronized (writer) {
+			try {
+				writer.write(json);
+				writer.write('\n');
+				writer.flush();
+			} catch (final IOException e) {
+				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			}
+		}
+	}
+
+}
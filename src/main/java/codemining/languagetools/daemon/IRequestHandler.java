@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package codemining.languagetools.daemon;
+
+/**
+ * Handles one kind of daemon request, e.g. tokenization.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public interface IRequestHandler {
+
+	/**
+	 * Return the result for the given code snippet. The result is serialized
+	 * to JSON. Handlers are called concurrently from the worker threads.
+	 *
+	 * @param option
+	 *            a handler-specific option, e.g. the tokenizer class, or null
+	 * @param code
+	 * @return
+	 * @throws Exception
+	 */
+	Object handle(String option, String code) throws Exception;
+
+}
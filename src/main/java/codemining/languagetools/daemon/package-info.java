@@ -0,0 +1,5 @@
+/**
+ * A long-running local daemon that serves extraction requests, avoiding the
+ * JVM startup and warm-up cost of a process per request.
+ */
+package codemining.languagetools.daemon;
@@ -0,0 +1,215 @@
+/**
+ *
+ */
+package codemining.languagetools.dedup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * The hash of the contents of a file, computed with XXH64. The content
+ * length is part of the hash to make collisions even less likely. Immutable.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class ContentHash {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	/**
+	 * The bytes read at a time from large files. A multiple of the 32-byte
+	 * stripe, so that only the last chunk has a tail.
+	 */
+	static final int CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Return the hash of the contents of the given file. Small files are read
+	 * into a single buffer; larger ones are hashed a chunk at a time.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static ContentHash of(final File file) throws IOException {
+		try (final FileInputStream in = new FileInputStream(file);
+				final FileChannel channel = in.getChannel()) {
+			final long length = channel.size();
+			if (length < CHUNK_SIZE) {
+				// One more byte to notice a file that grew while read
+				final ByteBuffer buffer = ByteBuffer.allocate((int) length + 1);
+				final long read = readChunk(channel, buffer);
+				if (read <= length) {
+					buffer.flip();
+					return new ContentHash(xxHash64(buffer, 0), read);
+				}
+			}
+			channel.position(0);
+			return ofChunks(channel);
+		}
+	}
+
+	/**
+	 * Hash the contents of the channel, reading a chunk at a time.
+	 */
+	private static ContentHash ofChunks(final FileChannel channel)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+		final long[] v = initialState(0);
+		long length = 0;
+		int pos = 0;
+		while (true) {
+			final long read = readChunk(channel, buffer);
+			length += read;
+			if (buffer.hasRemaining()) {
+				// End of file: the bytes after the last stripe are the tail
+				pos = processStripes(v, buffer, 0, buffer.position());
+				buffer.flip();
+				break;
+			}
+			processStripes(v, buffer, 0, CHUNK_SIZE);
+			buffer.clear();
+		}
+		final long hash = length >= 32 ? mergeState(v) : PRIME5;
+		return new ContentHash(finish(hash + length, buffer, pos,
+				buffer.limit()), length);
+	}
+
+	/**
+	 * Read from the channel until the buffer is full or the end of file.
+	 *
+	 * @return the number of bytes read
+	 */
+	private static long readChunk(final FileChannel channel,
+			final ByteBuffer buffer) throws IOException {
+		long read = 0;
+		while (buffer.hasRemaining()) {
+			final int n = channel.read(buffer);
+			if (n < 0) {
+				break;
+			}
+			read += n;
+		}
+		return read;
+	}
+
+	private static long[] initialState(final long seed) {
+		return new long[] { seed + PRIME1 + PRIME2, seed + PRIME2, seed,
+				seed - PRIME1 };
+	}
+
+	/**
+	 * Accumulate the 32-byte stripes of the buffer between the given
+	 * positions and return the position after the last stripe.
+	 */
+	private static int processStripes(final long[] v, final ByteBuffer buffer,
+			final int from, final int to) {
+		int pos = from;
+		for (; pos <= to - 32; pos += 32) {
+			v[0] = round(v[0], buffer.getLong(pos));
+			v[1] = round(v[1], buffer.getLong(pos + 8));
+			v[2] = round(v[2], buffer.getLong(pos + 16));
+			v[3] = round(v[3], buffer.getLong(pos + 24));
+		}
+		return pos;
+	}
+
+	private static long mergeState(final long[] v) {
+		long hash = Long.rotateLeft(v[0], 1) + Long.rotateLeft(v[1], 7)
+				+ Long.rotateLeft(v[2], 12) + Long.rotateLeft(v[3], 18);
+		for (final long val : v) {
+			hash = mergeRound(hash, val);
+		}
+		return hash;
+	}
+
+	/**
+	 * Mix the tail of the input, i.e. the bytes of the buffer between the
+	 * given positions, into the hash and avalanche it.
+	 */
+	private static long finish(long hash, final ByteBuffer buffer, int pos,
+			final int length) {
+		for (; pos <= length - 8; pos += 8) {
+			hash ^= round(0, buffer.getLong(pos));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+		}
+		if (pos <= length - 4) {
+			hash ^= (buffer.getInt(pos) & 0xFFFFFFFFL) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+			pos += 4;
+		}
+		for (; pos < length; pos++) {
+			hash ^= (buffer.get(pos) & 0xFFL) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+
+	private static long round(final long acc, final long input) {
+		return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+	}
+
+	private static long mergeRound(final long acc, final long val) {
+		return (acc ^ round(0, val)) * PRIME1 + PRIME4;
+	}
+
+	/**
+	 * Return the XXH64 hash of the remaining bytes of the buffer.
+	 *
+	 * @param input
+	 * @param seed
+	 * @return
+	 */
+	public static long xxHash64(final ByteBuffer input, final long seed) {
+		final ByteBuffer buffer = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+		final int length = buffer.remaining();
+		final long[] v = initialState(seed);
+		final int pos = processStripes(v, buffer, 0, length);
+		final long hash = length >= 32 ? mergeState(v) : seed + PRIME5;
+		return finish(hash + length, buffer, pos, length);
+	}
+
+	private final long hash;
+
+	private final long length;
+
+	public ContentHash(final long hash, final long length) {
+		this.hash = hash;
+		this.length = length;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof ContentHash)) {
+			return false;
+		}
+		final ContentHash other = (ContentHash) obj;
+		return hash == other.hash && length == other.length;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (hash ^ hash >>> 32);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%016x:%d", hash, length);
+	}
+
+}
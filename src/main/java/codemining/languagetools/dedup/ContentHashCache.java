@@ -0,0 +1,158 @@
+/**
+ *
+ */
+package codemining.languagetools.dedup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
+
+/**
+ * Reuse the result of an extraction for files with identical contents. The
+ * extraction runs once per distinct content, even when files are processed
+ * concurrently, and the paths that share each content are recorded. Only the
+ * most recent results are kept, so that memory does not grow with the
+ * corpus; a duplicate whose result has been evicted is extracted again.
+ * Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ * @param <R>
+ *            the type of the extraction result
+ */
+public class ContentHashCache<R> {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(ContentHashCache.class.getName());
+
+	/**
+	 * The default number of results kept for reuse.
+	 */
+	public static final int DEFAULT_MAX_CACHED_RESULTS = 1000;
+
+	private final ConcurrentMap<ContentHash, FutureTask<R>> results;
+
+	/**
+	 * The distinct contents seen, including those whose result was evicted.
+	 */
+	private final Set<ContentHash> seenContents = Sets.newConcurrentHashSet();
+
+	private final Multimap<ContentHash, String> paths = Multimaps
+			.synchronizedMultimap(HashMultimap.create());
+
+	public ContentHashCache() {
+		this(DEFAULT_MAX_CACHED_RESULTS);
+	}
+
+	/**
+	 * @param maxCachedResults
+	 *            the maximum number of results kept for reuse
+	 */
+	public ContentHashCache(final int maxCachedResults) {
+		final Cache<ContentHash, FutureTask<R>> cache = CacheBuilder
+				.newBuilder().maximumSize(maxCachedResults).build();
+		results = cache.asMap();
+	}
+
+	/**
+	 * Return the result of the extractor for the given file, reusing the
+	 * result of any previous file with the same contents. If the file cannot
+	 * be hashed, the extractor is run directly. Unchecked exceptions of the
+	 * extractor are rethrown.
+	 *
+	 * @param file
+	 * @param extractor
+	 * @return
+	 */
+	public R get(final File file, final Function<File, R> extractor) {
+		final ContentHash hash;
+		try {
+			hash = ContentHash.of(file);
+		} catch (final IOException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			return extractor.apply(file);
+		}
+		paths.put(hash, file.getAbsolutePath());
+		seenContents.add(hash);
+
+		final FutureTask<R> task = new FutureTask<R>(
+				() -> extractor.apply(file));
+		final FutureTask<R> existing = results.putIfAbsent(hash, task);
+		if (existing == null) {
+			task.run();
+		}
+		try {
+			return (existing == null ? task : existing).get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Return the number of distinct contents seen.
+	 *
+	 * @return
+	 */
+	public int getNumberOfDistinctContents() {
+		return seenContents.size();
+	}
+
+	/**
+	 * Return all the paths seen with the same contents as the given file.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public Collection<String> getPathsWithSameContent(final File file)
+			throws IOException {
+		final ContentHash hash = ContentHash.of(file);
+		synchronized (paths) {
+			return Lists.newArrayList(paths.get(hash));
+		}
+	}
+
+	/**
+	 * Return true if a file with the same contents has been seen before and
+	 * record it. Useful when reprocessing identical contents is redundant, in
+	 * which case no result is kept.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public boolean isDuplicate(final File file) {
+		try {
+			final ContentHash hash = ContentHash.of(file);
+			paths.put(hash, file.getAbsolutePath());
+			return !seenContents.add(hash);
+		} catch (final IOException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,342 @@
+/**
+ *
+ */
+package codemining.languagetools.dedup;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.languagetools.ITokenizer;
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+/**
+ * Detect near-duplicate documents using MinHash signatures of token shingles
+ * and locality sensitive hashing (LSH) over bands of the signatures. Candidate
+ * pairs that share a band are verified by the estimated Jaccard similarity of
+ * their signatures and merged into clusters.
+ *
+ * Can be used as an inline filter (isNearDuplicate()) or as a pre-pass over a
+ * corpus (getRepresentatives()). Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NearDuplicateDetector {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(NearDuplicateDetector.class.getName());
+
+	/**
+	 * The number of consecutive tokens in a shingle.
+	 */
+	public static final int SHINGLE_SIZE = (int) SettingsLoader
+			.getNumericSetting("minHashShingleSize", 8);
+
+	public static final int NUM_BANDS = (int) SettingsLoader
+			.getNumericSetting("lshBands", 20);
+
+	public static final int ROWS_PER_BAND = (int) SettingsLoader
+			.getNumericSetting("lshRowsPerBand", 5);
+
+	/**
+	 * The minimum estimated Jaccard similarity of near-duplicates.
+	 */
+	public static final double SIMILARITY_THRESHOLD = SettingsLoader
+			.getNumericSetting("nearDuplicateThreshold", .8);
+
+	/**
+	 * Spread the bits of a long (the murmur3 finalizer).
+	 */
+	private static long mix(final long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * The tokenizer of each thread, since tokenizers may keep per-call state.
+	 */
+	private final ThreadLocal<ITokenizer> tokenizers;
+
+	private final int shingleSize;
+
+	private final int nBands;
+
+	private final int rowsPerBand;
+
+	private final double threshold;
+
+	private final long[] seeds;
+
+	/**
+	 * The LSH buckets of each band, from the band hash to document ids.
+	 */
+	private final List<Multimap<Long, Integer>> bandBuckets = Lists
+			.newArrayList();
+
+	private final List<String> documentNames = Lists.newArrayList();
+
+	private final List<long[]> signatures = Lists.newArrayList();
+
+	/**
+	 * The union-find parent of each document.
+	 */
+	private int[] parents = new int[16];
+
+	/**
+	 * @param tokenizers
+	 *            creates the tokenizer of each thread that reads files
+	 */
+	public NearDuplicateDetector(final Supplier<? extends ITokenizer> tokenizers) {
+		this(tokenizers, SHINGLE_SIZE, NUM_BANDS, ROWS_PER_BAND,
+				SIMILARITY_THRESHOLD);
+	}
+
+	public NearDuplicateDetector(
+			final Supplier<? extends ITokenizer> tokenizers,
+			final int shingleSize, final int nBands, final int rowsPerBand,
+			final double threshold) {
+		checkArgument(shingleSize > 0 && nBands > 0 && rowsPerBand > 0);
+		this.tokenizers = ThreadLocal.withInitial(() -> tokenizers.get());
+		this.shingleSize = shingleSize;
+		this.nBands = nBands;
+		this.rowsPerBand = rowsPerBand;
+		this.threshold = threshold;
+		final Random rnd = new Random(4242);
+		seeds = new long[nBands * rowsPerBand];
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = rnd.nextLong();
+		}
+		for (int i = 0; i < nBands; i++) {
+			bandBuckets.add(ArrayListMultimap.create());
+		}
+	}
+
+	/**
+	 * Add a document with the given signature and return its id.
+	 */
+	private synchronized int add(final String name, final long[] signature) {
+		final int docId = documentNames.size();
+		documentNames.add(name);
+		signatures.add(signature);
+		if (docId == parents.length) {
+			parents = Arrays.copyOf(parents, parents.length * 2);
+		}
+		parents[docId] = docId;
+
+		for (int band = 0; band < nBands; band++) {
+			final long bandHash = getBandHash(signature, band);
+			final Multimap<Long, Integer> buckets = bandBuckets.get(band);
+			for (final int otherDoc : buckets.get(bandHash)) {
+				if (find(otherDoc) != find(docId)
+						&& similarity(signature, signatures.get(otherDoc))
+						>= threshold) {
+					union(otherDoc, docId);
+				}
+			}
+			buckets.put(bandHash, docId);
+		}
+		return docId;
+	}
+
+	/**
+	 * Add the given file, returning true if it is a near-duplicate of a file
+	 * already added.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean addFile(final File file) throws IOException {
+		final List<String> tokens = tokenizers.get().tokenListFromCode(FileUtils
+				.readFileToString(file).toCharArray());
+		return isNearDuplicate(file.getAbsolutePath(), tokens);
+	}
+
+	private int find(final int docId) {
+		int root = docId;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		// Path compression
+		int current = docId;
+		while (parents[current] != root) {
+			final int next = parents[current];
+			parents[current] = root;
+			current = next;
+		}
+		return root;
+	}
+
+	private long getBandHash(final long[] signature, final int band) {
+		long hash = band;
+		for (int i = band * rowsPerBand; i < (band + 1) * rowsPerBand; i++) {
+			hash = mix(hash * 31 + signature[i]);
+		}
+		return hash;
+	}
+
+	/**
+	 * Return the clusters of near-duplicate documents that have more than one
+	 * member. The first member of each cluster is the one added first.
+	 *
+	 * @return
+	 */
+	public synchronized List<List<String>> getDuplicateClusters() {
+		final Map<Integer, List<String>> clusters = Maps.newTreeMap();
+		for (int i = 0; i < documentNames.size(); i++) {
+			final int root = find(i);
+			if (!clusters.containsKey(root)) {
+				clusters.put(root, Lists.newArrayList());
+			}
+			clusters.get(root).add(documentNames.get(i));
+		}
+		return clusters.values().stream().filter(c -> c.size() > 1)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Return one representative file per cluster of near-duplicates of the
+	 * given files. Signatures are computed in parallel, but files are
+	 * clustered in path order, so the result is deterministic.
+	 *
+	 * @param files
+	 * @return
+	 */
+	public List<File> getRepresentatives(final Collection<File> files) {
+		final List<File> sortedFiles = files.stream().sorted()
+				.collect(Collectors.toList());
+		final List<long[]> fileSignatures = sortedFiles.parallelStream()
+				.map(f -> getSignature(f)).collect(Collectors.toList());
+
+		final List<File> representatives = Lists.newArrayList();
+		synchronized (this) {
+			for (int i = 0; i < sortedFiles.size(); i++) {
+				if (fileSignatures.get(i) == null) {
+					// Let the extractors deal with unreadable files
+					representatives.add(sortedFiles.get(i));
+					continue;
+				}
+				final int docId = add(sortedFiles.get(i).getAbsolutePath(),
+						fileSignatures.get(i));
+				if (find(docId) == docId) {
+					representatives.add(sortedFiles.get(i));
+				}
+			}
+		}
+		LOGGER.info("Kept " + representatives.size() + " of " + files.size()
+				+ " files after removing near-duplicates");
+		return representatives;
+	}
+
+	/**
+	 * Return the signature of the given file or null if it cannot be read.
+	 */
+	private long[] getSignature(final File file) {
+		try {
+			return getSignature(tokenizers.get().tokenListFromCode(
+					FileUtils.readFileToString(file).toCharArray()));
+		} catch (final IOException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+			return null;
+		}
+	}
+
+	/**
+	 * Return the MinHash signature of the shingles of the token sequence.
+	 *
+	 * @param tokens
+	 * @return
+	 */
+	public long[] getSignature(final List<String> tokens) {
+		final long[] tokenHashes = new long[tokens.size()];
+		for (int i = 0; i < tokenHashes.length; i++) {
+			tokenHashes[i] = mix(tokens.get(i).hashCode());
+		}
+		final long[] signature = new long[seeds.length];
+		Arrays.fill(signature, Long.MAX_VALUE);
+		final int nShingles = Math.max(tokenHashes.length - shingleSize + 1, 1);
+		for (int i = 0; i < nShingles; i++) {
+			long shingleHash = 0;
+			final int end = Math.min(i + shingleSize, tokenHashes.length);
+			for (int j = i; j < end; j++) {
+				shingleHash = shingleHash * 0x9E3779B97F4A7C15L
+						+ tokenHashes[j];
+			}
+			for (int h = 0; h < seeds.length; h++) {
+				final long value = mix(shingleHash ^ seeds[h]);
+				if (value < signature[h]) {
+					signature[h] = value;
+				}
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * Add the given document, returning true if it is a near-duplicate of a
+	 * document already added. Can be used as an inline filter.
+	 *
+	 * @param name
+	 * @param tokens
+	 * @return
+	 */
+	public boolean isNearDuplicate(final String name,
+			final List<String> tokens) {
+		final long[] signature = getSignature(tokens);
+		synchronized (this) {
+			final int docId = add(name, signature);
+			return find(docId) != docId;
+		}
+	}
+
+	/**
+	 * Return the estimated Jaccard similarity of two signatures.
+	 */
+	private double similarity(final long[] signature1, final long[] signature2) {
+		int nEqual = 0;
+		for (int i = 0; i < signature1.length; i++) {
+			if (signature1[i] == signature2[i]) {
+				nEqual++;
+			}
+		}
+		return ((double) nEqual) / signature1.length;
+	}
+
+	/**
+	 * Merge the clusters of the two documents, keeping the earliest document
+	 * as the root.
+	 */
+	private void union(final int doc1, final int doc2) {
+		final int root1 = find(doc1);
+		final int root2 = find(doc2);
+		if (root1 < root2) {
+			parents[root2] = root1;
+		} else if (root2 < root1) {
+			parents[root1] = root2;
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Detection of duplicate and near-duplicate files in code corpora.
+ */
+package codemining.languagetools.dedup;
@@ -0,0 +1,109 @@
+/**
+ *
+ */
+package codemining.languagetools.instrumentation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies with logarithmic buckets. Each power
+ * of two is split in four buckets, so percentiles are within 25% of the
+ * recorded values. Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 2;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Return the bucket of the given (non-negative) value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	static int bucketOf(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) Math.max(value, 0);
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS))
+				& (SUB_BUCKETS - 1);
+		return exponent * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Return the largest value of the given bucket.
+	 *
+	 * @param bucket
+	 * @return
+	 */
+	static long upperBoundOf(final int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int exponent = bucket / SUB_BUCKETS;
+		final int subBucket = bucket % SUB_BUCKETS;
+		final long nextLowerBound = (long) (SUB_BUCKETS + subBucket + 1) << exponent
+				- SUB_BUCKET_BITS;
+		return nextLowerBound - 1;
+	}
+
+	private final LongAdder[] buckets = new LongAdder[64 * SUB_BUCKETS];
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void add(final long value) {
+		buckets[bucketOf(value)].increment();
+	}
+
+	/**
+	 * Return the number of values added.
+	 *
+	 * @return
+	 */
+	public long getCount() {
+		long count = 0;
+		for (final LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * Return an upper bound of the given percentile of the values, or 0 if no
+	 * values have been added.
+	 *
+	 * @param percentile
+	 *            in (0, 100]
+	 * @return
+	 */
+	public long getPercentile(final double percentile) {
+		final long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(total * percentile / 100.);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(counts.length - 1);
+	}
+
+}
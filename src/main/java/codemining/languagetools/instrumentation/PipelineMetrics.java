@@ -0,0 +1,160 @@
+/**
+ *
+ */
+package codemining.languagetools.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import codemining.util.SettingsLoader;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The registry of the metrics of all pipeline stages. When instrumentation is
+ * enabled, the stages are exposed through JMX and their progress is logged
+ * periodically. When disabled, timers are not read and recording is a no-op.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public final class PipelineMetrics {
+
+	private static final Logger LOGGER = Logger
+			.getLogger(PipelineMetrics.class.getName());
+
+	public static final boolean ENABLED = SettingsLoader.getBooleanSetting(
+			"instrumentationEnabled", false);
+
+	/**
+	 * The interval of the progress log, or 0 for no logging.
+	 */
+	public static final int LOG_INTERVAL_SEC = (int) SettingsLoader
+			.getNumericSetting("instrumentationLogIntervalSec", 30);
+
+	private static final ConcurrentMap<String, StageMetrics> STAGES = Maps
+			.newConcurrentMap();
+
+	static {
+		if (ENABLED && LOG_INTERVAL_SEC > 0) {
+			final ScheduledExecutorService logger = Executors
+					.newSingleThreadScheduledExecutor(r -> {
+						final Thread thread = new Thread(r, "pipeline-metrics");
+						thread.setDaemon(true);
+						return thread;
+					});
+			final ProgressLogger progressLogger = new ProgressLogger();
+			logger.scheduleAtFixedRate(progressLogger::log, LOG_INTERVAL_SEC,
+					LOG_INTERVAL_SEC, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Logs the throughput of each stage since the previous log.
+	 */
+	private static final class ProgressLogger {
+
+		private final Map<StageMetrics, long[]> previous = Maps.newHashMap();
+
+		private long previousTime = System.nanoTime();
+
+		void log() {
+			final long now = System.nanoTime();
+			final double elapsedSec = (now - previousTime) / 1E9;
+			previousTime = now;
+			for (final StageMetrics stage : getStages()) {
+				final long[] current = { stage.getCount(), stage.getItems() };
+				final long[] last = previous.getOrDefault(stage, new long[2]);
+				previous.put(stage, current);
+				if (current[0] == last[0]) {
+					continue;
+				}
+				LOGGER.info(String.format(
+						"%s: %d done (%.1f/s), %d %s (%.1f/s), "
+								+ "p99 %.1fms, %d failures", stage,
+						current[0], (current[0] - last[0]) / elapsedSec,
+						current[1], stage.getItemUnit(),
+						(current[1] - last[1]) / elapsedSec,
+						stage.getP99LatencyMs(), stage.getFailures()));
+			}
+		}
+	}
+
+	/**
+	 * Return the metrics of the given stage and language, creating them if
+	 * needed.
+	 *
+	 * @param stage
+	 * @param language
+	 * @param itemUnit
+	 *            the name of the items counted by the stage, e.g. tokens
+	 * @return
+	 */
+	public static StageMetrics getStage(final String stage,
+			final String language, final String itemUnit) {
+		final String key = stage + "/" + language;
+		final StageMetrics existing = STAGES.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		final StageMetrics metrics = new StageMetrics(stage, language,
+				itemUnit);
+		final StageMetrics previous = STAGES.putIfAbsent(key, metrics);
+		if (previous != null) {
+			return previous;
+		}
+		if (ENABLED) {
+			register(metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Return the metrics of all the stages.
+	 *
+	 * @return
+	 */
+	public static Collection<StageMetrics> getStages() {
+		return Lists.newArrayList(STAGES.values());
+	}
+
+	private static void register(final StageMetrics metrics) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					metrics,
+					new ObjectName("codemining:type=PipelineStage,stage="
+							+ ObjectName.quote(metrics.getStage())
+							+ ",language="
+							+ ObjectName.quote(metrics.getLanguage())));
+		} catch (final JMException e) {
+			LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+		}
+	}
+
+	/**
+	 * Return the start time of a timed stage, or 0 when instrumentation is
+	 * disabled.
+	 *
+	 * @return
+	 */
+	public static long startTimer() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	private PipelineMetrics() {
+		// No instantiations
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package codemining.languagetools.instrumentation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The timers and counters of a pipeline stage (e.g. parsing) for a single
+ * language. Recording is a no-op unless instrumentation is enabled.
+ * Thread-safe.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class StageMetrics implements StageMetricsMXBean {
+
+	private final String stage;
+
+	private final String language;
+
+	private final String itemUnit;
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder items = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	StageMetrics(final String stage, final String language,
+			final String itemUnit) {
+		this.stage = stage;
+		this.language = language;
+		this.itemUnit = itemUnit;
+	}
+
+	void add(final long nanos, final long nItems) {
+		count.increment();
+		items.add(nItems);
+		totalNanos.add(nanos);
+		latencies.add(nanos);
+	}
+
+	void addFailure() {
+		failures.increment();
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	@Override
+	public String getItemUnit() {
+		return itemUnit;
+	}
+
+	@Override
+	public long getItems() {
+		return items.sum();
+	}
+
+	@Override
+	public String getLanguage() {
+		return language;
+	}
+
+	@Override
+	public double getMeanLatencyMs() {
+		final long n = count.sum();
+		return n == 0 ? 0 : totalNanos.sum() / 1E6 / n;
+	}
+
+	@Override
+	public double getP99LatencyMs() {
+		return latencies.getPercentile(99) / 1E6;
+	}
+
+	@Override
+	public String getStage() {
+		return stage;
+	}
+
+	@Override
+	public double getTotalTimeMs() {
+		return totalNanos.sum() / 1E6;
+	}
+
+	/**
+	 * Record an invocation of the stage that started at the given time.
+	 *
+	 * @param startNanos
+	 *            as returned by {@link PipelineMetrics#startTimer()}
+	 * @param nItems
+	 *            the number of items (e.g. tokens) processed
+	 */
+	public void record(final long startNanos, final long nItems) {
+		if (PipelineMetrics.ENABLED) {
+			add(System.nanoTime() - startNanos, nItems);
+		}
+	}
+
+	/**
+	 * Record a failed invocation of the stage.
+	 */
+	public void recordFailure() {
+		if (PipelineMetrics.ENABLED) {
+			addFailure();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return stage + "/" + language;
+	}
+
+}
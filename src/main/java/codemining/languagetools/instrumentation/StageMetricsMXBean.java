@@ -0,0 +1,32 @@
+/**
+ *
+ */
+package codemining.languagetools.instrumentation;
+
+/**
+ * The JMX view of the metrics of a pipeline stage.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public interface StageMetricsMXBean {
+
+	long getCount();
+
+	long getFailures();
+
+	String getItemUnit();
+
+	long getItems();
+
+	String getLanguage();
+
+	double getMeanLatencyMs();
+
+	double getP99LatencyMs();
+
+	String getStage();
+
+	double getTotalTimeMs();
+
+}
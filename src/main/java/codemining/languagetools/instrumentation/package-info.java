@@ -0,0 +1,5 @@
+/**
+ * Low-overhead timers and counters of the stages of code processing
+ * pipelines, switched on with the instrumentationEnabled setting.
+ */
+package codemining.languagetools.instrumentation;
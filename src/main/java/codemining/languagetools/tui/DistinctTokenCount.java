@@ -3,21 +3,20 @@
  */
 package codemining.languagetools.tui;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
-import org.apache.commons.lang.exception.ExceptionUtils;
 
 import codemining.languagetools.ITokenizer;
 import codemining.languagetools.TokenizerUtils;
-
-import com.google.common.collect.Multiset.Entry;
-import com.google.common.collect.TreeMultiset;
+import codemining.languagetools.counting.DistinctTokenCounter;
 
 /**
  * Print to stdout the total count of all unique tokens in the text.
@@ -28,7 +27,7 @@ import com.google.common.collect.TreeMultiset;
  * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
  * 
  */
-public class DistinctTokenCount {
+public class DistinctTokenCount implements Closeable {
 
 	private static final Logger LOGGER = Logger
 			.getLogger(DistinctTokenCount.class.getName());
@@ -38,54 +37,84 @@ public class DistinctTokenCount {
 	 * @throws ClassNotFoundException
 	 * @throws IllegalAccessException
 	 * @throws InstantiationException
+	 * @throws InterruptedException
+	 * @throws IOException
 	 */
 	public static void main(final String[] args) throws InstantiationException,
-			IllegalAccessException, ClassNotFoundException {
+			IllegalAccessException, ClassNotFoundException, IOException,
+			InterruptedException {
 
-		if (args.length != 2) {
-			System.err.println("Usage: <directory> <tokenizerClass>");
+		if (args.length < 2 || args.length > 3) {
+			System.err
+					.println("Usage: <directory> <tokenizerClass> [exact|approximate]");
 			return;
 		}
 
-		final DistinctTokenCount tokCount = new DistinctTokenCount(args[1]);
-		for (final File fi : FileUtils.listFiles(new File(args[0]),
-				new RegexFileFilter(".*\\.java$"),
-				DirectoryFileFilter.DIRECTORY)) {
-			try {
-				tokCount.addTokens(fi);
-			} catch (final IOException e) {
-				LOGGER.warning(ExceptionUtils.getFullStackTrace(e));
+		final boolean approximate = args.length == 3
+				&& args[2].equals("approximate");
+		try (final DistinctTokenCount tokCount = new DistinctTokenCount(
+				args[1], approximate)) {
+			tokCount.counter.addFiles(FileUtils.listFiles(new File(args[0]),
+					new RegexFileFilter(".*\\.java$"),
+					DirectoryFileFilter.DIRECTORY), Runtime.getRuntime()
+					.availableProcessors());
+			if (approximate) {
+				tokCount.printSummary();
+			} else {
+				tokCount.printCounts();
 			}
 		}
-
-		tokCount.printCounts();
 	}
 
-	private final TreeMultiset<String> allTokens = TreeMultiset.create();
+	private final DistinctTokenCounter counter;
 
 	private final ITokenizer tokenizer;
 
 	public DistinctTokenCount(final String tokenizerClass)
 			throws InstantiationException, IllegalAccessException,
 			ClassNotFoundException {
-		tokenizer = TokenizerUtils.tokenizerForClass(tokenizerClass);
+		this(tokenizerClass, false);
+	}
+
+	public DistinctTokenCount(final String tokenizerClass,
+			final boolean approximate) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException {
+		final Supplier<ITokenizer> tokenizers = TokenizerUtils
+				.tokenizerSupplierForClass(tokenizerClass);
+		tokenizer = tokenizers.get();
+		counter = new DistinctTokenCounter(tokenizers, approximate);
 	}
 
 	public void addTokens(final File file) throws IOException {
 		LOGGER.finer("Reading file " + file.getAbsolutePath());
 		final char[] code = FileUtils.readFileToString(file).toCharArray();
 		final List<String> tokens = tokenizer.tokenListFromCode(code);
-		allTokens.addAll(tokens);
+		counter.addTokens(tokens);
+	}
 
+	@Override
+	public void close() {
+		counter.close();
 	}
 
 	/**
 	 * Prints the counts.
+	 *
+	 * @throws IOException
 	 */
-	public void printCounts() {
-		for (final Entry<String> token : allTokens.entrySet()) {
-			System.out.println(token.getCount());
-		}
+	public void printCounts() throws IOException {
+		counter.forEachCount((token, count) -> System.out.println(count));
+	}
+
+	/**
+	 * Prints the total and the (estimated) distinct number of tokens.
+	 *
+	 * @throws IOException
+	 */
+	public void printSummary() throws IOException {
+		System.out.println("Tokens: " + counter.getTotalTokenCount());
+		System.out.println("Distinct tokens: "
+				+ counter.getDistinctTokenCount());
 	}
 
 }
@@ -0,0 +1,56 @@
+/**
+ *
+ */
+package codemining.languagetools.tui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+
+import codemining.languagetools.ITokenizer;
+import codemining.languagetools.TokenizerUtils;
+import codemining.languagetools.counting.NGramCounter;
+
+/**
+ * Count the token n-grams of a corpus and write a sorted count file per
+ * n-gram order.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NGramCount {
+
+	/**
+	 * @param args
+	 * @throws ClassNotFoundException
+	 * @throws IllegalAccessException
+	 * @throws InstantiationException
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException,
+			InterruptedException, IOException {
+		if (args.length != 5) {
+			System.err
+					.println("Usage <codeDir> <TokenizerClass> <order> <minCount> <outputDir>");
+			return;
+		}
+
+		final Supplier<ITokenizer> tokenizers = TokenizerUtils
+				.tokenizerSupplierForClass(args[1]);
+		final ITokenizer tokenizer = tokenizers.get();
+		final NGramCounter counter = new NGramCounter(tokenizers,
+				Integer.parseInt(args[2]));
+		final Collection<File> files = FileUtils.listFiles(new File(args[0]),
+				tokenizer.getFileFilter(), DirectoryFileFilter.DIRECTORY);
+		counter.addFiles(files, Runtime.getRuntime().availableProcessors());
+		counter.prune(Long.parseLong(args[3]));
+		counter.writeCounts(new File(args[4]));
+	}
+
+}
@@ -0,0 +1,52 @@
+/**
+ *
+ */
+package codemining.languagetools.tui;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+
+import codemining.languagetools.ITokenizer;
+import codemining.languagetools.TokenizerUtils;
+import codemining.languagetools.dedup.NearDuplicateDetector;
+
+/**
+ * Print the clusters of near-duplicate files in a folder, one cluster per
+ * line. The first file of each cluster is its representative.
+ *
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NearDuplicateClusters {
+
+	/**
+	 * @param args
+	 * @throws ClassNotFoundException
+	 * @throws IllegalAccessException
+	 * @throws InstantiationException
+	 */
+	public static void main(final String[] args) throws InstantiationException,
+			IllegalAccessException, ClassNotFoundException {
+		if (args.length != 2) {
+			System.err.println("Usage <codeDir> <TokenizerClass>");
+			return;
+		}
+
+		final Supplier<ITokenizer> tokenizers = TokenizerUtils
+				.tokenizerSupplierForClass(args[1]);
+		final NearDuplicateDetector detector = new NearDuplicateDetector(
+				tokenizers);
+		detector.getRepresentatives(FileUtils.listFiles(new File(args[0]),
+				tokenizers.get().getFileFilter(),
+				DirectoryFileFilter.DIRECTORY));
+
+		for (final List<String> cluster : detector.getDuplicateClusters()) {
+			System.out.println(String.join("\t", cluster));
+		}
+	}
+
+}
@@ -13,6 +13,7 @@ import org.apache.commons.lang.exception.ExceptionUtils;
 
 import codemining.languagetools.ITokenizer;
 import codemining.languagetools.TokenizerUtils;
+import codemining.languagetools.corpus.CorpusShard;
 
 /**
  * Utility for counting all the tokens in a folder.
@@ -44,8 +45,10 @@ public class TokenCounter {
 
 		final ITokenizer tokenizer = TokenizerUtils.tokenizerForClass(args[1]);
 
-		for (final File fi : FileUtils.listFiles(new File(args[0]),
-				tokenizer.getFileFilter(), DirectoryFileFilter.DIRECTORY)) {
+		final File baseDir = new File(args[0]);
+		for (final File fi : CorpusShard.select(FileUtils.listFiles(baseDir,
+				tokenizer.getFileFilter(), DirectoryFileFilter.DIRECTORY),
+				baseDir)) {
 			try {
 				final char[] code = FileUtils.readFileToString(fi)
 						.toCharArray();
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
+import java.util.function.Supplier;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
@@ -15,6 +16,8 @@ import org.eclipse.jdt.core.compiler.InvalidInputException;
 import codemining.languagetools.ITokenizer;
 import codemining.languagetools.ITokenizer.FullToken;
 import codemining.languagetools.TokenizerUtils;
+import codemining.languagetools.dedup.NearDuplicateDetector;
+import codemining.util.SettingsLoader;
 
 import com.google.common.collect.Lists;
 
@@ -26,6 +29,13 @@ import com.google.common.collect.Lists;
  * 
  */
 public class TokenizerTUI {
+
+	/**
+	 * Print only one file per cluster of near-duplicates.
+	 */
+	public static final boolean SKIP_NEAR_DUPLICATES = SettingsLoader
+			.getBooleanSetting("skipNearDuplicateFiles", false);
+
 	public static void main(final String[] args) throws InvalidInputException,
 			IOException, InstantiationException, IllegalAccessException,
 			ClassNotFoundException, IllegalArgumentException,
@@ -48,7 +58,23 @@ public class TokenizerTUI {
 
 		final File baseFile = new File(args[0]);
 		final Collection<File> allFiles;
-		if (baseFile.isDirectory()) {
+		if (baseFile.isDirectory() && SKIP_NEAR_DUPLICATES) {
+			// The tokenizer may keep per-call state, so each thread of the
+			// detector gets its own
+			final Supplier<ITokenizer> tokenizers = () -> {
+				try {
+					return args.length == 2 ? TokenizerUtils
+							.tokenizerForClass(tokenizerClass)
+							: TokenizerUtils.tokenizerForClass(tokenizerClass,
+									args[2]);
+				} catch (final ReflectiveOperationException e) {
+					throw new IllegalStateException(e);
+				}
+			};
+			allFiles = new NearDuplicateDetector(tokenizers)
+					.getRepresentatives(FileUtils.listFiles(baseFile,
+							tok.getFileFilter(), DirectoryFileFilter.DIRECTORY));
+		} else if (baseFile.isDirectory()) {
 			allFiles = FileUtils.listFiles(baseFile, tok.getFileFilter(),
 					DirectoryFileFilter.DIRECTORY);
 		} else {
@@ -2,6 +2,7 @@ package codemining.python.codeutils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.SortedMap;
@@ -14,7 +15,12 @@ import org.python.pydev.parser.grammarcommon.ITokenManager;
 import org.python.pydev.parser.jython.FastCharStream;
 import org.python.pydev.parser.jython.Token;
 
+import codemining.languagetools.CachedTokenClassifier;
+import codemining.languagetools.CachedTokenClassifier.ITokenScanner;
 import codemining.languagetools.ITokenizer;
+import codemining.languagetools.LineIndex;
+import codemining.languagetools.instrumentation.PipelineMetrics;
+import codemining.languagetools.instrumentation.StageMetrics;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -29,12 +35,34 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 
 	private static final long serialVersionUID = 5009530263783901964L;
 
+	private static final StageMetrics TOKENIZE_METRICS = PipelineMetrics.getStage(
+			"tokenize", "python", "tokens");
+
 	/**
 	 * A filter for the files being tokenized.
 	 */
 	private static final RegexFileFilter pythonCodeFilter = new RegexFileFilter(
 			".*\\.py$");
 
+	/**
+	 * The keywords and operators that are precomputed for getTokenFromString.
+	 */
+	private static final String[] FIXED_TOKENS = { "and", "as", "assert",
+			"break", "class", "continue", "def", "del", "elif", "else",
+			"except", "exec", "finally", "for", "from", "global", "if",
+			"import", "in", "is", "lambda", "nonlocal", "not", "or", "pass",
+			"print", "raise", "return", "try", "while", "with", "yield",
+			"True", "False", "None", "(", ")", "[", "]", "{", "}", ";", ",",
+			".", ":", "=", "@", "+", "-", "*", "/", "//", "%", "**", "<<",
+			">>", "&", "|", "^", "~", "<", ">", "<=", ">=", "==", "!=", "<>",
+			"->", "+=", "-=", "*=", "/=", "//=", "%=", "**=", "<<=", ">>=",
+			"&=", "|=", "^=" };
+
+	/**
+	 * Lazily created, since tokenizers are serializable.
+	 */
+	private transient volatile CachedTokenClassifier tokenClassifier;
+
 	public AbstractPythonTokenizer() {
 		super();
 	}
@@ -44,16 +72,17 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 		final FastCharStream stream = new FastCharStream(code);
 		final ITokenManager mng = getPythonTokenizer(stream);
 		final SortedMap<Integer, FullToken> tokens = Maps.newTreeMap();
+		final LineIndex lineIndex = new LineIndex(code);
+		int previousEnd = 0;
 
 		Token nextToken = mng.getNextToken();
 		while (nextToken.kind != 0) {
 			if (shouldAdd(nextToken)) {
-				// TODO: Bad Heurisitc...
-				tokens.put(
-						nextToken.getBeginLine() * 500
-								+ nextToken.getBeginCol(),
-						new FullToken(nextToken.image, Integer
-								.toString(nextToken.kind)));
+				final int position = getTokenPosition(code, lineIndex,
+						nextToken, previousEnd);
+				tokens.put(position, new FullToken(nextToken.image, Integer
+						.toString(nextToken.kind)));
+				previousEnd = position + nextToken.image.length();
 			}
 			nextToken = mng.getNextToken();
 		}
@@ -93,12 +122,67 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 
 	public abstract ITokenManager getPythonTokenizer(final FastCharStream stream);
 
+	/**
+	 * Return the character offset of the given token. PyDev reports 1-based
+	 * lines and columns, so the column is checked against the token image. If
+	 * they disagree (e.g. due to tabs), the line is searched for the image
+	 * after the end of the previous token, so that repeated tokens of a line
+	 * (e.g. x = x) get their own positions.
+	 *
+	 * @param code
+	 * @param lineIndex
+	 * @param token
+	 * @param previousEnd
+	 *            the position after the end of the previous token
+	 * @return
+	 */
+	private int getTokenPosition(final char[] code, final LineIndex lineIndex,
+			final Token token, final int previousEnd) {
+		final int line = Math.min(Math.max(token.getBeginLine(), 1),
+				lineIndex.getNumberOfLines());
+		final int lineStart = lineIndex.getLineStart(line);
+		final int position = Math.min(
+				lineStart + Math.max(token.getBeginCol() - 1, 0), code.length);
+		if (position >= previousEnd && imageAt(code, position, token.image)) {
+			return position;
+		}
+		for (int i = Math.max(lineStart, previousEnd); i < code.length
+				&& code[i] != '\n'; i++) {
+			if (imageAt(code, i, token.image)) {
+				return i;
+			}
+		}
+		return Math.max(position, previousEnd);
+	}
+
+	/**
+	 * Return the classifier used for getTokenFromString.
+	 *
+	 * @return
+	 */
+	private CachedTokenClassifier getTokenClassifier() {
+		if (tokenClassifier == null) {
+			// The name token kind differs across grammars, so ask the grammar
+			final String nameType = scanToken("a").tokenType;
+			tokenClassifier = new CachedTokenClassifier(new ITokenScanner() {
+
+				@Override
+				public FullToken identifierToken(final String token) {
+					return new FullToken(token, nameType);
+				}
+
+				@Override
+				public FullToken scanToken(final String token) {
+					return AbstractPythonTokenizer.this.scanToken(token);
+				}
+			}, nameType, Arrays.asList(FIXED_TOKENS), "_");
+		}
+		return tokenClassifier;
+	}
+
 	@Override
 	public FullToken getTokenFromString(final String token) {
-		final FastCharStream stream = new FastCharStream(token.toCharArray());
-		final ITokenManager mng = getPythonTokenizer(stream);
-		final Token pyToken = mng.getNextToken();
-		return new FullToken(pyToken.image, Integer.toString(pyToken.kind));
+		return getTokenClassifier().getTokenFromString(token);
 	}
 
 	@Override
@@ -126,6 +210,35 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 				.toCharArray());
 	}
 
+	/**
+	 * Return true if the image appears in the code at the given position.
+	 */
+	private boolean imageAt(final char[] code, final int position,
+			final String image) {
+		if (image == null || position + image.length() > code.length) {
+			return false;
+		}
+		for (int i = 0; i < image.length(); i++) {
+			if (code[position + i] != image.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the first token of the given string.
+	 *
+	 * @param token
+	 * @return
+	 */
+	private FullToken scanToken(final String token) {
+		final FastCharStream stream = new FastCharStream(token.toCharArray());
+		final ITokenManager mng = getPythonTokenizer(stream);
+		final Token pyToken = mng.getNextToken();
+		return new FullToken(pyToken.image, Integer.toString(pyToken.kind));
+	}
+
 	/**
 	 * @param nextToken
 	 * @return
@@ -138,6 +251,7 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 
 	@Override
 	public List<String> tokenListFromCode(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final FastCharStream stream = new FastCharStream(code);
 		final ITokenManager mng = getPythonTokenizer(stream);
 		final List<String> tokens = Lists.newArrayList();
@@ -150,6 +264,7 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 			nextToken = mng.getNextToken();
 		}
 
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
@@ -162,21 +277,25 @@ public abstract class AbstractPythonTokenizer implements ITokenizer {
 
 	@Override
 	public SortedMap<Integer, String> tokenListWithPos(final char[] code) {
+		final long start = PipelineMetrics.startTimer();
 		final FastCharStream stream = new FastCharStream(code);
 		final ITokenManager mng = getPythonTokenizer(stream);
 		final SortedMap<Integer, String> tokens = Maps.newTreeMap();
+		final LineIndex lineIndex = new LineIndex(code);
+		int previousEnd = 0;
 
 		Token nextToken = mng.getNextToken();
 		while (nextToken.kind != 0) {
 			if (shouldAdd(nextToken)) {
-				// TODO: Bad Heurisitc...
-				tokens.put(
-						nextToken.getBeginLine() * 500
-								+ nextToken.getBeginCol(), nextToken.image);
+				final int position = getTokenPosition(code, lineIndex,
+						nextToken, previousEnd);
+				tokens.put(position, nextToken.image);
+				previousEnd = position + nextToken.image.length();
 			}
 			nextToken = mng.getNextToken();
 		}
 
+		TOKENIZE_METRICS.record(start, tokens.size());
 		return tokens;
 	}
 
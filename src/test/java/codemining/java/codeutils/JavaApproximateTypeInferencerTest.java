@@ -10,6 +10,7 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import codemining.java.codeutils.JavaApproximateTypeInferencer.TypesAtPositions;
 import codemining.languagetools.ParseType;
 
 public class JavaApproximateTypeInferencerTest {
@@ -51,4 +52,34 @@ public class JavaApproximateTypeInferencerTest {
 				"java.io.IOException | java.lang.ArithmeticException");
 
 	}
+
+	@Test
+	public void testScopes() {
+		final String code = "class A { int x; void f(String x) { x.length(); } void g() { x++; { long x; x--; } x++; } }";
+		final JavaASTExtractor ex = new JavaASTExtractor(false);
+		final JavaApproximateTypeInferencer jati = new JavaApproximateTypeInferencer(
+				ex.getAST(code, ParseType.COMPILATION_UNIT));
+		jati.infer();
+		final Map<Integer, String> types = jati.getVariableTypesAtPosition();
+		assertEquals("java.lang.String", types.get(code.indexOf("x.length")));
+		assertEquals("int", types.get(code.indexOf("x++")));
+		assertEquals("long", types.get(code.indexOf("x--")));
+		assertEquals("int", types.get(code.lastIndexOf("x++")));
+	}
+
+	@Test
+	public void testTypeIdsAtPosition() {
+		final JavaASTExtractor ex = new JavaASTExtractor(false);
+		final JavaApproximateTypeInferencer jati = new JavaApproximateTypeInferencer(
+				ex.getAST(classContent, ParseType.COMPILATION_UNIT));
+		jati.infer();
+		final Map<Integer, String> types = jati.getVariableTypesAtPosition();
+		final TypesAtPositions typeIds = jati.getVariableTypeIdsAtPosition();
+		assertEquals(types.size(), typeIds.getPositions().length);
+		for (final Map.Entry<Integer, String> type : types.entrySet()) {
+			final int idx = typeIds.indexOf(type.getKey());
+			assertEquals(type.getValue(),
+					typeIds.getType(typeIds.getTypeIds()[idx]));
+		}
+	}
 }
@@ -0,0 +1,141 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.junit.Test;
+
+import codemining.java.codeutils.JavaHeaderScanner.Depth;
+import codemining.java.codeutils.JavaHeaderScanner.JavaHeader;
+import codemining.java.codeutils.JavaHeaderScanner.TypeHeader;
+import codemining.java.codeutils.JavaHeaderScanner.TypeKind;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class JavaHeaderScannerTest {
+
+	private static final String CODE = "package a.b;\n"
+			+ "import static java.lang.Math.max;\n"
+			+ "import java.util.*;\n"
+			+ "public abstract class Outer<K extends Comparable<K>, V> extends Base<K> implements Map<K, List<V>>, java.io.Serializable {\n"
+			+ "	Map<String, Integer> m = new HashMap<String, Integer>(), n = Collections.<String, Integer>emptyMap();\n"
+			+ "	Runnable r = new Runnable() { public void run() { int x = 1; } };\n"
+			+ "	static { System.out.println(\"{\"); }\n"
+			+ "	public <T extends Comparable<? super T>> List<T> sort(final List<? extends T> list, int... rest) throws IOException {\n"
+			+ "		return null;\n"
+			+ "	}\n"
+			+ "	Outer(int x) { this(x, 2); }\n"
+			+ "	interface Listener extends java.util.EventListener, Cloneable {\n"
+			+ "		default void fire(String s) {}\n"
+			+ "	}\n"
+			+ "	enum Color implements Listener {\n"
+			+ "		RED(1) { void x() {} }, GREEN;\n"
+			+ "		Color(int i) {}\n" + "	}\n" + "}\n"
+			+ "interface Empty {}\n";
+
+	private static File getSample(final String name) {
+		return new File(JavaHeaderScannerTest.class.getClassLoader()
+				.getResource(name).getFile());
+	}
+
+	@Test
+	public void testDepths() {
+		final JavaHeader imports = JavaHeaderScanner.scan(CODE.toCharArray(),
+				Depth.IMPORTS);
+		assertEquals("a.b", imports.getPackageName());
+		assertEquals(Lists.newArrayList("java.lang.Math.max", "java.util"),
+				imports.getImports());
+		assertEquals(Lists.newArrayList("java.lang.Math.max"),
+				imports.getStaticImports());
+		assertTrue(imports.getTypes().isEmpty());
+
+		final JavaHeader types = JavaHeaderScanner.scan(CODE.toCharArray(),
+				Depth.TYPES);
+		assertEquals(2, types.getTypes().size());
+		assertEquals("a.b.Empty", types.getTypes().get(1).getName());
+		assertTrue(types.getTypes().get(0).getMethods().isEmpty());
+	}
+
+	@Test
+	public void testMembers() {
+		final List<TypeHeader> types = JavaHeaderScanner.scan(
+				CODE.toCharArray(), Depth.MEMBERS).getTypes();
+		assertEquals(4, types.size());
+
+		final TypeHeader outer = types.get(0);
+		assertEquals("a.b.Outer", outer.getName());
+		assertEquals(TypeKind.CLASS, outer.getKind());
+		assertEquals("Base<K>", outer.getSuperclass());
+		assertEquals(
+				Lists.newArrayList("Map<K,List<V>>", "java.io.Serializable"),
+				outer.getSuperInterfaces());
+		assertEquals(Lists.newArrayList("m:Map<String,Integer>",
+				"n:Map<String,Integer>", "r:Runnable"), outer.getFields());
+		assertEquals(Lists.newArrayList("sort:List<T>(List<? extends T>,int,)",
+				"Outer:constructor(int,)"), outer.getMethods());
+
+		final TypeHeader listener = types.get(1);
+		assertEquals("a.b.Outer.Listener", listener.getName());
+		assertEquals(TypeKind.INTERFACE, listener.getKind());
+		assertNull(listener.getSuperclass());
+		assertEquals(
+				Lists.newArrayList("java.util.EventListener", "Cloneable"),
+				listener.getSuperInterfaces());
+		assertEquals(Lists.newArrayList("fire:void(String,)"),
+				listener.getMethods());
+
+		final TypeHeader color = types.get(2);
+		assertEquals(TypeKind.ENUM, color.getKind());
+		assertEquals(Lists.newArrayList("Color:constructor(int,)"),
+				color.getMethods());
+
+		assertEquals("a.b.Empty", types.get(3).getName());
+	}
+
+	@Test
+	public void testSameMethodsAsAst() throws IOException {
+		for (final String sample : new String[] { "SampleClass.txt",
+				"SampleClass2.txt", "SampleClass3.txt" }) {
+			final File file = getSample(sample);
+			final CompilationUnit cu = new JavaASTExtractor(false)
+					.getAST(file);
+			final List<String> astMethods = Lists.newArrayList();
+			cu.accept(new ASTVisitor() {
+				@Override
+				public boolean visit(final MethodDeclaration node) {
+					astMethods.add(node.getName().getIdentifier() + ":"
+							+ MethodUtils.getMethodType(node));
+					return false;
+				}
+			});
+
+			final List<String> scannedMethods = Lists.newArrayList();
+			final JavaHeader header = JavaHeaderScanner.scan(file,
+					Depth.MEMBERS);
+			for (final TypeHeader type : header.getTypes()) {
+				scannedMethods.addAll(type.getMethods());
+			}
+			assertEquals(sample, astMethods, scannedMethods);
+			assertEquals(sample, cu.getPackage().getName()
+					.getFullyQualifiedName(), header.getPackageName());
+			assertEquals(sample, cu.imports().size(), header.getImports()
+					.size());
+		}
+	}
+
+}
@@ -113,4 +113,18 @@ public class TokenizeJavaCodeTest {
 						.toString(ITerminalSymbols.TokenNameLBRACE)));
 
 	}
+
+	@Test
+	public void testTokenTypesMatchScanner() {
+		final ITokenizer tokenizer = new JavaTokenizer();
+		for (final String token : new String[] { "hello", "int", "assert",
+				"null", ">>>=", "...", "42", "0", "0x1F", "2.5f", "10L",
+				"\"a string\"", "'c'", "_name$", "x2" }) {
+			assertEquals(tokenizer.getTokenFromString(token), tokenizer
+					.getTokenListFromCode(token.toCharArray()).get(1));
+			// Second time from the cache
+			assertEquals(tokenizer.getTokenFromString(token), tokenizer
+					.getTokenListFromCode(token.toCharArray()).get(1));
+		}
+	}
 }
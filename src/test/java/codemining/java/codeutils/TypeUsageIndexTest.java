@@ -0,0 +1,64 @@
+/**
+ *
+ */
+package codemining.java.codeutils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.junit.Test;
+
+import codemining.java.codeutils.TypeUsageIndex.Usage;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class TypeUsageIndexTest {
+
+	private static final String[] QUERIES = { "java.util", "java.util.List",
+			"java.util.Map", "java.io.IOException", "your.pack",
+			"your.pack2.ParamType", "com.google", "int", "String",
+			"not.imported" };
+
+	@Test
+	public void testSameAsUsagePoints() throws IOException {
+		final List<File> files = Lists.newArrayList();
+		for (final String sample : new String[] { "SampleClass.txt",
+				"SampleClass2.txt", "SampleClass3.txt" }) {
+			files.add(new File(TypeUsageIndexTest.class.getClassLoader()
+					.getResource(sample).getFile()));
+		}
+		final File indexFile = File.createTempFile("typeUsages", ".idx");
+		indexFile.deleteOnExit();
+		TypeUsageIndex.build(files, indexFile);
+
+		try (final TypeUsageIndex index = new TypeUsageIndex(indexFile)) {
+			assertEquals(files.size(), index.getNumFiles());
+			for (final String query : QUERIES) {
+				final List<String> expected = Lists.newArrayList();
+				for (final File file : files) {
+					for (final ASTNode node : UsagePointExtractor.usagePoints(
+							query, file)) {
+						expected.add(file.getAbsolutePath() + ":"
+								+ node.getStartPosition() + "+"
+								+ node.getLength() + " "
+								+ node.getClass().getSimpleName());
+					}
+				}
+				final List<String> actual = Lists.newArrayList();
+				for (final Usage usage : index.getUsages(query)) {
+					actual.add(usage.toString());
+				}
+				assertEquals(query, expected, actual);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+/**
+ *
+ */
+package codemining.java.codeutils.binding;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+import codemining.java.codedata.metrics.CyclomaticCalculator;
+import codemining.java.codeutils.JavaASTExtractor;
+import codemining.java.codeutils.JavaAstExtractorTest;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class JavaFeatureContextTest {
+
+	private static List<MethodDeclaration> getMethods(final CompilationUnit cu) {
+		final List<MethodDeclaration> methods = Lists.newArrayList();
+		cu.accept(new ASTVisitor() {
+			@Override
+			public boolean visit(final MethodDeclaration node) {
+				methods.add(node);
+				return super.visit(node);
+			}
+		});
+		return methods;
+	}
+
+	@Test
+	public void testContextFeatures() throws IOException {
+		for (final String sample : new String[] { "SampleClass.txt",
+				"SampleClass2.txt", "SampleClass3.txt" }) {
+			final CompilationUnit cu = new JavaASTExtractor(false)
+					.getAST(new File(JavaAstExtractorTest.class
+							.getClassLoader().getResource(sample).getFile()));
+			final JavaFeatureContext context = JavaFeatureContext.of(cu);
+			for (final MethodDeclaration md : getMethods(cu)) {
+				assertEquals((int) new CyclomaticCalculator()
+						.getMetricForASTNode(md),
+						context.getCyclomaticComplexity(md));
+
+				if (md.getParent() instanceof TypeDeclaration) {
+					final Set<String> siblings = Sets.newHashSet();
+					for (final MethodDeclaration other : ((TypeDeclaration) md
+							.getParent()).getMethods()) {
+						if (!other.getName().getIdentifier()
+								.equals(md.getName().getIdentifier())) {
+							for (final String part : JavaFeatureExtractor
+									.getNameParts(other.getName()
+											.getIdentifier())) {
+								siblings.add("sibling:" + part);
+							}
+						}
+					}
+					assertEquals(siblings,
+							context.getSiblingMethodFeatures(md));
+				}
+			}
+		}
+	}
+
+}
@@ -7,15 +7,21 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import codemining.java.codeutils.JavaAstExtractorTest;
+import codemining.languagetools.bindings.ResolvedSourceCode;
 import codemining.languagetools.bindings.TokenNameBinding;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
 public class JavaMethodBindingExtractorTest {
 
 	File classContent;
@@ -53,4 +59,26 @@ public class JavaMethodBindingExtractorTest {
 		assertEquals(classMethodBindings2.size(), 6);
 	}
 
+	@Test
+	public void testFeatureSubsets() throws IOException {
+		final JavaMethodDeclarationBindingExtractor extractor = new JavaMethodDeclarationBindingExtractor();
+		final List<Set<?>> featureSubsets = Lists.newArrayList();
+		for (final Object featureType : extractor.getAvailableFeatures()) {
+			featureSubsets.add(Collections.singleton(featureType));
+		}
+		featureSubsets.add(Collections.emptySet());
+
+		final List<ResolvedSourceCode> resolved = extractor
+				.getResolvedSourceCodePerFeatureSubset(classContent,
+						featureSubsets);
+		assertEquals(featureSubsets.size(), resolved.size());
+		for (int i = 0; i < featureSubsets.size(); i++) {
+			extractor.setActiveFeatures(featureSubsets.get(i));
+			final ResolvedSourceCode expected = extractor
+					.getResolvedSourceCode(classContent);
+			assertEquals(Sets.newHashSet(expected.getAllBindings()),
+					Sets.newHashSet(resolved.get(i).getAllBindings()));
+		}
+	}
+
 }
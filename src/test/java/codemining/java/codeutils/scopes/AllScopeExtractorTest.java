@@ -0,0 +1,75 @@
+/**
+ * 
+ */
+package codemining.java.codeutils.scopes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import codemining.java.codeutils.scopes.AllScopeExtractor.AllScopeSnippetExtractor;
+import codemining.languagetools.IScopeExtractor;
+import codemining.languagetools.ParseType;
+import codemining.languagetools.Scope;
+
+import com.google.common.collect.Multimap;
+import com.google.common.collect.TreeMultimap;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ * 
+ */
+public class AllScopeExtractorTest {
+
+	/**
+	 * Run each extractor on its own and merge their scopes.
+	 */
+	private static Multimap<Scope, String> getSeparately(final String code,
+			final ParseType parseType) {
+		final Multimap<Scope, String> scopes = TreeMultimap.create();
+		for (final IScopeExtractor extractor : new IScopeExtractor[] {
+				new VariableScopeExtractor.VariableScopeSnippetExtractor(),
+				new MethodScopeExtractor.MethodScopeSnippetExtractor(true),
+				new TypenameScopeExtractor.TypenameSnippetExtractor(true) }) {
+			scopes.putAll(extractor.getFromString(code, parseType));
+		}
+		return scopes;
+	}
+
+	@Test
+	public void testSameAsSeparateExtractors() throws IOException {
+		for (final String sample : new String[] { "SampleClass.txt",
+				"SampleClass2.txt", "SampleClass3.txt" }) {
+			final String code = FileUtils.readFileToString(new File(
+					AllScopeExtractorTest.class.getClassLoader()
+							.getResource(sample).getFile()));
+			assertEquals(getSeparately(code, ParseType.COMPILATION_UNIT),
+					new AllScopeSnippetExtractor().getFromString(code,
+							ParseType.COMPILATION_UNIT));
+		}
+
+		final String method = FileUtils.readFileToString(new File(
+				AllScopeExtractorTest.class.getClassLoader()
+						.getResource("SampleMethod.txt").getFile()));
+		assertEquals(getSeparately(method, ParseType.METHOD),
+				new AllScopeSnippetExtractor().getFromString(method,
+						ParseType.METHOD));
+	}
+
+	@Test
+	public void testSingleExtractor() throws IOException {
+		final String code = FileUtils.readFileToString(new File(
+				AllScopeExtractorTest.class.getClassLoader()
+						.getResource("SampleClass.txt").getFile()));
+		assertEquals(
+				new VariableScopeExtractor.VariableScopeSnippetExtractor()
+						.getFromString(code, ParseType.COMPILATION_UNIT),
+				new AllScopeSnippetExtractor(true, false, false).getFromString(
+						code, ParseType.COMPILATION_UNIT));
+	}
+
+}
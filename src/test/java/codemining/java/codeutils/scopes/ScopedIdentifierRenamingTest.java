@@ -0,0 +1,127 @@
+/**
+ * 
+ */
+package codemining.java.codeutils.scopes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import codemining.java.codeutils.JavaASTExtractor;
+import codemining.java.codeutils.scopes.ScopedIdentifierRenaming.PreparedScope;
+import codemining.languagetools.ParseType;
+import codemining.languagetools.Scope;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ * 
+ */
+public class ScopedIdentifierRenamingTest {
+
+	private static final String COMMENTED_CODE = "package a;\n"
+			+ "/** A counter. */\n" + "public class Counter {\n"
+			+ "	// The current value\n"
+			+ "	private int count; /* starts at 0 */\n" + "	;\n"
+			+ "	enum Kind { UP, DOWN, }\n"
+			+ "	public int next(final int step) {\n"
+			+ "		// Add the step\n"
+			+ "		final int result = count + step; // the sum\n"
+			+ "		count = result;\n" + "		return result;\n" + "	}\n"
+			+ "}\n";
+
+	private static String readSample(final String name) throws IOException {
+		return FileUtils.readFileToString(new File(
+				ScopedIdentifierRenamingTest.class.getClassLoader()
+						.getResource(name).getFile()));
+	}
+
+	@Test
+	public void testPreparedRangeScopes() throws IOException {
+		final String code = readSample("SampleClass.txt");
+		final ScopedIdentifierRenaming renaming = new ScopedIdentifierRenaming(
+				new VariableScopeExtractor.VariableScopeSnippetExtractor(),
+				ParseType.COMPILATION_UNIT);
+		final Multimap<Scope, String> scopes = VariableScopeExtractor
+				.getScopeSnippets(code, ParseType.COMPILATION_UNIT);
+		final JavaASTExtractor ex = new JavaASTExtractor(false);
+
+		for (final Entry<Scope, String> variable : scopes.entries()) {
+			final PreparedScope prepared = renaming.prepare(variable.getKey(),
+					code);
+			assertTrue(prepared.getIdentifiers().contains(variable.getValue()));
+			assertEquals(code, prepared.getRenamedCode(ImmutableMap
+					.<String, String> of()));
+
+			for (final String to : new String[] { "renamedVariable", "x",
+					"int" }) {
+				final Map<String, String> mapping = ImmutableMap.of(
+						variable.getValue(), to);
+				final String renamed = prepared.getRenamedCode(mapping);
+				assertEquals(ex.getASTNode(renamed, ParseType.COMPILATION_UNIT)
+						.toString(), prepared.getFormattedRenamedCode(mapping));
+			}
+			// The template is reused between mappings
+			assertEquals(code, prepared.getRenamedCode(ImmutableMap
+					.<String, String> of()));
+		}
+	}
+
+	@Test
+	public void testCommentedRangeScopes() {
+		final ScopedIdentifierRenaming renaming = new ScopedIdentifierRenaming(
+				new VariableScopeExtractor.VariableScopeSnippetExtractor(),
+				ParseType.COMPILATION_UNIT);
+		final Multimap<Scope, String> scopes = VariableScopeExtractor
+				.getScopeSnippets(COMMENTED_CODE, ParseType.COMPILATION_UNIT);
+		assertFalse(scopes.isEmpty());
+		// Not the source of the scopes, so their code is searched for
+		final String wholeFile = COMMENTED_CODE + "\n";
+
+		for (final Entry<Scope, String> variable : scopes.entries()) {
+			assertTrue(variable.getKey().getCode().contains("//"));
+			final PreparedScope prepared = renaming.prepare(variable.getKey(),
+					wholeFile);
+			final String renamed = prepared.getRenamedCode(ImmutableMap.of(
+					variable.getValue(), "renamedVariable"));
+			assertTrue(variable.getValue(), renamed.contains("renamedVariable"));
+			assertFalse(renamed.contains(" " + variable.getValue() + " "));
+		}
+	}
+
+	@Test
+	public void testPreparedStringScopes() throws IOException {
+		final String code = readSample("SampleClass.txt");
+		final ScopedIdentifierRenaming renaming = new ScopedIdentifierRenaming(
+				new VariableScopeExtractor.VariableScopeSnippetExtractor(),
+				ParseType.COMPILATION_UNIT);
+		final JavaASTExtractor ex = new JavaASTExtractor(false);
+		final Multimap<Scope, String> scopes = VariableScopeExtractor
+				.getScopeSnippets(ex.getAST(code, ParseType.COMPILATION_UNIT));
+
+		for (final Entry<Scope, String> variable : scopes.entries()) {
+			final PreparedScope prepared = renaming.prepare(variable.getKey(),
+					code);
+			final Map<String, String> mapping = ImmutableMap.of(
+					variable.getValue(), "renamedVariable");
+			final String renamed = prepared.getRenamedCode(mapping);
+			assertFalse(renamed.equals(prepared.getRenamedCode(ImmutableMap
+					.<String, String> of())));
+			assertEquals(renamed, renaming.getRenamedCode(variable.getKey()
+					.getCode(), variable.getValue(), "renamedVariable", code));
+			assertEquals(ex.getASTNode(renamed, ParseType.COMPILATION_UNIT)
+					.toString(), prepared.getFormattedRenamedCode(mapping));
+		}
+	}
+
+}
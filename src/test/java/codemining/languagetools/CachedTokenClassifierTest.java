@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import codemining.languagetools.CachedTokenClassifier.ITokenScanner;
+import codemining.languagetools.ITokenizer.FullToken;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CachedTokenClassifierTest {
+
+	/**
+	 * A fake scanner that classifies by the first char and counts the calls.
+	 */
+	private static final class CountingScanner implements ITokenScanner {
+		final AtomicInteger nScans = new AtomicInteger();
+
+		@Override
+		public FullToken identifierToken(final String token) {
+			return new FullToken(token, "ID");
+		}
+
+		@Override
+		public FullToken scanToken(final String token) {
+			nScans.incrementAndGet();
+			if (token.equals("if") || token.equals("while")) {
+				return new FullToken(token, "KEYWORD");
+			} else if (Character.isDigit(token.charAt(0))) {
+				return new FullToken(token, "NUMBER");
+			} else if (Character.isLetter(token.charAt(0))) {
+				return new FullToken(token, "ID");
+			}
+			return new FullToken(token, "OTHER");
+		}
+	}
+
+	@Test
+	public void testClassification() {
+		final CountingScanner scanner = new CountingScanner();
+		final CachedTokenClassifier classifier = new CachedTokenClassifier(
+				scanner, "ID", Lists.newArrayList("if", "while", "+", "abc"),
+				"_$");
+		// The 4 candidates and the integer probe
+		assertEquals(scanner.nScans.get(), 5);
+
+		assertEquals(classifier.getTokenFromString("if"), new FullToken("if",
+				"KEYWORD"));
+		assertEquals(classifier.getTokenFromString("+"), new FullToken("+",
+				"OTHER"));
+		assertEquals(classifier.getTokenFromString("abc"), new FullToken(
+				"abc", "ID"));
+		assertEquals(classifier.getTokenFromString("_a$1"), new FullToken(
+				"_a$1", "ID"));
+		assertEquals(classifier.getTokenFromString("123"), new FullToken(
+				"123", "NUMBER"));
+		assertEquals(scanner.nScans.get(), 5);
+
+		assertEquals(classifier.getTokenFromString("0x1F"), new FullToken(
+				"0x1F", "NUMBER"));
+		assertEquals(classifier.getTokenFromString("0x1F"), new FullToken(
+				"0x1F", "NUMBER"));
+		assertEquals(classifier.getTokenFromString("\"str\""), new FullToken(
+				"\"str\"", "OTHER"));
+		assertEquals(scanner.nScans.get(), 7);
+
+		// Non-ASCII identifiers are scanned every time
+		assertEquals(classifier.getTokenFromString("été"),
+				new FullToken("été", "ID"));
+		assertEquals(classifier.getTokenFromString("été"),
+				new FullToken("été", "ID"));
+		assertEquals(scanner.nScans.get(), 9);
+	}
+
+}
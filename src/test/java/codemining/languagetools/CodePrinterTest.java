@@ -0,0 +1,64 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import codemining.languagetools.ITokenizer.FullToken;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CodePrinterTest {
+
+	@Test
+	public void testStreamingOutput() throws IOException {
+		final String code = "a<b\n\"é\" & c";
+		final SortedMap<Integer, FullToken> toks = Maps.newTreeMap();
+		toks.put(-1, new FullToken(ITokenizer.SENTENCE_START, ""));
+		toks.put(0, new FullToken("a", ""));
+		toks.put(2, new FullToken("b", ""));
+		toks.put(4, new FullToken("\"é\"", ""));
+		toks.put(10, new FullToken("c", ""));
+		toks.put(Integer.MAX_VALUE, new FullToken(ITokenizer.SENTENCE_END, ""));
+
+		final List<ColoredToken> colored = Lists.newArrayList();
+		colored.add(new ColoredToken("", Color.BLACK));
+		colored.add(new ColoredToken("a", Color.RED));
+		colored.add(new ColoredToken("b", Color.RED));
+		colored.add(new ColoredToken("\"é\"", Color.BLUE));
+		colored.add(new ColoredToken("c", Color.RED));
+
+		final CodePrinter printer = new CodePrinter(null, Color.WHITE);
+		final StringBuilder sb = new StringBuilder();
+		printer.writeHTMLwithColors(colored, code, toks, sb);
+		final String html = sb.toString();
+
+		final String red = "<span style='background-color:rgba(255,255,255,0); color:rgb(255,0,0); '>";
+		assertTrue(html.contains("<div class='line' id='C1'>" + red
+				+ "a</span>&lt;" + red + "b</span><br/></div>\n"));
+		assertTrue(html.contains("<div class='line' id='C2'><span"));
+		assertTrue(html.contains("color:rgb(0,0,255); '>&quot;&#233;&quot;</span> &amp; "
+				+ red + "c</span>"));
+		assertTrue(html.endsWith("</div></body></html>"));
+
+		// Rendering twice gives the same output
+		final StringBuilder sb2 = new StringBuilder();
+		printer.writeHTMLwithColors(colored, code, toks, sb2);
+		assertEquals(html, sb2.toString());
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class IdentifierSplitterTest {
+
+	/**
+	 * The regular expression based splitting that the splitter replaces.
+	 */
+	private static List<String> regexSplit(final String name) {
+		final List<String> nameParts = Lists.newArrayList();
+		for (final String snakecasePart : name.split("_")) {
+			for (final String w : snakecasePart
+					.split("(?<!(^|[A-Z]))(?=[A-Z0-9])|(?<!^)(?=[A-Z][a-z])")) {
+				nameParts.add(w.toLowerCase());
+			}
+		}
+		return nameParts;
+	}
+
+	@Test
+	public void testExamples() {
+		assertEquals(Lists.newArrayList("get", "http", "response", "2",
+				"code"), IdentifierSplitter.getSubtokens("getHTTPResponse2_code"));
+		assertEquals(Lists.newArrayList("max", "value"),
+				IdentifierSplitter.getSubtokens("MAX_VALUE"));
+		assertEquals(Lists.newArrayList("", "foo"),
+				IdentifierSplitter.getSubtokens("_foo"));
+		assertEquals(Lists.newArrayList("foo"),
+				IdentifierSplitter.getSubtokens("foo__"));
+		assertEquals(Lists.newArrayList(),
+				IdentifierSplitter.getSubtokens("__"));
+		assertEquals(Lists.newArrayList(""), IdentifierSplitter.getSubtokens(""));
+	}
+
+	@Test
+	public void testMemoizedAndInterned() {
+		final List<String> parts = IdentifierSplitter
+				.getSubtokens("fooBarBaz");
+		assertSame(parts, IdentifierSplitter.getSubtokens("fooBarBaz"));
+		assertSame(parts.get(1), IdentifierSplitter.getSubtokens("barFoo")
+				.get(0));
+	}
+
+	@Test
+	public void testSameAsRegex() {
+		final String[] samples = { "a", "A", "aB", "AB", "ABc", "ABC1d",
+				"a1b2", "URLDecoder", "getX", "x_y_Z", "_", "a_", "__init__",
+				"HTTPServer2Go", "a1B", "9lives", "Über_größe", "$value",
+				"iOS", "ArrayList<String>", "java.util.Map" };
+		for (final String sample : samples) {
+			assertEquals(sample, regexSplit(sample),
+					IdentifierSplitter.split(sample));
+		}
+
+		final Random random = new Random(42);
+		final String alphabet = "aAbBzZ09_$é";
+		for (int i = 0; i < 10000; i++) {
+			final StringBuilder sb = new StringBuilder();
+			final int length = random.nextInt(10);
+			for (int j = 0; j < length; j++) {
+				sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			final String sample = sb.toString();
+			assertEquals(sample, regexSplit(sample),
+					IdentifierSplitter.split(sample));
+		}
+	}
+
+}
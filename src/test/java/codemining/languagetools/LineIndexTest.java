@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import codemining.java.codeutils.JavaAstExtractorTest;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class LineIndexTest {
+
+	/**
+	 * The original (quadratic) column computation.
+	 */
+	private static int naiveColumn(final String code, final int position) {
+		int newLinePosition = code.substring(0, position).lastIndexOf("\n");
+		if (newLinePosition == -1) {
+			newLinePosition = 0;
+		}
+		int tabCount = 0;
+		for (int i = newLinePosition; i < position; i++) {
+			if (code.charAt(i) == '\t') {
+				tabCount++;
+			}
+		}
+		return position - newLinePosition
+				+ (TokenizerUtils.TAB_INDENT_SIZE - 1) * tabCount;
+	}
+
+	@Test
+	public void testColumnsMatchNaive() throws IOException {
+		final String classContent = FileUtils.readFileToString(new File(
+				JavaAstExtractorTest.class.getClassLoader()
+						.getResource("SampleClass.txt").getFile()));
+		final String code = classContent + "\n\tint a;\n\t\tb\t= 2;";
+		final LineIndex index = new LineIndex(code);
+		for (int i = 0; i <= code.length(); i++) {
+			assertEquals(index.getColumnOfPosition(i), naiveColumn(code, i));
+			assertEquals(TokenizerUtils.getColumnOfPosition(code, i),
+					naiveColumn(code, i));
+		}
+		assertEquals(index.getColumnOfPosition(970), 29);
+	}
+
+	@Test
+	public void testLines() {
+		final String code = "ab\ncd\r\nef\rg\n";
+		final LineIndex index = new LineIndex(code);
+		assertEquals(index.getNumberOfLines(), 5);
+		assertEquals(index.getLineOfPosition(0), 1);
+		assertEquals(index.getLineOfPosition(2), 1);
+		assertEquals(index.getLineOfPosition(3), 2);
+		assertEquals(index.getLineOfPosition(6), 2);
+		assertEquals(index.getLineOfPosition(7), 3);
+		assertEquals(index.getLineOfPosition(10), 4);
+		assertEquals(index.getLineOfPosition(12), 5);
+
+		assertEquals(index.getLineStart(2), 3);
+		assertEquals(index.getLineStart(3), 7);
+		assertEquals(index.getLineStart(4), 10);
+		assertEquals(index.getPosition(3, 1), 8);
+		assertEquals(code.charAt(index.getPosition(4, 0)), 'g');
+	}
+
+	@Test
+	public void testTabs() {
+		final String code = "\ta\n\t\tb\tc";
+		final LineIndex index = new LineIndex(code);
+		assertEquals(index.getTabsBeforeInLine(1), 1);
+		assertEquals(index.getTabsBeforeInLine(3), 0);
+		assertEquals(index.getTabsBeforeInLine(5), 2);
+		assertEquals(index.getTabsBeforeInLine(7), 3);
+	}
+
+}
@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package codemining.languagetools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import codemining.languagetools.Scope.ScopeType;
+
+import com.google.common.collect.Multimap;
+import com.google.common.collect.TreeMultimap;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ScopeTest {
+
+	private static final String CODE = "class A { void f() { int a; } void g() { int a; } }";
+
+	@Test
+	public void testCompareWithStringScopes() {
+		final SourceBuffer source = new SourceBuffer(CODE);
+		final int f = CODE.indexOf("{ int");
+		final int g = CODE.lastIndexOf("{ int");
+		final int length = "{ int a; }".length();
+
+		final Scope fScope = new Scope(source, f, length,
+				ScopeType.SCOPE_LOCAL, "int", 8, 31);
+		final Scope gScope = new Scope(source, g, length,
+				ScopeType.SCOPE_LOCAL, "int", 8, 31);
+		final Scope stringScope = new Scope("{ int a; }",
+				ScopeType.SCOPE_LOCAL, "int", 8, 31);
+		final Scope otherScope = new Scope("{ int b; }",
+				ScopeType.SCOPE_LOCAL, "int", 8, 31);
+
+		assertEquals("{ int a; }", fScope.getCode());
+		assertEquals(fScope, gScope);
+		assertEquals(fScope, stringScope);
+		assertEquals(fScope.hashCode(), stringScope.hashCode());
+		assertEquals(0, fScope.compareTo(stringScope));
+		assertFalse(fScope.equals(otherScope));
+		assertTrue(Integer.signum(fScope.compareTo(otherScope)) == -Integer
+				.signum(otherScope.compareTo(fScope)));
+		assertFalse(fScope.equals(new Scope(source, f, length,
+				ScopeType.SCOPE_METHOD, "int", 8, 31)));
+
+		final Multimap<Scope, String> scopes = TreeMultimap.create();
+		scopes.put(fScope, "a");
+		scopes.put(gScope, "a");
+		scopes.put(stringScope, "b");
+		scopes.put(otherScope, "b");
+		assertEquals(2, scopes.keySet().size());
+		assertEquals(2, scopes.get(fScope).size());
+	}
+
+	@Test
+	public void testSameHashDifferentCode() {
+		// "Aa" and "BB" have the same String.hashCode()
+		final SourceBuffer source = new SourceBuffer("AaBB");
+		final Scope first = new Scope(source, 0, 2, ScopeType.SCOPE_CLASS,
+				"t", 0, 0);
+		final Scope second = new Scope(source, 2, 2, ScopeType.SCOPE_CLASS,
+				"t", 0, 0);
+		assertEquals(first.hashCode(), second.hashCode());
+		assertFalse(first.equals(second));
+		assertEquals(Integer.signum("Aa".compareTo("BB")),
+				Integer.signum(first.compareTo(second)));
+	}
+
+}
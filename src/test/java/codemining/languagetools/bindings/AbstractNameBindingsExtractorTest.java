@@ -0,0 +1,88 @@
+/**
+ *
+ */
+package codemining.languagetools.bindings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class AbstractNameBindingsExtractorTest {
+
+	/**
+	 * Return one (null) binding per character of the snippet.
+	 */
+	private static final class LengthBindingsExtractor extends
+			AbstractNameBindingsExtractor {
+
+		@Override
+		public Set<?> getAvailableFeatures() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public List<TokenNameBinding> getNameBindings(final File f) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<TokenNameBinding> getNameBindings(final String code) {
+			if (code.equals("fail")) {
+				throw new IllegalArgumentException(code);
+			}
+			return Collections.nCopies(code.length(), null);
+		}
+
+		@Override
+		public ResolvedSourceCode getResolvedSourceCode(final File f) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ResolvedSourceCode getResolvedSourceCode(final String code) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void setActiveFeatures(final Set<?> activeFeatures) {
+		}
+	}
+
+	@Test
+	public void testGetNameBindingsOfSnippets() {
+		final List<String> snippets = Lists.newArrayList();
+		for (int i = 0; i < 1000; i++) {
+			snippets.add(i % 100 == 0 ? "fail" : i + "");
+		}
+		final List<List<TokenNameBinding>> bindings = new LengthBindingsExtractor()
+				.getNameBindingsOfSnippets(snippets);
+		assertEquals(snippets.size(), bindings.size());
+		for (int i = 0; i < snippets.size(); i++) {
+			if (i % 100 == 0) {
+				assertNull(bindings.get(i));
+			} else {
+				assertEquals(snippets.get(i).length(), bindings.get(i).size());
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyBatch() {
+		assertEquals(0, new LengthBindingsExtractor()
+				.getNameBindingsOfSnippets(Collections.<String> emptyList())
+				.size());
+	}
+
+}
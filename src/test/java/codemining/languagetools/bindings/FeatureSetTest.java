@@ -0,0 +1,120 @@
+/**
+ *
+ */
+package codemining.languagetools.bindings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class FeatureSetTest {
+
+	@Test
+	public void testDictionary() {
+		final FeatureDictionary dictionary = new FeatureDictionary();
+		final int id = dictionary.getId("inName:", "foo");
+		assertEquals(id, dictionary.getId("inName:", "foo"));
+		assertEquals(id, dictionary.getId("inName:foo"));
+		assertEquals(id, dictionary.getIdIfPresent("inName:foo"));
+		assertEquals("inName:foo", dictionary.getFeature(id));
+
+		final int nArgs = dictionary.getId("nArgs:", 2);
+		assertEquals(nArgs, dictionary.getId("nArgs:", "2"));
+		assertEquals(-1, dictionary.getIdIfPresent("nArgs:3"));
+		assertEquals(2, dictionary.size());
+
+		for (int i = 0; i < 5000; i++) {
+			assertEquals("f" + i, dictionary.getFeature(dictionary.getId("f",
+					Integer.toString(i))));
+		}
+	}
+
+	@Test
+	public void testIterationOrder() {
+		final FeatureDictionary dictionary = new FeatureDictionary();
+		final FeatureSet.Builder builder = new FeatureSet.Builder(dictionary);
+		builder.add("c");
+		builder.add("a");
+		builder.add("b");
+		final FeatureSet features = builder.build();
+
+		// Interned in another order, e.g. by other threads
+		final FeatureDictionary other = new FeatureDictionary();
+		other.getId("b");
+		final FeatureSet.Builder otherBuilder = new FeatureSet.Builder(other);
+		otherBuilder.add("a");
+		otherBuilder.add("c");
+		otherBuilder.add("b");
+
+		assertEquals(Lists.newArrayList("a", "b", "c"),
+				Lists.newArrayList(features));
+		assertEquals(Lists.newArrayList(features),
+				Lists.newArrayList(otherBuilder.build()));
+	}
+
+	@Test
+	public void testSharedDictionaryReplaced() {
+		FeatureDictionary.reset();
+		final FeatureDictionary first = FeatureDictionary.getInstance(2);
+		final FeatureSet.Builder builder = new FeatureSet.Builder(first);
+		builder.add("a");
+		builder.add("b");
+		final FeatureSet features = builder.build();
+
+		final FeatureDictionary second = FeatureDictionary.getInstance(2);
+		assertTrue(first != second);
+		assertEquals(0, second.size());
+		assertEquals(second, FeatureDictionary.getInstance(2));
+		assertEquals(Sets.newHashSet("a", "b"), features);
+
+		FeatureDictionary.reset();
+		assertTrue(FeatureDictionary.getInstance() != second);
+	}
+
+	@Test
+	public void testFeatureSet() throws IOException, ClassNotFoundException {
+		final FeatureSet.Builder builder = new FeatureSet.Builder(
+				new FeatureDictionary());
+		builder.add("isVarArg");
+		builder.addAll("sibling:", Lists.newArrayList("get", "set", "get"));
+		builder.add("nParams:", 1);
+		builder.add("sibling:get");
+		final FeatureSet features = builder.build();
+
+		final Set<String> expected = Sets.newHashSet("isVarArg",
+				"sibling:get", "sibling:set", "nParams:1");
+		assertEquals(expected, features);
+		assertEquals(features, expected);
+		assertEquals(expected.hashCode(), features.hashCode());
+		assertEquals(4, features.getIds().length);
+		assertTrue(features.contains("nParams:1"));
+		assertFalse(features.contains("nParams:2"));
+		assertFalse(features.contains("unknown"));
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(features);
+		}
+		try (final ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertEquals(expected, in.readObject());
+		}
+	}
+
+}
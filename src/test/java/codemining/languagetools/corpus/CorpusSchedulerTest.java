@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class CorpusSchedulerTest {
+
+	@Test
+	public void testLongestFirst() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final List<File> files = Lists.newArrayList();
+			final int[] sizes = { 10, 1000, 5, 200 };
+			for (int i = 0; i < sizes.length; i++) {
+				final File f = new File(dir, "F" + i + ".java");
+				FileUtils.writeStringToFile(f, Strings.repeat("a", sizes[i]),
+						"UTF-8");
+				files.add(f);
+			}
+			final File costFile = new File(dir, "costs.txt");
+
+			final CorpusScheduler scheduler = new CorpusScheduler(2, costFile);
+			assertEquals(scheduler.schedule(files),
+					Lists.newArrayList(1, 3, 0, 2));
+			final List<Long> lengths = scheduler.map(files, f -> f.length());
+			for (int i = 0; i < sizes.length; i++) {
+				assertEquals(lengths.get(i).longValue(), sizes[i]);
+			}
+			assertTrue(costFile.exists());
+
+			// Costs from a previous run take precedence over sizes
+			FileUtils.writeStringToFile(costFile, files.get(2)
+					.getAbsolutePath() + "\t500\n"
+					+ files.get(1).getAbsolutePath() + "\t1\n", "UTF-8");
+			final CorpusScheduler later = new CorpusScheduler(2, costFile);
+			assertEquals(later.schedule(files).get(0).intValue(), 2);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ExtractionCheckpointTest {
+
+	@Test
+	public void testResume() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final File checkpointDir = new File(dir, "checkpoint");
+			final File outputFile = new File(dir, "out.json");
+
+			final ExtractionCheckpoint<String> checkpoint = new ExtractionCheckpoint<String>(
+					checkpointDir, 2);
+			checkpoint.add(new File("a"), "A");
+			checkpoint.add(new File("b"), null);
+			checkpoint.add(new File("c"), "C");
+			// A crash here loses only the pending file c
+
+			final ExtractionCheckpoint<String> resumed = new ExtractionCheckpoint<String>(
+					checkpointDir, 2);
+			assertTrue(resumed.isCompleted(new File("a")));
+			assertTrue(resumed.isCompleted(new File("b")));
+			assertFalse(resumed.isCompleted(new File("c")));
+			resumed.add(new File("c"), "C");
+			resumed.add(new File("d"), "D");
+			resumed.add(new File("e"), "E");
+			resumed.mergeTo(outputFile);
+			assertEquals(resumed.getCompletedFiles().size(), 5);
+			assertEquals(FileUtils.readFileToString(outputFile, "UTF-8"),
+					"[\"A\",\"C\",\"D\",\"E\"]");
+
+			resumed.delete();
+			assertFalse(checkpointDir.exists());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testMergeOrder() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final File outputFile = new File(dir, "out.json");
+			final ExtractionCheckpoint<Integer> checkpoint = new ExtractionCheckpoint<Integer>(
+					new File(dir, "checkpoint"), 1);
+			// More shards than are merged at once, done in reverse order
+			final StringBuilder expected = new StringBuilder("[");
+			for (int i = 199; i >= 0; i--) {
+				checkpoint.add(new File(String.format("f%03d", i)), i);
+			}
+			for (int i = 0; i < 200; i++) {
+				expected.append(i == 0 ? "" : ",").append(i);
+			}
+			assertFalse(ExtractionCheckpoint.isMerged(outputFile));
+			checkpoint.mergeTo(outputFile);
+			assertEquals(FileUtils.readFileToString(outputFile, "UTF-8"),
+					expected.append("]").toString());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testTruncatedCommit() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final File journal = new File(dir,
+					ExtractionCheckpoint.JOURNAL_FILENAME);
+			final ExtractionCheckpoint<String> checkpoint = new ExtractionCheckpoint<String>(
+					dir, 2);
+			checkpoint.add(new File("a"), "A");
+			checkpoint.add(new File("b"), "B");
+			final String committed = FileUtils.readFileToString(journal,
+					"UTF-8");
+
+			// A shard whose file lines were truncated before the tab
+			FileUtils.writeStringToFile(new File(dir, "shard-000001.json"),
+					"[]", "UTF-8");
+			FileUtils.writeStringToFile(journal, committed
+					+ "shard-000001.json\t" + new File("c").getAbsolutePath()
+					+ "\nshard-000001.json\n", "UTF-8");
+			assertFalse(new ExtractionCheckpoint<String>(dir, 2)
+					.isCompleted(new File("c")));
+
+			// A commit record whose count does not match its files
+			FileUtils.writeStringToFile(new File(dir, "shard-000001.json"),
+					"[]", "UTF-8");
+			FileUtils.writeStringToFile(journal, committed
+					+ "shard-000001.json\t" + new File("c").getAbsolutePath()
+					+ "\n#commit\tshard-000001.json\t2\n", "UTF-8");
+			assertFalse(new ExtractionCheckpoint<String>(dir, 2)
+					.isCompleted(new File("c")));
+
+			// A commit record without its newline
+			FileUtils.writeStringToFile(new File(dir, "shard-000001.json"),
+					"[]", "UTF-8");
+			FileUtils.writeStringToFile(journal, committed
+					+ "shard-000001.json\t" + new File("c").getAbsolutePath()
+					+ "\n#commit\tshard-000001.json\t1", "UTF-8");
+			final ExtractionCheckpoint<String> resumed = new ExtractionCheckpoint<String>(
+					dir, 2);
+			assertTrue(resumed.isCompleted(new File("b")));
+			assertFalse(resumed.isCompleted(new File("c")));
+			assertEquals(FileUtils.readFileToString(journal, "UTF-8"),
+					committed);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testInterruptedJournal() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final ExtractionCheckpoint<String> checkpoint = new ExtractionCheckpoint<String>(
+					dir, 1);
+			checkpoint.add(new File("a"), "A");
+			// A shard whose journal entry was interrupted
+			FileUtils.writeStringToFile(new File(dir, "shard-000001.json"),
+					"[\"B\"]", "UTF-8");
+			FileUtils.writeStringToFile(new File(dir,
+					ExtractionCheckpoint.JOURNAL_FILENAME),
+					"shard-000001.json\t" + new File("b").getAbsolutePath()
+							+ "\n", "UTF-8", true);
+
+			final ExtractionCheckpoint<String> resumed = new ExtractionCheckpoint<String>(
+					dir, 1);
+			assertTrue(resumed.isCompleted(new File("a")));
+			assertFalse(resumed.isCompleted(new File("b")));
+			resumed.add(new File("c"), "C");
+
+			final ExtractionCheckpoint<String> again = new ExtractionCheckpoint<String>(
+					dir, 1);
+			assertFalse(again.isCompleted(new File("b")));
+			assertTrue(again.isCompleted(new File("c")));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
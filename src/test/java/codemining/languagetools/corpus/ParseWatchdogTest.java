@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ParseWatchdogTest {
+
+	@Test
+	public void testBudgets() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final File small = new File(dir, "Small.java");
+			final File large = new File(dir, "Large.java");
+			final File slow = new File(dir, "Slow.java");
+			final File quarantineFile = new File(dir, "quarantine.txt");
+			FileUtils.writeStringToFile(small, "class A {}", "UTF-8");
+			FileUtils.writeStringToFile(large, "class B { int a; int b; }",
+					"UTF-8");
+			FileUtils.writeStringToFile(slow, "class C {}", "UTF-8");
+
+			final ParseWatchdog watchdog = new ParseWatchdog(200, 20,
+					quarantineFile, true, 10);
+			assertEquals(watchdog.run(small, "parse", () -> "ok"), "ok");
+			assertNull(watchdog.run(large, "parse", () -> "ok"));
+			assertNull(watchdog.run(slow, "parse", () -> {
+				Thread.sleep(10000);
+				return "ok";
+			}));
+			assertFalse(watchdog.isQuarantined(small));
+			assertTrue(watchdog.isQuarantined(large));
+			assertTrue(watchdog.isQuarantined(slow));
+
+			// A later run skips the quarantined files
+			final ParseWatchdog later = new ParseWatchdog(200, 1000,
+					quarantineFile, true, 10);
+			assertEquals(later.getQuarantined().size(), 2);
+			assertNull(later.run(large, "parse", () -> "ok"));
+			assertEquals(later.run(small, "parse", () -> "ok"), "ok");
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testMaxAbandonedTasks() throws Exception {
+		final File file = new File("Slow.java");
+		final CountDownLatch release = new CountDownLatch(1);
+		final ParseWatchdog watchdog = new ParseWatchdog(100, 0, null, false,
+				1);
+		assertNull(watchdog.run(file, "parse", () -> {
+			// Ignore interrupts, like the parsers
+			while (true) {
+				try {
+					release.await();
+					return "late";
+				} catch (final InterruptedException e) {
+					continue;
+				}
+			}
+		}));
+		assertEquals(watchdog.getNumAbandonedTasks(), 1);
+		try {
+			watchdog.run(file, "parse", () -> "ok");
+			fail();
+		} catch (final RejectedExecutionException e) {
+			// No work is accepted at the cap
+		}
+
+		release.countDown();
+		while (watchdog.getNumAbandonedTasks() > 0) {
+			Thread.sleep(10);
+		}
+		assertEquals(watchdog.run(file, "parse", () -> "ok"), "ok");
+	}
+
+	@Test
+	public void testNoSizeBudget() throws Exception {
+		final ParseWatchdog watchdog = new ParseWatchdog(1000, 0, null, true,
+				10);
+		final File file = File.createTempFile("Large", ".java");
+		try {
+			FileUtils.writeStringToFile(file, "class B { int a; int b; }",
+					"UTF-8");
+			assertEquals(watchdog.run(file, "parse", () -> "ok"), "ok");
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testExceptionRethrown() throws Exception {
+		final ParseWatchdog watchdog = new ParseWatchdog(1000, 1000, null,
+				true, 10);
+		watchdog.run(new File("nonexistent"), "parse", () -> {
+			throw new IOException();
+		});
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ *
+ */
+package codemining.languagetools.corpus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ShardedRunnerTest {
+
+	@Test
+	public void testMergeCounts() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final File shard0 = new File(dir, "out.shard-0");
+			final File shard1 = new File(dir, "out.shard-1");
+			FileUtils.writeStringToFile(shard0,
+					"At file 0 of 10\nNo. Methods: 3\nNo. Classes: 1\n",
+					"UTF-8");
+			FileUtils.writeStringToFile(shard1,
+					"No. Methods: 4\nNo. Classes: 2\n", "UTF-8");
+			final File output = new File(dir, "out");
+			new ShardedRunner(2, ShardedRunner.MergeStrategy.SUM).merge(
+					Lists.newArrayList(shard0, shard1), output);
+			assertEquals(FileUtils.readLines(output, "UTF-8"),
+					Lists.newArrayList("No. Methods: 7", "No. Classes: 3"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testMergeJson() throws Exception {
+		final File dir = Files.createTempDir();
+		try {
+			final File shard0 = new File(dir, "out.shard-0");
+			final File shard1 = new File(dir, "out.shard-1");
+			FileUtils.writeStringToFile(shard0,
+					"[{\"provenance\":\"c\"},{\"provenance\":\"a\"}]", "UTF-8");
+			FileUtils.writeStringToFile(shard1, "[{\"provenance\":\"b\"}]",
+					"UTF-8");
+			final File output = new File(dir, "out");
+			new ShardedRunner(2, ShardedRunner.MergeStrategy.JSON).merge(
+					Lists.newArrayList(shard0, shard1), output);
+			assertEquals(FileUtils.readFileToString(output, "UTF-8"),
+					"[{\"provenance\":\"a\"},{\"provenance\":\"b\"},"
+							+ "{\"provenance\":\"c\"}]");
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testSelectListedFiles() throws Exception {
+		final File baseDir = new File("corpus");
+		final List<File> files = Lists.newArrayList();
+		for (int i = 0; i < 10; i++) {
+			files.add(new File(baseDir, "F" + i + ".java"));
+		}
+		final File fileList = File.createTempFile("shardFiles", ".txt");
+		try {
+			FileUtils.writeLines(fileList, "UTF-8", Lists.newArrayList(files
+					.get(2).getAbsolutePath(), files.get(7).getAbsolutePath()));
+			System.setProperty(CorpusShard.FILE_LIST_PROPERTY,
+					fileList.getAbsolutePath());
+			assertEquals(CorpusShard.select(files, baseDir),
+					Lists.newArrayList(files.get(2), files.get(7)));
+		} finally {
+			System.clearProperty(CorpusShard.FILE_LIST_PROPERTY);
+			fileList.delete();
+		}
+	}
+
+	@Test
+	public void testShardsPartitionCorpus() {
+		final File baseDir = new File("corpus");
+		final List<File> files = Lists.newArrayList();
+		for (int i = 0; i < 100; i++) {
+			files.add(new File(baseDir, "pkg" + i % 7 + "/F" + i + ".java"));
+		}
+		final Set<File> allSelected = Sets.newHashSet();
+		int total = 0;
+		try {
+			for (int shard = 0; shard < 3; shard++) {
+				System.setProperty(CorpusShard.SHARD_PROPERTY, shard + "/3");
+				final List<File> selected = CorpusShard.select(files, baseDir);
+				for (final File f : selected) {
+					assertEquals(CorpusShard.shardOf(f, baseDir, 3), shard);
+				}
+				allSelected.addAll(selected);
+				total += selected.size();
+			}
+		} finally {
+			System.clearProperty(CorpusShard.SHARD_PROPERTY);
+		}
+		assertEquals(total, files.size());
+		assertEquals(allSelected, Sets.newHashSet(files));
+		assertEquals(CorpusShard.select(files, baseDir), files);
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class DistinctTokenCounterTest {
+
+	private static List<String> zipfTokens(final int nTokens, final int seed) {
+		final Random rnd = new Random(seed);
+		final List<String> tokens = Lists.newArrayList();
+		for (int i = 0; i < nTokens; i++) {
+			tokens.add("tok" + (int) Math.floor(Math.exp(rnd.nextDouble() * 10)));
+		}
+		return tokens;
+	}
+
+	@Test
+	public void testApproximateCounts() throws IOException {
+		final List<String> tokens = zipfTokens(50000, 1);
+		final Map<String, Long> expected = Maps.newHashMap();
+		for (final String token : tokens) {
+			expected.merge(token, 1L, Long::sum);
+		}
+
+		try (final DistinctTokenCounter counter = new DistinctTokenCounter(
+				null, true)) {
+			counter.addTokens(tokens);
+			assertEquals(counter.getTotalTokenCount(), tokens.size());
+			final long distinct = counter.getDistinctTokenCount();
+			assertTrue(Math.abs(distinct - expected.size()) < .05 * expected
+					.size());
+			for (final Map.Entry<String, Long> entry : expected.entrySet()) {
+				final long estimate = counter.estimateCount(entry.getKey());
+				assertTrue(estimate >= entry.getValue());
+			}
+		}
+	}
+
+	@Test
+	public void testExactCountsWithSpills() throws IOException {
+		final Map<String, Long> expected = Maps.newTreeMap();
+		try (final DistinctTokenCounter counter = new DistinctTokenCounter(
+				null, false, 100)) {
+			for (int i = 0; i < 20; i++) {
+				final List<String> tokens = zipfTokens(1000, i);
+				for (final String token : tokens) {
+					expected.merge(token, 1L, Long::sum);
+				}
+				counter.addTokens(tokens);
+			}
+
+			final Map<String, Long> actual = Maps.newLinkedHashMap();
+			counter.forEachCount((token, count) -> actual.put(token, count));
+			assertEquals(Lists.newArrayList(actual.entrySet()),
+					Lists.newArrayList(expected.entrySet()));
+			assertEquals(counter.getDistinctTokenCount(), expected.size());
+			assertEquals(counter.getTotalTokenCount(), 20000);
+		}
+	}
+
+	@Test
+	public void testTable() {
+		final TokenCountTable table = new TokenCountTable(2);
+		for (int i = 0; i < 1000; i++) {
+			table.add(Integer.toString(i % 300), 2);
+		}
+		assertEquals(table.size(), 300);
+		assertEquals(table.getTotalCount(), 2000);
+		assertEquals(table.get("5"), 8);
+		assertEquals(table.get("299"), 6);
+		assertEquals(table.get("300"), 0);
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package codemining.languagetools.counting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NGramCounterTest {
+
+	@Test
+	public void testCounts() throws IOException {
+		final NGramCounter counter = new NGramCounter(null, 3);
+		counter.addTokens(Lists.newArrayList("a", "b", "a", "b", "c"));
+		counter.addTokens(Lists.newArrayList("a", "b", "c"));
+
+		assertEquals(counter.getCount(Lists.newArrayList("a")), 3);
+		assertEquals(counter.getCount(Lists.newArrayList("c")), 2);
+		assertEquals(counter.getCount(Lists.newArrayList("a", "b")), 3);
+		assertEquals(counter.getCount(Lists.newArrayList("b", "a")), 1);
+		assertEquals(counter.getCount(Lists.newArrayList("a", "b", "c")), 2);
+		assertEquals(counter.getCount(Lists.newArrayList("c", "a")), 0);
+		assertEquals(counter.getCount(Lists.newArrayList("d")), 0);
+		assertEquals(counter.getNumberOfNGrams(2), 3);
+
+		counter.prune(2);
+		assertEquals(counter.getNumberOfNGrams(2), 2);
+		assertEquals(counter.getCount(Lists.newArrayList("b", "a")), 0);
+		assertEquals(counter.getCount(Lists.newArrayList("a", "b")), 3);
+
+		final File dir = Files.createTempDir();
+		try {
+			counter.writeCounts(dir);
+			final List<String> bigrams = FileUtils.readLines(new File(dir,
+					"2-grams.txt"));
+			assertEquals(bigrams, Lists.newArrayList("a b\t3", "b c\t2"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testLargeVocabulary() throws IOException {
+		final NGramCounter counter = new NGramCounter(null, 7);
+		final List<String> tokens = Lists.newArrayList();
+		for (int i = 0; i < 5000; i++) {
+			tokens.add("t" + i);
+		}
+		counter.addTokens(tokens);
+		// More tokens than 7 ids of 9 bits could hold
+		assertEquals(counter.getVocabulary().size(), 5001);
+		assertEquals(counter.getCount(Lists.newArrayList(Vocabulary.UNK_TOKEN)),
+				0);
+		assertEquals(counter.getCount(tokens.subList(4990, 4997)), 1);
+		assertEquals(counter.getCount(tokens.subList(4990, 4993)), 1);
+		assertEquals(counter.getCount(Lists.newArrayList("t1", "t0")), 0);
+		assertEquals(counter.getNumberOfNGrams(7), 4994);
+
+		final File dir = Files.createTempDir();
+		try {
+			counter.writeCounts(dir);
+			final List<String> ngrams = FileUtils.readLines(new File(dir,
+					"7-grams.txt"));
+			assertEquals(ngrams.size(), 4994);
+			assertTrue(ngrams.contains("t4993 t4994 t4995 t4996 t4997 t4998 t4999\t1"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+}
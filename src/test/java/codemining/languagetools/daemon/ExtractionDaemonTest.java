@@ -0,0 +1,156 @@
+/**
+ *
+ */
+package codemining.languagetools.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ExtractionDaemonTest {
+
+	private ExtractionDaemon daemon;
+
+	private final CountDownLatch blocked = new CountDownLatch(1);
+
+	private JsonObject call(final BufferedReader reader, final Writer writer,
+			final String request) throws IOException {
+		send(writer, request);
+		return new JsonParser().parse(reader.readLine()).getAsJsonObject();
+	}
+
+	private void send(final Writer writer, final String request)
+			throws IOException {
+		writer.write(request);
+		writer.write('\n');
+		writer.flush();
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		daemon = new ExtractionDaemon(0, 1, 1);
+		daemon.register("upper", (option, code) -> {
+			if (code.isEmpty()) {
+				throw new IllegalArgumentException("empty");
+			}
+			return code.toUpperCase();
+		});
+		daemon.register("block", (option, code) -> {
+			blocked.await();
+			return code;
+		});
+		final Thread server = new Thread(() -> {
+			try {
+				daemon.serve();
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		server.setDaemon(true);
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		blocked.countDown();
+		daemon.close();
+	}
+
+	@Test
+	public void testProcessOnEachWorker() throws Exception {
+		try (final ExtractionDaemon workers = new ExtractionDaemon(0, 3, 1)) {
+			workers.register("thread",
+					(option, code) -> Thread.currentThread().getName());
+			final ExtractionDaemon.Request request = new ExtractionDaemon.Request();
+			request.op = "thread";
+			request.snippets = Lists.newArrayList("a");
+			final Set<Object> threads = Sets.newHashSet();
+			for (final ExtractionDaemon.Response response : workers
+					.processOnEachWorker(request)) {
+				threads.add(response.results.get(0));
+			}
+			assertEquals(3, threads.size());
+		}
+	}
+
+	@Test
+	public void testRequests() throws IOException {
+		try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+				daemon.getPort());
+				final BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(),
+								StandardCharsets.UTF_8));
+				final Writer writer = new OutputStreamWriter(
+						socket.getOutputStream(), StandardCharsets.UTF_8)) {
+			final JsonObject response = call(reader, writer,
+					"{\"id\":1,\"op\":\"upper\",\"snippets\":[\"ab\",\"\",\"c\"]}");
+			assertEquals(1, response.get("id").getAsInt());
+			assertEquals("AB", response.getAsJsonArray("results").get(0)
+					.getAsString());
+			assertTrue(response.getAsJsonArray("results").get(1).isJsonNull());
+			assertEquals("C", response.getAsJsonArray("results").get(2)
+					.getAsString());
+			assertTrue(response.getAsJsonArray("errors").get(0).isJsonNull());
+			assertEquals("IllegalArgumentException: empty", response
+					.getAsJsonArray("errors").get(1).getAsString());
+
+			final JsonObject unknown = call(reader, writer,
+					"{\"id\":\"x\",\"op\":\"foo\",\"snippets\":[]}");
+			assertEquals("x", unknown.get("id").getAsString());
+			assertEquals("Unknown op foo", unknown.get("error").getAsString());
+
+			final JsonObject malformed = call(reader, writer, "{");
+			assertTrue(malformed.get("error").getAsString()
+					.startsWith("Malformed request"));
+		}
+	}
+
+	@Test
+	public void testBusy() throws IOException {
+		try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+				daemon.getPort());
+				final BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(),
+								StandardCharsets.UTF_8));
+				final Writer writer = new OutputStreamWriter(
+						socket.getOutputStream(), StandardCharsets.UTF_8)) {
+			send(writer, "{\"id\":1,\"op\":\"block\",\"snippets\":[\"a\"]}");
+			final JsonObject busy = call(reader, writer,
+					"{\"id\":2,\"op\":\"upper\",\"snippets\":[\"a\"]}");
+			assertEquals(2, busy.get("id").getAsInt());
+			assertEquals(ExtractionDaemon.BUSY_ERROR, busy.get("error")
+					.getAsString());
+
+			blocked.countDown();
+			final JsonObject done = new JsonParser().parse(reader.readLine())
+					.getAsJsonObject();
+			assertEquals(1, done.get("id").getAsInt());
+			assertEquals("a", done.getAsJsonArray("results").get(0)
+					.getAsString());
+		}
+	}
+
+}
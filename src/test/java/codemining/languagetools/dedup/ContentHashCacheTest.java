@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package codemining.languagetools.dedup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class ContentHashCacheTest {
+
+	private static long xxHash64(final String text) {
+		return ContentHash.xxHash64(
+				ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), 0);
+	}
+
+	@Test
+	public void testCacheReuse() throws IOException {
+		final File dir = Files.createTempDir();
+		try {
+			final File f1 = new File(dir, "A.java");
+			final File f2 = new File(dir, "B.java");
+			final File f3 = new File(dir, "C.java");
+			FileUtils.writeStringToFile(f1, "class A {}");
+			FileUtils.writeStringToFile(f2, "class A {}");
+			FileUtils.writeStringToFile(f3, "class C {}");
+
+			final AtomicInteger nExtractions = new AtomicInteger();
+			final ContentHashCache<String> cache = new ContentHashCache<String>();
+			for (final File f : new File[] { f1, f2, f3 }) {
+				final String result = cache.get(f, file -> {
+					nExtractions.incrementAndGet();
+					try {
+						return FileUtils.readFileToString(file);
+					} catch (final IOException e) {
+						throw new IllegalStateException(e);
+					}
+				});
+				assertEquals(result, FileUtils.readFileToString(f));
+			}
+			assertEquals(nExtractions.get(), 2);
+			assertEquals(cache.getNumberOfDistinctContents(), 2);
+			assertEquals(cache.getPathsWithSameContent(f1).size(), 2);
+			assertTrue(cache.getPathsWithSameContent(f2).contains(
+					f1.getAbsolutePath()));
+
+			final ContentHashCache<Void> seen = new ContentHashCache<Void>();
+			assertFalse(seen.isDuplicate(f1));
+			assertTrue(seen.isDuplicate(f2));
+			assertFalse(seen.isDuplicate(f3));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		final File dir = Files.createTempDir();
+		try {
+			final File f1 = new File(dir, "A.java");
+			final File f2 = new File(dir, "B.java");
+			FileUtils.writeStringToFile(f1, "class A {}");
+			FileUtils.writeStringToFile(f2, "class B {}");
+
+			final AtomicInteger nExtractions = new AtomicInteger();
+			final ContentHashCache<String> cache = new ContentHashCache<String>(
+					1);
+			for (final File f : new File[] { f1, f2, f1 }) {
+				assertEquals(cache.get(f, file -> {
+					nExtractions.incrementAndGet();
+					return file.getName();
+				}), f.getName());
+			}
+			assertEquals(nExtractions.get(), 3);
+			assertEquals(cache.getNumberOfDistinctContents(), 2);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testFileHashAcrossChunks() throws IOException {
+		final Random random = new Random(42);
+		final File file = File.createTempFile("contentHash", ".bin");
+		try {
+			for (final int size : new int[] { 0, 31, 32, 33,
+					ContentHash.CHUNK_SIZE - 1, ContentHash.CHUNK_SIZE,
+					ContentHash.CHUNK_SIZE + 1, 3 * ContentHash.CHUNK_SIZE + 17 }) {
+				final byte[] bytes = new byte[size];
+				random.nextBytes(bytes);
+				FileUtils.writeByteArrayToFile(file, bytes);
+				assertEquals(ContentHash.of(file), new ContentHash(
+						ContentHash.xxHash64(ByteBuffer.wrap(bytes), 0), size));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testXxHash64() {
+		assertEquals(xxHash64(""), 0xEF46DB3751D8E999L);
+		assertEquals(xxHash64("a"), 0xD24EC4F1A98C6E5BL);
+		assertEquals(xxHash64("abc"), 0x44BC2CF5AD770999L);
+		assertEquals(xxHash64("Nobody inspects the spammish repetition"),
+				0xFBCEA83C8A378BF1L);
+	}
+
+}
@@ -0,0 +1,57 @@
+/**
+ *
+ */
+package codemining.languagetools.dedup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class NearDuplicateDetectorTest {
+
+	private static List<String> randomTokens(final Random rnd, final int size) {
+		final List<String> tokens = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			tokens.add("t" + rnd.nextInt(200));
+		}
+		return tokens;
+	}
+
+	@Test
+	public void testClusters() {
+		final NearDuplicateDetector detector = new NearDuplicateDetector(null,
+				5, 20, 5, .8);
+		final Random rnd = new Random(1);
+		final List<String> doc1 = randomTokens(rnd, 2000);
+		final List<String> doc2 = randomTokens(rnd, 2000);
+
+		// A copy with a few edits
+		final List<String> doc1Copy = Lists.newArrayList(doc1);
+		doc1Copy.set(100, "edited");
+		doc1Copy.add(1000, "inserted");
+
+		assertFalse(detector.isNearDuplicate("doc1", doc1));
+		assertFalse(detector.isNearDuplicate("doc2", doc2));
+		assertTrue(detector.isNearDuplicate("doc1Copy", doc1Copy));
+		assertTrue(detector.isNearDuplicate("doc2Copy",
+				Lists.newArrayList(doc2)));
+		assertFalse(detector.isNearDuplicate("doc3", randomTokens(rnd, 2000)));
+
+		final List<List<String>> clusters = detector.getDuplicateClusters();
+		assertEquals(clusters.size(), 2);
+		assertEquals(clusters.get(0), Lists.newArrayList("doc1", "doc1Copy"));
+		assertEquals(clusters.get(1), Lists.newArrayList("doc2", "doc2Copy"));
+	}
+
+}
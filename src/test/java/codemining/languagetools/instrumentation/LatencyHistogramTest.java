@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package codemining.languagetools.instrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Miltos Allamanis <m.allamanis@ed.ac.uk>
+ *
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		for (long value = 0; value < 100000; value += 7) {
+			final int bucket = LatencyHistogram.bucketOf(value);
+			assertTrue(value <= LatencyHistogram.upperBoundOf(bucket));
+			assertTrue(bucket == 0
+					|| value > LatencyHistogram.upperBoundOf(bucket - 1));
+		}
+		final int last = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+		assertEquals(LatencyHistogram.upperBoundOf(last), Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(histogram.getPercentile(99), 0);
+		for (int i = 1; i <= 1000; i++) {
+			histogram.add(i * 1000L);
+		}
+		assertEquals(histogram.getCount(), 1000);
+		final long p50 = histogram.getPercentile(50);
+		final long p99 = histogram.getPercentile(99);
+		assertTrue(p50 >= 500000 && p50 <= 500000 * 1.25);
+		assertTrue(p99 >= 990000 && p99 <= 990000 * 1.25);
+	}
+
+	@Test
+	public void testStageMetrics() {
+		final StageMetrics metrics = new StageMetrics("parse", "java", "chars");
+		metrics.add(2000000, 100);
+		metrics.add(4000000, 50);
+		metrics.addFailure();
+		assertEquals(metrics.getCount(), 2);
+		assertEquals(metrics.getItems(), 150);
+		assertEquals(metrics.getFailures(), 1);
+		assertEquals(metrics.getMeanLatencyMs(), 3, 1E-9);
+	}
+
+}